@@ -0,0 +1,127 @@
+package com.wizardry.tools.logripper.benchmark;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.pathgrep.PathGrepTask;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.functions.LineReader;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Greps a {@link LogCorpus} of {@value #CORPUS_SIZE} bytes the way a directory grep does, with every engine the
+ * command line can choose. The corpus is written once per trial and stays in the page cache, so the numbers are
+ * those of the engines and not of the disk. Matches are only counted by the sink, nothing is printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class GrepBenchmark {
+
+    static final long CORPUS_SIZE = 128L << 20; // 128 MiB
+
+    @Param({"65536", "16777216"})
+    public long fileSize;
+
+    @Param({"120", "1000"})
+    public int lineLength;
+
+    @Param({"0.001", "0.05"})
+    public double matchDensity;
+
+    private Path root;
+    private List<Path> files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("logripper-grep");
+        files = new LogCorpus((int) Math.max(1, CORPUS_SIZE / fileSize), fileSize, lineLength, matchDensity).generate(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LogCorpus.delete(root);
+    }
+
+    @Benchmark
+    public long literal() {
+        return grep(LogCorpus.TOKEN, false, 0, false);
+    }
+
+    @Benchmark
+    public long regex() {
+        return grep(LogCorpus.TOKEN + " .* - failed with java\\.[a-z]+\\.\\w+Exception", false, 0, false);
+    }
+
+    @Benchmark
+    public long ignoreCase() {
+        return grep("error", true, 0, false);
+    }
+
+    @Benchmark
+    public long severalLiterals() {
+        return grep(LogCorpus.TOKEN + "\nSocketTimeoutException\nrollback", false, 0, false);
+    }
+
+    @Benchmark
+    public long context() {
+        return grep(LogCorpus.TOKEN, false, 3, false);
+    }
+
+    @Benchmark
+    public long countOnly() {
+        return grep(LogCorpus.TOKEN, false, 0, true);
+    }
+
+    /**
+     * The String based engine that reads files line by line, as a baseline.
+     */
+    @Benchmark
+    public long lineReader() throws IOException {
+        LogRipperConfig config = config(LogCorpus.TOKEN, false, 0, false);
+        AtomicInteger totalMatches = new AtomicInteger();
+        long matches = 0;
+        for (Path file : files) {
+            matches += WrappedPath.of(file).readLines(LineReader.of(config, totalMatches)).size();
+        }
+        return matches;
+    }
+
+    private long grep(String token, boolean isIgnoreCase, int context, boolean isCountOnly) {
+        LogRipperConfig config = config(token, isIgnoreCase, context, isCountOnly);
+        AtomicInteger totalMatches = new AtomicInteger();
+        LongAdder emitted = new LongAdder();
+        SystemUtil.getWorkPool().invoke(new PathGrepTask(WrappedPath.of(root), config, totalMatches,
+                (path, matches) -> emitted.add(matches.size())));
+        return isCountOnly ? totalMatches.get() : emitted.sum();
+    }
+
+    private LogRipperConfig config(String token, boolean isIgnoreCase, int context, boolean isCountOnly) {
+        // without an index, which would turn this into a benchmark of the corpus' block statistics
+        return new LogRipperConfig(token, root, context, context, isIgnoreCase, 0, false, isCountOnly, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH);
+    }
+}
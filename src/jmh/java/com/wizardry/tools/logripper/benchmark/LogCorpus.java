@@ -0,0 +1,163 @@
+package com.wizardry.tools.logripper.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A synthetic tree of log files that is the same byte for byte for the same parameters, so that benchmark runs
+ * on different builds grep the same corpus. Lines look like those of a Java service, a share of them carries
+ * {@value #TOKEN}, with every tenth of those spelled {@code Error} so that ignoring case finds more. No other line
+ * contains the token in any case.
+ *
+ * @param files The number of files, spread evenly over the leaf directories.
+ * @param fileSize The size of each file in bytes, the last line is cut short to fit.
+ * @param lineLength The average length of a line, without its line feed.
+ * @param matchDensity The share of lines that carry the token, from 0 to 1.
+ * @param fanOut The number of directories within each directory.
+ * @param depth The number of directory levels below the root, 0 puts every file into the root.
+ * @param seed The seed every file's content is derived from.
+ */
+public record LogCorpus(int files, long fileSize, int lineLength, double matchDensity, int fanOut, int depth, long seed) {
+
+    public static final String TOKEN = "ERROR";
+
+    private static final String[] LEVELS = {"INFO", "INFO", "INFO", "DEBUG", "DEBUG", "WARN", "TRACE"};
+    private static final String[] LOGGERS = {"c.w.o.OrderService", "c.w.o.PaymentGateway", "c.w.i.InventoryClient",
+            "c.w.a.AuthFilter", "c.w.s.SessionStore", "o.h.e.j.s.SqlExceptionHelper"};
+    private static final String[] WORDS = {"request", "handled", "user", "order", "cache", "miss", "hit", "retry",
+            "timeout", "connection", "pool", "acquired", "released", "session", "token", "refreshed", "payload",
+            "bytes", "latency", "ms", "queue", "depth", "batch", "committed", "rollback", "id", "status", "200", "404",
+            "upstream", "downstream", "shard", "replica", "lag", "scheduled", "job", "completed", "started"};
+    private static final String[] EXCEPTIONS = {"java.io.IOException", "java.net.SocketTimeoutException",
+            "java.lang.IllegalStateException", "java.sql.SQLTransientConnectionException"};
+
+    public LogCorpus(int files, long fileSize, int lineLength, double matchDensity) {
+        this(files, fileSize, lineLength, matchDensity, 4, 2, 42L); // Default to 16 directories of files.
+    }
+
+    /**
+     * Writes the corpus below the root, which is created if missing.
+     *
+     * @return The files that were written.
+     */
+    public List<Path> generate(Path root) throws IOException {
+        List<Path> leaves = new ArrayList<>();
+        directories(root, depth, leaves);
+        List<Path> written = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            Path file = leaves.get(i % leaves.size()).resolve("app-" + i + ".log");
+            write(file, new SplittableRandom(seed + i));
+            written.add(file);
+        }
+        return written;
+    }
+
+    /**
+     * Deletes a generated corpus.
+     */
+    public static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void directories(Path dir, int levels, List<Path> leaves) throws IOException {
+        Files.createDirectories(dir);
+        if (levels == 0) {
+            leaves.add(dir);
+            return;
+        }
+        for (int i = 0; i < fanOut; i++) {
+            directories(dir.resolve("dir-" + i), levels - 1, leaves);
+        }
+    }
+
+    private void write(Path file, SplittableRandom random) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            StringBuilder line = new StringBuilder(lineLength * 2);
+            long written = 0;
+            for (long lineNumber = 0; written < fileSize; lineNumber++) {
+                line.setLength(0);
+                line(line, lineNumber, random);
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                int length = (int) Math.min(bytes.length, fileSize - written);
+                out.write(bytes, 0, length);
+                written += length;
+            }
+        }
+    }
+
+    private void line(StringBuilder line, long lineNumber, SplittableRandom random) {
+        long millis = lineNumber * 37;
+        line.append("2024-05-01 ")
+                .append(two(millis / 3_600_000 % 24)).append(':')
+                .append(two(millis / 60_000 % 60)).append(':')
+                .append(two(millis / 1000 % 60)).append('.')
+                .append(String.valueOf(millis % 1000 + 1000), 1, 4)
+                .append(" [worker-").append(random.nextInt(32)).append("] ");
+        boolean isMatching = random.nextDouble() < matchDensity;
+        if (isMatching) {
+            line.append(random.nextInt(10) == 0 ? "Error" : TOKEN);
+        } else {
+            line.append(LEVELS[random.nextInt(LEVELS.length)]);
+        }
+        line.append(' ').append(LOGGERS[random.nextInt(LOGGERS.length)]).append(" -");
+        // line lengths vary by half the average either way
+        int length = lineLength / 2 + random.nextInt(Math.max(1, lineLength));
+        if (isMatching) {
+            line.append(" failed with ").append(EXCEPTIONS[random.nextInt(EXCEPTIONS.length)]).append(':');
+        }
+        while (line.length() < length) {
+            line.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        line.append('\n');
+    }
+
+    private static String two(long value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+
+    /**
+     * Generates a corpus to grep by hand, e.g. to profile a single run.
+     * <p>
+     * Usage: {@code LogCorpus <dir> [files] [fileSize] [lineLength] [matchDensity] [fanOut] [depth] [seed]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: LogCorpus <dir> [files] [fileSize] [lineLength] [matchDensity] [fanOut] [depth] [seed]");
+            System.exit(1);
+        }
+        LogCorpus corpus = new LogCorpus(
+                args.length > 1 ? Integer.parseInt(args[1]) : 64,
+                args.length > 2 ? Long.parseLong(args[2]) : 1 << 20,
+                args.length > 3 ? Integer.parseInt(args[3]) : 120,
+                args.length > 4 ? Double.parseDouble(args[4]) : 0.01,
+                args.length > 5 ? Integer.parseInt(args[5]) : 4,
+                args.length > 6 ? Integer.parseInt(args[6]) : 2,
+                args.length > 7 ? Long.parseLong(args[7]) : 42L);
+        System.out.println("Generated [" + corpus.generate(Path.of(args[0])).size() + "] files of " + corpus);
+    }
+}
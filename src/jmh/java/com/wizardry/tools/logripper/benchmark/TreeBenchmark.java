@@ -0,0 +1,74 @@
+package com.wizardry.tools.logripper.benchmark;
+
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.pathmapper.CompactTreeMapper;
+import com.wizardry.tools.logripper.tasks.pathmapper.PooledTreeWrapper;
+import com.wizardry.tools.logripper.tasks.pathsize.PathSizeVisitor;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes and maps a {@link LogCorpus} of many small files, where the cost is in the crawl and the tree, not in
+ * the content. The fan-out decides between wide and deep trees of about the same number of files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TreeBenchmark {
+
+    static final int FILES = 50_000;
+
+    @Param({"4:6", "32:3"})
+    public String fanOutAndDepth;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] tree = fanOutAndDepth.split(":");
+        root = Files.createTempDirectory("logripper-tree");
+        new LogCorpus(FILES, 512, 120, 0.01, Integer.parseInt(tree[0]), Integer.parseInt(tree[1]), 42L).generate(root);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        LogCorpus.delete(root);
+    }
+
+    @Benchmark
+    public long size() throws IOException {
+        PathSizeVisitor visitor = new PathSizeVisitor();
+        new ParallelCrawler<>(visitor, ParallelCrawler.UNLIMITED_DEPTH).crawl(root);
+        return visitor.size();
+    }
+
+    @Benchmark
+    public long map() throws IOException {
+        return new PooledTreeWrapper().crawl(WrappedPath.of(root)).getSize();
+    }
+
+    @Benchmark
+    public long compactMap() throws IOException {
+        return new CompactTreeMapper().crawl(WrappedPath.of(root)).getSize();
+    }
+}
@@ -3,6 +3,7 @@ package com.wizardry.tools.logripper;
 import com.wizardry.tools.logripper.config.LogRipperConfig;
 import com.wizardry.tools.logripper.tasks.pathmapper.WrappedTreeNode;
 import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
@@ -137,24 +138,26 @@ public class LogRipper {
             return; // don't announce matches
         }
         if (config.isNumbered()) {
-            announceNumberedMatches(config.isDebug()).accept(matches);
+            announceNumberedMatches().accept(matches);
         } else {
-            announceMatches(config.isDebug()).accept(matches);
+            announceMatches().accept(matches);
         }
     }
 
-    private static Consumer<Map<Integer, String>> announceMatches(boolean isDebug) {
-        if (isDebug) {
-            return (matches) -> matches.values().forEach(LOGGER::debug);
-        }
-        return (matches) -> matches.values().forEach(System.out::println);
+    private static Consumer<Map<Integer, String>> announceMatches() {
+        PrintStream out = ResultOutput.out();
+        return (matches) -> {
+            matches.values().forEach(out::println);
+            out.flush();
+        };
     }
 
-    private static Consumer<Map<Integer, String>> announceNumberedMatches(boolean isDebug) {
-        if (isDebug) {
-            return (matches) -> matches.forEach((key, value) -> LOGGER.debug("#" + (key + 1) + ": " + value));
-        }
-        return (matches) -> matches.forEach((key, value) -> System.out.println("#" + (key + 1) + ": " + value));
+    private static Consumer<Map<Integer, String>> announceNumberedMatches() {
+        PrintStream out = ResultOutput.out();
+        return (matches) -> {
+            matches.forEach((key, value) -> out.println("#" + (key + 1) + ": " + value));
+            out.flush();
+        };
     }
 
     private record FileScannerTask(List<String> lines, Pattern pattern, LogRipperConfig config, AtomicInteger counter, AtomicInteger limit)
@@ -26,11 +26,20 @@ import static com.wizardry.tools.logripper.util.StringUtil.EMPTY;
 import static org.refcodes.cli.CliSugar.*;
 
 import com.wizardry.tools.logripper.config.*;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.tasks.decompress.DecompressRipper;
+import com.wizardry.tools.logripper.tasks.index.IndexRipper;
+import com.wizardry.tools.logripper.tasks.pathdiff.PathDiffRipper;
+import com.wizardry.tools.logripper.tasks.pathdiff.TreeSnapshot;
+import com.wizardry.tools.logripper.tasks.index.IndexStore;
 import com.wizardry.tools.logripper.tasks.pathgrep.FileGrepRipper;
+import com.wizardry.tools.logripper.tasks.pathgrep.LogFollower;
 import com.wizardry.tools.logripper.tasks.pathgrep.PathGrepRipper;
 import com.wizardry.tools.logripper.tasks.pathmapper.*;
 import com.wizardry.tools.logripper.tasks.pathsize.PathSizeCalculator;
+import com.wizardry.tools.logripper.tasks.pathsize.TopSizeRipper;
 import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 import org.refcodes.archetype.CliHelper;
 import org.refcodes.cli.*;
@@ -43,9 +52,13 @@ import org.refcodes.textual.Font;
 import org.refcodes.textual.FontStyle;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -72,12 +85,27 @@ public class Main {
 	private static final char[] BANNER_PALETTE = AsciiColorPalette.MAX_LEVEL_GRAY.getPalette();
 	private static final Font BANNER_FONT = new Font( FontFamily.DIALOG, FontStyle.BOLD );
 	private static final String GREP_PROPERTY = "grep";
+	private static final String PATTERNS_FILE_PROPERTY = "patterns-file";
 	private static final String DEPTH_PROPERTY = "max-depth";
 	private static final String PATH_PROPERTY = "path";
 	private static final String LINES_PROPERTY = "lines";
 	private static final String LINES_BEFORE_PROPERTY = "lines-before";
 	private static final String LINES_AFTER_PROPERTY = "lines-after";
 	private static final String LIMIT_PROPERTY = "limit";
+	private static final String INDEX_PROPERTY = "index";
+	private static final String INCLUDE_PROPERTY = "include";
+	private static final String EXCLUDE_PROPERTY = "exclude";
+	private static final String NEWER_THAN_PROPERTY = "newer-than";
+	private static final String OLDER_THAN_PROPERTY = "older-than";
+	private static final String MAX_FILE_SIZE_PROPERTY = "max-file-size";
+	private static final String BINARY_FILES_PROPERTY = "binary-files";
+	private static final String SORT_ORDER_PROPERTY = "sort-order";
+	private static final String TOP_PROPERTY = "top";
+	private static final String SNAPSHOT_PROPERTY = "snapshot";
+	private static final String DIFF_PROPERTY = "diff";
+	private static final String OUTPUT_PROPERTY = "output";
+	private static final String INDEX_BUILD = "build";
+	private static final String INDEX_OFF = "off";
 
 	// /////////////////////////////////////////////////////////////////////////
 	// METHODS:
@@ -94,13 +122,26 @@ public class Main {
 
 		// See "http://www.refcodes.org/refcodes/refcodes-cli" |-->
 
-		final StringOption theSearchOption = stringOption( 'g', "grep", GREP_PROPERTY, "GREP the file or directory for a token or pattern." );
-		final StringOption theDepthOption = stringOption('D', "max-depth", DEPTH_PROPERTY, "The maximum depth of crawling files." );
+		final StringOption theSearchOption = stringOption( 'g', "grep", GREP_PROPERTY, "GREP the file or directory for a token or pattern, several are separated by line breaks." );
+		final StringOption thePatternsFileOption = stringOption( 'f', "patterns-file", PATTERNS_FILE_PROPERTY, "A file with the tokens or patterns to GREP for, one per line." );
+		final StringOption theDepthOption = stringOption('D', "max-depth", DEPTH_PROPERTY, "The maximum depth of crawling files, 1 only includes the entries of the path itself." );
 		final StringOption thePathOption = stringOption( 'p', "path", PATH_PROPERTY, "The file or directory path that needs a rip'n" );
 		final StringOption theLinesOption = stringOption( 'C', "lines-around", LINES_PROPERTY, "The number of lines before and after a match that should be included." );
 		final StringOption theLinesBeforeOption = stringOption( 'B', "lines-before", LINES_BEFORE_PROPERTY, "The number of lines before a match that should be included." );
 		final StringOption theLinesAfterOption = stringOption( 'A', "lines-after", LINES_AFTER_PROPERTY, "The number of lines after a match that should be included." );
 		final StringOption theLimitOption = stringOption( 'L', "limit", LIMIT_PROPERTY, "The amount of matches to record before stopping early." );
+		final StringOption theIndexOption = stringOption( 'I', "index", INDEX_PROPERTY, "Use 'build' to create or update the search index of a path, 'off' to GREP without it." );
+		final StringOption theIncludeOption = stringOption( null, "include", INCLUDE_PROPERTY, "Comma separated globs, only matching files are GREP'd, e.g. '*.log,*.{out,err}'." );
+		final StringOption theExcludeOption = stringOption( null, "exclude", EXCLUDE_PROPERTY, "Comma separated globs of files and directories that are skipped, e.g. '*.jar,core.*,archive'." );
+		final StringOption theNewerThanOption = stringOption( null, "newer-than", NEWER_THAN_PROPERTY, "Only GREP files modified after an age like '2d' or a date like '2024-05-01'." );
+		final StringOption theOlderThanOption = stringOption( null, "older-than", OLDER_THAN_PROPERTY, "Only GREP files modified before an age like '2d' or a date like '2024-05-01'." );
+		final StringOption theMaxFileSizeOption = stringOption( null, "max-file-size", MAX_FILE_SIZE_PROPERTY, "Skip files larger than a size like '50MB'." );
+		final StringOption theSortOrderOption = stringOption( null, "sort-order", SORT_ORDER_PROPERTY, "Sorts the tree by size in 'asc' (default) or 'desc' order." );
+		final StringOption theTopOption = stringOption( null, "top", TOP_PROPERTY, "Only reports the N largest files and directories, without mapping the whole tree." );
+		final StringOption theSnapshotOption = stringOption( null, "snapshot", SNAPSHOT_PROPERTY, "Saves a snapshot of the mapped tree to the given file, to --diff the path against later on." );
+		final StringOption theDiffOption = stringOption( null, "diff", DIFF_PROPERTY, "Reports the directories that grew most since the given snapshot was saved, with the snapshot's max depth." );
+		final StringOption theBinaryFilesOption = stringOption( null, "binary-files", BINARY_FILES_PROPERTY, "Files with a NUL byte in their head are binary: 'skip' them, GREP them as 'text' or 'match-only' report that they match (default)." );
+		final StringOption theOutputOption = stringOption( null, "output", OUTPUT_PROPERTY, "Writes the matches as 'text' lines (default), a 'json' array, 'ndjson' objects or 'binary' records." );
 		final ConfigOption theConfigOption = configOption();
 		final Flag theInitFlag = initFlag();
 		final Flag theVerboseFlag = verboseFlag();
@@ -114,23 +155,36 @@ public class Main {
 		final Flag theSizeFlag = sizeFlag();
 		final Flag theSortFlag = sortFlag();
 		final Flag theMapFlag = mapFlag();
+		final Flag theDecompressFlag = decompressFlag();
+		final Flag theLedgerFlag = ledgerFlag();
+		final Flag theCompactFlag = compactFlag();
+		final Flag theFollowFlag = followFlag();
+		final Flag theResumeFlag = resumeFlag();
 
 		// @formatter:off
 		final Term theArgsSyntax = cases(
 			and( theInitFlag, optional( theConfigOption, theVerboseFlag, theDebugFlag ) ),
 			// Path Search
-			and( theSearchOption, thePathOption, optional(
+			and( or( theSearchOption, thePatternsFileOption ), thePathOption, optional(
 					xor(theLinesOption, optional( theLinesBeforeOption, theLinesAfterOption, theCountFlag ) ),
-					theIgnoreCaseFlag, theVerboseFlag, theDebugFlag, theSilentFlag, theNumberFlag, theLimitOption )
+					theIgnoreCaseFlag, theVerboseFlag, theDebugFlag, theSilentFlag, theNumberFlag, theLimitOption, theIndexOption, theDepthOption,
+					theIncludeOption, theExcludeOption, theNewerThanOption, theOlderThanOption, theMaxFileSizeOption, theBinaryFilesOption, theFollowFlag, theResumeFlag, theOutputOption )
 			),
 			// Path Sizer
-			and( thePathOption, theSizeFlag ),
+			and( thePathOption, theSizeFlag, optional( theDepthOption, theLedgerFlag, theTopOption ) ),
 			// Path Mapper
-			and( thePathOption, theMapFlag, optional( theSizeFlag, theDepthOption, theVerboseFlag, theDebugFlag, theSortFlag ) ),
+			and( thePathOption, theMapFlag, optional( theSizeFlag, theDepthOption, theVerboseFlag, theDebugFlag, theSortFlag, theSortOrderOption, theCompactFlag, theTopOption, theSnapshotOption ) ),
+			// Path Differ
+			and( thePathOption, theDiffOption, optional( theTopOption, theVerboseFlag, theDebugFlag ) ),
+			// Path Indexer
+			and( thePathOption, theIndexOption, optional( theVerboseFlag, theDebugFlag ) ),
+			// Path Decompressor
+			and( thePathOption, theDecompressFlag, optional( theVerboseFlag, theDebugFlag ) ),
 			xor( theHelpFlag, and( theSysInfoFlag, any ( theVerboseFlag ) ) )
 		);
 		final Example[] theExamples = examples(
 			example( "Grep a path for a token", theSearchOption, thePathOption),
+			example( "Grep a path for every token listed in a file", thePatternsFileOption, thePathOption),
 			example( "Grep a path and ignore case", theSearchOption, theIgnoreCaseFlag, thePathOption),
 			example( "Grep a path and include #n lines surrounding matches", theSearchOption, theLinesOption, thePathOption),
 			example( "Grep a path and include #n lines before matches", theSearchOption, theLinesBeforeOption, thePathOption),
@@ -139,10 +193,26 @@ public class Main {
 			example( "Grep a path and include line numbers with matches", theSearchOption, thePathOption, theNumberFlag),
 			example( "Grep a path and silence the matches", theSearchOption, thePathOption, theSilentFlag),
 			example( "Grep a path, print stack trace upon failure", theSearchOption, thePathOption, theDebugFlag),
+			example( "Grep only the files directly within a directory", theSearchOption, thePathOption, theDepthOption),
+			example( "Grep only the log files of a directory, skipping archives", theSearchOption, thePathOption, theIncludeOption, theExcludeOption),
+			example( "Grep only the files of a directory modified within a time frame", theSearchOption, thePathOption, theNewerThanOption, theOlderThanOption),
+			example( "Grep a directory, skipping files above a size", theSearchOption, thePathOption, theMaxFileSizeOption),
+			example( "Grep a directory, skipping binary files", theSearchOption, thePathOption, theBinaryFilesOption),
+			example( "Count the matches of a directory, only reading what was appended since the last time", theSearchOption, thePathOption, theCountFlag, theResumeFlag),
+			example( "Grep a directory, writing every match with its path, line number and offset as a JSON object per line", theSearchOption, thePathOption, theOutputOption),
+			example( "Grep the lines appended to the logs of a directory, following rotated and new logs", theSearchOption, thePathOption, theFollowFlag),
 			example( "Calculate the size of a file or directory", thePathOption, theSizeFlag ),
+			example( "Calculate the size of a directory, only listing what changed since the last time", thePathOption, theSizeFlag, theLedgerFlag ),
+			example( "Find the largest files and directories below a directory", thePathOption, theSizeFlag, theTopOption ),
 			example( "Map the structure of a directory", thePathOption, theMapFlag ),
 			example( "Map the structure of a directory with a max depth", thePathOption, theMapFlag, theDepthOption ),
 			example( "Map the structure of a directory and output the size of files and folders", thePathOption, theMapFlag, theSizeFlag ),
+			example( "Map the structure of a directory, largest entries first", thePathOption, theMapFlag, theSizeFlag, theSortOrderOption ),
+			example( "Save a snapshot of the sizes of a directory", thePathOption, theMapFlag, theSizeFlag, theSnapshotOption ),
+			example( "Find the directories that grew since a snapshot was saved", thePathOption, theDiffOption ),
+			example( "Map the structure of a directory with millions of entries", thePathOption, theMapFlag, theCompactFlag ),
+			example( "Write the decompressed content of a rotated log", thePathOption, theDecompressFlag ),
+			example( "Build or update the search index of a directory", thePathOption, theIndexOption ),
 			example( "Load specific config file", theConfigOption),
 			example( "Initialize default config file", theInitFlag, theVerboseFlag),
 			example( "Initialize specific config file", theConfigOption, theInitFlag, theVerboseFlag),
@@ -203,11 +273,68 @@ public class Main {
 			final boolean isMapRequest = theArgsProperties.getBoolean( theMapFlag );
 			final boolean isSizeRequest = theArgsProperties.getBoolean( theSizeFlag );
 			final boolean isSortRequest = theArgsProperties.getBoolean( theSortFlag );
+			final String theSortOrderString = theArgsProperties.getOr( theSortOrderOption, EMPTY);
+			// an order implies sorting
+			final SortOrder theSortOrder = !theSortOrderString.isBlank() ? SortOrder.of(theSortOrderString) : isSortRequest ? SortOrder.ASC : null;
+			final boolean isDecompressRequest = theArgsProperties.getBoolean( theDecompressFlag );
+			final boolean isLedgerRequest = theArgsProperties.getBoolean( theLedgerFlag );
+			final boolean isCompactRequest = theArgsProperties.getBoolean( theCompactFlag );
 			final int theMaxDepth = parseIntegerOption(theArgsProperties, theDepthOption, -1);
+			final int theTop = parseIntegerOption(theArgsProperties, theTopOption, 0);
+			final String theIndexMode = theArgsProperties.getOr( theIndexOption, EMPTY);
+			final String theSnapshot = theArgsProperties.getOr( theSnapshotOption, EMPTY);
+			final String theDiff = theArgsProperties.getOr( theDiffOption, EMPTY);
 
-			if (isSizeRequest && !isMapRequest) {
+			if (isDecompressRequest) {
+				PrintStream theOut = ResultOutput.out();
 				try {
-					long size = new PathSizeCalculator().rip(thePath);
+					new DecompressRipper(theOut).rip(WrappedPath.of(thePath));
+				} catch (IOException e) {
+					LOGGER.error("Error decompressing the provided path: ", e);
+				} finally {
+					// the stream swallows write errors, e.g. of a closed pipe
+					if (theOut.checkError()) {
+						LOGGER.error("Error writing the decompressed path to standard out");
+					}
+				}
+				// exit early
+				return;
+			}
+
+			if (INDEX_BUILD.equalsIgnoreCase(theIndexMode)) {
+				Timestamp indexTime = new Timestamp();
+				try {
+					new IndexRipper(IndexStore.getDefault(), isVerbose, isDebug).rip(WrappedPath.of(thePath));
+				} catch (IOException e) {
+					LOGGER.error("Error indexing the provided path: ", e);
+				}
+				LOGGER.info("Finished indexing path in ["+indexTime.toMillis()+"] milliseconds");
+				// exit early
+				return;
+			}
+
+			if (!theDiff.isBlank()) {
+				try {
+					TreeSnapshot snapshot = TreeSnapshot.read(Paths.get(theDiff));
+					new PathDiffRipper(snapshot, 0 < theTop ? theTop : PathDiffRipper.DEFAULT_COUNT).rip(thePath);
+				} catch (IOException e) {
+					LOGGER.error("Error comparing the provided path: ", e);
+				}
+				// exit early
+				return;
+			}
+
+			if (0 < theTop && (isSizeRequest || isMapRequest)) {
+				try {
+					new TopSizeRipper(theTop, theMaxDepth).rip(thePath);
+				} catch (IOException e) {
+					LOGGER.error("Error accessing the provided path: ", e);
+				}
+				// exit early
+				return;
+			} else if (isSizeRequest && !isMapRequest) {
+				try {
+					long size = new PathSizeCalculator(theMaxDepth, isLedgerRequest).rip(thePath);
 				} catch (IOException e) {
 					LOGGER.error("Error accessing the provided path: ", e);
 				}
@@ -218,15 +345,16 @@ public class Main {
 				try {
 
 					//Fourth Iteration of Mapper
-					FileTreeMapper<WrappedPath, WrappedTreeNode> treeWrapper = new PooledTreeWrapper();
-					WrappedTreeNode root = treeWrapper.crawl(WrappedPath.of(thePath));
-					if (isSortRequest) {
-						root.sortChildrenBySize();
+					if (isCompactRequest && theSnapshot.isBlank()) {
+						map(new CompactTreeMapper(theMaxDepth), thePath, theSortOrder, isVerbose, isSizeRequest);
+					} else {
+						// a snapshot needs the attributes of the wrapped paths, it is never taken of a compact map
+						long theCrawlStart = System.currentTimeMillis();
+						WrappedTreeNode root = map(new PooledTreeWrapper(theMaxDepth), thePath, theSortOrder, isVerbose, isSizeRequest);
+						if (!theSnapshot.isBlank()) {
+							TreeSnapshot.save(root, theMaxDepth, theCrawlStart, Paths.get(theSnapshot));
+						}
 					}
-					if (isVerbose) {
-						FileTreeMapper.printTree(root, 1, isSizeRequest);
-					}
-					System.out.println("Total size: ["+root.getReadableSize()+"]");
 				} catch (Exception e) {
 					LOGGER.error("Error accessing the provided path: ", e);
 				}
@@ -238,6 +366,12 @@ public class Main {
 
 
 			String theToken = theArgsProperties.getOr( theSearchOption, EMPTY);
+			String thePatternsFile = theArgsProperties.getOr( thePatternsFileOption, EMPTY);
+			if (!thePatternsFile.isEmpty()) {
+				List<String> thePatterns = new ArrayList<>(theToken.lines().toList());
+				thePatterns.addAll(Files.readAllLines(Paths.get(thePatternsFile), StandardCharsets.UTF_8));
+				theToken = String.join("\n", thePatterns);
+			}
 			final boolean isIgnoreCase = theArgsProperties.getBoolean(theIgnoreCaseFlag);
 			int linesBeforeCount = parseIntegerOption(theArgsProperties, theLinesBeforeOption, 0);
 			int linesAfterCount = parseIntegerOption(theArgsProperties, theLinesAfterOption, 0);
@@ -251,11 +385,22 @@ public class Main {
 			final boolean isSilent = theArgsProperties.getBoolean( theSilentFlag );
 			final boolean isCountOnly = theArgsProperties.getBoolean(theCountFlag);
 			final boolean isNumbered = theArgsProperties.getBoolean(theNumberFlag);
+			final boolean isFollowRequest = theArgsProperties.getBoolean(theFollowFlag);
+			final boolean isResumeRequest = theArgsProperties.getBoolean(theResumeFlag);
+			final PathFilter thePathFilter = PathFilter.of(
+					theArgsProperties.getOr( theIncludeOption, EMPTY),
+					theArgsProperties.getOr( theExcludeOption, EMPTY),
+					theArgsProperties.getOr( theNewerThanOption, EMPTY),
+					theArgsProperties.getOr( theOlderThanOption, EMPTY),
+					theArgsProperties.getOr( theMaxFileSizeOption, EMPTY));
+			final String theBinaryFiles = theArgsProperties.getOr( theBinaryFilesOption, EMPTY);
+			final String theOutput = theArgsProperties.getOr( theOutputOption, EMPTY);
+			final OutputFormat theOutputFormat = theOutput.isBlank() ? OutputFormat.TEXT : OutputFormat.of(theOutput);
 
 			if (isVerbose) {
 				LOGGER.info("Rip'n path: \"" + thePath.toAbsolutePath() + "\"");
 				if (!theToken.isBlank()) {
-					LOGGER.info("GREP with token [" + theToken + "]");
+					LOGGER.info("GREP with token(s) " + theToken.lines().toList());
 				}
 			}
 
@@ -265,8 +410,10 @@ public class Main {
 					theToken, thePath,
 					linesBeforeCount, linesAfterCount,
 					isIgnoreCase, matchLimit,
-					isSilent, isCountOnly, isNumbered,
-					isVerbose, isDebug);
+					// records always carry the line number
+					isSilent, isCountOnly, isNumbered || theOutputFormat.isStructured(),
+					isVerbose, isDebug, !INDEX_OFF.equalsIgnoreCase(theIndexMode), theMaxDepth, thePathFilter,
+					theBinaryFiles.isBlank() ? BinaryFiles.MATCH_ONLY : BinaryFiles.of(theBinaryFiles), isResumeRequest, theOutputFormat);
 
 			WrappedPath wrappedPath = WrappedPath.of(thePath);
 			if (!wrappedPath.isReadable()) {
@@ -274,7 +421,10 @@ public class Main {
 				return;
 			}
 			AtomicInteger totalMatches = new AtomicInteger(0);
-			if (wrappedPath.isFile()) {
+			if (isFollowRequest) {
+				LogFollower logFollower = new LogFollower(config, totalMatches);
+				logFollower.rip(wrappedPath);
+			} else if (wrappedPath.isFile()) {
 				FileGrepRipper fileGrepRipper = new FileGrepRipper(config, totalMatches);
 				fileGrepRipper.rip(wrappedPath);
 			} else if (wrappedPath.isDir()) {
@@ -290,6 +440,19 @@ public class Main {
 		}
 	}
 
+	private static <T extends FileTreeNode<WrappedPath, T>> T map(FileTreeMapper<WrappedPath, T> treeMapper, Path thePath, SortOrder theSortOrder, boolean isVerbose, boolean isSizeRequest) throws Exception {
+		T root = treeMapper.crawl(WrappedPath.of(thePath));
+		if (theSortOrder != null) {
+			TreeSorter.sort(root, theSortOrder.bySize());
+		}
+		if (isVerbose) {
+			FileTreeMapper.printTree(root, 1, isSizeRequest);
+		}
+		ResultOutput.out().println("Total size: ["+root.getReadableSize()+"]");
+		ResultOutput.out().flush();
+		return root;
+	}
+
 	private static IgnoreCaseFlag ignoreCaseFlag() {
 		return new IgnoreCaseFlag(true);
 	}
@@ -317,4 +480,24 @@ public class Main {
 	private static SortFlag sortFlag() {
 		return new SortFlag(true);
 	}
+
+	private static DecompressFlag decompressFlag() {
+		return new DecompressFlag(true);
+	}
+
+	private static LedgerFlag ledgerFlag() {
+		return new LedgerFlag(true);
+	}
+
+	private static CompactFlag compactFlag() {
+		return new CompactFlag(true);
+	}
+
+	private static FollowFlag followFlag() {
+		return new FollowFlag(true);
+	}
+
+	private static ResumeFlag resumeFlag() {
+		return new ResumeFlag(true);
+	}
 }
@@ -0,0 +1,50 @@
+package com.wizardry.tools.logripper.config;
+
+import com.wizardry.tools.logripper.util.ByteUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How {@code --binary-files} are grepped. Like grep, a file is taken for binary if its head contains a NUL
+ * byte, which no text encoding a log is written in produces.
+ */
+public enum BinaryFiles {
+
+    /** Binary files aren't grepped at all. */
+    SKIP,
+    /** Binary files are grepped like any other. */
+    TEXT,
+    /** Binary files are grepped, but only reported as matching instead of printing their lines. */
+    MATCH_ONLY;
+
+    /** The number of leading bytes that are sniffed for a NUL. */
+    public static final int SNIFF_LENGTH = 8 << 10; // 8 KiB
+
+    /**
+     * Parses the command line value, e.g. {@code match-only}.
+     *
+     * @throws IllegalArgumentException If the value names no mode.
+     */
+    public static BinaryFiles of(String value) {
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown binary files mode [" + value + "], use one of " + Arrays.stream(values()).map(BinaryFiles::toString).toList() + ".", e);
+        }
+    }
+
+    /**
+     * Returns true if the first {@link #SNIFF_LENGTH} bytes of the head buffer, from its position, contain a NUL.
+     */
+    public static boolean isBinary(ByteBuffer head) {
+        int from = head.position();
+        return 0 <= ByteUtil.indexOf(head, (byte) 0, from, Math.min(head.limit(), from + SNIFF_LENGTH));
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,52 @@
+package com.wizardry.tools.logripper.config;
+
+import org.refcodes.cli.Flag;
+
+/**
+ * A predefined verbose {@link Flag}: A predefined {@link Flag} gives its
+ * {@link #SHORT_OPTION}, its {@link #LONG_OPTION} as well as its {@link #ALIAS}
+ * an according semantics regarded by other subsystems.
+ */
+public class CompactFlag extends Flag {
+
+    public static final String ALIAS = "compact";
+    public static final String LONG_OPTION = "compact";
+    public static final Character SHORT_OPTION = 'k';
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     */
+    public CompactFlag() {
+        this( true );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public CompactFlag(boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, "Maps the path into compact flat arrays instead of a node per entry, for trees with millions of entries." );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     */
+    public CompactFlag(String aDescription ) {
+        this( aDescription, true );
+    }
+
+    /**
+     * Constructs the predefined clean {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public CompactFlag(String aDescription, boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, aDescription );
+    }
+}
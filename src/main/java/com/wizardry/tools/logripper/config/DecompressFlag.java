@@ -0,0 +1,52 @@
+package com.wizardry.tools.logripper.config;
+
+import org.refcodes.cli.Flag;
+
+/**
+ * A predefined decompress {@link Flag}: A predefined {@link Flag} gives its
+ * {@link #SHORT_OPTION}, its {@link #LONG_OPTION} as well as its {@link #ALIAS}
+ * an according semantics regarded by other subsystems.
+ */
+public class DecompressFlag extends Flag {
+
+    public static final String ALIAS = "decompress";
+    public static final String LONG_OPTION = "decompress";
+    public static final Character SHORT_OPTION = 'z';
+
+    /**
+     * Constructs the predefined decompress {@link Flag}.
+     */
+    public DecompressFlag() {
+        this( true );
+    }
+
+    /**
+     * Constructs the predefined decompress {@link Flag}.
+     *
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public DecompressFlag(boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, "Writes the decompressed content of a gzip, zstd or bzip2 compressed file." );
+    }
+
+    /**
+     * Constructs the predefined decompress {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     */
+    public DecompressFlag(String aDescription ) {
+        this( aDescription, true );
+    }
+
+    /**
+     * Constructs the predefined decompress {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public DecompressFlag(String aDescription, boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, aDescription );
+    }
+}
@@ -0,0 +1,52 @@
+package com.wizardry.tools.logripper.config;
+
+import org.refcodes.cli.Flag;
+
+/**
+ * A predefined verbose {@link Flag}: A predefined {@link Flag} gives its
+ * {@link #SHORT_OPTION}, its {@link #LONG_OPTION} as well as its {@link #ALIAS}
+ * an according semantics regarded by other subsystems.
+ */
+public class FollowFlag extends Flag {
+
+    public static final String ALIAS = "follow";
+    public static final String LONG_OPTION = "follow";
+    public static final Character SHORT_OPTION = 'F';
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     */
+    public FollowFlag() {
+        this( true );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public FollowFlag(boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, "Keeps GREPing the lines appended to the path, following rotated files and new files of a directory." );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     */
+    public FollowFlag(String aDescription ) {
+        this( aDescription, true );
+    }
+
+    /**
+     * Constructs the predefined clean {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public FollowFlag(String aDescription, boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, aDescription );
+    }
+}
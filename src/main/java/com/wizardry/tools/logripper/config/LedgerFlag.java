@@ -0,0 +1,52 @@
+package com.wizardry.tools.logripper.config;
+
+import org.refcodes.cli.Flag;
+
+/**
+ * A predefined verbose {@link Flag}: A predefined {@link Flag} gives its
+ * {@link #SHORT_OPTION}, its {@link #LONG_OPTION} as well as its {@link #ALIAS}
+ * an according semantics regarded by other subsystems.
+ */
+public class LedgerFlag extends Flag {
+
+    public static final String ALIAS = "ledger";
+    public static final String LONG_OPTION = "ledger";
+    public static final Character SHORT_OPTION = 'l';
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     */
+    public LedgerFlag() {
+        this( true );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public LedgerFlag(boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, "Keeps a size ledger of the path, so that recalculating it only lists the directories that changed." );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     */
+    public LedgerFlag(String aDescription ) {
+        this( aDescription, true );
+    }
+
+    /**
+     * Constructs the predefined clean {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public LedgerFlag(String aDescription, boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, aDescription );
+    }
+}
@@ -1,8 +1,16 @@
 package com.wizardry.tools.logripper.config;
 
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.tasks.index.SearchIndex;
+import com.wizardry.tools.logripper.tasks.pathgrep.ScanCheckpoints;
 import com.wizardry.tools.logripper.tasks.pathmapper.FileTreeMapper;
 import com.wizardry.tools.logripper.tasks.pathmapper.PooledTreeWrapper;
 import com.wizardry.tools.logripper.tasks.pathmapper.WrappedTreeNode;
+import com.wizardry.tools.logripper.util.matching.AhoCorasickLineMatcher;
+import com.wizardry.tools.logripper.util.matching.LineMatcher;
+import com.wizardry.tools.logripper.util.matching.LiteralLineMatcher;
+import com.wizardry.tools.logripper.util.matching.RegexLineMatcher;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 
 import java.io.IOException;
@@ -19,7 +27,7 @@ import java.util.stream.Stream;
 /**
  * This class is a record for the LogRipper Configuration.
  *
- * @param searchToken The Search token or pattern that will be used to find matches.
+ * @param searchToken The Search token or pattern that will be used to find matches, several are separated by line breaks.
  * @param path The path to the File or Directory within the system.
  * @param linesBeforeMatch The number of additional lines to include before a match result.
  * @param linesAfterMatch The number of additional lines to include after a match result.
@@ -30,6 +38,12 @@ import java.util.stream.Stream;
  * @param isNumbered The flag that indicates if each line in the output should be numbered.
  * @param isVerbose The flag that indicates if verbose logging should be enabled.
  * @param isDebug The flag that indicates if debug information should be logged.
+ * @param isIndexed The flag that indicates if a search index built with {@code --index build} may be used to skip what can't match.
+ * @param maxDepth The maximum depth of the directories to crawl below the path, negative for no limit.
+ * @param pathFilter The filter that decides which files and directories below the path are crawled at all.
+ * @param binaryFiles The way files with binary content are grepped.
+ * @param isResumed The flag that indicates if files are only grepped from where the last {@code --resume} grep stopped.
+ * @param outputFormat The format matches are written in.
  */
 public record LogRipperConfig(
         String searchToken,
@@ -42,9 +56,39 @@ public record LogRipperConfig(
         boolean isCountOnly,
         boolean isNumbered,
         boolean isVerbose,
-        boolean isDebug
+        boolean isDebug,
+        boolean isIndexed,
+        int maxDepth,
+        PathFilter pathFilter,
+        BinaryFiles binaryFiles,
+        boolean isResumed,
+        OutputFormat outputFormat
 ) {
 
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug, boolean isIndexed, int maxDepth, PathFilter pathFilter, BinaryFiles binaryFiles, boolean isResumed) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, isIndexed, maxDepth, pathFilter, binaryFiles, isResumed, OutputFormat.TEXT); // Default to plain text lines.
+    }
+
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug, boolean isIndexed, int maxDepth, PathFilter pathFilter, BinaryFiles binaryFiles) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, isIndexed, maxDepth, pathFilter, binaryFiles, false); // Default to false so that every file is grepped from its start.
+    }
+
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug, boolean isIndexed, int maxDepth, PathFilter pathFilter) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, isIndexed, maxDepth, pathFilter, BinaryFiles.MATCH_ONLY); // Default to match-only, like grep.
+    }
+
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug, boolean isIndexed, int maxDepth) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, isIndexed, maxDepth, PathFilter.NONE); // Default to crawling every file.
+    }
+
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug, boolean isIndexed) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, isIndexed, ParallelCrawler.UNLIMITED_DEPTH); // Default to crawling the whole tree.
+    }
+
+    public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose, boolean isDebug) {
+        this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, isDebug, true); // Default to true so that an existing index is used.
+    }
+
     public LogRipperConfig(String searchToken, Path path, int linesBeforeMatch, int linesAfterMatch, boolean isIgnoreCase, int matchLimit, boolean isSilent, boolean isCountOnly, boolean isNumbered, boolean isVerbose) {
         this( searchToken, path, linesBeforeMatch, linesAfterMatch, isIgnoreCase, matchLimit, isSilent, isCountOnly, isNumbered, isVerbose, false); // Default to false
     }
@@ -82,7 +126,7 @@ public record LogRipperConfig(
      * @throws IllegalArgumentException if any of the validation checks fail.
      */
     public void validate() throws IllegalArgumentException {
-        if (searchToken == null || searchToken.isEmpty()) {
+        if (searchToken == null || getPatterns().isEmpty()) {
             throw new IllegalArgumentException("Search token cannot be null or empty.");
         }
 
@@ -103,12 +147,66 @@ public record LogRipperConfig(
         }
     }
 
+    /**
+     * Returns the patterns of the search token, one per line, like grep does. Empty lines are ignored.
+     */
+    public List<String> getPatterns() {
+        if (searchToken == null) {
+            return List.of();
+        }
+        return searchToken.lines().filter(pattern -> !pattern.isEmpty()).toList();
+    }
+
+    /**
+     * Returns a single pattern for the search token, several patterns are combined into one alternation.
+     */
     public Pattern getTokenPattern() {
-        return isIgnoreCase ? Pattern.compile(searchToken, Pattern.CASE_INSENSITIVE) : Pattern.compile(searchToken);
+        List<String> patterns = getPatterns();
+        String regex = patterns.size() == 1
+                ? patterns.getFirst()
+                : String.join("|", patterns.stream().map(pattern -> "(?:" + pattern + ")").toList());
+        return compile(regex);
+    }
+
+    /**
+     * Creates the matcher used by the grep engines. Plain literal tokens are searched for as raw bytes, a
+     * set of literal tokens through a single Aho-Corasick automaton. Only real regular expressions fall back
+     * to decoding lines and running a {@link Pattern}.
+     */
+    public LineMatcher getLineMatcher() {
+        List<String> patterns = getPatterns();
+        boolean isLiteral = patterns.stream().allMatch(LiteralLineMatcher::isLiteral);
+        if (patterns.size() == 1) {
+            return isLiteral
+                    ? new LiteralLineMatcher(patterns.getFirst(), isIgnoreCase)
+                    : new RegexLineMatcher(getTokenPattern());
+        }
+        if (isLiteral) {
+            return new AhoCorasickLineMatcher(patterns, isIgnoreCase);
+        }
+        return new RegexLineMatcher(getTokenPattern(), patterns.stream().map(this::compile).toList());
+    }
+
+    private Pattern compile(String regex) {
+        return isIgnoreCase ? Pattern.compile(regex, Pattern.CASE_INSENSITIVE) : Pattern.compile(regex);
+    }
+
+    /**
+     * Creates the query against the search index, which never rules anything out if indexes are not to be used.
+     */
+    public SearchIndex getSearchIndex() {
+        return isIndexed ? SearchIndex.of(this) : SearchIndex.NONE;
+    }
+
+    /**
+     * Opens the checkpoints of a {@code --resume} grep, which hold nothing and record nothing otherwise.
+     */
+    public ScanCheckpoints getCheckpoints() {
+        return isResumed ? ScanCheckpoints.open(ScanCheckpoints.getDefaultDirectory(), this) : ScanCheckpoints.NONE;
     }
 
     public WrappedTreeNode getWrappedTree() throws IOException, ExecutionException, InterruptedException {
-        FileTreeMapper<WrappedPath, WrappedTreeNode> treeWrapper = new PooledTreeWrapper();
+        FileTreeMapper<WrappedPath, WrappedTreeNode> treeWrapper = new PooledTreeWrapper(maxDepth);
         return treeWrapper.crawl(WrappedPath.of(path));
     }
 
@@ -0,0 +1,44 @@
+package com.wizardry.tools.logripper.config;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The format grep matches are written in with {@code --output}.
+ */
+public enum OutputFormat {
+
+    /** Plain lines like grep's, the default. */
+    TEXT,
+    /** A single JSON array of match objects. */
+    JSON,
+    /** One JSON match object per line, so that the output can be consumed while the grep is running. */
+    NDJSON,
+    /** Length prefixed binary records, see {@link com.wizardry.tools.logripper.util.output.EncodedMatchSink}. */
+    BINARY;
+
+    /**
+     * Parses the command line value, e.g. {@code ndjson}.
+     *
+     * @throws IllegalArgumentException If the value names no format.
+     */
+    public static OutputFormat of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown output format [" + value + "], use one of " + Arrays.stream(values()).map(OutputFormat::toString).toList() + ".", e);
+        }
+    }
+
+    /**
+     * Returns true if matches are encoded as records instead of printed as lines.
+     */
+    public boolean isStructured() {
+        return this != TEXT;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
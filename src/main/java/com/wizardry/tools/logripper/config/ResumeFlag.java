@@ -0,0 +1,52 @@
+package com.wizardry.tools.logripper.config;
+
+import org.refcodes.cli.Flag;
+
+/**
+ * A predefined verbose {@link Flag}: A predefined {@link Flag} gives its
+ * {@link #SHORT_OPTION}, its {@link #LONG_OPTION} as well as its {@link #ALIAS}
+ * an according semantics regarded by other subsystems.
+ */
+public class ResumeFlag extends Flag {
+
+    public static final String ALIAS = "resume";
+    public static final String LONG_OPTION = "resume";
+    public static final Character SHORT_OPTION = 'R';
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     */
+    public ResumeFlag() {
+        this( true );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public ResumeFlag(boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, "Keeps checkpoints of the GREP, so that files are only GREP'd from where the last one stopped." );
+    }
+
+    /**
+     * Constructs the predefined verbose {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     */
+    public ResumeFlag(String aDescription ) {
+        this( aDescription, true );
+    }
+
+    /**
+     * Constructs the predefined clean {@link Flag}.
+     *
+     * @param aDescription The description to be used (without any line breaks).
+     * @param hasShortOption True in case to also enable the short option, else
+     *        only the long option takes effect.
+     */
+    public ResumeFlag(String aDescription, boolean hasShortOption ) {
+        super( hasShortOption ? SHORT_OPTION : null, LONG_OPTION, ALIAS, aDescription );
+    }
+}
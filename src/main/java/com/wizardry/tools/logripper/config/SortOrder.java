@@ -0,0 +1,44 @@
+package com.wizardry.tools.logripper.config;
+
+import com.wizardry.tools.logripper.util.filesystem.Sizable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * The order a mapped tree is sorted by size in with {@code --sort-order}.
+ */
+public enum SortOrder {
+
+    /** Smallest first, the largest entries end up right above their parent's next sibling. */
+    ASC,
+    /** Largest first, the largest entries end up right below their parent. */
+    DESC;
+
+    /**
+     * Parses the command line value, e.g. {@code desc}.
+     *
+     * @throws IllegalArgumentException If the value names no order.
+     */
+    public static SortOrder of(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort order [" + value + "], use one of " + Arrays.stream(values()).map(SortOrder::toString).toList() + ".", e);
+        }
+    }
+
+    /**
+     * Returns the comparator that sorts by size in this order.
+     */
+    public <T extends Sizable> Comparator<T> bySize() {
+        Comparator<T> ascending = Comparator.comparingLong(Sizable::getSize);
+        return this == ASC ? ascending : ascending.reversed();
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
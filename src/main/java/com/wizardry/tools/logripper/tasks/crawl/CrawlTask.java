@@ -0,0 +1,134 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crawls a single directory: lists its entries once, reads the attributes of every entry once, hands files
+ * to the {@link CrawlVisitor} and forks a task per subdirectory. Where the platform supports it, attributes
+ * are read relative to the open directory, which saves resolving every path again. Subdirectories at the
+ * depth limit are handed to the visitor without being opened. If the visitor already knows which entries
+ * of a directory matter, only those are stat'ed and the directory isn't listed at all. The result is the state of the directory,
+ * complete once its subtree was crawled.
+ *
+ * @param <D> The type of the per directory state.
+ */
+public class CrawlTask<D> extends PooledRipperTask<Path, D> {
+
+    private final D state;
+    private final CrawlVisitor<D> visitor;
+    private final int depth;
+    private final int maxDepth;
+
+    public CrawlTask(Path dir, D state, CrawlVisitor<D> visitor, int depth, int maxDepth) {
+        super(dir);
+        this.state = state;
+        this.visitor = visitor;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+    }
+
+    public CrawlTask(Path dir, D state, CrawlVisitor<D> visitor) {
+        this(dir, state, visitor, 0, ParallelCrawler.UNLIMITED_DEPTH); // Default to crawling the whole tree.
+    }
+
+    @Override
+    protected D compute() {
+        List<CrawlTask<D>> subTasks = new ArrayList<>();
+        List<Path> knownEntries = resolve(visitor.knownEntries(state));
+        if (knownEntries != null) {
+            for (Path entry : knownEntries) {
+                if (visitor.isTerminated()) {
+                    break;
+                }
+                try {
+                    visit(entry, Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS), subTasks);
+                } catch (IOException e) {
+                    visitor.visitFailed(state, entry, e);
+                }
+            }
+        } else {
+            list(subTasks);
+        }
+        visitor.entriesVisited(state);
+        for (CrawlTask<D> task : subTasks) {
+            visitor.exitDirectory(state, task.join());
+        }
+        return state;
+    }
+
+    /**
+     * Resolves the known entries, or returns null to list the directory instead if there are none or a name
+     * doesn't map back to a path, e.g. one whose bytes aren't valid in the file system's encoding.
+     */
+    private List<Path> resolve(List<String> names) {
+        if (names == null) {
+            return null;
+        }
+        List<Path> entries = new ArrayList<>(names.size());
+        try {
+            for (String name : names) {
+                entries.add(input.resolve(name));
+            }
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        return entries;
+    }
+
+    private void list(List<CrawlTask<D>> subTasks) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input)) {
+            for (Path entry : stream) {
+                if (visitor.isTerminated()) {
+                    break;
+                }
+                BasicFileAttributes attrs;
+                try {
+                    attrs = readAttributes(stream, entry);
+                } catch (IOException e) {
+                    visitor.visitFailed(state, entry, e);
+                    continue;
+                }
+                visit(entry, attrs, subTasks);
+            }
+        } catch (IOException e) {
+            visitor.visitFailed(state, input, e);
+        }
+    }
+
+    private void visit(Path entry, BasicFileAttributes attrs, List<CrawlTask<D>> subTasks) {
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(state, entry, attrs);
+            return;
+        }
+        if (!ParallelCrawler.isOpened(depth + 1, maxDepth)) {
+            visitor.visitPruned(state, entry, attrs);
+            return;
+        }
+        D child = visitor.enterDirectory(state, entry, attrs);
+        if (child != null) {
+            CrawlTask<D> task = new CrawlTask<>(entry, child, visitor, depth + 1, maxDepth);
+            task.fork();
+            subTasks.add(task);
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(DirectoryStream<Path> stream, Path entry) throws IOException {
+        if (stream instanceof SecureDirectoryStream<Path> secure) {
+            return secure.getFileAttributeView(entry.getFileName(), BasicFileAttributeView.class, LinkOption.NOFOLLOW_LINKS)
+                    .readAttributes();
+        }
+        return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+}
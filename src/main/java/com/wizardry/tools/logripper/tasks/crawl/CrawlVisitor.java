@@ -0,0 +1,80 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * The SPI the modes plug into the {@link ParallelCrawler} with. Every directory gets a state of type {@code D},
+ * e.g. a tree node or a batch of files, that is handed to the callbacks of its entries. All callbacks that
+ * touch a directory's state run on the one worker that crawls that directory, so a state needs no
+ * synchronization. Anything shared across directories does, subdirectories are crawled in parallel.
+ * <p>
+ * The attributes handed in are the ones the crawler already read, visitors must not stat the paths again.
+ *
+ * @param <D> The type of the per directory state.
+ */
+public interface CrawlVisitor<D> {
+
+    /**
+     * Called for a directory before its entries are visited.
+     *
+     * @param parent The state of the parent directory, null for the root.
+     * @return The state of the directory, or null to skip its whole subtree.
+     */
+    D enterDirectory(D parent, Path dir, BasicFileAttributes attrs);
+
+    /**
+     * Called once a directory was entered. Returns the names of the entries to visit instead of listing the
+     * directory, e.g. the ones a ledger says may have changed since the last crawl.
+     *
+     * @return The names of the entries to visit, or null to list the directory.
+     */
+    default List<String> knownEntries(D dir) {
+        return null;
+    }
+
+    /**
+     * Called for every entry of a directory that isn't a directory itself, including links and special files.
+     *
+     * @param dir The state of the directory, null if the file is the root of the crawl.
+     */
+    void visitFile(D dir, Path file, BasicFileAttributes attrs);
+
+    /**
+     * Called instead of {@link #enterDirectory} for a subdirectory at the depth limit, its entries are never read.
+     *
+     * @param dir The state of the directory the subdirectory was found in.
+     */
+    default void visitPruned(D dir, Path subdir, BasicFileAttributes attrs) {
+    }
+
+    /**
+     * Called once every entry of the directory was visited. Its subdirectories may still be crawled.
+     */
+    default void entriesVisited(D dir) {
+    }
+
+    /**
+     * Called on the parent's worker once the whole subtree of a subdirectory was crawled, in no particular order.
+     */
+    default void exitDirectory(D parent, D dir) {
+    }
+
+    /**
+     * Called for a path whose attributes or entries can't be read.
+     *
+     * @param dir The state of the directory the path was found in, or of the directory itself if its entries
+     *            can't be listed.
+     */
+    default void visitFailed(D dir, Path path, IOException e) {
+    }
+
+    /**
+     * Polled before every entry; once true, no further entries are visited and no further directories entered.
+     */
+    default boolean isTerminated() {
+        return false;
+    }
+}
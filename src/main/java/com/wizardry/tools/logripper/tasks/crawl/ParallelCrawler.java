@@ -0,0 +1,66 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import com.wizardry.tools.logripper.util.SystemUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The one directory crawler shared by grep, size, map and index. Every directory is listed once by a
+ * {@link CrawlTask} of its own, so the crawl spreads over the work stealing pool as the tree fans out, and
+ * every entry is stat'ed exactly once. What happens with the entries is up to the {@link CrawlVisitor}.
+ * <p>
+ * A depth limit prunes the crawl, directories at the limit are never opened. Like {@code find -maxdepth}, the
+ * root is at depth 0 and its entries at depth 1.
+ * <p>
+ * Runs on the current ForkJoin pool when called from one of its workers, on the shared work pool otherwise.
+ *
+ * @param <D> The type of the per directory state.
+ */
+public class ParallelCrawler<D> {
+
+    public static final int UNLIMITED_DEPTH = -1;
+
+    private final CrawlVisitor<D> visitor;
+    private final int maxDepth;
+
+    public ParallelCrawler(CrawlVisitor<D> visitor, int maxDepth) {
+        this.visitor = visitor;
+        this.maxDepth = maxDepth;
+    }
+
+    public ParallelCrawler(CrawlVisitor<D> visitor) {
+        this(visitor, UNLIMITED_DEPTH); // Default to crawling the whole tree.
+    }
+
+    /**
+     * Whether a directory at the given depth is opened, any negative limit means unlimited.
+     */
+    static boolean isOpened(int depth, int maxDepth) {
+        return maxDepth < 0 || depth < maxDepth;
+    }
+
+    /**
+     * Crawls the tree below the root. A root that isn't a directory is handed to the visitor as a single file.
+     * Like {@code find -H} or {@code du}, a root that is a link is followed, links below it never are.
+     *
+     * @return The state of the root directory, or null if the root isn't a directory or was skipped.
+     * @throws IOException If the attributes of the root can't be read.
+     */
+    public D crawl(Path root) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+        if (!attrs.isDirectory()) {
+            visitor.visitFile(null, root, attrs);
+            return null;
+        }
+        D state = visitor.enterDirectory(null, root, attrs);
+        if (state == null || !isOpened(0, maxDepth)) {
+            return state;
+        }
+        CrawlTask<D> task = new CrawlTask<>(root, state, visitor, 0, maxDepth);
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : SystemUtil.getWorkPool().invoke(task);
+    }
+}
@@ -0,0 +1,179 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import com.wizardry.tools.logripper.util.DataUtil;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which entries of a crawl are worth visiting, from the attributes the crawler already read, so
+ * nothing is opened that wasn't wanted. Globs without a '/' are matched against the name of an entry, others
+ * against its whole path. Excludes apply to files and directories alike, an excluded directory prunes its
+ * subtree. Includes only apply to files.
+ */
+public final class PathFilter {
+
+    public static final PathFilter NONE = new PathFilter(List.of(), List.of(), null, null, Long.MAX_VALUE);
+
+    private static final Pattern AGE = Pattern.compile("(\\d+)([smhdw])");
+
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+    private final Instant newerThan;
+    private final Instant olderThan;
+    private final long maxFileSize;
+
+    private record Glob(PathMatcher matcher, boolean isNameOnly) {
+
+        static Glob of(String glob) {
+            return new Glob(FileSystems.getDefault().getPathMatcher("glob:" + glob), glob.indexOf('/') < 0);
+        }
+
+        boolean matches(Path path) {
+            Path name = path.getFileName();
+            return matcher.matches(isNameOnly && name != null ? name : path);
+        }
+    }
+
+    private PathFilter(List<Glob> includes, List<Glob> excludes, Instant newerThan, Instant olderThan, long maxFileSize) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.newerThan = newerThan;
+        this.olderThan = olderThan;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Creates a filter from the command line values, empty values don't filter.
+     *
+     * @param include Comma separated globs of the files to visit.
+     * @param exclude Comma separated globs of the files and directories to skip.
+     * @param newerThan An age like {@code 2d} or a date like {@code 2024-05-01}, only younger files are visited.
+     * @param olderThan An age or a date, only older files are visited.
+     * @param maxFileSize A size like {@code 50MB}, larger files are skipped.
+     * @throws IllegalArgumentException If a value can't be parsed.
+     */
+    public static PathFilter of(String include, String exclude, String newerThan, String olderThan, String maxFileSize) {
+        Instant now = Instant.now();
+        PathFilter filter = new PathFilter(
+                globs(include),
+                globs(exclude),
+                isBlank(newerThan) ? null : parseTime(newerThan, now),
+                isBlank(olderThan) ? null : parseTime(olderThan, now),
+                isBlank(maxFileSize) ? Long.MAX_VALUE : DataUtil.parseByteCount(maxFileSize));
+        return filter.isEnabled() ? filter : NONE;
+    }
+
+    public boolean isEnabled() {
+        return !includes.isEmpty() || !excludes.isEmpty() || newerThan != null || olderThan != null || maxFileSize != Long.MAX_VALUE;
+    }
+
+    /**
+     * Whether the subtree of a directory is to be crawled.
+     */
+    public boolean acceptsDirectory(Path dir) {
+        return !matchesAny(excludes, dir);
+    }
+
+    /**
+     * Whether a file is to be visited.
+     */
+    public boolean acceptsFile(Path file, BasicFileAttributes attrs) {
+        if (maxFileSize < attrs.size()) {
+            return false;
+        }
+        if (newerThan != null || olderThan != null) {
+            Instant modified = attrs.lastModifiedTime().toInstant();
+            if (newerThan != null && !modified.isAfter(newerThan)) {
+                return false;
+            }
+            if (olderThan != null && !modified.isBefore(olderThan)) {
+                return false;
+            }
+        }
+        return (includes.isEmpty() || matchesAny(includes, file)) && !matchesAny(excludes, file);
+    }
+
+    private static boolean matchesAny(List<Glob> globs, Path path) {
+        for (Glob glob : globs) {
+            if (glob.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits comma separated globs, commas within braces belong to the glob, e.g. {@code *.{log,txt},*.out}.
+     */
+    static List<Glob> globs(String value) {
+        List<Glob> globs = new ArrayList<>();
+        if (isBlank(value)) {
+            return globs;
+        }
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            char c = i < value.length() ? value.charAt(i) : ',';
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == ',' && depth <= 0) {
+                String glob = value.substring(start, i).trim();
+                if (!glob.isEmpty()) {
+                    globs.add(Glob.of(glob));
+                }
+                start = i + 1;
+            }
+        }
+        return globs;
+    }
+
+    /**
+     * Parses an age relative to now, e.g. {@code 90s}, {@code 30m}, {@code 12h}, {@code 7d} or {@code 2w}, or
+     * an ISO date, local date-time or instant.
+     */
+    static Instant parseTime(String value, Instant now) {
+        String time = value.trim();
+        Matcher age = AGE.matcher(time);
+        if (age.matches()) {
+            long amount = Long.parseLong(age.group(1));
+            Duration duration = switch (age.group(2)) {
+                case "s" -> Duration.ofSeconds(amount);
+                case "m" -> Duration.ofMinutes(amount);
+                case "h" -> Duration.ofHours(amount);
+                case "d" -> Duration.ofDays(amount);
+                default -> Duration.ofDays(amount * 7);
+            };
+            return now.minus(duration);
+        }
+        try {
+            if (time.endsWith("Z")) {
+                return Instant.parse(time);
+            }
+            if (time.indexOf('T') < 0) {
+                return LocalDate.parse(time).atStartOfDay(ZoneId.systemDefault()).toInstant();
+            }
+            return LocalDateTime.parse(time).atZone(ZoneId.systemDefault()).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Can't parse time [" + value + "], use an age like 2d or a date like 2024-05-01.", e);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,31 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * The budget of decompressed bytes that all decompress tasks buffer ahead of their writers, whatever the format,
+ * so memory stays bounded no matter how many archives are decompressed at once. Bytes taken from it have to be
+ * given back once they were written.
+ */
+final class BufferBudget {
+
+    static final int MAX_BUFFERED_BYTES = 64 << 20; // 64 MiB
+
+    private static final Semaphore BUFFERED = new Semaphore(MAX_BUFFERED_BYTES);
+
+    private BufferBudget() {
+    }
+
+    /**
+     * Takes the bytes from the budget if they are available right away, a task never waits for them.
+     */
+    static boolean tryAcquire(int bytes) {
+        return BUFFERED.tryAcquire(bytes);
+    }
+
+    static void release(int bytes) {
+        if (0 < bytes) {
+            BUFFERED.release(bytes);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written through to the stream, which is what a decompress task returns.
+ */
+final class CountingOutput extends OutputStream {
+
+    private final OutputStream out;
+    private long count;
+
+    CountingOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    long count() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+}
@@ -0,0 +1,51 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.Ripper;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.compression.Compression;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Writes the decompressed content of a file to a stream, detecting its format from the magic bytes. Files
+ * that aren't compressed are copied as they are. Gzip members and zstd frames are decoded in parallel, bzip2
+ * is decoded as a stream. The result is the number of bytes written.
+ */
+public class DecompressRipper implements Ripper<WrappedPath, Long> {
+
+    private final OutputStream out;
+
+    public DecompressRipper(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public Long rip(WrappedPath path) throws IOException {
+        Compression compression;
+        try (FileChannel channel = path.openChannel()) {
+            compression = Compression.detect(channel);
+            if (compression == Compression.NONE) {
+                return channel.transferTo(0, channel.size(), Channels.newChannel(out));
+            }
+        }
+        if (compression == Compression.BZIP2) {
+            try (InputStream in = Compression.open(path.unwrap())) {
+                return in.transferTo(out);
+            }
+        }
+        PooledRipperTask<WrappedPath, Long> task = compression == Compression.ZSTD
+                ? new ZstdDecompressTask(path, out)
+                : new GzipDecompressTask(path, out);
+        if (ForkJoinTask.inForkJoinPool()) {
+            return task.invoke();
+        }
+        return SystemUtil.getWorkPool().invoke(task);
+    }
+}
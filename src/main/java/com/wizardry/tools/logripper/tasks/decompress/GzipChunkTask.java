@@ -0,0 +1,105 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.compression.GzipMemberDecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Speculatively decodes the gzip members that start within one byte range of an archive. The task doesn't
+ * know where members start, so it tries every plausible header within its range until one decodes. Whether
+ * that was really a member boundary only shows once the previous range is done: its decoder has to end
+ * exactly where this one started.
+ * <p>
+ * Decompressed bytes are buffered against the {@link BufferBudget} that all decompress tasks share. Bytes are
+ * granted in steps of {@link #GRANT_BYTES}, a step may run over by a block of the decoder. A range that gets no
+ * more bytes (e.g. a single member archive) pauses and leaves its decoder to be resumed once it's the range
+ * being written. The budget is given back by {@link Result#release()} once the bytes were written.
+ */
+public class GzipChunkTask extends PooledRipperTask<GzipChunkTask.Range, GzipChunkTask.Result> {
+
+    static final int GRANT_BYTES = 1 << 20; // 1 MiB
+
+    private final FileChannel channel;
+
+    public GzipChunkTask(Range range, FileChannel channel) {
+        super(range);
+        this.channel = channel;
+    }
+
+    /**
+     * A range of the compressed archive.
+     *
+     * @param from The first offset a member may start at.
+     * @param to The offset at which no further member is started.
+     */
+    public record Range(long from, long to) {
+    }
+
+    public Range range() {
+        return input;
+    }
+
+    /**
+     * The outcome of decoding a range.
+     *
+     * @param start The offset of the first member that decoded, or -1 if none did.
+     * @param output The buffered decompressed bytes.
+     * @param decoder The decoder, positioned behind the last decoded member or paused within one.
+     * @param complete False if the decoder paused and has to be resumed.
+     * @param reserved The number of bytes taken from the shared budget.
+     */
+    public record Result(long start, ByteArrayOutputStream output, GzipMemberDecoder decoder, boolean complete, int reserved) {
+
+        /**
+         * Gives the buffered bytes back to the shared budget, must be called exactly once per result.
+         */
+        public void release() {
+            BufferBudget.release(reserved);
+        }
+    }
+
+    @Override
+    protected Result compute() {
+        try {
+            long candidate = input.from();
+            while (0 <= (candidate = GzipMemberDecoder.findHeader(channel, candidate, input.to()))) {
+                GzipMemberDecoder decoder = new GzipMemberDecoder(channel, candidate);
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                int reserved = 0;
+                Result result = null;
+                try {
+                    boolean complete = false;
+                    while (!complete && BufferBudget.tryAcquire(GRANT_BYTES)) {
+                        reserved += GRANT_BYTES;
+                        complete = decoder.transfer(input.to(), output, GRANT_BYTES);
+                    }
+                    if (decoder.members() > 0 || !complete) {
+                        int unused = reserved - output.size();
+                        if (0 < unused) {
+                            BufferBudget.release(unused);
+                            reserved -= unused;
+                        }
+                        result = new Result(candidate, output, decoder, complete, reserved);
+                        return result;
+                    }
+                } catch (IOException e) {
+                    if (decoder.members() > 0) {
+                        throw e;
+                    }
+                    // no member starts here, the header was part of compressed data
+                } finally {
+                    if (result == null) {
+                        BufferBudget.release(reserved);
+                    }
+                }
+                candidate++;
+            }
+            return new Result(-1, null, null, true, 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while decompressing range [" + input.from() + ", " + input.to() + ")", e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.compression.GzipMemberDecoder;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Decompresses a gzip archive into a stream, decoding its members in parallel. The archive is split into
+ * byte ranges that are decoded by {@link GzipChunkTask}s; their results are written strictly in order. A
+ * range is only taken over if it starts exactly where the previous one ended, otherwise its members are
+ * decoded again right here. That way a false header candidate can never corrupt the output, it only costs
+ * parallelism, as does an archive made of a single member.
+ */
+public class GzipDecompressTask extends PooledRipperTask<WrappedPath, Long> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    static final long RANGE_SIZE = 8L << 20; // 8 MiB
+
+    private final OutputStream out;
+
+    public GzipDecompressTask(WrappedPath path, OutputStream out) {
+        super(path);
+        this.out = out;
+    }
+
+    @Override
+    protected Long compute() {
+        try (FileChannel channel = input.openChannel()) {
+            long size = channel.size();
+            CountingOutput counting = new CountingOutput(out);
+
+            int inFlight = Math.max(1, getPool().getParallelism());
+            ArrayDeque<GzipChunkTask> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < size && pending.size() < inFlight) {
+                pending.add(fork(next, Math.min(size, next + RANGE_SIZE), channel));
+                next += RANGE_SIZE;
+            }
+            long position = 0;
+            try {
+                while (!pending.isEmpty()) {
+                    GzipChunkTask task = pending.poll();
+                    GzipChunkTask.Result result = task.join();
+                    try {
+                        if (next < size) {
+                            pending.add(fork(next, Math.min(size, next + RANGE_SIZE), channel));
+                            next += RANGE_SIZE;
+                        }
+                        long to = Math.min(size, task.range().to());
+                        if (to <= position) {
+                            continue; // already decoded along with an earlier range
+                        }
+                        GzipMemberDecoder decoder;
+                        if (result.start() == position) {
+                            result.output().writeTo(counting);
+                            decoder = result.decoder();
+                            if (!result.complete()) {
+                                decoder.transfer(to, counting, Long.MAX_VALUE);
+                            }
+                        } else {
+                            decoder = new GzipMemberDecoder(channel, position);
+                            decoder.transfer(to, counting, Long.MAX_VALUE);
+                            if (decoder.members() == 0) {
+                                LOGGER.warn("Ignoring trailing garbage at offset " + position + " of: " + input);
+                                break;
+                            }
+                        }
+                        position = decoder.position();
+                    } finally {
+                        result.release();
+                    }
+                }
+            } finally {
+                discard(pending);
+            }
+            return counting.count();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while decompressing path: " + input, e);
+        }
+    }
+
+    /**
+     * Waits for the ranges that are no longer needed, so that their buffered bytes go back to the budget
+     * the ranges share. A cancelled range could still be running and would keep its bytes.
+     */
+    private static void discard(Collection<GzipChunkTask> tasks) {
+        for (GzipChunkTask task : tasks) {
+            try {
+                task.join().release();
+            } catch (RuntimeException e) {
+                // a failed range buffered nothing
+            }
+        }
+    }
+
+    private GzipChunkTask fork(long from, long to, FileChannel channel) {
+        GzipChunkTask task = new GzipChunkTask(new GzipChunkTask.Range(from, to), channel);
+        task.fork();
+        return task;
+    }
+}
@@ -0,0 +1,150 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.compression.ZstdFrame;
+import com.wizardry.tools.logripper.util.compression.ZstdFrameInputStream;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+/**
+ * Decompresses a zstd archive into a stream, decoding its frames in parallel. The frame boundaries are read
+ * from the frame and block headers up front, and consecutive frames are grouped into runs of about
+ * {@link #RANGE_SIZE} decoded bytes that are decoded by {@link ZstdFrameTask}s; their results are written
+ * strictly in order. A frame that is larger than a run, e.g. the single frame of an archive compressed in one
+ * go, is decoded as a stream right here, which costs parallelism but no memory. So is a run that got no bytes
+ * from the {@link BufferBudget}.
+ */
+public class ZstdDecompressTask extends PooledRipperTask<WrappedPath, Long> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    static final int RANGE_SIZE = 8 << 20; // 8 MiB
+
+    private final OutputStream out;
+
+    public ZstdDecompressTask(WrappedPath path, OutputStream out) {
+        super(path);
+        this.out = out;
+    }
+
+    @Override
+    protected Long compute() {
+        try (FileChannel channel = input.openChannel()) {
+            long size = channel.size();
+            CountingOutput counting = new CountingOutput(out);
+
+            int inFlight = Math.max(1, getPool().getParallelism());
+            ArrayDeque<ZstdFrameTask> pending = new ArrayDeque<>();
+            long next = 0;
+            try {
+                while (next < size || !pending.isEmpty()) {
+                    while (next < size && pending.size() < inFlight) {
+                        ZstdFrameTask.Range range = nextRange(channel, next, size);
+                        if (range == null) {
+                            next = size;
+                            break;
+                        }
+                        pending.add(fork(range, channel));
+                        next = range.to();
+                    }
+                    if (pending.isEmpty()) {
+                        break;
+                    }
+                    ZstdFrameTask task = pending.poll();
+                    ZstdFrameTask.Result result = task.join();
+                    try {
+                        if (result.output() != null) {
+                            counting.write(result.output(), 0, result.length());
+                        } else {
+                            transfer(channel, task.range(), counting);
+                        }
+                    } finally {
+                        result.release();
+                    }
+                }
+            } finally {
+                discard(pending);
+            }
+            return counting.count();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while decompressing path: " + input, e);
+        }
+    }
+
+    /**
+     * Groups the frames from the offset on into a run, passing over empty frames, or returns null if nothing
+     * but empty frames and trailing garbage is left.
+     */
+    private ZstdFrameTask.Range nextRange(FileChannel channel, long from, long size) throws IOException {
+        long to = from;
+        long maxContentSize = 0;
+        while (to < size) {
+            ZstdFrame frame;
+            try {
+                frame = ZstdFrame.read(channel, to);
+            } catch (IOException e) {
+                if (to == 0) {
+                    throw e;
+                }
+                if (to == from) {
+                    LOGGER.warn("Ignoring trailing garbage at offset " + to + " of: " + input);
+                    return null;
+                }
+                break; // the garbage is reported once the frames before it were written
+            }
+            if (frame.isEmpty()) {
+                if (to != from) {
+                    break;
+                }
+                from = to = frame.end();
+                continue;
+            }
+            if (to == from && RANGE_SIZE < frame.maxContentSize()) {
+                return new ZstdFrameTask.Range(from, frame.end(), -1);
+            }
+            if (RANGE_SIZE < maxContentSize + frame.maxContentSize()) {
+                break;
+            }
+            maxContentSize += frame.maxContentSize();
+            to = frame.end();
+        }
+        return from < to ? new ZstdFrameTask.Range(from, to, (int) maxContentSize) : null;
+    }
+
+    /**
+     * Decodes a run of frames as a stream, for runs that can't be buffered.
+     */
+    private static void transfer(FileChannel channel, ZstdFrameTask.Range range, OutputStream out) throws IOException {
+        try (InputStream in = new ZstdFrameInputStream(channel, range.from(), range.to())) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Waits for the runs that are no longer needed, so that their buffered bytes go back to the budget the
+     * runs share.
+     */
+    private static void discard(Collection<ZstdFrameTask> tasks) {
+        for (ZstdFrameTask task : tasks) {
+            try {
+                task.join().release();
+            } catch (RuntimeException e) {
+                // a failed run buffered nothing
+            }
+        }
+    }
+
+    private ZstdFrameTask fork(ZstdFrameTask.Range range, FileChannel channel) {
+        ZstdFrameTask task = new ZstdFrameTask(range, channel);
+        task.fork();
+        return task;
+    }
+}
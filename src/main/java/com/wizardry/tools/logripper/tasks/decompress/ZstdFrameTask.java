@@ -0,0 +1,81 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import io.airlift.compress.MalformedInputException;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Decodes a run of whole zstd frames of an archive into a buffer. Unlike gzip members, the boundaries of the
+ * frames are known before they are decoded, so the result is never speculative.
+ * <p>
+ * The decoded bytes are buffered against the {@link BufferBudget} that all decompress tasks share, reserved up
+ * front by the run's maximum content size. A run that doesn't get its bytes, or that is too large to be buffered
+ * at all, is left to be decoded as a stream once it's the run being written.
+ */
+public class ZstdFrameTask extends PooledRipperTask<ZstdFrameTask.Range, ZstdFrameTask.Result> {
+
+    private final FileChannel channel;
+
+    public ZstdFrameTask(Range range, FileChannel channel) {
+        super(range);
+        this.channel = channel;
+    }
+
+    /**
+     * A run of consecutive frames of the archive.
+     *
+     * @param from The offset of the first frame.
+     * @param to The offset right behind the last frame.
+     * @param maxContentSize The bytes the frames decode to at most, or -1 if they are too many to be buffered.
+     */
+    public record Range(long from, long to, int maxContentSize) {
+    }
+
+    public Range range() {
+        return input;
+    }
+
+    /**
+     * The outcome of decoding a run of frames.
+     *
+     * @param output The decoded bytes, or null if the run is left to be decoded as a stream.
+     * @param length The number of decoded bytes in the output.
+     * @param reserved The number of bytes taken from the shared budget, the size of the output.
+     */
+    public record Result(byte[] output, int length, int reserved) {
+
+        /**
+         * Gives the buffered bytes back to the shared budget, must be called exactly once per result.
+         */
+        public void release() {
+            BufferBudget.release(reserved);
+        }
+    }
+
+    @Override
+    protected Result compute() {
+        if (input.maxContentSize() < 0 || !BufferBudget.tryAcquire(input.maxContentSize())) {
+            return new Result(null, 0, 0);
+        }
+        int reserved = input.maxContentSize();
+        try {
+            ByteBuffer compressed = ByteBuffer.allocate((int) (input.to() - input.from()));
+            while (compressed.hasRemaining()) {
+                if (channel.read(compressed, input.from() + compressed.position()) < 0) {
+                    throw new EOFException("Truncated zstd frame before offset " + input.to());
+                }
+            }
+            byte[] output = new byte[reserved];
+            int length = new ZstdDecompressor().decompress(compressed.array(), 0, compressed.capacity(), output, 0, output.length);
+            return new Result(output, length, reserved);
+        } catch (IOException | MalformedInputException e) {
+            BufferBudget.release(reserved);
+            throw new RuntimeException("Error while decompressing range [" + input.from() + ", " + input.to() + ")", e);
+        }
+    }
+}
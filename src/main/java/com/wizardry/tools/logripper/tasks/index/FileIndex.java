@@ -0,0 +1,219 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.pathgrep.MappedWindow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The trigram index of a single log file, split into line aligned blocks. Besides the bitmaps every block
+ * records its line count, so a block that can't match is skipped without losing track of line numbers.
+ * <p>
+ * The file is identified by its file key, modification time and checksums of its head and of the tail of the
+ * indexed content. A file that only grew since it was indexed keeps its index, all but the last block still
+ * hold, the rest is scanned as usual. Anything else, e.g. a rotated, truncated or rewritten file, makes the
+ * index stale.
+ *
+ * @param path The absolute path of the indexed file.
+ * @param fileKey The file key (e.g. device and inode) of the file, empty if the file system has none.
+ * @param size The size of the file when it was indexed.
+ * @param modified The modification time of the file in milliseconds when it was indexed.
+ * @param headCrc The checksum of the first {@link #HEAD_LENGTH} bytes of the file, or of all of them if it was shorter.
+ * @param tailCrc The checksum of the last {@link #HEAD_LENGTH} bytes of the indexed content, or of all of it.
+ * @param compressed True if the blocks cover the decompressed content, they can only rule out the whole file then.
+ * @param blocks The blocks in file order.
+ */
+public record FileIndex(String path, String fileKey, long size, long modified, long headCrc, long tailCrc, boolean compressed, List<Block> blocks) {
+
+    /** The nominal size of a block, moved forward to the next line break. */
+    public static final long BLOCK_SIZE = 4L << 20; // 4 MiB
+    static final int HEAD_LENGTH = 4096;
+
+    private static final int MAGIC = 0x4c525832; // "LRX2"
+    private static final int BLOCK_HEADER_LENGTH = Long.BYTES + 2 * Integer.BYTES + 1;
+
+    /**
+     * A line aligned block of the file.
+     *
+     * @param offset The offset of the block within the (decompressed) file.
+     * @param length The length of the block in bytes.
+     * @param lines The number of lines within the block.
+     * @param bitsLog2 The log2 of the size of the bitmap in bits.
+     * @param filter The trigram bitmap of the block.
+     */
+    public record Block(long offset, int length, int lines, int bitsLog2, ByteBuffer filter) {
+
+        /**
+         * Tests whether every one of the trigrams occurs within the block, give or take a false positive.
+         */
+        public boolean mayContain(int[] trigrams) {
+            return TrigramFilter.containsAll(filter, bitsLog2, trigrams);
+        }
+    }
+
+    /**
+     * Returns the number of blocks that still hold for the file at its current size.
+     */
+    public int usableBlocks(long currentSize) {
+        return currentSize == size ? blocks.size() : Math.max(0, blocks.size() - 1);
+    }
+
+    /**
+     * Tests whether the index still holds for the file, completely or for all but its last block.
+     */
+    public boolean isCurrent(Path file, FileChannel channel) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long currentSize = channel.size();
+        if (!fileKey.equals(fileKey(attributes)) || currentSize < size) {
+            return false;
+        }
+        if (currentSize == size) {
+            return attributes.lastModifiedTime().toMillis() == modified;
+        }
+        // a file rewritten in place keeps its key, so the content that was indexed has to be unchanged too
+        return !compressed && headCrc(channel, size) == headCrc && tailCrc(channel, size) == tailCrc;
+    }
+
+    /**
+     * Splits the file into the windows to scan: the usable blocks first, the part of the file that was
+     * appended since is split as usual. The window index of a usable block is its block index.
+     */
+    public List<MappedWindow> windows(FileChannel channel, long windowSize) throws IOException {
+        int usable = usableBlocks(channel.size());
+        List<MappedWindow> windows = new ArrayList<>(usable + 1);
+        long start = 0;
+        for (int i = 0; i < usable; i++) {
+            Block block = blocks.get(i);
+            windows.add(new MappedWindow(i, block.offset(), block.length()));
+            start = block.offset() + block.length();
+        }
+        for (MappedWindow window : MappedWindow.split(channel, start, windowSize)) {
+            windows.add(new MappedWindow(windows.size(), window.offset(), window.length()));
+        }
+        return windows;
+    }
+
+    static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+
+    /**
+     * Returns the checksum of the head of the file as it was when it had the given size.
+     */
+    static long headCrc(FileChannel channel, long size) throws IOException {
+        return crc(channel, 0, Math.min(HEAD_LENGTH, size));
+    }
+
+    /**
+     * Returns the checksum of the tail of the file as it was when it had the given size.
+     */
+    static long tailCrc(FileChannel channel, long size) throws IOException {
+        return crc(channel, Math.max(0, size - HEAD_LENGTH), size);
+    }
+
+    private static long crc(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        while (bytes.hasRemaining() && 0 <= channel.read(bytes, from + bytes.position())) {
+            // keep reading until the bytes are complete or the file ends
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.flip());
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the index to the sidecar file, replacing it atomically so concurrent readers see either version.
+     */
+    void write(Path sidecar) throws IOException {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte[] keyBytes = fileKey.getBytes(StandardCharsets.UTF_8);
+        long length = 4L * Integer.BYTES + pathBytes.length + keyBytes.length + 4L * Long.BYTES + 1;
+        for (Block block : blocks) {
+            length += BLOCK_HEADER_LENGTH + block.filter().capacity();
+        }
+        if (Integer.MAX_VALUE < length) {
+            throw new IOException("Index of path is too large: " + path);
+        }
+        ByteBuffer out = ByteBuffer.allocate((int) length);
+        out.putInt(MAGIC)
+                .putInt(pathBytes.length).put(pathBytes)
+                .putInt(keyBytes.length).put(keyBytes)
+                .putLong(size).putLong(modified).putLong(headCrc).putLong(tailCrc)
+                .put((byte) (compressed ? 1 : 0))
+                .putInt(blocks.size());
+        for (Block block : blocks) {
+            out.putLong(block.offset()).putInt(block.length()).putInt(block.lines()).put((byte) block.bitsLog2());
+        }
+        for (Block block : blocks) {
+            out.put(block.filter().duplicate().clear());
+        }
+
+        Files.createDirectories(sidecar.getParent());
+        Path temp = Files.createTempFile(sidecar.getParent(), sidecar.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the index from the sidecar file. The bitmaps stay memory mapped, only the ones a query tests
+     * are ever paged in.
+     */
+    static FileIndex read(Path sidecar) throws IOException {
+        ByteBuffer in;
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not an index: " + sidecar);
+            }
+            String path = readString(in);
+            String fileKey = readString(in);
+            long size = in.getLong();
+            long modified = in.getLong();
+            long headCrc = in.getLong();
+            long tailCrc = in.getLong();
+            boolean compressed = in.get() != 0;
+            int count = in.getInt();
+            List<Block> blocks = new ArrayList<>(count);
+            int filterStart = in.position() + count * BLOCK_HEADER_LENGTH;
+            for (int i = 0; i < count; i++) {
+                long offset = in.getLong();
+                int length = in.getInt();
+                int lines = in.getInt();
+                int bitsLog2 = in.get();
+                ByteBuffer filter = in.slice(filterStart, 1 << (bitsLog2 - 3));
+                filterStart += filter.capacity();
+                blocks.add(new Block(offset, length, lines, bitsLog2, filter));
+            }
+            return new FileIndex(path, fileKey, size, modified, headCrc, tailCrc, compressed, List.copyOf(blocks));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt index: " + sidecar, e);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.pathgrep.MappedWindow;
+import com.wizardry.tools.logripper.util.ByteUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps a single block of a file and builds its trigram bitmap and line count.
+ */
+public class IndexBlockTask extends PooledRipperTask<MappedWindow, FileIndex.Block> {
+
+    private final FileChannel channel;
+
+    public IndexBlockTask(MappedWindow block, FileChannel channel) {
+        super(block);
+        this.channel = channel;
+    }
+
+    @Override
+    protected FileIndex.Block compute() {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, input.offset(), input.length());
+        } catch (IOException e) {
+            throw new RuntimeException("Error while mapping block [" + input.index() + "]", e);
+        }
+        return index(buffer, 0, buffer.limit(), input.offset());
+    }
+
+    /**
+     * Indexes the bytes within [from, to) as a block starting at the given file offset.
+     */
+    static FileIndex.Block index(ByteBuffer buffer, int from, int to, long offset) {
+        int bitsLog2 = TrigramFilter.bitsLog2(to - from);
+        byte[] filter = TrigramFilter.build(buffer, from, to, bitsLog2);
+        return new FileIndex.Block(offset, to - from, ByteUtil.countLines(buffer, from, to), bitsLog2, ByteBuffer.wrap(filter));
+    }
+}
@@ -0,0 +1,141 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.pathgrep.MappedWindow;
+import com.wizardry.tools.logripper.util.compression.Compression;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds or updates the {@link FileIndex} of a single file. A file whose index is current is left alone, a
+ * file that only grew keeps all but the last block of its index and only the rest gets indexed, in blocks
+ * forked into the pool. Anything else is indexed from scratch. Compressed files are decompressed on the
+ * fly and indexed as a whole. The result is true if the index was written.
+ */
+public class IndexFileTask extends PooledRipperTask<WrappedPath, Boolean> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final IndexStore store;
+    private final boolean isDebug;
+
+    public IndexFileTask(WrappedPath path, IndexStore store, boolean isDebug) {
+        super(path);
+        this.store = store;
+        this.isDebug = isDebug;
+    }
+
+    public WrappedPath path() {
+        return input;
+    }
+
+    @Override
+    protected Boolean compute() {
+        Path file = input.toAbsolutePath();
+        try (FileChannel channel = input.openChannel()) {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            FileIndex existing = store.load(file);
+            if (existing != null && !existing.isCurrent(file, channel)) {
+                existing = null;
+            }
+            if (existing != null && existing.size() == channel.size()) {
+                return false;
+            }
+            Compression compression = Compression.detect(channel);
+            FileIndex index;
+            if (compression == Compression.NONE) {
+                List<FileIndex.Block> blocks = indexAppended(channel, existing);
+                long size = blocks.isEmpty() ? 0 : blocks.getLast().offset() + blocks.getLast().length();
+                index = new FileIndex(file.toString(), FileIndex.fileKey(attributes), size,
+                        attributes.lastModifiedTime().toMillis(), FileIndex.headCrc(channel, size),
+                        FileIndex.tailCrc(channel, size), false, blocks);
+            } else {
+                long size = channel.size();
+                index = new FileIndex(file.toString(), FileIndex.fileKey(attributes), size,
+                        attributes.lastModifiedTime().toMillis(), FileIndex.headCrc(channel, size),
+                        FileIndex.tailCrc(channel, size), true, indexCompressed(file));
+            }
+            store.save(index);
+            if (isDebug) LOGGER.debug("Indexed [" + index.blocks().size() + "] blocks of " + file);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Error occurred while indexing path " + file + ": " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Keeps the blocks of the existing index that still hold and indexes the rest of the file.
+     */
+    private List<FileIndex.Block> indexAppended(FileChannel channel, FileIndex existing) throws IOException {
+        List<FileIndex.Block> blocks = new ArrayList<>();
+        long from = 0;
+        if (existing != null) {
+            blocks.addAll(existing.blocks().subList(0, existing.usableBlocks(channel.size())));
+            if (!blocks.isEmpty()) {
+                from = blocks.getLast().offset() + blocks.getLast().length();
+            }
+        }
+        List<IndexBlockTask> subTasks = new ArrayList<>();
+        for (MappedWindow block : MappedWindow.split(channel, from, FileIndex.BLOCK_SIZE)) {
+            subTasks.add(new IndexBlockTask(block, channel));
+        }
+        invokeAll(subTasks);
+        for (IndexBlockTask task : subTasks) {
+            blocks.add(task.join());
+        }
+        return blocks;
+    }
+
+    /**
+     * Indexes the decompressed content in line aligned blocks, one after the other.
+     */
+    private static List<FileIndex.Block> indexCompressed(Path file) throws IOException {
+        List<FileIndex.Block> blocks = new ArrayList<>();
+        try (InputStream in = Compression.open(file)) {
+            byte[] bytes = new byte[(int) FileIndex.BLOCK_SIZE];
+            int filled = 0;
+            long offset = 0;
+            while (true) {
+                filled += in.readNBytes(bytes, filled, bytes.length - filled);
+                boolean isEnd = filled < bytes.length;
+                int end = isEnd ? filled : lastLineEnd(bytes, filled);
+                if (end == 0 && !isEnd) {
+                    // a single line fills the whole buffer
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                    continue;
+                }
+                if (0 < end) {
+                    blocks.add(IndexBlockTask.index(ByteBuffer.wrap(bytes), 0, end, offset));
+                    offset += end;
+                    System.arraycopy(bytes, end, bytes, 0, filled - end);
+                    filled -= end;
+                }
+                if (isEnd) {
+                    return blocks;
+                }
+            }
+        }
+    }
+
+    private static int lastLineEnd(byte[] bytes, int length) {
+        for (int i = length - 1; 0 <= i; i--) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
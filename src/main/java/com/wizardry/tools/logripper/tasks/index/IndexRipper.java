@@ -0,0 +1,43 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.PathRipper;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Builds or updates the search index of every file below a path, see {@link SearchIndex}. Files whose index
+ * is current are skipped, so running it again after logs were appended or rotated only indexes what changed.
+ * Indexes of files that were removed since are deleted. The result maps each file to whether its index was
+ * written.
+ */
+public class IndexRipper implements PathRipper<Boolean> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final IndexStore store;
+    private final boolean isVerbose;
+    private final boolean isDebug;
+
+    public IndexRipper(IndexStore store, boolean isVerbose, boolean isDebug) {
+        this.store = store;
+        this.isVerbose = isVerbose;
+        this.isDebug = isDebug;
+    }
+
+    @Override
+    public Map<String, Boolean> rip(WrappedPath path) throws IOException {
+        Map<String, Boolean> indexed = SystemUtil.getWorkPool().invoke(new IndexTask(path, store, isDebug));
+        int swept = store.sweep(path.toAbsolutePath());
+        long written = indexed.values().stream().filter(Boolean::booleanValue).count();
+        LOGGER.info("Indexed [" + written + "] of [" + indexed.size() + "] files, the others are up to date");
+        if (isVerbose && 0 < swept) {
+            LOGGER.info("Removed [" + swept + "] indexes of files that no longer exist");
+        }
+        return indexed;
+    }
+}
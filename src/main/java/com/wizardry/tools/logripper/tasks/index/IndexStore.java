@@ -0,0 +1,109 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.util.StringUtil;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The directory the {@link FileIndex} sidecars live in, one per indexed file, named after the hash of its
+ * absolute path. The store is kept outside the indexed tree so read-only archives can be indexed too.
+ * It defaults to {@code ~/.logripper/index} and can be moved with the {@value #DIRECTORY_PROPERTY} system property.
+ */
+public final class IndexStore {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    public static final String DIRECTORY_PROPERTY = "logripper.index.dir";
+    private static final String SUFFIX = ".lri";
+
+    private final Path directory;
+
+    public IndexStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public static IndexStore getDefault() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return new IndexStore(directory != null
+                ? Path.of(directory)
+                : Path.of(System.getProperty("user.home"), ".logripper", "index"));
+    }
+
+    /**
+     * Tests whether anything was ever indexed into the store.
+     */
+    public boolean exists() {
+        return Files.isDirectory(directory);
+    }
+
+    /**
+     * Tests whether the directory is the store itself.
+     */
+    public boolean contains(Path dir) {
+        return dir.toAbsolutePath().normalize().equals(directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Returns the index of the file, or null if it was never indexed or its sidecar can't be read.
+     */
+    public FileIndex load(Path file) {
+        Path sidecar = sidecar(file);
+        try {
+            return FileIndex.read(sidecar);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable index of path " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void save(FileIndex index) throws IOException {
+        index.write(sidecar(Path.of(index.path())));
+    }
+
+    /**
+     * Deletes the sidecars of files below the root that no longer exist, e.g. rotated logs that got removed.
+     *
+     * @return The number of sidecars deleted.
+     */
+    public int sweep(Path root) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        List<Path> sidecars;
+        try (Stream<Path> stream = Files.walk(directory)) {
+            sidecars = stream.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).toList();
+        }
+        int deleted = 0;
+        for (Path sidecar : sidecars) {
+            FileIndex index;
+            try {
+                index = FileIndex.read(sidecar);
+            } catch (IOException e) {
+                Files.deleteIfExists(sidecar);
+                deleted++;
+                continue;
+            }
+            Path file = Path.of(index.path());
+            if (file.startsWith(absoluteRoot) && !Files.exists(file)) {
+                Files.deleteIfExists(sidecar);
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private Path sidecar(Path file) {
+        String name = StringUtil.sha256(file.toAbsolutePath().normalize().toString());
+        return directory.resolve(name.substring(0, 2)).resolve(name + SUFFIX);
+    }
+}
@@ -0,0 +1,48 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The root task of {@code --index build}. Crawls the tree once, forking an {@link IndexFileTask} per file,
+ * and joins them afterwards. The result maps each file to whether its index was written.
+ */
+public class IndexTask extends PooledRipperTask<WrappedPath, Map<String, Boolean>> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final IndexStore store;
+    private final boolean isDebug;
+
+    public IndexTask(WrappedPath path, IndexStore store, boolean isDebug) {
+        super(path);
+        this.store = store;
+        this.isDebug = isDebug;
+    }
+
+    @Override
+    protected Map<String, Boolean> compute() {
+        Map<String, Boolean> indexed = new HashMap<>();
+        Queue<IndexFileTask> subTasks = new ConcurrentLinkedQueue<>();
+        try {
+            // a root file is visited like any other
+            new ParallelCrawler<>(new IndexVisitor(subTasks, store, isDebug)).crawl(input.unwrap());
+        } catch (IOException e) {
+            LOGGER.error("Error occurred while computing an Index Task: " + e.getMessage());
+        }
+        // tasks that were forked before a failed crawl still have to be joined
+        for (IndexFileTask task : subTasks) {
+            indexed.put(task.path().toAbsolutePath().toString(), task.join());
+        }
+        return indexed;
+    }
+}
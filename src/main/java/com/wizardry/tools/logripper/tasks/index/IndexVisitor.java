@@ -0,0 +1,49 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Queue;
+
+/**
+ * Forks an {@link IndexFileTask} for every regular file of the tree while it's crawled. The index store is
+ * skipped in case it lives within the tree. Must be used from within a ForkJoin worker.
+ */
+public class IndexVisitor implements CrawlVisitor<Path> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final Queue<IndexFileTask> subTasks;
+    private final IndexStore store;
+    private final boolean isDebug;
+
+    public IndexVisitor(Queue<IndexFileTask> subTasks, IndexStore store, boolean isDebug) {
+        this.subTasks = subTasks;
+        this.store = store;
+        this.isDebug = isDebug;
+    }
+
+    @Override
+    public Path enterDirectory(Path parent, Path dir, BasicFileAttributes attrs) {
+        return store.contains(dir) ? null : dir;
+    }
+
+    @Override
+    public void visitFile(Path dir, Path input, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile()) {
+            IndexFileTask task = new IndexFileTask(WrappedPath.of(input, attrs), store, isDebug);
+            task.fork();
+            subTasks.add(task);
+        }
+    }
+
+    @Override
+    public void visitFailed(Path dir, Path path, IOException e) {
+        LOGGER.error("Error occurred while indexing path " + path + ": " + e);
+    }
+}
@@ -0,0 +1,108 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.pathgrep.MappedWindow;
+import com.wizardry.tools.logripper.util.matching.LiteralLineMatcher;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The query side of the index built with {@code --index build}: rules out whole files and blocks of files
+ * that can't hold a match before they are read. A line can only match if it contains all trigrams of at least
+ * one of the tokens. Files without a current index, and tokens that aren't plain literals of at least three
+ * bytes, simply aren't filtered, they fall back to the normal grep.
+ */
+public final class SearchIndex {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    /** An index that never rules anything out. */
+    public static final SearchIndex NONE = new SearchIndex(null, List.of(), false);
+
+    private final IndexStore store;
+    private final List<int[]> queries;
+    private final boolean isVerbose;
+
+    private SearchIndex(IndexStore store, List<int[]> queries, boolean isVerbose) {
+        this.store = store;
+        this.queries = queries;
+        this.isVerbose = isVerbose;
+    }
+
+    /**
+     * Compiles the tokens of the configuration into a query against the default {@link IndexStore}. Without a
+     * store nothing was ever indexed, files aren't even looked up then.
+     */
+    public static SearchIndex of(LogRipperConfig config) {
+        List<int[]> queries = new ArrayList<>();
+        for (String pattern : config.getPatterns()) {
+            int[] trigrams = LiteralLineMatcher.isLiteral(pattern) ? TrigramFilter.trigrams(pattern) : null;
+            if (trigrams == null) {
+                // a token the index can't rule out matches anywhere
+                return NONE;
+            }
+            queries.add(trigrams);
+        }
+        IndexStore store = IndexStore.getDefault();
+        return queries.isEmpty() || !store.exists() ? NONE : new SearchIndex(store, List.copyOf(queries), config.isVerbose());
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Returns the index of the file if it still holds, at least for all but its last block, otherwise null.
+     */
+    public FileIndex lookup(WrappedPath path, FileChannel channel) throws IOException {
+        if (!isEnabled()) {
+            return null;
+        }
+        FileIndex index = store.load(path.toAbsolutePath());
+        if (index != null && !index.isCurrent(path.unwrap(), channel)) {
+            if (isVerbose) LOGGER.info("Index is stale, grepping without it: " + path);
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Tests whether the whole file can be skipped: it's covered by its index and none of its blocks can match.
+     */
+    public boolean canSkip(FileIndex index, long currentSize) {
+        if (index == null || index.usableBlocks(currentSize) < index.blocks().size()) {
+            return false;
+        }
+        for (FileIndex.Block block : index.blocks()) {
+            if (mayMatch(block)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tests whether the window can be skipped: it's a usable block of the index that can't match.
+     */
+    public boolean canSkip(FileIndex index, MappedWindow window, long currentSize) {
+        return index != null
+                && !index.compressed()
+                && window.index() < index.usableBlocks(currentSize)
+                && !mayMatch(index.blocks().get(window.index()));
+    }
+
+    private boolean mayMatch(FileIndex.Block block) {
+        for (int[] trigrams : queries) {
+            if (block.mayContain(trigrams)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,90 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.util.ByteUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The trigram bitmaps of a {@link FileIndex}. Every trigram of a block's lines is hashed into a bitmap sized
+ * to the block, so a token whose trigrams aren't all set can't occur anywhere in the block. ASCII letters
+ * are folded to lower case, one index serves case-sensitive and case-insensitive searches alike.
+ */
+final class TrigramFilter {
+
+    /** Bitmaps are sized to their block, between 1 Kibit and 128 Kibit. */
+    static final int MIN_BITS_LOG2 = 10;
+    static final int MAX_BITS_LOG2 = 17;
+
+    private static final int GOLDEN_RATIO = 0x9E3779B1;
+
+    private TrigramFilter() {
+        //private constructor
+    }
+
+    /**
+     * Returns the log2 of the number of bits a block of the given length gets.
+     */
+    static int bitsLog2(int length) {
+        int log2 = 32 - Integer.numberOfLeadingZeros(Math.max(1, length));
+        return Math.clamp(log2, MIN_BITS_LOG2, MAX_BITS_LOG2);
+    }
+
+    /**
+     * Builds the bitmap of the bytes within [from, to). Trigrams never span a line break.
+     */
+    static byte[] build(ByteBuffer buffer, int from, int to, int bitsLog2) {
+        byte[] filter = new byte[1 << (bitsLog2 - 3)];
+        int trigram = 0;
+        int run = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == ByteUtil.LF || b == ByteUtil.CR) {
+                run = 0;
+                continue;
+            }
+            trigram = ((trigram << 8) | fold(b)) & 0xFFFFFF;
+            if (3 <= ++run) {
+                int bit = hash(trigram, bitsLog2);
+                filter[bit >>> 3] |= (byte) (1 << (bit & 7));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Returns the trigrams of a literal token, or null if it's too short to have any.
+     */
+    static int[] trigrams(String token) {
+        byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 3) {
+            return null;
+        }
+        int[] trigrams = new int[bytes.length - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = fold(bytes[i]) << 16 | fold(bytes[i + 1]) << 8 | fold(bytes[i + 2]);
+        }
+        return trigrams;
+    }
+
+    /**
+     * Tests whether every one of the trigrams is set in the bitmap.
+     */
+    static boolean containsAll(ByteBuffer filter, int bitsLog2, int[] trigrams) {
+        for (int trigram : trigrams) {
+            int bit = hash(trigram, bitsLog2);
+            if ((filter.get(bit >>> 3) & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int trigram, int bitsLog2) {
+        return (trigram * GOLDEN_RATIO) >>> (32 - bitsLog2);
+    }
+
+    private static int fold(byte b) {
+        return 'A' <= b && b <= 'Z' ? b + ('a' - 'A') : b & 0xFF;
+    }
+}
@@ -0,0 +1,85 @@
+package com.wizardry.tools.logripper.tasks.pathdiff;
+
+import com.wizardry.tools.logripper.tasks.Ripper;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.DataUtil;
+import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reports the directories of a tree that grew most since a {@link TreeSnapshot} of it was taken, with a single
+ * crawl that uses the depth limit of the snapshot.
+ */
+public class PathDiffRipper implements Ripper<Path, List<SnapshotDiffVisitor.Growth>> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    public static final int DEFAULT_COUNT = 20;
+
+    private final TreeSnapshot snapshot;
+    private final int count;
+
+    public PathDiffRipper(TreeSnapshot snapshot, int count) {
+        this.snapshot = snapshot;
+        this.count = count;
+    }
+
+    public PathDiffRipper(TreeSnapshot snapshot) {
+        this(snapshot, DEFAULT_COUNT); // Default to the 20 directories that grew most.
+    }
+
+    /**
+     * @return The directories that grew most, most first.
+     */
+    @Override
+    public List<SnapshotDiffVisitor.Growth> rip(Path path) throws IOException {
+        if (!snapshot.root().equals(path.toAbsolutePath().normalize())) {
+            throw new IOException("The snapshot is of another path: " + snapshot.root());
+        }
+        Timestamp diffTime = new Timestamp();
+        List<SnapshotDiffVisitor.Growth> growth;
+        try {
+            SnapshotDiffVisitor visitor = new SnapshotDiffVisitor(snapshot, count);
+            SnapshotDiffVisitor.Dir root = new ParallelCrawler<>(visitor, snapshot.maxDepth()).crawl(path);
+            if (root == null) {
+                throw new IOException("Can only diff a directory: " + path);
+            }
+            growth = visitor.largestGrowth();
+            StringBuilder sb = new StringBuilder("Largest growth:").append(System.lineSeparator());
+            growth.forEach(entry -> append(sb, entry));
+            sb.append("Total: ");
+            append(sb, root.growth());
+            ResultOutput.out().print(sb);
+            ResultOutput.out().flush();
+            LOGGER.info("Skipped listing [" + visitor.unchanged() + "] unchanged directories");
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error comparing the path with its snapshot", e);
+        }
+
+        LOGGER.info("Compared the path with its snapshot in [" + diffTime.toMillis() + "] milliseconds");
+        return growth;
+    }
+
+    private static void append(StringBuilder sb, SnapshotDiffVisitor.Growth growth) {
+        int start = sb.length();
+        sb.append('[');
+        if (0 <= growth.growth()) {
+            sb.append('+');
+        }
+        DataUtil.appendHumanReadableByteCountSI(sb, growth.growth()).append(']');
+        // add additional spacing so that the sizes line up for short growth strings.
+        do {
+            sb.append(' ');
+        } while (sb.length() - start < 12);
+        sb.append('[');
+        DataUtil.appendHumanReadableByteCountSI(sb, growth.size()).append("]  ").append(growth.path()).append(System.lineSeparator());
+    }
+}
@@ -0,0 +1,148 @@
+package com.wizardry.tools.logripper.tasks.pathdiff;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.tasks.pathmapper.SubtreeSizeVisitor;
+import com.wizardry.tools.logripper.util.BoundedHeap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Crawls a tree again and compares the size of every directory with its size in a {@link TreeSnapshot}.
+ * Directories are sized like the {@link com.wizardry.tools.logripper.tasks.pathmapper.PooledTreeWrapperVisitor}
+ * sizes them, so the sizes of both are comparable. Directories that are unchanged since the snapshot aren't
+ * listed, their entries are taken from it.
+ * <p>
+ * Like the {@link com.wizardry.tools.logripper.tasks.pathsize.TopSizeVisitor}, every worker keeps a bounded
+ * heap of the directories that grew most, which are merged once the crawl is done.
+ */
+public class SnapshotDiffVisitor implements CrawlVisitor<SnapshotDiffVisitor.Dir> {
+
+    private static final Comparator<Growth> BY_GROWTH = Comparator.comparingLong(Growth::growth);
+
+    /**
+     * A directory whose subtree grew since the snapshot.
+     *
+     * @param path The path of the directory.
+     * @param previousSize The size of the subtree in the snapshot, 0 if the directory is new.
+     * @param size The size of the subtree now.
+     */
+    public record Growth(Path path, long previousSize, long size) {
+
+        public long growth() {
+            return size - previousSize;
+        }
+    }
+
+    /**
+     * The state of a directory while it's crawled.
+     */
+    public static final class Dir {
+        private final Path path;
+        private final TreeSnapshot.Directory previous;
+        private final boolean isUnchanged;
+        private long size;
+
+        private Dir(Path path, TreeSnapshot.Directory previous, boolean isUnchanged, long size) {
+            this.path = path;
+            this.previous = previous;
+            this.isUnchanged = isUnchanged;
+            this.size = size;
+        }
+
+        public Growth growth() {
+            return new Growth(path, previous == null ? 0L : previous.size(), size);
+        }
+    }
+
+    private final TreeSnapshot snapshot;
+    private final int count;
+    private final Queue<BoundedHeap<Growth>> allHeaps = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<BoundedHeap<Growth>> heaps = ThreadLocal.withInitial(this::newHeap);
+    private final LongAdder unchanged = new LongAdder();
+
+    /**
+     * @param count The number of directories to keep.
+     */
+    public SnapshotDiffVisitor(TreeSnapshot snapshot, int count) {
+        this.snapshot = snapshot;
+        this.count = count;
+    }
+
+    @Override
+    public Dir enterDirectory(Dir parent, Path dir, BasicFileAttributes attrs) {
+        TreeSnapshot.Directory previous = snapshot.get(dir);
+        boolean isUnchanged = previous != null && previous.isCurrent(attrs);
+        if (isUnchanged) {
+            unchanged.increment();
+        }
+        return new Dir(dir, previous, isUnchanged, attrs.size());
+    }
+
+    @Override
+    public List<String> knownEntries(Dir dir) {
+        return dir.isUnchanged ? dir.previous.entries() : null;
+    }
+
+    @Override
+    public void visitFile(Dir dir, Path file, BasicFileAttributes attrs) {
+        if (dir == null) {
+            return;
+        }
+        if (attrs.isRegularFile()) {
+            dir.size += attrs.size();
+        } else if (attrs.isSymbolicLink()) {
+            try {
+                dir.size += Files.size(file);
+            } catch (IOException e) {
+                // a dangling link is mapped as unreadable
+            }
+        }
+    }
+
+    /**
+     * A directory past the depth limit is sized by its whole subtree, like it was mapped.
+     */
+    @Override
+    public void visitPruned(Dir dir, Path subdir, BasicFileAttributes attrs) {
+        dir.size += SubtreeSizeVisitor.sizeOf(subdir, attrs);
+    }
+
+    @Override
+    public void exitDirectory(Dir parent, Dir dir) {
+        parent.size += dir.size;
+        Growth growth = dir.growth();
+        if (0 < growth.growth()) {
+            heaps.get().offer(growth);
+        }
+    }
+
+    /**
+     * Returns the directories below the root that grew most, most first. Must only be called once the crawl is done.
+     */
+    public List<Growth> largestGrowth() {
+        BoundedHeap<Growth> merged = new BoundedHeap<>(count, BY_GROWTH);
+        allHeaps.forEach(merged::merge);
+        return merged.asList();
+    }
+
+    /**
+     * Returns the number of directories that weren't listed because they are unchanged since the snapshot.
+     */
+    public long unchanged() {
+        return unchanged.sum();
+    }
+
+    private BoundedHeap<Growth> newHeap() {
+        BoundedHeap<Growth> created = new BoundedHeap<>(count, BY_GROWTH);
+        allHeaps.add(created);
+        return created;
+    }
+}
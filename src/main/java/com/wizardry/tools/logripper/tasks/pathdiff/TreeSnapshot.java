@@ -0,0 +1,172 @@
+package com.wizardry.tools.logripper.tasks.pathdiff;
+
+import com.wizardry.tools.logripper.tasks.pathmapper.WrappedTreeNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The directories of a mapped tree as they were when it was mapped: their size, their modification time and
+ * the names of their entries. A later crawl of the tree compares its sizes against the snapshot's, and a
+ * directory whose inode and modification time are unchanged still has the same entries, so it isn't listed
+ * again and only its entries are stat'ed.
+ * <p>
+ * Snapshots are gzipped, the names of a log tree compress well, and written through a temporary file that is
+ * atomically moved into place.
+ */
+public final class TreeSnapshot {
+
+    private static final int MAGIC = 0x4c525453; // "LRTS"
+    /** A directory modified this close to its listing may change again within the same timestamp. */
+    private static final long RACY_NANOS = TimeUnit.SECONDS.toNanos(2);
+    /** The modification time of a directory that must be listed again, it never matches. */
+    private static final long UNKNOWN_MODIFIED = Long.MIN_VALUE;
+
+    /**
+     * A single directory of the snapshot.
+     *
+     * @param fileKey The file key (e.g. device and inode) of the directory, empty if the file system has none.
+     * @param modified The modification time of the directory in nanoseconds.
+     * @param size The size of the directory's subtree, as mapped.
+     * @param entries The names of the directory's entries.
+     */
+    public record Directory(String fileKey, long modified, long size, List<String> entries) {
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return modified == TreeSnapshot.modified(attributes) && fileKey.equals(TreeSnapshot.fileKey(attributes));
+        }
+    }
+
+    private final Path root;
+    private final int maxDepth;
+    private final Map<String, Directory> directories;
+
+    private TreeSnapshot(Path root, int maxDepth, Map<String, Directory> directories) {
+        this.root = root;
+        this.maxDepth = maxDepth;
+        this.directories = directories;
+    }
+
+    /**
+     * Writes the snapshot of a mapped tree.
+     *
+     * @param root The root of a tree mapped by the {@link com.wizardry.tools.logripper.tasks.pathmapper.PooledTreeWrapper}.
+     * @param maxDepth The depth limit the tree was mapped with, a later crawl has to use the same one.
+     * @param crawlStartMillis When the crawl started, directories modified since may have been listed before
+     *                         their last change and are listed again by the next crawl.
+     * @param file The file to write the snapshot to.
+     */
+    public static void save(WrappedTreeNode root, int maxDepth, long crawlStartMillis, Path file) throws IOException {
+        Path absoluteRoot = root.getPath().unwrap().toAbsolutePath().normalize();
+        long racyNanos = TimeUnit.MILLISECONDS.toNanos(crawlStartMillis) - RACY_NANOS;
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(temp), 1 << 16), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(absoluteRoot.toString());
+                out.writeInt(maxDepth);
+                write(out, root, absoluteRoot, racyNanos);
+                // a key can't be null, this ends the directories
+                out.writeBoolean(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void write(DataOutputStream out, WrappedTreeNode node, Path root, long racyNanos) throws IOException {
+        BasicFileAttributes attributes = node.getPath().attributes();
+        if (!node.isDir() || attributes == null) {
+            return;
+        }
+        long modified = modified(attributes);
+        List<WrappedTreeNode> children = List.copyOf(node.getChildren());
+        out.writeBoolean(true);
+        out.writeUTF(key(root, node.getPath().unwrap()));
+        out.writeUTF(fileKey(attributes));
+        out.writeLong(racyNanos <= modified ? UNKNOWN_MODIFIED : modified);
+        out.writeLong(node.getSize());
+        out.writeInt(children.size());
+        for (WrappedTreeNode child : children) {
+            out.writeUTF(child.getFileName());
+        }
+        for (WrappedTreeNode child : children) {
+            write(out, child, root, racyNanos);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #save}.
+     */
+    public static TreeSnapshot read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file), 1 << 16), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tree snapshot: " + file);
+            }
+            Path root = Path.of(in.readUTF());
+            int maxDepth = in.readInt();
+            Map<String, Directory> directories = new HashMap<>();
+            while (in.readBoolean()) {
+                String key = in.readUTF();
+                String fileKey = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                int count = in.readInt();
+                List<String> entries = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    entries.add(in.readUTF());
+                }
+                directories.put(key, new Directory(fileKey, modified, size, entries));
+            }
+            return new TreeSnapshot(root, maxDepth, directories);
+        }
+    }
+
+    /**
+     * Returns the absolute path of the snapshot's root.
+     */
+    public Path root() {
+        return root;
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the directory as it was when the snapshot was taken, or null if it didn't exist back then.
+     */
+    public Directory get(Path dir) {
+        return directories.get(key(root, dir));
+    }
+
+    private static String key(Path root, Path dir) {
+        return root.relativize(dir.toAbsolutePath().normalize()).toString();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+}
@@ -0,0 +1,287 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.decompress.DecompressRipper;
+import com.wizardry.tools.logripper.tasks.index.FileIndex;
+import com.wizardry.tools.logripper.util.ByteUtil;
+import com.wizardry.tools.logripper.util.compression.Compression;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit of work of a directory grep. Small files are batched together and greped one after the other on a
+ * single worker, read into one reused heap buffer instead of being memory mapped. A file that is too large
+ * for that gets a unit of its own and is split into byte range windows by a {@link MappedGrepTask}, which
+ * forks them into the same pool. Compressed files, detected from their magic bytes, are grepped while they
+ * are decompressed, unless their search index rules them out as a whole. With {@code --count} files are
+ * only counted, see {@link MappedCountTask}.
+ * The first read of a file doubles as its sniff: its head tells compressed and binary content apart before
+ * anything else is read, binary files are then skipped or only reported as matching, see {@link BinaryFiles}.
+ * Once the match limit is reached the rest of the batch is skipped. With {@code --resume} files are only
+ * grepped from their {@link ScanCheckpoints} checkpoint on.
+ */
+public class FileBatchGrepTask extends PooledRipperTask<List<WrappedPath>, Map<String, Integer>> {
+
+    /** Files up to this size are read into a heap buffer and batched. */
+    static final long SMALL_FILE_SIZE = 1L << 20; // 1 MiB
+    /** A batch is sealed once its files add up to this many bytes... */
+    static final long BATCH_BYTES = 8L << 20; // 8 MiB
+    /** ...or once it holds this many files, so that directories of empty files still spread out. */
+    static final int BATCH_FILES = 512;
+
+    /** A file modified this long ago isn't written anymore, its last line is complete even without a line feed. */
+    private static final long SETTLED_NANOS = TimeUnit.SECONDS.toNanos(2);
+    /** Returned instead of the matches of a file that was skipped, e.g. for being binary. */
+    private static final int SKIPPED = -1;
+
+    private final LogRipperConfig config;
+    private final LineScanner scanner;
+    private final MatchSink sink;
+    private ByteBuffer buffer;
+
+    public FileBatchGrepTask(List<WrappedPath> paths, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        super(paths);
+        this.config = config;
+        this.scanner = scanner;
+        this.sink = sink;
+    }
+
+    @Override
+    protected Map<String, Integer> compute() {
+        Map<String, Integer> matches = new HashMap<>();
+        for (WrappedPath path : input) {
+            if (scanner.limit().isReached()) {
+                break;
+            }
+            try {
+                int count = scanner.checkpoints().isEnabled() ? grepResumed(path) : grep(path);
+                if (count == SKIPPED) {
+                    matches.put(path.toAbsolutePath().toString(), 0);
+                    scanner.summary().fileSkipped();
+                } else {
+                    matches.put(path.toAbsolutePath().toString(), count);
+                    scanner.summary().fileGrepped(count);
+                }
+            } catch (IOException | RuntimeException e) {
+                scanner.summary().fileFailed(path, e);
+            }
+        }
+        buffer = null;
+        return matches;
+    }
+
+    private int grep(WrappedPath path) throws IOException {
+        try (FileChannel channel = path.openChannel()) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            boolean isSmall = size <= SMALL_FILE_SIZE;
+            if (isSmall && scanner.index().canSkip(scanner.index().lookup(path, channel), size)) {
+                return 0;
+            }
+            // small files are read whole, large ones only up to their head, either read sniffs the content
+            ByteBuffer bytes = read(channel, (int) (isSmall ? size : Math.min(size, BinaryFiles.SNIFF_LENGTH)));
+            Compression compression = Compression.detect(bytes);
+            if (compression != Compression.NONE) {
+                if (!isSmall && scanner.index().canSkip(scanner.index().lookup(path, channel), size)) {
+                    return 0;
+                }
+                return grepCompressed(path);
+            }
+            if (!isSmall) {
+                // runs on this worker, its windows are forked into the shared pool
+                return grepMapped(path, bytes);
+            }
+            BinaryFiles mode = binaryMode(config, bytes);
+            if (mode == BinaryFiles.SKIP) {
+                return SKIPPED;
+            }
+            if (mode == BinaryFiles.MATCH_ONLY) {
+                return reportBinary(path.toAbsolutePath(), 0 < scanner.withLimit(new MatchLimit(1, new AtomicInteger())).count(bytes, 1));
+            }
+            if (config.isCountOnly()) {
+                return scanner.limit().claim(scanner.count(bytes, scanner.limit().cap(Integer.MAX_VALUE)));
+            }
+            MatchEmitter emitter = new MatchEmitter(path.toAbsolutePath(), channel, config, sink, scanner.limit());
+            scanner.scan(bytes, 0, 0, 0, emitter, Integer.MAX_VALUE, List.of());
+            return emitter.finish();
+        }
+    }
+
+    /**
+     * Greps a file from its checkpoint on, up to its last complete line, and records the next checkpoint. The
+     * line that is still being written is grepped by the next run. Unchanged files aren't read at all, their
+     * matches are the ones of the checkpoint. Compressed and binary files are grepped as a whole once changed.
+     *
+     * @return The matches of the whole file, including the ones before the checkpoint.
+     */
+    private int grepResumed(WrappedPath path) throws IOException {
+        ScanCheckpoints checkpoints = scanner.checkpoints();
+        Path file = path.toAbsolutePath();
+        BasicFileAttributes attrs = path.attributes() != null
+                ? path.attributes()
+                : Files.readAttributes(path.unwrap(), BasicFileAttributes.class);
+        try (FileChannel channel = path.openChannel()) {
+            long size = channel.size();
+            ScanCheckpoints.Checkpoint checkpoint = checkpoints.lookup(file, attrs, channel);
+            if (checkpoint != null && checkpoint.isUnchanged(attrs, size)) {
+                checkpoints.keep(file, checkpoint);
+                return scanner.limit().claim(checkpoint.matches());
+            }
+            ByteBuffer head = read(channel, 0, (int) Math.min(size, BinaryFiles.SNIFF_LENGTH));
+            if (Compression.detect(head) != Compression.NONE || binaryMode(config, head) != BinaryFiles.TEXT) {
+                int matches = grep(path);
+                if (matches != SKIPPED && !scanner.limit().isReached()) {
+                    checkpoints.record(file, attrs, channel, size, -1, -1, matches);
+                }
+                return matches;
+            }
+
+            long from = checkpoint == null ? 0 : checkpoint.offset();
+            int lineCount = checkpoint == null ? 0 : checkpoint.lineCount();
+            int previous = checkpoint == null ? 0 : checkpoint.matches();
+            if (lineCount < 0 && !config.isCountOnly()) {
+                // the checkpoint of a count, its lines are only counted once they are numbered
+                lineCount = ByteUtil.countLineBreaks(channel, from);
+            }
+            long to = settledEnd(channel, from, size, attrs);
+            int matches = 0;
+            if (from < to && to - from <= SMALL_FILE_SIZE) {
+                ByteBuffer bytes = read(channel, from, (int) (to - from));
+                if (config.isCountOnly()) {
+                    matches = scanner.limit().claim(scanner.count(bytes, scanner.limit().cap(Integer.MAX_VALUE)));
+                    lineCount = -1;
+                } else {
+                    MatchEmitter emitter = new MatchEmitter(file, channel, config, sink, scanner.limit());
+                    lineCount = scanner.scan(bytes, from, 0, lineCount, emitter, Integer.MAX_VALUE, List.of()).lineCount();
+                    matches = emitter.finish();
+                }
+            } else if (from < to && config.isCountOnly()) {
+                matches = new MappedCountTask(path, scanner, from, to).invoke();
+                lineCount = -1;
+            } else if (from < to) {
+                MappedGrepTask task = new MappedGrepTask(path, file, config, scanner, sink, from, to, lineCount);
+                matches = task.invoke();
+                lineCount = task.lineCount();
+            }
+            if (!scanner.limit().isReached()) {
+                checkpoints.record(file, attrs, channel, size, to, lineCount, previous + matches);
+            }
+            return scanner.limit().claim(previous) + matches;
+        }
+    }
+
+    /**
+     * Returns the end of the last complete line after the given offset: right after the last line feed, or the
+     * end of a file that is no longer written to.
+     */
+    private static long settledEnd(FileChannel channel, long from, long size, BasicFileAttributes attrs) throws IOException {
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (size <= from || modified < TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - SETTLED_NANOS) {
+            return size;
+        }
+        ByteBuffer probe = ByteBuffer.allocate(8 << 10);
+        for (long end = size; from < end; ) {
+            long start = Math.max(from, end - probe.capacity());
+            probe.clear().limit((int) (end - start));
+            while (probe.hasRemaining() && 0 <= channel.read(probe, start + probe.position())) {
+                // keep reading until the probe is full
+            }
+            for (int i = probe.position() - 1; 0 <= i; i--) {
+                if (probe.get(i) == ByteUtil.LF) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return from;
+    }
+
+    /**
+     * Greps a compressed file as it is decompressed, see {@link StreamScanner}.
+     */
+    private int grepCompressed(WrappedPath path) throws IOException {
+        StreamScanner stream = new StreamScanner(path.toAbsolutePath(), config, scanner, sink);
+        new DecompressRipper(stream).rip(path);
+        int matches = stream.finish();
+        if (stream.mode() == BinaryFiles.SKIP) {
+            return SKIPPED;
+        }
+        return stream.mode() == BinaryFiles.MATCH_ONLY ? reportBinary(path.toAbsolutePath(), 0 < matches) : matches;
+    }
+
+    /**
+     * Greps a file by memory mapped windows, its head was already read to sniff it.
+     */
+    private int grepMapped(WrappedPath path, ByteBuffer head) {
+        BinaryFiles mode = binaryMode(config, head);
+        if (mode == BinaryFiles.SKIP) {
+            return SKIPPED;
+        }
+        if (mode == BinaryFiles.MATCH_ONLY) {
+            // stops at the first match, which doesn't count towards the run's limit
+            LineScanner probe = scanner.withLimit(new MatchLimit(1, new AtomicInteger()));
+            return reportBinary(path.toAbsolutePath(), 0 < new MappedCountTask(path, probe).invoke());
+        }
+        return config.isCountOnly()
+                ? new MappedCountTask(path, scanner).invoke()
+                : new MappedGrepTask(path, config, scanner, sink).invoke();
+    }
+
+    /**
+     * Returns the mode the file is grepped with, which is {@link BinaryFiles#TEXT} unless its head is binary.
+     * Counting a binary file costs the same as counting any other, so only skipping applies to {@code --count}.
+     */
+    static BinaryFiles binaryMode(LogRipperConfig config, ByteBuffer head) {
+        BinaryFiles mode = config.binaryFiles();
+        if (mode == BinaryFiles.TEXT || !BinaryFiles.isBinary(head)) {
+            return BinaryFiles.TEXT;
+        }
+        return config.isCountOnly() && mode == BinaryFiles.MATCH_ONLY ? BinaryFiles.TEXT : mode;
+    }
+
+    /**
+     * Reports a matching binary file with a single line, like grep does, which counts as one match.
+     */
+    private int reportBinary(Path reportedPath, boolean isMatching) {
+        if (!isMatching || !scanner.limit().tryClaim()) {
+            return 0;
+        }
+        sink.emit(reportedPath, List.of(Match.of("Binary file " + reportedPath + " matches", 0)));
+        return 1;
+    }
+
+    private ByteBuffer read(FileChannel channel, int size) throws IOException {
+        return read(channel, 0, size);
+    }
+
+    private ByteBuffer read(FileChannel channel, long offset, int size) throws IOException {
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, 1 << 16));
+        }
+        buffer.clear().limit(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break; // the file shrank since its size was taken
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -2,124 +2,104 @@ package com.wizardry.tools.logripper.tasks.pathgrep;
 
 import com.wizardry.tools.logripper.config.LogRipperConfig;
 import com.wizardry.tools.logripper.tasks.Ripper;
-import com.wizardry.tools.logripper.util.Timestamp;
-import com.wizardry.tools.logripper.util.functions.LineReader;
-import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.output.StreamingMatchSink;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
-import java.lang.management.ManagementFactory;
-import java.lang.management.MemoryMXBean;
-import java.util.concurrent.*;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.BiConsumer;
-import java.util.function.Consumer;
 
 
-public class FileGrepRipper implements Ripper<WrappedPath, ConcurrentLinkedQueue<Match>> {
+/**
+ * Greps a single file and streams its matches to a {@link MatchSink}. The result is the number of matches
+ * found in the file; the matches themselves are never collected.
+ */
+public class FileGrepRipper implements Ripper<WrappedPath, Integer> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
     private final LogRipperConfig config;
     private final boolean isDebug;
-    private final boolean isVerbose;
-    private final boolean isSilent;
-    private final ConcurrentLinkedQueue<String> messages;
-    private final ConcurrentLinkedQueue<String> debugMessages;
 
     private final AtomicInteger totalMatches;
     private final AtomicInteger matchesInThisFile;
+    private final MatchSink sink;
     private final boolean initialized;
     private final ReentrantLock lock = new ReentrantLock();
 
+    /**
+     * Creates a ripper that writes the matches to its own output sink, closed once the file is ripped.
+     */
     public FileGrepRipper(LogRipperConfig config, AtomicInteger totalMatches) {
+        this(config, totalMatches, null);
+    }
+
+    /**
+     * Creates a ripper that writes the matches to a sink shared with other rippers, e.g. of a directory grep.
+     */
+    public FileGrepRipper(LogRipperConfig config, AtomicInteger totalMatches, MatchSink sink) {
         this.config = config;
         this.isDebug = config.isDebug();
-        this.isVerbose = config.isVerbose();
-        this.isSilent = config.isSilent();
-        this.messages = new ConcurrentLinkedQueue<>();
-        this.debugMessages = new ConcurrentLinkedQueue<>();
         this.totalMatches = totalMatches;
-        this.matchesInThisFile = new AtomicInteger(totalMatches.get());
+        this.matchesInThisFile = new AtomicInteger(0);
+        this.sink = sink;
 
         if (isDebug) LOGGER.debug("New FileGrepRipper");
         this.initialized = true;
     }
 
     @Override
-    public ConcurrentLinkedQueue<Match> rip(WrappedPath path) {
+    public Integer rip(WrappedPath path) {
         if (!initialized) {
             throw new IllegalStateException("FileGrepRipperTwo not initialized.");
         }
         lock.lock();
-        ConcurrentLinkedQueue<Match> matches = new ConcurrentLinkedQueue<>();
         try {
             if (isDebug) LOGGER.debug("Ripping File: " + path.toAbsolutePath());
 
-            runAndReport((it, itMatches) -> {
-                LineReader lineReader = LineReader.of(config, matchesInThisFile);
-                try {
-                    itMatches.addAll(it.readLines(lineReader));
-                } catch (Exception e) {
-                    LOGGER.error("Error occurred while reading path: "+e);
+            LineScanner scanner = new LineScanner(config.getLineMatcher(), config, new MatchLimit(config.matchLimit(), totalMatches));
+            if (sink != null) {
+                grep(path, scanner, sink);
+            } else {
+                try (MatchSink owned = StreamingMatchSink.of(config, false)) {
+                    grep(path, scanner, owned);
                 }
-            }, path, matches);
+            }
+            // an owned sink is closed by now, so the result follows the last match
+            scanner.summary().report("[" + matchesInThisFile.get() + "] matches in " + path);
         } finally {
             lock.unlock();
         }
-        return matches;
+        return matchesInThisFile.get();
     }
 
-    private synchronized void runAndReport(BiConsumer<WrappedPath,ConcurrentLinkedQueue<Match>> consumer, WrappedPath path, ConcurrentLinkedQueue<Match> matches)  {
-        Timestamp startTime = Timestamp.now();
-        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
-        if(isDebug && isVerbose) {
-            debugMessages.add("Initial memory: %.2f GB".formatted((double)memoryMXBean.getHeapMemoryUsage().getInit() /1073741824));
-            debugMessages.add("Max memory: %.2f GB".formatted((double)memoryMXBean.getHeapMemoryUsage().getMax() /1073741824));
-            debugMessages.add("Heap Memory before rip: %.2f GB".formatted((double)memoryMXBean.getHeapMemoryUsage().getUsed() /1073741824));
-            debugMessages.add("Before Committed memory: %.2f GB".formatted((double)memoryMXBean.getHeapMemoryUsage().getCommitted() /1073741824));
-        }
+    /**
+     * Greps the file as a unit of its own, the same way a directory grep does, so that compressed files and
+     * {@code --count} are handled alike. When already running on a ForkJoin worker, the work is forked into
+     * the current pool, otherwise into the shared work pool.
+     */
+    private void grep(WrappedPath path, LineScanner scanner, MatchSink sink) {
+        FileBatchGrepTask task = new FileBatchGrepTask(List.of(path), config, scanner, sink);
         try {
-            consumer.accept(path, matches);
-        } catch (Exception e) {
-            messages.add("Exception running and reporting: " + e);
-        }
-
-        if(isDebug) {
-            debugMessages.add("Finished running in [" + startTime.toMillis() + "] milliseconds.");
-            if(isVerbose) {
-                debugMessages.add("After Used memory: %.2f GB".formatted((double) memoryMXBean.getHeapMemoryUsage().getUsed() / 1073741824));
-                debugMessages.add("After Committed memory: %.2f GB".formatted((double) memoryMXBean.getHeapMemoryUsage().getCommitted() / 1073741824));
-            }
-            debugMessages.add("------------------------------------------------------------------------");
-        }
-
-        reportMatches(matches);
-
-        for (String message : messages) {
-            LOGGER.info(message);
-        }
-
-        for (String message : debugMessages) {
-            LOGGER.debug(message);
+            Map<String, Integer> matches = ForkJoinTask.inForkJoinPool()
+                    ? task.invoke()
+                    : SystemUtil.getWorkPool().invoke(task);
+            matchesInThisFile.set(matches.values().stream().mapToInt(Integer::intValue).sum());
+        } catch (RuntimeException e) {
+            scanner.summary().fileFailed(path, e);
         }
-        LOGGER.info("[" + matchesInThisFile.get() + "] matches in " + path);
-        totalMatches.addAndGet(matchesInThisFile.get());
-    }
-
-    private void reportMatches(ConcurrentLinkedQueue<Match> matches) {
-        if (config.isCountOnly() || (isSilent && !config.isNumbered())) {
-            return; // don't announce matches
-        }
-        announceMatches(isDebug).accept(matches);
-    }
-
-    private static Consumer<ConcurrentLinkedQueue<Match>> announceMatches(boolean isDebug) {
-        if (isDebug) {
-            return (matches) -> matches.forEach(match -> match.print(LOGGER));
+        try {
+            scanner.checkpoints().save(!scanner.limit().isReached());
+        } catch (IOException e) {
+            LOGGER.warn("Error occurred while saving the checkpoints of path " + path + ": " + e.getMessage());
         }
-        return (matches) -> matches.forEach(match -> match.print(System.out));
     }
 }
@@ -0,0 +1,61 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scans the followed files of a single {@link LogFollower} round, one subtask per file. A file is only ever
+ * scanned by one task at a time, rounds don't overlap. The result is the number of bytes scanned.
+ */
+final class FollowTask extends PooledRipperTask<List<FollowedFile>, Long> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private static final int BUFFER_SIZE = 1 << 20; // 1 MiB
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private final LogRipperConfig config;
+    private final LineScanner scanner;
+    private final MatchSink sink;
+
+    FollowTask(List<FollowedFile> files, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        super(files);
+        this.config = config;
+        this.scanner = scanner;
+        this.sink = sink;
+    }
+
+    @Override
+    protected Long compute() {
+        if (input.size() == 1) {
+            FollowedFile file = input.get(0);
+            try {
+                return file.scan(scanner, config, sink, BUFFERS.get());
+            } catch (IOException e) {
+                // a single unreadable file must not end the round, it's retried with the next one
+                LOGGER.warn("Error while following path: " + file.path() + ": " + e.getMessage());
+                file.close();
+                return 0L;
+            }
+        }
+        List<FollowTask> subTasks = new ArrayList<>(input.size());
+        for (FollowedFile file : input) {
+            subTasks.add(new FollowTask(List.of(file), config, scanner, sink));
+        }
+        invokeAll(subTasks);
+
+        long scanned = 0;
+        for (FollowTask task : subTasks) {
+            scanned += task.join();
+        }
+        return scanned;
+    }
+}
@@ -0,0 +1,258 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.ByteUtil;
+import com.wizardry.tools.logripper.util.compression.Compression;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A file followed by a {@link LogFollower}: the offset up to which it was scanned and the file key it had then.
+ * Every scan stats the path first. Once the path names another file, the file was rotated by a rename, so the
+ * rest of the old file is read through the channel that is still open on it before the new one is followed from
+ * its start. A file that got shorter than the offset was truncated and is scanned from its start again.
+ * <p>
+ * Only complete lines are scanned, a line that is still being written is picked up once its line feed is. The
+ * channel is only opened once the file grows, so a tree of mostly idle logs holds few descriptors. Compressed
+ * files are never followed, and binary ones only with {@link BinaryFiles#TEXT}.
+ */
+final class FollowedFile {
+
+    /** The number of bytes searched backwards for the last line feed of a file followed from its end. */
+    private static final int TAIL_LENGTH = 64 << 10;
+
+    private final Path path;
+    private Object fileKey;
+    private FileChannel channel;
+    private long offset;
+    private int lineCount;
+    private boolean sniffed;
+    private boolean skipped;
+    private boolean gone;
+    private FollowedFile detached;
+
+    private FollowedFile(Path path, Object fileKey, long offset, int lineCount) {
+        this.path = path;
+        this.fileKey = fileKey;
+        this.offset = offset;
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * Follows a file from its start, e.g. one that was created while following.
+     */
+    static FollowedFile fromStart(Path path, BasicFileAttributes attrs) {
+        return new FollowedFile(path, attrs.fileKey(), 0, 0);
+    }
+
+    /**
+     * Follows a file from the end of its last complete line, so that a line being written isn't cut in half.
+     * The lines before are only counted when they are numbered.
+     */
+    static FollowedFile fromEnd(Path path, BasicFileAttributes attrs, LogRipperConfig config) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = read(channel, 0, ByteBuffer.allocate((int) Math.min(size, BinaryFiles.SNIFF_LENGTH)));
+            FollowedFile file = new FollowedFile(path, attrs.fileKey(), size, 0);
+            file.sniffed = true;
+            file.skipped = isSkipped(head, config);
+            if (file.skipped || size == 0) {
+                return file;
+            }
+            long tailStart = Math.max(0, size - TAIL_LENGTH);
+            ByteBuffer tail = read(channel, tailStart, ByteBuffer.allocate((int) (size - tailStart)));
+            int lineFeed = lastLineFeed(tail);
+            if (0 <= lineFeed) {
+                file.offset = tailStart + lineFeed + 1;
+            } else if (tailStart == 0) {
+                file.offset = 0;
+            }
+            if (config.isNumbered()) {
+                file.lineCount = ByteUtil.countLineBreaks(channel, file.offset);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * Follows the file this one was renamed to. While the channel is open the rest is read under the old name
+     * and the new name follows from the end, otherwise the new name takes over at the offset.
+     */
+    FollowedFile renamedTo(Path target, BasicFileAttributes attrs, LogRipperConfig config) throws IOException {
+        return channel != null ? fromEnd(target, attrs, config) : renamedTo(target);
+    }
+
+    private FollowedFile renamedTo(Path target) {
+        FollowedFile file = new FollowedFile(target, fileKey, offset, lineCount);
+        file.sniffed = sniffed;
+        file.skipped = skipped;
+        return file;
+    }
+
+    /**
+     * Opens the channel right away, so that the lines appended right before a rename are read as well.
+     */
+    void open() throws IOException {
+        if (channel == null && !skipped) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    Object fileKey() {
+        return fileKey;
+    }
+
+    /**
+     * Returns true once the path was found missing, after the rest of the file was scanned.
+     */
+    boolean isGone() {
+        return gone;
+    }
+
+    /**
+     * Returns the state of the old file once the path named another file before the old one was ever opened,
+     * so that it can be taken over under its new name. Returns null otherwise, and after the first call.
+     */
+    FollowedFile takeDetached() {
+        FollowedFile file = detached;
+        detached = null;
+        return file;
+    }
+
+    /**
+     * Scans whatever was appended since the last scan, handing the matches to the sink.
+     *
+     * @param buffer The buffer to read into, its capacity is the most that is scanned at once.
+     * @return The number of bytes scanned.
+     */
+    long scan(LineScanner scanner, LogRipperConfig config, MatchSink sink, ByteBuffer buffer) throws IOException {
+        BasicFileAttributes attrs = attributes(path);
+        gone = attrs == null;
+        long scanned = 0;
+        if (attrs == null || !Objects.equals(fileKey, attrs.fileKey())) {
+            if (channel != null) {
+                // rotated by a rename, or deleted: the rest of the old file is still readable
+                scanned += drain(scanner, config, sink, buffer);
+                close();
+            } else if (fileKey != null) {
+                detached = renamedTo(path);
+            }
+            if (attrs == null) {
+                return scanned;
+            }
+            fileKey = attrs.fileKey();
+            offset = 0;
+            lineCount = 0;
+            sniffed = false;
+            skipped = false;
+        }
+        if (attrs.size() < offset) {
+            // truncated in place
+            offset = 0;
+            lineCount = 0;
+        }
+        if (attrs.size() == offset) {
+            return scanned;
+        }
+        if (!sniffed) {
+            try (FileChannel head = FileChannel.open(path, StandardOpenOption.READ)) {
+                skipped = isSkipped(read(head, 0, ByteBuffer.allocate((int) Math.min(attrs.size(), BinaryFiles.SNIFF_LENGTH))), config);
+            }
+            sniffed = true;
+        }
+        if (skipped) {
+            offset = attrs.size();
+            return scanned;
+        }
+        open();
+        return scanned + drain(scanner, config, sink, buffer);
+    }
+
+    void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing was written
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Scans the complete lines between the offset and the current end of the channel. A line longer than the
+     * buffer is scanned in pieces.
+     */
+    private long drain(LineScanner scanner, LogRipperConfig config, MatchSink sink, ByteBuffer buffer) throws IOException {
+        long start = offset;
+        long end = channel.size();
+        MatchEmitter emitter = new MatchEmitter(path, channel, config, sink, scanner.limit());
+        try {
+            while (offset < end && !scanner.limit().isReached()) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - offset));
+                read(channel, offset, buffer);
+                int lineFeed = lastLineFeed(buffer);
+                if (lineFeed < 0 && buffer.limit() < buffer.capacity()) {
+                    break; // the line is still being written
+                }
+                if (0 <= lineFeed) {
+                    buffer.limit(lineFeed + 1);
+                }
+                lineCount = scanner.scan(buffer, offset, 0, lineCount, emitter, Integer.MAX_VALUE, List.of()).lineCount();
+                offset += buffer.limit();
+            }
+        } finally {
+            emitter.finish();
+        }
+        return offset - start;
+    }
+
+    private static boolean isSkipped(ByteBuffer head, LogRipperConfig config) {
+        return Compression.detect(head) != Compression.NONE
+                || (config.binaryFiles() != BinaryFiles.TEXT && BinaryFiles.isBinary(head));
+    }
+
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the buffer up to its limit from the given file offset, or until the file ends, and flips it.
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                break; // the file shrank since its size was taken
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int lastLineFeed(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; 0 <= i; i--) {
+            if (buffer.get(i) == ByteUtil.LF) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,103 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects what happened to the files of a grep run, so that it's reported once when the run is done instead
+ * of a log line per file: the number of files grepped, matching, skipped and failed, and a few of the failures.
+ * The result of the run goes to the {@link ResultOutput}, everything else to the logger.
+ */
+public final class GrepSummary {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    /** The number of failures that are listed, the others are only counted. */
+    static final int MAX_LISTED_FAILURES = 10;
+
+    private final LogRipperConfig config;
+    private final Timestamp start = Timestamp.now();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder matchingFiles = new LongAdder();
+    private final LongAdder skippedFiles = new LongAdder();
+    private final AtomicInteger failedFiles = new AtomicInteger();
+    private final Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+    public GrepSummary(LogRipperConfig config) {
+        this.config = config;
+    }
+
+    public void fileGrepped(int matches) {
+        files.increment();
+        if (0 < matches) {
+            matchingFiles.increment();
+        }
+    }
+
+    /**
+     * Counts a file that was left out, e.g. by a filter or for being binary.
+     */
+    public void fileSkipped() {
+        skippedFiles.increment();
+    }
+
+    public void fileFailed(Object path, Exception e) {
+        if (failedFiles.incrementAndGet() <= MAX_LISTED_FAILURES) {
+            failures.add(path + ": " + e);
+        }
+    }
+
+    public long files() {
+        return files.sum();
+    }
+
+    public long matchingFiles() {
+        return matchingFiles.sum();
+    }
+
+    public long skippedFiles() {
+        return skippedFiles.sum();
+    }
+
+    public int failedFiles() {
+        return failedFiles.get();
+    }
+
+    public List<String> failures() {
+        return List.copyOf(failures);
+    }
+
+    /**
+     * Writes the result of the run, then logs the failures and, if verbose, the statistics of the run.
+     */
+    public void report(String result) {
+        PrintStream out = ResultOutput.of(config);
+        out.println(result);
+        out.flush();
+
+        if (0 < failedFiles()) {
+            LOGGER.warn("Error occurred while grepping [" + failedFiles() + "] files, e.g. " + failures());
+        }
+        if (config.isVerbose() || config.isDebug()) {
+            LOGGER.info("Grepped [" + files() + "] files in [" + start.toMillis() + "] milliseconds, [" + matchingFiles()
+                    + "] with matches, [" + skippedFiles() + "] skipped");
+        }
+        if (config.isDebug() && config.isVerbose()) {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            LOGGER.debug("Heap memory used: %.2f GB, committed: %.2f GB, max: %.2f GB".formatted(
+                    (double) heap.getUsed() / 1073741824, (double) heap.getCommitted() / 1073741824, (double) heap.getMax() / 1073741824));
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.index.SearchIndex;
+import com.wizardry.tools.logripper.util.ByteUtil;
+import com.wizardry.tools.logripper.util.matching.LineMatcher;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Scans a buffer of raw log bytes for matching lines. The {@link LineMatcher} decides how far the scan may
+ * skip ahead; only matching lines are ever copied out and decoded into Strings. Their bytes and the span of
+ * the hit travel along with the {@link Match}, so that encoders don't have to search the line again. Shared
+ * by the memory mapped windows of large files and the heap buffers small files are read into.
+ * <p>
+ * Buffers are scanned in line aligned slices of {@link #SLICE_SIZE} bytes, and the {@link MatchLimit} is
+ * polled between slices and matches, so a scan stops within a slice once another worker reached the limit.
+ */
+public final class LineScanner {
+
+    static final int SLICE_SIZE = 1 << 20; // 1 MiB
+
+    private final LineMatcher matcher;
+    private final MatchLimit limit;
+    private final SearchIndex index;
+    private final ScanCheckpoints checkpoints;
+    private final GrepSummary summary;
+    private final boolean numbered;
+
+    public LineScanner(LineMatcher matcher, LogRipperConfig config, MatchLimit limit) {
+        this(matcher, config, limit, config.getSearchIndex());
+    }
+
+    public LineScanner(LineMatcher matcher, LogRipperConfig config, MatchLimit limit, SearchIndex index) {
+        this(matcher, limit, index, config.getCheckpoints(), new GrepSummary(config), config.isNumbered());
+    }
+
+    private LineScanner(LineMatcher matcher, MatchLimit limit, SearchIndex index, ScanCheckpoints checkpoints, GrepSummary summary, boolean numbered) {
+        this.matcher = matcher;
+        this.limit = limit;
+        this.index = index;
+        this.checkpoints = checkpoints;
+        this.summary = summary;
+        this.numbered = numbered;
+    }
+
+    public MatchLimit limit() {
+        return limit;
+    }
+
+    /**
+     * Returns a scanner that shares everything with this one but the limit, e.g. to find out if a file
+     * matches at all without counting towards the run's limit.
+     */
+    public LineScanner withLimit(MatchLimit limit) {
+        return new LineScanner(matcher, limit, index, checkpoints, summary, numbered);
+    }
+
+    /**
+     * Returns the search index that rules out files and windows before they are scanned.
+     */
+    public SearchIndex index() {
+        return index;
+    }
+
+    /**
+     * Returns the checkpoints that files are resumed from with {@code --resume}.
+     */
+    public ScanCheckpoints checkpoints() {
+        return checkpoints;
+    }
+
+    /**
+     * Returns the summary the files of the run are counted in.
+     */
+    public GrepSummary summary() {
+        return summary;
+    }
+
+    /**
+     * The outcome of scanning (part of) a buffer.
+     *
+     * @param buffer The scanned buffer, kept so that a partial scan can be resumed.
+     * @param lineCount The number of lines that were scanned within the buffer.
+     * @param matches The buffered matches in order, numbered relative to the start of the buffer.
+     * @param resumeAt The buffer index at which scanning has to be resumed, or -1 if the buffer is done.
+     * @param truncated True if the scan stopped early because the match limit was reached, the line count
+     *                  is incomplete then.
+     */
+    public record Result(ByteBuffer buffer, int lineCount, List<Match> matches, int resumeAt, boolean truncated) {
+
+        /**
+         * The result of a window the search index ruled out, which only accounts for its lines.
+         */
+        public static Result skipped(int lineCount) {
+            return new Result(null, lineCount, List.of(), -1, false);
+        }
+    }
+
+    /**
+     * Scans the buffer from the given position up to its limit.
+     *
+     * @param buffer The bytes to scan, starting at a line boundary.
+     * @param offset The file offset of index 0 of the buffer.
+     * @param position The index to start scanning at.
+     * @param lineCount The number of lines already scanned before the position.
+     * @param consumer The consumer of the matches.
+     * @param maxMatches The number of matches after which the scan stops, to be resumed later on.
+     * @param matches The list the consumer collects into, handed back with the result.
+     */
+    public Result scan(ByteBuffer buffer, long offset, int position, int lineCount, Consumer<Match> consumer, int maxMatches, List<Match> matches) {
+        int found = 0;
+        int end = buffer.limit();
+
+        while (position < end) {
+            if (limit.isReached()) {
+                return new Result(buffer, lineCount, matches, -1, true);
+            }
+            if (maxMatches <= found) {
+                return new Result(buffer, lineCount, matches, position, false);
+            }
+            int sliceEnd = sliceEnd(buffer, position, end);
+            int candidate = matcher.nextCandidate(buffer, position, sliceEnd);
+            if (candidate < 0) {
+                lineCount += ByteUtil.countLines(buffer, position, sliceEnd);
+                position = sliceEnd;
+                continue;
+            }
+            int lineStart = ByteUtil.lineStart(buffer, position, candidate);
+            lineCount += ByteUtil.countLineBreaks(buffer, position, lineStart) + 1;
+            int lineEnd = ByteUtil.lineEnd(buffer, candidate, end);
+            int contentEnd = ByteUtil.contentEnd(buffer, lineStart, lineEnd);
+
+            long hit = matcher.hit(buffer, lineStart, contentEnd);
+            if (0 <= hit) {
+                // context and the limit are applied once the match is written, in file order
+                consumer.accept(Match.of(copy(buffer, lineStart, contentEnd), LineMatcher.spanStart(hit), LineMatcher.spanEnd(hit),
+                        lineCount, numbered, offset + lineStart, matcher.hits(buffer, lineStart, contentEnd)));
+                found++;
+            }
+            position = lineEnd + 1;
+        }
+        return new Result(buffer, lineCount, matches, -1, false);
+    }
+
+    /**
+     * Counts the matching lines of the whole buffer without numbering or decoding them. Nothing is allocated
+     * and nothing is claimed from the limit, that's up to the caller once the count is done.
+     *
+     * @param buffer The bytes to count in, starting at a line boundary.
+     * @param maxMatches The number of matches after which counting stops.
+     * @return The number of matching lines.
+     */
+    public int count(ByteBuffer buffer, int maxMatches) {
+        int found = 0;
+        int position = 0;
+        int end = buffer.limit();
+
+        while (position < end && found < maxMatches && !limit.isReached()) {
+            int sliceEnd = sliceEnd(buffer, position, end);
+            int candidate = matcher.nextCandidate(buffer, position, sliceEnd);
+            if (candidate < 0) {
+                position = sliceEnd;
+                continue;
+            }
+            int lineStart = ByteUtil.lineStart(buffer, position, candidate);
+            int lineEnd = ByteUtil.lineEnd(buffer, candidate, end);
+            if (matcher.matches(buffer, lineStart, ByteUtil.contentEnd(buffer, lineStart, lineEnd))) {
+                found++;
+            }
+            position = lineEnd + 1;
+        }
+        return found;
+    }
+
+    /**
+     * Returns the end of the slice starting at the given position: just past the first line feed at least
+     * {@link #SLICE_SIZE} bytes further, so that no line is ever split between slices.
+     */
+    private static int sliceEnd(ByteBuffer buffer, int position, int end) {
+        if (end - position <= SLICE_SIZE) {
+            return end;
+        }
+        int lineFeed = ByteUtil.indexOf(buffer, ByteUtil.LF, position + SLICE_SIZE, end);
+        return lineFeed < 0 ? end : lineFeed + 1;
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return bytes;
+    }
+}
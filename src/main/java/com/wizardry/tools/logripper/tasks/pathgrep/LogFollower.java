@@ -0,0 +1,308 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.Ripper;
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.output.StreamingMatchSink;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Follows a file or every file of a directory tree, like {@code tail -F} piped into a grep: only the bytes
+ * appended since the last round are scanned, by the same {@link LineScanner} and sink a grep uses.
+ * <p>
+ * A single thread waits on a {@link WatchService} for the directories of the tree. Its events only tell which
+ * files to look at, the files themselves are stat'ed, see {@link FollowedFile}. Only the files of directories
+ * that couldn't be watched are stat'ed every poll interval, which doubles while nothing is appended, from
+ * {@value #MIN_INTERVAL_MILLIS} up to {@value #MAX_INTERVAL_MILLIS} milliseconds. Every followed file is stat'ed
+ * after an overflow of the service, and else once every {@value #SWEEP_INTERVAL_MILLIS} milliseconds, as events
+ * may be lost and not every file system reports them, e.g. network mounts. The files of a round are scanned in
+ * parallel on the shared work pool, so a tree of any size is followed by the watcher thread and the pool's fixed
+ * set of workers.
+ * <p>
+ * Following stops once the match limit is reached or {@link #stop()} is called.
+ */
+public class LogFollower implements Ripper<WrappedPath, Integer> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    static final long MIN_INTERVAL_MILLIS = 100;
+    static final long MAX_INTERVAL_MILLIS = 2000;
+    static final long SWEEP_INTERVAL_MILLIS = 30_000;
+
+    private final LogRipperConfig config;
+    private final AtomicInteger totalMatches;
+    private final LineScanner scanner;
+    private final Map<Path, FollowedFile> files = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    private final Set<Path> dirty = ConcurrentHashMap.newKeySet();
+    // directories that failed to register, their files are polled
+    private final Set<Path> unwatched = ConcurrentHashMap.newKeySet();
+    // files renamed before they were opened, by their file key, until the next sweep
+    private final Map<Object, FollowedFile> detached = new ConcurrentHashMap<>();
+    private Path root;
+    private boolean isSingleFile;
+    private WatchService watcher;
+    private MatchSink sink;
+    private long interval = MIN_INTERVAL_MILLIS;
+    private long lastSweep;
+    private volatile boolean stopped;
+
+    public LogFollower(LogRipperConfig config, AtomicInteger totalMatches) {
+        this.config = config;
+        this.totalMatches = totalMatches;
+        this.scanner = new LineScanner(config.getLineMatcher(), config, new MatchLimit(config.matchLimit(), totalMatches));
+        if (config.isDebug()) LOGGER.debug("New LogFollower");
+    }
+
+    @Override
+    public Integer rip(WrappedPath path) throws IOException {
+        try (MatchSink out = StreamingMatchSink.of(config, path.isDir())) {
+            start(path.unwrap(), out);
+            while (!stopped && !scanner.limit().isReached()) {
+                pollOnce(interval);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped from the outside
+        } finally {
+            close();
+        }
+        scanner.summary().report("Total matches found: " + totalMatches.get());
+        return totalMatches.get();
+    }
+
+    /**
+     * Stops following within the current poll interval, e.g. from a shutdown hook.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Watches the path and takes the current end of every file, matches are only looked for after it.
+     */
+    void start(Path path, MatchSink sink) throws IOException {
+        this.root = path.toAbsolutePath().normalize();
+        this.sink = sink;
+        this.watcher = root.getFileSystem().newWatchService();
+        this.lastSweep = System.currentTimeMillis();
+        BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+        if (attrs.isDirectory()) {
+            crawl(root, config.maxDepth(), false);
+        } else {
+            isSingleFile = true;
+            register(root.getParent());
+            // a single file is held open from the start, its name is all there is to watch
+            FollowedFile file = FollowedFile.fromEnd(root, attrs, config);
+            file.open();
+            files.put(root, file);
+        }
+        if (config.isVerbose()) LOGGER.info("Following " + files.size() + " file(s) in " + directories.size() + " directories");
+    }
+
+    /**
+     * Runs a single round: waits for events up to the timeout, then scans the files that changed and the files
+     * of unwatched directories, or all of them if a sweep is due.
+     *
+     * @return The number of bytes scanned.
+     */
+    long pollOnce(long timeoutMillis) throws IOException, InterruptedException {
+        WatchKey key = watcher.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        long now = System.currentTimeMillis();
+        // a watched tree gets swept all the same, events of a file may have been lost
+        boolean isSweep = SWEEP_INTERVAL_MILLIS <= now - lastSweep;
+        for (; key != null; key = watcher.poll()) {
+            Path dir = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW) {
+                    isSweep = true;
+                    if (!isSingleFile) {
+                        crawl(root, config.maxDepth(), true);
+                    }
+                } else if (dir != null) {
+                    handle(dir.resolve((Path) event.context()), event.kind());
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+        List<FollowedFile> round = new ArrayList<>();
+        if (isSweep) {
+            detached.clear();
+            round.addAll(files.values());
+            lastSweep = now;
+        } else {
+            dirty.stream().map(files::get).filter(Objects::nonNull).forEach(round::add);
+            if (!unwatched.isEmpty()) {
+                files.values().stream().filter(file -> !dirty.contains(file.path()) && unwatched.contains(file.path().getParent())).forEach(round::add);
+            }
+        }
+        dirty.clear();
+
+        long scanned = round.isEmpty() ? 0 : SystemUtil.getWorkPool().invoke(new FollowTask(round, config, scanner, sink));
+        if (!isSingleFile) {
+            for (FollowedFile file : round) {
+                FollowedFile previous = file.takeDetached();
+                if (previous != null) {
+                    detached.put(previous.fileKey(), previous);
+                }
+                if (file.isGone()) {
+                    // read to its end, a new file by its name is created anew
+                    files.remove(file.path(), file);
+                }
+            }
+        }
+        interval = 0 < scanned ? MIN_INTERVAL_MILLIS : Math.min(interval * 2, MAX_INTERVAL_MILLIS);
+        return scanned;
+    }
+
+    private void handle(Path path, WatchEvent.Kind<?> kind) {
+        if (files.containsKey(path)) {
+            dirty.add(path);
+            return;
+        }
+        if (kind != ENTRY_CREATE || isSingleFile) {
+            return;
+        }
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return; // already gone again
+        } catch (IOException e) {
+            LOGGER.warn("Can't follow path " + path + ": " + e.getMessage());
+            return;
+        }
+        if (attrs.isDirectory()) {
+            int depth = root.relativize(path).getNameCount();
+            if (config.maxDepth() < 0 || depth < config.maxDepth()) {
+                crawl(path, config.maxDepth() < 0 ? ParallelCrawler.UNLIMITED_DEPTH : config.maxDepth() - depth, true);
+            }
+        } else if (attrs.isRegularFile() && config.pathFilter().acceptsFile(path, attrs)) {
+            add(path, attrs, true);
+        }
+    }
+
+    /**
+     * Watches the directories of the subtree and follows its files.
+     *
+     * @param isNew True if the files are new, so that they are followed from their start.
+     */
+    private void crawl(Path dir, int maxDepth, boolean isNew) {
+        if (!dir.equals(root) && !config.pathFilter().acceptsDirectory(dir)) {
+            return;
+        }
+        try {
+            new ParallelCrawler<>(new FollowVisitor(isNew), maxDepth).crawl(dir);
+        } catch (IOException e) {
+            LOGGER.warn("Can't follow directory " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void register(Path dir) {
+        try {
+            directories.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+        } catch (IOException e) {
+            unwatched.add(dir);
+            LOGGER.warn("Can't watch directory " + dir + ", its files are only polled: " + e.getMessage());
+        }
+    }
+
+    private void add(Path file, BasicFileAttributes attrs, boolean isNew) {
+        try {
+            FollowedFile previous = isNew && attrs.fileKey() != null ? followed(attrs.fileKey()) : null;
+            if (previous != null) {
+                // a followed file renamed within the tree, e.g. by a rotation
+                files.putIfAbsent(file, previous.renamedTo(file, attrs, config));
+            } else {
+                files.putIfAbsent(file, isNew ? FollowedFile.fromStart(file, attrs) : FollowedFile.fromEnd(file, attrs, config));
+            }
+            dirty.add(file);
+        } catch (IOException e) {
+            LOGGER.warn("Can't follow path " + file + ": " + e.getMessage());
+        }
+    }
+
+    private FollowedFile followed(Object fileKey) {
+        FollowedFile previous = detached.remove(fileKey);
+        if (previous != null) {
+            return previous;
+        }
+        for (FollowedFile file : files.values()) {
+            if (fileKey.equals(file.fileKey())) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private void close() {
+        files.values().forEach(FollowedFile::close);
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // nothing to release
+            }
+        }
+    }
+
+    /**
+     * Registers the directories of a crawl and adds its files, on the crawl's workers.
+     */
+    private final class FollowVisitor implements CrawlVisitor<Path> {
+
+        private final boolean isNew;
+
+        private FollowVisitor(boolean isNew) {
+            this.isNew = isNew;
+        }
+
+        @Override
+        public Path enterDirectory(Path parent, Path dir, BasicFileAttributes attrs) {
+            if (parent != null && !config.pathFilter().acceptsDirectory(dir)) {
+                return null;
+            }
+            register(dir);
+            return dir;
+        }
+
+        @Override
+        public void visitFile(Path dir, Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && !files.containsKey(file) && config.pathFilter().acceptsFile(file, attrs)) {
+                add(file, attrs, isNew);
+            }
+        }
+
+        @Override
+        public void visitFailed(Path dir, Path path, IOException e) {
+            if (config.isDebug()) LOGGER.debug("Can't follow path " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.index.FileIndex;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The counting counterpart of {@link MappedGrepTask} used for {@code --count}. Windows are counted in any
+ * order and their totals summed up, no {@link com.wizardry.tools.logripper.util.matching.Match} or line
+ * String is ever created. Windows the search index rules out aren't counted at all.
+ */
+public class MappedCountTask extends PooledRipperTask<WrappedPath, Integer> {
+
+    private final LineScanner scanner;
+    private final long from;
+    private final long to;
+
+    public MappedCountTask(WrappedPath path, LineScanner scanner) {
+        this(path, scanner, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Counts the part of a file between two line starts, see {@link MappedGrepTask}.
+     */
+    public MappedCountTask(WrappedPath path, LineScanner scanner, long from, long to) {
+        super(path);
+        this.scanner = scanner;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected Integer compute() {
+        try (FileChannel channel = input.openChannel()) {
+            long size = channel.size();
+            if (size <= from) {
+                return 0;
+            }
+            boolean isWhole = from == 0 && size <= to;
+            FileIndex index = isWhole ? scanner.index().lookup(input, channel) : null;
+            List<MappedWindow> windows = index == null
+                    ? MappedWindow.split(channel, from, to, SystemUtil.calculateWindowSize(Math.min(size, to) - from))
+                    : index.windows(channel, SystemUtil.calculateWindowSize(size));
+            List<WindowCountTask> subTasks = new ArrayList<>();
+            for (MappedWindow window : windows) {
+                if (!scanner.index().canSkip(index, window, size)) {
+                    subTasks.add(new WindowCountTask(window, channel, scanner));
+                }
+            }
+            invokeAll(subTasks);
+
+            int count = 0;
+            for (WindowCountTask task : subTasks) {
+                count += task.join();
+            }
+            return count;
+        } catch (IOException e) {
+            throw new RuntimeException("Error while counting path: " + input, e);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.tasks.index.FileIndex;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Greps a single file by splitting it into line aligned {@link MappedWindow}s and forking a
+ * {@link WindowGrepTask} per window. Window results are consumed strictly in file order: the window at the
+ * head is rebased onto the file, gets its context resolved and is streamed to the {@link MatchSink} in
+ * chunks. Only as many windows as the pool has workers are in flight at once, so a file never holds more
+ * than a fixed number of buffered window results. Once the match limit is reached the windows that are
+ * still pending get cancelled. If the file has a search index, its blocks become the windows and those that
+ * can't match are never mapped.
+ */
+public class MappedGrepTask extends PooledRipperTask<WrappedPath, Integer> {
+
+    private final Path reportedPath;
+    private final LogRipperConfig config;
+    private final LineScanner scanner;
+    private final MatchSink sink;
+    private final long from;
+    private final long to;
+    private final int lineBase;
+    private long windowSize;
+    private int lineCount;
+
+    public MappedGrepTask(WrappedPath path, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        this(path, path.toAbsolutePath(), config, scanner, sink);
+    }
+
+    /**
+     * @param path The file to grep.
+     * @param reportedPath The path the matches are reported for, e.g. the archive a file was decompressed from.
+     */
+    public MappedGrepTask(WrappedPath path, Path reportedPath, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        this(path, reportedPath, config, scanner, sink, 0, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * Greps the part of a file between two line starts, e.g. what was appended since a {@link ScanCheckpoints}
+     * checkpoint. The search index only applies to whole files.
+     *
+     * @param lineBase The number of lines before the start, matches are numbered after them.
+     */
+    public MappedGrepTask(WrappedPath path, Path reportedPath, LogRipperConfig config, LineScanner scanner, MatchSink sink, long from, long to, int lineBase) {
+        super(path);
+        this.reportedPath = reportedPath;
+        this.config = config;
+        this.scanner = scanner;
+        this.sink = sink;
+        this.from = from;
+        this.to = to;
+        this.lineBase = lineBase;
+    }
+
+    /**
+     * Splits the file into windows of the given size instead of one that suits its size, e.g. to get many
+     * windows out of a small file.
+     */
+    MappedGrepTask withWindowSize(long windowSize) {
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of lines before the end of the grepped part, once the task is done.
+     */
+    public int lineCount() {
+        return lineCount;
+    }
+
+    @Override
+    protected Integer compute() {
+        try (FileChannel channel = input.openChannel()) {
+            long size = channel.size();
+            if (size <= from) {
+                return 0;
+            }
+            boolean isWhole = from == 0 && size <= to;
+            FileIndex index = isWhole ? scanner.index().lookup(input, channel) : null;
+            long windowSize = 0 < this.windowSize ? this.windowSize : SystemUtil.calculateWindowSize(Math.min(size, to) - from);
+            List<MappedWindow> windows = index == null
+                    ? MappedWindow.split(channel, from, to, windowSize)
+                    : index.windows(channel, windowSize);
+            MatchEmitter emitter = new MatchEmitter(reportedPath, channel, config, sink, scanner.limit());
+
+            int inFlight = Math.max(1, getPool().getParallelism());
+            ArrayDeque<WindowGrepTask> pending = new ArrayDeque<>();
+            int next = 0;
+            while (next < windows.size() && pending.size() < inFlight) {
+                pending.add(fork(windows.get(next++), channel, index, size));
+            }
+            int lineBase = this.lineBase;
+            while (!pending.isEmpty()) {
+                WindowGrepTask task = pending.poll();
+                LineScanner.Result result = task.join();
+                if (next < windows.size()) {
+                    pending.add(fork(windows.get(next++), channel, index, size));
+                }
+                for (Match match : result.matches()) {
+                    emitter.accept(match.withIndexOffset(lineBase));
+                }
+                if (0 <= result.resumeAt() && !emitter.isTruncated()) {
+                    result = task.resume(result, lineBase, emitter);
+                }
+                if (result.truncated() || emitter.isTruncated()) {
+                    // the limit is reached, nothing further will be written
+                    pending.forEach(it -> it.cancel(false));
+                    break;
+                }
+                lineBase += result.lineCount();
+            }
+            lineCount = lineBase;
+            return emitter.finish();
+        } catch (IOException e) {
+            throw new RuntimeException("Error while grepping path: " + input, e);
+        }
+    }
+
+    private WindowGrepTask fork(MappedWindow window, FileChannel channel, FileIndex index, long size) {
+        WindowGrepTask task = new WindowGrepTask(window, channel, scanner);
+        if (scanner.index().canSkip(index, window, size)) {
+            // completed right away, joining it just yields the lines it accounts for
+            task.complete(LineScanner.Result.skipped(index.blocks().get(window.index()).lines()));
+        } else {
+            task.fork();
+        }
+        return task;
+    }
+}
@@ -0,0 +1,87 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous byte range of a file that starts at the beginning of a line and ends right after a line
+ * break (or at the end of the file). Windows never share a line, so each one can be mapped and scanned
+ * on its own worker without coordinating with its neighbours.
+ *
+ * @param index The position of the window within its file, used to merge results back in file order.
+ * @param offset The absolute byte offset of the first byte in the window.
+ * @param length The number of bytes covered by the window.
+ */
+public record MappedWindow(int index, long offset, long length) {
+
+    private static final int BOUNDARY_PROBE_SIZE = 8192;
+
+    public long end() {
+        return offset + length;
+    }
+
+    /**
+     * Splits a file into windows of roughly {@code windowSize} bytes, moving every nominal boundary
+     * forward to the next line break so that no line is cut in half.
+     *
+     * @param channel The channel of the file that should be split.
+     * @param windowSize The nominal size of each window in bytes.
+     * @return The windows in file order, covering every byte of the file exactly once.
+     * @throws IOException if the channel can't be read or a single line exceeds the mappable size.
+     */
+    public static List<MappedWindow> split(FileChannel channel, long windowSize) throws IOException {
+        return split(channel, 0, windowSize);
+    }
+
+    /**
+     * Splits the part of a file from the given line start onwards into windows, see {@link #split(FileChannel, long)}.
+     * The windows are indexed from 0 regardless of where the split starts.
+     */
+    public static List<MappedWindow> split(FileChannel channel, long from, long windowSize) throws IOException {
+        return split(channel, from, channel.size(), windowSize);
+    }
+
+    /**
+     * Splits the part of a file between the given line start and the end of a line into windows, see
+     * {@link #split(FileChannel, long)}.
+     */
+    public static List<MappedWindow> split(FileChannel channel, long from, long to, long windowSize) throws IOException {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive.");
+        }
+        long size = Math.min(to, channel.size());
+        List<MappedWindow> windows = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_PROBE_SIZE);
+        long start = from;
+        while (start < size) {
+            long end = start + windowSize >= size ? size : nextLineStart(channel, start + windowSize, size, probe);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line starting near byte [" + start + "] is too long to be mapped.");
+            }
+            windows.add(new MappedWindow(windows.size(), start, end - start));
+            start = end;
+        }
+        return windows;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer probe) throws IOException {
+        long cursor = position;
+        while (cursor < size) {
+            probe.clear();
+            int read = channel.read(probe, cursor);
+            if (read < 1) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return cursor + i + 1;
+                }
+            }
+            cursor += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,127 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.matching.ContextResolver;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.output.StreamingMatchSink;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Takes the matches of a single file in order, attaches their context and hands them to the sink in chunks.
+ * A match is held back until the next one arrives, as its after-context must not run into the next match.
+ * Every match is claimed from the {@link MatchLimit} on arrival; once that fails the emitter is truncated and
+ * drops everything that follows.
+ */
+final class MatchEmitter implements Consumer<Match> {
+
+    private final Path path;
+    private final LogRipperConfig config;
+    private final MatchSink sink;
+    private final MatchLimit limit;
+    private final ContextResolver resolver;
+    private List<Match> chunk = new ArrayList<>();
+    private Match held;
+    private long lastLine;
+    private int count;
+    private boolean truncated;
+
+    MatchEmitter(Path path, FileChannel channel, LogRipperConfig config, MatchSink sink, MatchLimit limit) {
+        this(path, channel::read, config, sink, limit);
+    }
+
+    /**
+     * @param source Where context lines are read from, e.g. the buffer of a stream.
+     */
+    MatchEmitter(Path path, ContextResolver.Source source, LogRipperConfig config, MatchSink sink, MatchLimit limit) {
+        this.path = path;
+        this.config = config;
+        this.sink = sink;
+        this.limit = limit;
+        boolean hasContext = 0 < config.linesBeforeMatch() || 0 < config.linesAfterMatch();
+        this.resolver = hasContext ? new ContextResolver(source, config.linesBeforeMatch()) : null;
+    }
+
+    @Override
+    public void accept(Match match) {
+        if (truncated || !limit.tryClaim()) {
+            truncated = true;
+            return;
+        }
+        if (held != null) {
+            release(held, match.index());
+        }
+        held = match;
+        count++;
+    }
+
+    /**
+     * Returns true once a match was dropped because the limit was reached.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Releases the held match once every line of its after-context was scanned, as no later match can cut
+     * it short anymore. Lets a stream drop the lines it no longer needs.
+     *
+     * @param lineCount The number of lines scanned so far.
+     */
+    void settle(int lineCount) {
+        if (held != null && held.index() + (long) config.linesAfterMatch() <= lineCount) {
+            release(held, -1);
+            held = null;
+        }
+    }
+
+    /**
+     * Emits whatever is still held back.
+     *
+     * @return The number of matches of the file.
+     */
+    int finish() {
+        if (held != null) {
+            release(held, -1);
+            held = null;
+        }
+        if (!chunk.isEmpty()) {
+            sink.emit(path, chunk);
+            chunk = new ArrayList<>();
+        }
+        return count;
+    }
+
+    private void release(Match match, int nextIndex) {
+        chunk.add(resolver == null ? match : withContext(match, nextIndex));
+        if (StreamingMatchSink.CHUNK_SIZE <= chunk.size()) {
+            sink.emit(path, chunk);
+            chunk = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Like grep, a line is never printed twice: context is cut short where it would run into the
+     * previous match's after-context or into the next match.
+     */
+    private Match withContext(Match match, int nextIndex) {
+        int before = (int) Math.min(config.linesBeforeMatch(), match.index() - 1L - lastLine);
+        int after = nextIndex < 0
+                ? config.linesAfterMatch()
+                : Math.min(config.linesAfterMatch(), nextIndex - match.index() - 1);
+        try {
+            List<String> linesAfter = resolver.linesAfter(match.offset(), after);
+            lastLine = match.index() + linesAfter.size();
+            return match.withContext(resolver.linesBefore(match.offset(), before), linesAfter);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while resolving context in path: " + path, e);
+        }
+    }
+}
@@ -2,8 +2,9 @@ package com.wizardry.tools.logripper.tasks.pathgrep;
 
 import com.wizardry.tools.logripper.config.LogRipperConfig;
 import com.wizardry.tools.logripper.tasks.PathRipper;
-import com.wizardry.tools.logripper.util.Timestamp;
-import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.output.StreamingMatchSink;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
@@ -11,27 +12,24 @@ import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
 
-public class PathGrepRipper implements PathRipper<ConcurrentLinkedQueue<Match>> {
+/**
+ * Greps every file below a directory. Matches are streamed to a single output sink while the directory is
+ * still being searched; the result maps each file to the number of matches found in it.
+ */
+public class PathGrepRipper implements PathRipper<Integer> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
     private final LogRipperConfig config;
     private final AtomicInteger totalMatches;
-    private final boolean isCountOnly;
     private final boolean isDebug;
-    private final boolean isSilent;
     private final boolean initialized;
 
     public PathGrepRipper(LogRipperConfig config, AtomicInteger totalMatches) {
         this.config = config;
-        this.isCountOnly = config.isCountOnly();
         this.isDebug = config.isDebug();
-        this.isSilent = config.isSilent();
         this.totalMatches = totalMatches;
         if (isDebug) LOGGER.debug("New PathGrepRipper");
 
@@ -39,46 +37,22 @@ public class PathGrepRipper implements PathRipper<ConcurrentLinkedQueue<Match>>
     }
 
     @Override
-    public Map<String, ConcurrentLinkedQueue<Match>> rip(WrappedPath path) throws IOException {
+    public Map<String, Integer> rip(WrappedPath path) throws IOException {
         if (!initialized) {
             throw new IllegalStateException("PathGrepRipper isn't initialized");
         }
 
-        Map<String, ConcurrentLinkedQueue<Match>> pathMatches = new HashMap<>();
+        Map<String, Integer> pathMatches = new HashMap<>();
 
-        Timestamp calculationTime = new Timestamp();
-        try (ForkJoinPool pool = new ForkJoinPool()) {
-            PathGrepTask task = new PathGrepTask(path, config, totalMatches);
-            pathMatches = pool.invoke(task);
-            // call reporting
-            reportMatches(pathMatches);
+        PathGrepTask task;
+        try (MatchSink sink = StreamingMatchSink.of(config, true)) {
+            task = new PathGrepTask(path, config, totalMatches, sink);
+            pathMatches = SystemUtil.getWorkPool().invoke(task);
         } catch (Exception e) {
             throw new IOException("Error grepping folder", e);
         }
-        if(isDebug) LOGGER.debug("Grepped folder in [" + calculationTime.toMillis() + "] milliseconds");
+        // the sink is closed by now, so the total follows the last match
+        task.summary().report("Total matches found: " + totalMatches.get());
         return pathMatches;
     }
-
-    private void reportMatches(Map<String, ConcurrentLinkedQueue<Match>> matches) {
-        if (!isCountOnly) {
-            announceMatches(isSilent, isDebug).accept(matches);
-        }
-        LOGGER.info("Total matches found: "+totalMatches.get());
-    }
-
-    private static Consumer<Map<String,ConcurrentLinkedQueue<Match>>> announceMatches(boolean isSilent, boolean isDebug) {
-        if (isDebug && !isSilent) {
-            return (matches) -> matches.forEach((key, entry) -> {
-                LOGGER.notice("Matches for: " + key);
-                entry.forEach(match -> match.print(LOGGER));
-            });
-        }
-        if (!isSilent) {
-            return (matches) -> matches.forEach((key, entry) -> {
-                LOGGER.notice("Matches for: " + key);
-                entry.forEach(match -> match.print(System.out));
-            });
-        }
-        return (matches) -> {};
-    }
 }
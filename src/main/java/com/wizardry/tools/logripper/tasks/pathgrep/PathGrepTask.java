@@ -2,67 +2,80 @@ package com.wizardry.tools.logripper.tasks.pathgrep;
 
 import com.wizardry.tools.logripper.config.LogRipperConfig;
 import com.wizardry.tools.logripper.tasks.PooledRipperTask;
-import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class PathGrepTask extends PooledRipperTask<WrappedPath, Map<String, ConcurrentLinkedQueue<Match>>> {
+/**
+ * The root task of a directory grep. Crawls the tree once with the {@link ParallelCrawler}, scheduling its
+ * files as {@link FileBatchGrepTask} units on the current pool as they are found, and joins the per file
+ * match counts afterwards. The matcher is built once and shared by every unit. Once the match limit is
+ * reached the crawl terminates and units that haven't started yet are cancelled.
+ */
+public class PathGrepTask extends PooledRipperTask<WrappedPath, Map<String, Integer>> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
     protected final LogRipperConfig config;
     protected final AtomicInteger totalMatches;
+    protected final MatchSink sink;
+    protected final LineScanner scanner;
 
-    public PathGrepTask(WrappedPath path, LogRipperConfig config, AtomicInteger totalMatches) {
+    public PathGrepTask(WrappedPath path, LogRipperConfig config, AtomicInteger totalMatches, MatchSink sink) {
+        this(path, config, totalMatches, new LineScanner(config.getLineMatcher(), config, new MatchLimit(config.matchLimit(), totalMatches)), sink);
+    }
+
+    /**
+     * @param scanner The scanner every unit shares, its limit has to count into the total matches.
+     */
+    PathGrepTask(WrappedPath path, LogRipperConfig config, AtomicInteger totalMatches, LineScanner scanner, MatchSink sink) {
         super(path);
         this.config = config;
         this.totalMatches = totalMatches;
+        this.sink = sink;
+        this.scanner = scanner;
         if(config.isDebug()) LOGGER.debug("New PathGrepTask");
     }
 
+    /**
+     * Returns the summary of the files grepped, complete once the task is done.
+     */
+    public GrepSummary summary() {
+        return scanner.summary();
+    }
+
     @Override
-    protected Map<String, ConcurrentLinkedQueue<Match>> compute() {
-        Map<String, ConcurrentLinkedQueue<Match>> matches = new HashMap<>();
+    protected Map<String, Integer> compute() {
+        Map<String, Integer> matches = new HashMap<>();
+        Queue<FileBatchGrepTask> subTasks = new ConcurrentLinkedQueue<>();
         try {
-            if (input.isDir()) {
-                List<PathGrepTask> subTasks = new ArrayList<>();
-                Files.walkFileTree(input.unwrap(), new PathGrepVisitor(subTasks, config, totalMatches));
-
-                if (!subTasks.isEmpty()) {
-                    invokeAll(subTasks);  // Fork all the tasks
-
-                    for (PathGrepTask task : subTasks) {
-                        matches.putAll(task.join());  // Join and sum up results
-                    }
-                }
-            } else if (input.isFile()) {
-                // Call Grep functionality
-                matches.putAll(findMatches(input));
-            }
+            new ParallelCrawler<>(new PathGrepVisitor(subTasks, config, scanner, sink), config.maxDepth()).crawl(input.unwrap());
         } catch (IOException e) {
             LOGGER.error("Error occurred while computing a Grep Task: " + e.getMessage());
         }
-
-        return matches;
-    }
-
-    private Map<String, ConcurrentLinkedQueue<Match>> findMatches(WrappedPath input) {
+        // units that were forked before a failed crawl still have to be joined
+        for (FileBatchGrepTask task : subTasks) {
+            if (scanner.limit().isReached() && task.cancel(false)) {
+                continue;
+            }
+            matches.putAll(task.join());
+        }
         try {
-            FileGrepRipper fileGrepRipper = new FileGrepRipper(config, totalMatches);
-            return Map.of(input.toAbsolutePath().toString(), fileGrepRipper.rip(input));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            // files below the depth limit or filtered out keep their checkpoints
+            scanner.checkpoints().save(!scanner.limit().isReached() && config.maxDepth() < 0 && !config.pathFilter().isEnabled());
+        } catch (IOException e) {
+            LOGGER.warn("Error occurred while saving the checkpoints of path " + input + ": " + e.getMessage());
         }
+        return matches;
     }
-
 }
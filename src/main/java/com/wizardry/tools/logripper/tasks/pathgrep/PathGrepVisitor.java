@@ -1,38 +1,107 @@
 package com.wizardry.tools.logripper.tasks.pathgrep;
 
 import com.wizardry.tools.logripper.config.LogRipperConfig;
-import com.wizardry.tools.logripper.tasks.PooledRipperVisitor;
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.output.MatchSink;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
-import org.jetbrains.annotations.NotNull;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
-import java.nio.file.FileVisitResult;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
 
-public class PathGrepVisitor extends PooledRipperVisitor<Path, PathGrepTask> {
+/**
+ * Groups the files of a directory grep into {@link FileBatchGrepTask} units while the tree is crawled, one
+ * batch per directory. Every unit is forked as soon as it's sealed, so grepping starts long before the crawl
+ * is done. Files and directories the {@link PathFilter} rejects are dropped from their attributes, before
+ * anything is opened. The crawl terminates as soon as the match limit is reached.
+ */
+public class PathGrepVisitor implements CrawlVisitor<PathGrepVisitor.Batch> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
+    protected final Queue<FileBatchGrepTask> subTasks;
     protected final LogRipperConfig config;
-    protected final AtomicInteger totalMatches;
+    protected final LineScanner scanner;
+    protected final MatchSink sink;
 
-    public PathGrepVisitor(List<PathGrepTask> subTasks, LogRipperConfig config, AtomicInteger totalMatches) {
-        super(subTasks);
+    /**
+     * The files of a directory that are yet to be sealed into a unit.
+     */
+    public static final class Batch {
+        private List<WrappedPath> paths = new ArrayList<>();
+        private long bytes;
+    }
+
+    public PathGrepVisitor(Queue<FileBatchGrepTask> subTasks, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        this.subTasks = subTasks;
         this.config = config;
-        this.totalMatches = totalMatches;
+        this.scanner = scanner;
+        this.sink = sink;
         if (config.isDebug()) LOGGER.debug("New PathGrepVisitor");
     }
 
     @Override
-    public @NotNull FileVisitResult visitFile(Path input, BasicFileAttributes attrs) {
-        if(config.isDebug()) LOGGER.debug("visiting file @ "+input.toAbsolutePath());
-        // create a task for each path to grep
-        PathGrepTask task = new PathGrepTask(WrappedPath.of(input), config, totalMatches);
+    public Batch enterDirectory(Batch parent, Path dir, BasicFileAttributes attrs) {
+        if (parent != null && !config.pathFilter().acceptsDirectory(dir)) {
+            if (config.isDebug()) LOGGER.debug("skipping directory @ " + dir.toAbsolutePath());
+            return null;
+        }
+        return new Batch();
+    }
+
+    @Override
+    public void visitFile(Batch batch, Path input, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile()) {
+            return;
+        }
+        if (batch != null && !config.pathFilter().acceptsFile(input, attrs)) {
+            scanner.summary().fileSkipped();
+            return;
+        }
+        WrappedPath path = WrappedPath.of(input, attrs);
+        if (batch == null || FileBatchGrepTask.SMALL_FILE_SIZE < attrs.size()) {
+            // large files are split into windows instead
+            fork(List.of(path));
+            return;
+        }
+        batch.paths.add(path);
+        batch.bytes += attrs.size();
+        if (FileBatchGrepTask.BATCH_FILES <= batch.paths.size() || FileBatchGrepTask.BATCH_BYTES <= batch.bytes) {
+            entriesVisited(batch);
+        }
+    }
+
+    /**
+     * Seals the batch that is still being filled.
+     */
+    @Override
+    public void entriesVisited(Batch batch) {
+        if (!batch.paths.isEmpty()) {
+            fork(batch.paths);
+            batch.paths = new ArrayList<>();
+            batch.bytes = 0;
+        }
+    }
+
+    @Override
+    public void visitFailed(Batch batch, Path path, IOException e) {
+        scanner.summary().fileFailed(path, e);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return scanner.limit().isReached();
+    }
+
+    private void fork(List<WrappedPath> paths) {
+        FileBatchGrepTask task = new FileBatchGrepTask(paths, config, scanner, sink);
+        task.fork();
         subTasks.add(task);
-        return FileVisitResult.CONTINUE;
     }
 }
@@ -0,0 +1,248 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.StringUtil;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * What the last {@code --resume} grep of a path found, per file: how far it was scanned, the number of lines
+ * and matches up to there, and the inode, size and modification time the file had. A file that is unchanged
+ * isn't read at all, a file that only grew is scanned from its checkpoint on, so a nightly grep over growing
+ * logs only reads what was appended since. The bytes right before the checkpoint are checksummed, a file that
+ * was rewritten in place is scanned from its start again.
+ * <p>
+ * Checkpoints depend on the tokens and on how they match, every combination gets a store of its own, named
+ * after their hash, in {@code ~/.logripper/checkpoints}, which can be moved with the {@value #DIRECTORY_PROPERTY}
+ * system property. Like a {@link com.wizardry.tools.logripper.tasks.pathsize.SizeLedger}, a store is read once
+ * when the grep starts and replaced as a whole through an atomic move when it's done.
+ */
+public final class ScanCheckpoints {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    /** A store that has no checkpoints and records none. */
+    public static final ScanCheckpoints NONE = new ScanCheckpoints(null, null, Map.of());
+
+    public static final String DIRECTORY_PROPERTY = "logripper.checkpoint.dir";
+    private static final String SUFFIX = ".lsc";
+    private static final int MAGIC = 0x4c525343; // "LRSC"
+    /** The number of bytes before a checkpoint that have to be unchanged to resume from it. */
+    private static final int CHECKSUM_LENGTH = 4 << 10;
+
+    /**
+     * The state of a single file after it was scanned.
+     *
+     * @param fileKey The file key (e.g. device and inode) of the file, empty if the file system has none.
+     * @param size The size of the file.
+     * @param modified The modification time of the file in nanoseconds.
+     * @param offset The end of the last complete line that was scanned, or -1 if the file can only be skipped
+     *               as a whole, e.g. a compressed one.
+     * @param lineCount The number of lines up to the offset, or -1 if they weren't counted.
+     * @param matches The number of matches up to the offset.
+     * @param checksum The checksum of the bytes right before the offset.
+     */
+    public record Checkpoint(String fileKey, long size, long modified, long offset, int lineCount, int matches, long checksum) {
+
+        /**
+         * Returns true if the file wasn't touched since and was scanned to its end, so that its matches are the
+         * same. A line that was still being written at the checkpoint is scanned once it settled.
+         */
+        public boolean isUnchanged(BasicFileAttributes attributes, long size) {
+            return (offset < 0 || offset == size) && this.size == size && modified == ScanCheckpoints.modified(attributes);
+        }
+
+        /**
+         * Returns true if the file can be scanned on from the offset.
+         */
+        public boolean isResumable() {
+            return 0 <= offset;
+        }
+    }
+
+    private final Path root;
+    private final Path file;
+    private final Map<String, Checkpoint> previous;
+    private final Map<String, Checkpoint> current = new ConcurrentHashMap<>();
+
+    private ScanCheckpoints(Path root, Path file, Map<String, Checkpoint> previous) {
+        this.root = root;
+        this.file = file;
+        this.previous = previous;
+    }
+
+    public static Path getDefaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory != null
+                ? Path.of(directory)
+                : Path.of(System.getProperty("user.home"), ".logripper", "checkpoints");
+    }
+
+    /**
+     * Opens the checkpoints of the configuration's path and tokens, which are empty if the path was never
+     * grepped with {@code --resume} or its store can't be read.
+     */
+    public static ScanCheckpoints open(Path directory, LogRipperConfig config) {
+        Path absoluteRoot = config.path().toAbsolutePath().normalize();
+        String key = String.join("\n", absoluteRoot.toString(), String.valueOf(config.isIgnoreCase()),
+                String.valueOf(config.binaryFiles()), config.searchToken());
+        Path file = directory.resolve(StringUtil.sha256(key) + SUFFIX);
+        Map<String, Checkpoint> previous = new HashMap<>();
+        try {
+            read(file, absoluteRoot, previous);
+        } catch (NoSuchFileException e) {
+            // never grepped
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable checkpoints of path " + config.path() + ": " + e.getMessage());
+            previous.clear();
+        }
+        return new ScanCheckpoints(absoluteRoot, file, previous);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Returns the checkpoint of the file if it still holds: the file is the same one and either unchanged or
+     * grown past the checkpoint without the bytes before it changing. Returns null otherwise.
+     */
+    public Checkpoint lookup(Path path, BasicFileAttributes attributes, FileChannel channel) throws IOException {
+        Checkpoint checkpoint = previous.get(key(path));
+        if (checkpoint == null || !checkpoint.fileKey().equals(fileKey(attributes))) {
+            return null;
+        }
+        long size = channel.size();
+        if (checkpoint.isUnchanged(attributes, size)) {
+            return checkpoint;
+        }
+        if (!checkpoint.isResumable() || size < checkpoint.offset() || checkpoint.checksum() != checksum(channel, checkpoint.offset())) {
+            return null;
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Records how far a file was scanned.
+     *
+     * @param size The size of the file when it was scanned.
+     * @param offset The end of the last complete line that was scanned, -1 if the file can't be resumed.
+     * @param lineCount The number of lines up to the offset, -1 if they weren't counted.
+     * @param matches The number of matches up to the offset.
+     */
+    public void record(Path path, BasicFileAttributes attributes, FileChannel channel, long size, long offset, int lineCount, int matches) throws IOException {
+        long checksum = offset < 0 ? 0 : checksum(channel, offset);
+        current.put(key(path), new Checkpoint(fileKey(attributes), size, modified(attributes), offset, lineCount, matches, checksum));
+    }
+
+    /**
+     * Carries the checkpoint of an unchanged file over into the next store.
+     */
+    public void keep(Path path, Checkpoint checkpoint) {
+        current.put(key(path), checkpoint);
+    }
+
+    /**
+     * Replaces the store with the files recorded and kept by this grep.
+     *
+     * @param isComplete True if every file was grepped to its end, the checkpoints of the files that weren't
+     *                   are carried over otherwise.
+     */
+    public void save(boolean isComplete) throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<String, Checkpoint> checkpoints = current;
+        if (!isComplete) {
+            checkpoints = new HashMap<>(previous);
+            checkpoints.putAll(current);
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(root.toString());
+                out.writeInt(checkpoints.size());
+                for (Map.Entry<String, Checkpoint> entry : checkpoints.entrySet()) {
+                    Checkpoint checkpoint = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(checkpoint.fileKey());
+                    out.writeLong(checkpoint.size());
+                    out.writeLong(checkpoint.modified());
+                    out.writeLong(checkpoint.offset());
+                    out.writeInt(checkpoint.lineCount());
+                    out.writeInt(checkpoint.matches());
+                    out.writeLong(checkpoint.checksum());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void read(Path file, Path root, Map<String, Checkpoint> checkpoints) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a checkpoint store: " + file);
+            }
+            if (!root.toString().equals(in.readUTF())) {
+                throw new IOException("Checkpoints of another path: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                checkpoints.put(key, new Checkpoint(in.readUTF(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readInt(), in.readInt(), in.readLong()));
+            }
+        }
+    }
+
+    /**
+     * Returns the checksum of the bytes right before the offset.
+     */
+    private static long checksum(FileChannel channel, long offset) throws IOException {
+        long start = Math.max(0, offset - CHECKSUM_LENGTH);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offset - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break; // the file shrank since its size was taken
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.flip());
+        return crc.getValue();
+    }
+
+    private String key(Path path) {
+        return root.relativize(path.toAbsolutePath().normalize()).toString();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+}
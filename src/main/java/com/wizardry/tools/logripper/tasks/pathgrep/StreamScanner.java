@@ -0,0 +1,174 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.ByteUtil;
+import com.wizardry.tools.logripper.util.matching.ContextResolver;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Greps the bytes written to it as they arrive, e.g. the decompressed content of an archive, which never
+ * has to be spilled to disk that way. Bytes are buffered into chunks of {@link #CHUNK_SIZE} that are scanned
+ * up to their last line feed by the {@link LineScanner}. The rest of the last line is carried over into the
+ * next chunk, along with the lines that context may still need, so line numbers and context run across
+ * chunk edges as they would in a plain file. Like a file, the stream is sniffed from its head to tell binary
+ * content apart, see {@link BinaryFiles}.
+ * <p>
+ * Not thread-safe, the bytes have to be written in order by a single thread at a time.
+ */
+final class StreamScanner extends OutputStream implements ContextResolver.Source {
+
+    static final int CHUNK_SIZE = LineScanner.SLICE_SIZE;
+
+    private final LogRipperConfig config;
+    private final LineScanner scanner;
+    private final MatchEmitter emitter;
+    private final int retainedLines;
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    /** The stream offset of index 0 of the buffer. */
+    private long base;
+    private int length;
+    private int scanned;
+    private int lineCount;
+    private int matches;
+    private BinaryFiles mode;
+
+    /**
+     * @param path The path the matches are reported for, e.g. the archive the stream is decompressed from.
+     */
+    StreamScanner(Path path, LogRipperConfig config, LineScanner scanner, MatchSink sink) {
+        this.config = config;
+        this.scanner = scanner;
+        this.emitter = config.isCountOnly() ? null : new MatchEmitter(path, this, config, sink, scanner.limit());
+        this.retainedLines = config.linesBeforeMatch() + config.linesAfterMatch();
+    }
+
+    /**
+     * Returns the mode the stream is grepped with, known once its head was written.
+     */
+    BinaryFiles mode() {
+        return mode;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) {
+        while (0 < count && !isDone()) {
+            if (length == buffer.length) {
+                scan(false);
+                if (buffer.length / 2 < length) {
+                    // a line longer than a chunk, or context that spans most of one
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            int copied = Math.min(count, buffer.length - length);
+            System.arraycopy(bytes, offset, buffer, length, copied);
+            length += copied;
+            offset += copied;
+            count -= copied;
+        }
+    }
+
+    /**
+     * Scans what is left once the whole stream was written, the last line doesn't need a line feed.
+     *
+     * @return The number of matches of the stream, or 1 if a binary stream is reported as matching.
+     */
+    int finish() {
+        scan(true);
+        return emitter == null || mode != BinaryFiles.TEXT ? matches : emitter.finish();
+    }
+
+    @Override
+    public int read(ByteBuffer target, long position) {
+        int from = (int) (position - base);
+        int count = Math.min(target.remaining(), length - from);
+        if (count <= 0) {
+            return -1;
+        }
+        target.put(buffer, from, count);
+        return count;
+    }
+
+    @Override
+    public long floor() {
+        return base;
+    }
+
+    /**
+     * Returns true once nothing that is still written can change the result.
+     */
+    private boolean isDone() {
+        return mode == BinaryFiles.SKIP || (mode == BinaryFiles.MATCH_ONLY && 0 < matches) || scanner.limit().isReached();
+    }
+
+    private void scan(boolean isEnd) {
+        if (mode == null) {
+            mode = FileBatchGrepTask.binaryMode(config, ByteBuffer.wrap(buffer, 0, Math.min(length, BinaryFiles.SNIFF_LENGTH)));
+        }
+        int end = isEnd ? length : lastLineEnd();
+        if (scanned < end && !isDone()) {
+            ByteBuffer lines = ByteBuffer.wrap(buffer, scanned, end - scanned).slice();
+            if (mode == BinaryFiles.MATCH_ONLY) {
+                // stops at the first match, which doesn't count towards the run's limit
+                matches += scanner.withLimit(new MatchLimit(1, new AtomicInteger())).count(lines, 1);
+            } else if (emitter == null) {
+                matches += scanner.limit().claim(scanner.count(lines, scanner.limit().cap(Integer.MAX_VALUE)));
+            } else {
+                lineCount = scanner.scan(lines, base + scanned, 0, lineCount, emitter, Integer.MAX_VALUE, List.of()).lineCount();
+                emitter.settle(lineCount);
+            }
+            scanned = end;
+        }
+        if (!isEnd) {
+            compact();
+        }
+    }
+
+    private int lastLineEnd() {
+        for (int i = length - 1; scanned <= i; i--) {
+            if (buffer[i] == ByteUtil.LF) {
+                return i + 1;
+            }
+        }
+        return scanned;
+    }
+
+    private int previousLineStart(int lineStart) {
+        for (int i = lineStart - 2; 0 <= i; i--) {
+            if (buffer[i] == ByteUtil.LF) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Drops the scanned lines but the last ones context may still need: the before-context of the next
+     * match, and the held match that waits for its after-context along with its own before-context.
+     */
+    private void compact() {
+        int from = scanned;
+        if (emitter != null && !isDone()) {
+            for (int i = 0; i < retainedLines && 0 < from; i++) {
+                from = previousLineStart(from);
+            }
+        }
+        System.arraycopy(buffer, from, buffer, 0, length - from);
+        base += from;
+        length -= from;
+        scanned -= from;
+    }
+}
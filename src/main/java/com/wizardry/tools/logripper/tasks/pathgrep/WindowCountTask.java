@@ -0,0 +1,35 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Maps a single {@link MappedWindow} of a file and counts its matching lines. The count is kept in a local
+ * and claimed from the limit once the window is done, so workers never contend on the shared counter.
+ */
+public class WindowCountTask extends PooledRipperTask<MappedWindow, Integer> {
+
+    private final FileChannel channel;
+    private final LineScanner scanner;
+
+    public WindowCountTask(MappedWindow window, FileChannel channel, LineScanner scanner) {
+        super(window);
+        this.channel = channel;
+        this.scanner = scanner;
+    }
+
+    @Override
+    protected Integer compute() {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, input.offset(), input.length());
+        } catch (IOException e) {
+            throw new RuntimeException("Error while mapping window [" + input.index() + "]", e);
+        }
+        int count = scanner.count(buffer, scanner.limit().cap(Integer.MAX_VALUE));
+        return scanner.limit().claim(count);
+    }
+}
@@ -0,0 +1,62 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.matching.Match;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Maps a single {@link MappedWindow} of a file and scans it for matching lines. Every window task owns its
+ * buffer, so windows of the same file never contend with each other. Line numbers are local to the window
+ * and get rebased once the windows of a file are merged.
+ * <p>
+ * A window buffers at most {@link #MAX_BUFFERED_MATCHES} matches. Past that it stops and leaves the rest
+ * of the window to be {@link #resume(LineScanner.Result, int, Consumer) resumed} once it's the window being
+ * written, which keeps the memory of a scan fixed no matter how many lines match.
+ */
+public class WindowGrepTask extends PooledRipperTask<MappedWindow, LineScanner.Result> {
+
+    static final int MAX_BUFFERED_MATCHES = 4096;
+
+    private final FileChannel channel;
+    private final LineScanner scanner;
+
+    public WindowGrepTask(MappedWindow window, FileChannel channel, LineScanner scanner) {
+        super(window);
+        this.channel = channel;
+        this.scanner = scanner;
+    }
+
+    @Override
+    protected LineScanner.Result compute() {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, input.offset(), input.length());
+        } catch (IOException e) {
+            throw new RuntimeException("Error while mapping window [" + input.index() + "]", e);
+        }
+        List<Match> matches = new ArrayList<>();
+        // a window never needs to buffer more matches than the limit allows
+        int maxMatches = scanner.limit().cap(MAX_BUFFERED_MATCHES);
+        return scanner.scan(buffer, input.offset(), 0, 0, matches::add, maxMatches, matches);
+    }
+
+    /**
+     * Scans the remainder of a window that stopped at its buffering cap, handing every further match straight
+     * to the consumer.
+     *
+     * @param result The result of the partial scan.
+     * @param lineBase The number of lines in the file before this window.
+     * @param consumer The consumer of the matches, numbered relative to the start of the file.
+     * @return The result of the completed scan, without buffered matches.
+     */
+    public LineScanner.Result resume(LineScanner.Result result, int lineBase, Consumer<Match> consumer) {
+        return scanner.scan(result.buffer(), input.offset(), result.resumeAt(), result.lineCount(),
+                match -> consumer.accept(match.withIndexOffset(lineBase)), Integer.MAX_VALUE, List.of());
+    }
+}
@@ -0,0 +1,292 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The storage behind a {@link CompactTreeMapper}. A node is nothing but an index into flat primitive arrays:
+ * its parent, first child and next sibling, its size, its flags and the id of its name. Names are interned
+ * into byte arenas, so the thousands of {@code app.log}s of a log volume are stored once. A node takes 25 bytes
+ * plus its share of the arenas, no matter how many entries the tree has. The names are spread over
+ * {@link #STRIPES} stripes by their hash, each with an arena and a lock of its own, so workers interning
+ * different names rarely wait for each other.
+ * <p>
+ * The arrays grow in chunks, so the tree is never copied. Every worker reserves blocks of indexes of its own,
+ * so nodes are added without contention. A node is only ever written by the worker that crawls its directory,
+ * and the ForkJoin fork and join edges publish it, like any other crawl state.
+ */
+public final class CompactTree {
+
+    public static final int NONE = -1;
+
+    static final byte DIR = 1;
+    static final byte FILE = 1 << 1;
+    static final byte UNREADABLE = 1 << 2;
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << (31 - CHUNK_SHIFT);
+    /** The number of indexes a worker reserves at once, a chunk holds a whole number of blocks. */
+    private static final int BLOCK_SIZE = 1 << 10;
+    private static final int STRIPE_SHIFT = 6;
+    static final int STRIPES = 1 << STRIPE_SHIFT;
+
+    private final Path root;
+    private final int[][] parents = new int[MAX_CHUNKS][];
+    private final int[][] firstChildren = new int[MAX_CHUNKS][];
+    private final int[][] nextSiblings = new int[MAX_CHUNKS][];
+    private final int[][] names = new int[MAX_CHUNKS][];
+    private final long[][] sizes = new long[MAX_CHUNKS][];
+    private final byte[][] flags = new byte[MAX_CHUNKS][];
+    private final ThreadLocal<int[]> blocks = ThreadLocal.withInitial(() -> new int[2]);
+    private int reserved;
+    private final NameStripe[] stripes = new NameStripe[STRIPES];
+
+    /**
+     * @param root The path of the root node, the names of all other nodes are relative to their parents.
+     */
+    public CompactTree(Path root) {
+        this.root = root;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new NameStripe();
+        }
+    }
+
+    /**
+     * Adds a node that isn't linked to its parent yet.
+     *
+     * @return The index of the node.
+     */
+    int add(int parent, String name, long size, byte flag) {
+        int index = allocate();
+        int chunk = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        parents[chunk][offset] = parent;
+        firstChildren[chunk][offset] = NONE;
+        nextSiblings[chunk][offset] = NONE;
+        names[chunk][offset] = intern(name);
+        sizes[chunk][offset] = size;
+        flags[chunk][offset] = flag;
+        return index;
+    }
+
+    /**
+     * Links the child to its parent and adds its size to the parent's. Must run on the parent's worker.
+     */
+    void link(int parent, int child) {
+        parents[child >>> CHUNK_SHIFT][child & CHUNK_MASK] = parent;
+        setNextSibling(child, firstChild(parent));
+        setFirstChild(parent, child);
+        addSize(parent, size(child));
+    }
+
+    /**
+     * Unlinks the child from its parent and subtracts its size from the parent's.
+     *
+     * @return False if the child isn't linked to the parent.
+     */
+    boolean unlink(int parent, int child) {
+        int previous = NONE;
+        for (int node = firstChild(parent); node != NONE; node = nextSibling(node)) {
+            if (node == child) {
+                if (previous == NONE) {
+                    setFirstChild(parent, nextSibling(node));
+                } else {
+                    setNextSibling(previous, nextSibling(node));
+                }
+                setNextSibling(node, NONE);
+                addSize(parent, -size(node));
+                return true;
+            }
+            previous = node;
+        }
+        return false;
+    }
+
+    /**
+     * Re-links the children of the node in the given order, which must hold exactly its current children.
+     */
+    void relink(int node, int[] children) {
+        int next = NONE;
+        for (int i = children.length - 1; 0 <= i; i--) {
+            setNextSibling(children[i], next);
+            next = children[i];
+        }
+        setFirstChild(node, next);
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    int parent(int node) {
+        return parents[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+    }
+
+    int firstChild(int node) {
+        return firstChildren[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+    }
+
+    int nextSibling(int node) {
+        return nextSiblings[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+    }
+
+    long size(int node) {
+        return sizes[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+    }
+
+    boolean isDir(int node) {
+        return (flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & DIR) != 0;
+    }
+
+    boolean isFile(int node) {
+        return (flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & FILE) != 0;
+    }
+
+    boolean isUnreadable(int node) {
+        return (flags[node >>> CHUNK_SHIFT][node & CHUNK_MASK] & UNREADABLE) != 0;
+    }
+
+    String name(int node) {
+        int id = names[node >>> CHUNK_SHIFT][node & CHUNK_MASK];
+        return stripes[id & (STRIPES - 1)].name(id >>> STRIPE_SHIFT);
+    }
+
+    /**
+     * Returns the path of the node, resolved from the root down.
+     */
+    Path path(int node) {
+        int parent = parent(node);
+        return parent == NONE ? root : path(parent).resolve(name(node));
+    }
+
+    /**
+     * Returns the number of parents of the node.
+     */
+    int level(int node) {
+        int level = 0;
+        for (int parent = parent(node); parent != NONE; parent = parent(parent)) {
+            level++;
+        }
+        return level;
+    }
+
+    private void setFirstChild(int node, int child) {
+        firstChildren[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = child;
+    }
+
+    private void setNextSibling(int node, int sibling) {
+        nextSiblings[node >>> CHUNK_SHIFT][node & CHUNK_MASK] = sibling;
+    }
+
+    private void addSize(int node, long delta) {
+        sizes[node >>> CHUNK_SHIFT][node & CHUNK_MASK] += delta;
+    }
+
+    private int allocate() {
+        int[] block = blocks.get();
+        if (block[0] == block[1]) {
+            reserve(block);
+        }
+        return block[0]++;
+    }
+
+    private synchronized void reserve(int[] block) {
+        if ((long) MAX_CHUNKS * CHUNK_SIZE - BLOCK_SIZE <= reserved) {
+            throw new IllegalStateException("The tree has too many nodes: " + reserved);
+        }
+        int chunk = reserved >>> CHUNK_SHIFT;
+        if (parents[chunk] == null) {
+            parents[chunk] = new int[CHUNK_SIZE];
+            firstChildren[chunk] = new int[CHUNK_SIZE];
+            nextSiblings[chunk] = new int[CHUNK_SIZE];
+            names[chunk] = new int[CHUNK_SIZE];
+            sizes[chunk] = new long[CHUNK_SIZE];
+            flags[chunk] = new byte[CHUNK_SIZE];
+        }
+        block[0] = reserved;
+        block[1] = reserved + BLOCK_SIZE;
+        reserved += BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the id of the name, adding it to the arena of its stripe if it's new. The stripe is taken from the
+     * high bits of the hash, the slot within the stripe's table from the low ones.
+     */
+    private int intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        int stripe = hash >>> (Integer.SIZE - STRIPE_SHIFT);
+        return stripes[stripe].intern(bytes, hash) << STRIPE_SHIFT | stripe;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash * 0x9E3779B1;
+    }
+
+    /**
+     * The names of one stripe: an arena of their bytes and an open addressed table of their ids plus one, so
+     * that zero marks a free slot.
+     */
+    private static final class NameStripe {
+        private byte[] arena = new byte[1 << 12];
+        private int[] nameOffsets = new int[1 << 6];
+        private int[] nameTable = new int[1 << 7];
+        private int nameCount;
+
+        synchronized int intern(byte[] bytes, int hash) {
+            int mask = nameTable.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int id = nameTable[slot] - 1;
+                if (id < 0) {
+                    id = append(bytes);
+                    nameTable[slot] = id + 1;
+                    if (nameTable.length < 2 * nameCount) {
+                        rehash();
+                    }
+                    return id;
+                }
+                if (Arrays.equals(arena, nameOffsets[id], nameOffsets[id + 1], bytes, 0, bytes.length)) {
+                    return id;
+                }
+            }
+        }
+
+        synchronized String name(int id) {
+            return new String(arena, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id], StandardCharsets.UTF_8);
+        }
+
+        private int append(byte[] bytes) {
+            int id = nameCount++;
+            if (nameOffsets.length < nameCount + 1) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+            }
+            int offset = nameOffsets[id];
+            if (arena.length - offset < bytes.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, offset + bytes.length));
+            }
+            System.arraycopy(bytes, 0, arena, offset, bytes.length);
+            nameOffsets[id + 1] = offset + bytes.length;
+            return id;
+        }
+
+        private void rehash() {
+            int[] table = new int[nameTable.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < nameCount; id++) {
+                int slot = hash(arena, nameOffsets[id], nameOffsets[id + 1]) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+            nameTable = table;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+
+/**
+ * Maps a tree into a {@link CompactTree} with a single crawl on the shared work pool, down to the max depth.
+ * Meant for trees with millions of entries, whose {@link WrappedTreeNode}s wouldn't fit into the heap; the
+ * {@link CompactTreeNode}s of the tree are only created while it's printed or sorted.
+ */
+public class CompactTreeMapper implements FileTreeMapper<WrappedPath, CompactTreeNode> {
+
+    private final int maxDepth;
+
+    public CompactTreeMapper(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public CompactTreeMapper() {
+        this(ParallelCrawler.UNLIMITED_DEPTH); // Default to mapping the whole tree.
+    }
+
+    @Override
+    public CompactTreeNode crawl(WrappedPath rootPath) throws IOException {
+        CompactTree tree = new CompactTree(rootPath.unwrap());
+        CompactTreeVisitor visitor = new CompactTreeVisitor(tree);
+        Integer root = new ParallelCrawler<>(visitor, maxDepth).crawl(rootPath.unwrap());
+        return new CompactTreeNode(tree, root != null ? root : visitor.getFileRoot());
+    }
+}
@@ -0,0 +1,208 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.config.SortOrder;
+import com.wizardry.tools.logripper.util.DataUtil;
+import com.wizardry.tools.logripper.util.functions.LineReader;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
+import com.wizardry.tools.logripper.util.printing.PrintOptions;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+
+/**
+ * A view of a single node of a {@link CompactTree}. Views hold nothing but the tree and the index, they are
+ * created on demand, e.g. while printing, and the path and the children of a node are only resolved when
+ * asked for. Two views of the same node are equal.
+ */
+public final class CompactTreeNode implements FileTreeNode<WrappedPath, CompactTreeNode> {
+
+    private static final String UNREADABLE_NODE = "unreadable";
+
+    private final CompactTree tree;
+    private final int index;
+
+    public CompactTreeNode(CompactTree tree, int index) {
+        this.tree = tree;
+        this.index = index;
+    }
+
+    public CompactTree getTree() {
+        return tree;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public WrappedPath getPath() {
+        return WrappedPath.of(tree.path(index));
+    }
+
+    @Override
+    public String getName() {
+        return tree.isUnreadable(index) ? UNREADABLE_NODE : tree.name(index);
+    }
+
+    @Override
+    public String getFileName() {
+        return tree.name(index);
+    }
+
+    /**
+     * Returns a snapshot of the children, in the order they are linked in.
+     */
+    @Override
+    public ConcurrentLinkedQueue<CompactTreeNode> getChildren() {
+        ConcurrentLinkedQueue<CompactTreeNode> children = new ConcurrentLinkedQueue<>();
+        for (int child = tree.firstChild(index); child != CompactTree.NONE; child = tree.nextSibling(child)) {
+            children.add(new CompactTreeNode(tree, child));
+        }
+        return children;
+    }
+
+    @Override
+    public void addChild(CompactTreeNode child) {
+        if (child.tree != tree) {
+            throw new IllegalArgumentException("Can't add a node of another tree: " + child.getPath());
+        }
+        tree.link(index, child.index);
+    }
+
+    @Override
+    public boolean removeChild(CompactTreeNode child) {
+        return child.tree == tree && tree.unlink(index, child.index);
+    }
+
+    @Override
+    public void display(int level) {
+        display(ResultOutput.out(), level);
+        ResultOutput.out().flush();
+    }
+
+    private void display(PrintStream out, int level) {
+        out.println("  ".repeat(Math.max(0, level)) + getPath());
+        for (CompactTreeNode child : getChildren()) {
+            child.display(out, level + 1);
+        }
+    }
+
+    @Override
+    public boolean isDir() {
+        return tree.isDir(index);
+    }
+
+    @Override
+    public boolean isExe() {
+        return getPath().isExe();
+    }
+
+    @Override
+    public boolean isFile() {
+        return tree.isFile(index);
+    }
+
+    @Override
+    public boolean isReadable() {
+        return !tree.isUnreadable(index) && getPath().isReadable();
+    }
+
+    @Override
+    public long getSize() {
+        return tree.size(index);
+    }
+
+    @Override
+    public String getReadableSize() {
+        return DataUtil.humanReadableByteCountSI(getSize());
+    }
+
+    @Override
+    public int getLevel() {
+        return tree.level(index);
+    }
+
+    @Override
+    public void sortChildrenBySize() {
+        TreeSorter.sort(this, SortOrder.ASC.bySize());
+    }
+
+    @Override
+    public void sortChildren(Comparator<? super CompactTreeNode> order) {
+        CompactTreeNode[] children = getChildren().toArray(new CompactTreeNode[0]);
+        Arrays.sort(children, order);
+        tree.relink(index, Arrays.stream(children).mapToInt(CompactTreeNode::getIndex).toArray());
+    }
+
+    @Override
+    public void print() {
+        ResultOutput.out().println(isDir() ? "/" + tree.name(index) : tree.name(index));
+        ResultOutput.out().flush();
+    }
+
+    @Override
+    public void print(PrintOptions options) {
+        StringBuilder sb = new StringBuilder();
+        if (options.linePrefix() != null) {
+            sb.append(options.linePrefix());
+        }
+        if (options.includeSize()) {
+            sb.append("[").append(getReadableSize()).append("]");
+            // add additional spacing so that tree indentation accounts for short size strings.
+            while(sb.length() < 10) {
+                sb.append(" ");
+            }
+        }
+        sb.append(" ".repeat(getLevel() * 2));
+        if (isDir()) {
+            sb.append("/");
+        }
+        sb.append(tree.name(index));
+        if (options.lineSuffix() != null) {
+            sb.append(options.lineSuffix());
+        }
+        ResultOutput.out().println(sb);
+        ResultOutput.out().flush();
+    }
+
+    @Override
+    public Stream<String> readLines() throws IOException {
+        return getPath().readLines();
+    }
+
+    @Override
+    public ConcurrentLinkedQueue<Match> readLines(LineReader lineReader) throws IOException {
+        return getPath().readLines(lineReader);
+    }
+
+    @Override
+    public void printChildren() {
+        getChildren().forEach(CompactTreeNode::print);
+    }
+
+    @Override
+    public void printChildren(PrintOptions options) {
+        getChildren().forEach(child -> child.print(options));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CompactTreeNode node && node.tree == tree && node.index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(tree) * 31 + index;
+    }
+
+    @Override
+    public String toString() {
+        return getPath().toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Builds a {@link CompactTree} from a crawl, the state of a directory is the index of its node. Like the
+ * {@link PooledTreeWrapperVisitor}, a directory is only linked to its parent once its subtree is complete.
+ */
+public class CompactTreeVisitor implements CrawlVisitor<Integer> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final CompactTree tree;
+    private int fileRoot = CompactTree.NONE;
+
+    public CompactTreeVisitor(CompactTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Returns the node of the root if it's a file rather than a directory, or {@link CompactTree#NONE}.
+     */
+    public int getFileRoot() {
+        return fileRoot;
+    }
+
+    @Override
+    public Integer enterDirectory(Integer parent, Path dir, BasicFileAttributes attrs) {
+        return tree.add(parent == null ? CompactTree.NONE : parent, name(dir), attrs.size(), CompactTree.DIR);
+    }
+
+    @Override
+    public void visitFile(Integer dir, Path file, BasicFileAttributes attrs) {
+        if (dir == null) {
+            // a file is a tree of its own
+            fileRoot = tree.add(CompactTree.NONE, name(file), attrs.size(), CompactTree.FILE);
+        } else if (attrs.isRegularFile()) {
+            tree.link(dir, tree.add(dir, name(file), attrs.size(), CompactTree.FILE));
+        } else if (attrs.isSymbolicLink()) {
+            // sized by its target like the PooledTreeWrapperVisitor sizes it
+            tree.link(dir, addLink(dir, file));
+        } else {
+            tree.link(dir, tree.add(dir, name(file), 0L, CompactTree.UNREADABLE));
+        }
+    }
+
+    private int addLink(int dir, Path link) {
+        try {
+            return tree.add(dir, name(link), Files.size(link), CompactTree.FILE);
+        } catch (IOException e) {
+            return tree.add(dir, name(link), 0L, CompactTree.UNREADABLE);
+        }
+    }
+
+    /**
+     * A directory past the depth limit is mapped as a leaf, sized by its whole subtree.
+     */
+    @Override
+    public void visitPruned(Integer dir, Path subdir, BasicFileAttributes attrs) {
+        tree.link(dir, tree.add(dir, name(subdir), SubtreeSizeVisitor.sizeOf(subdir, attrs), CompactTree.DIR));
+    }
+
+    @Override
+    public void exitDirectory(Integer parent, Integer dir) {
+        tree.link(parent, dir);
+    }
+
+    @Override
+    public void visitFailed(Integer dir, Path path, IOException e) {
+        if (path.equals(tree.path(dir))) {
+            LOGGER.info("Can't map node: " + path.toAbsolutePath());
+            return;
+        }
+        tree.link(dir, tree.add(dir, name(path), 0L, CompactTree.UNREADABLE));
+    }
+
+    private static String name(Path path) {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package com.wizardry.tools.logripper.tasks.pathmapper;
 
+import com.wizardry.tools.logripper.util.printing.PrintOptions;
+
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.concurrent.ExecutionException;
@@ -7,23 +9,14 @@ import java.util.concurrent.ExecutionException;
 public interface FileTreeMapper<K extends Path,T extends FileTreeNode<K,T>> {
     T crawl(K rootPath) throws InterruptedException, ExecutionException, IOException;
 
+    /**
+     * Prints the tree below the node through a {@link TreeRenderer}.
+     */
     static <K extends Path,T extends FileTreeNode<K,T>> void printTree(T node, int level, boolean includeSize) {
-        StringBuilder sb = new StringBuilder();
-        if (includeSize) {
-            sb.append("[").append(node.getReadableSize()).append("]");
-            // add additional spacing so that tree indentation accounts for short size strings.
-            while(sb.length() < 10) {
-                sb.append(" ");
-            }
-        }
-        sb.append(" ".repeat(level * 2));
-        if (node.isDir()) {
-            sb.append("/");
-        }
-        sb.append(node.getPath().getFileName());
-        System.out.println(sb);
-        for (T child : node.getChildren()) {
-            printTree(child, level + 1, includeSize);
+        try {
+            TreeRenderer.toStdOut(new PrintOptions(null, null, level, 2, includeSize, true)).render(node);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while printing the tree of: " + node.getPath(), e);
         }
     }
 }
@@ -7,9 +7,21 @@ import com.wizardry.tools.logripper.util.functions.LineReader;
 import com.wizardry.tools.logripper.util.matching.Match;
 import com.wizardry.tools.logripper.util.printing.Printable;
 
+import java.util.Comparator;
+
 public interface FileTreeNode<K,T extends Mappable<T>> extends Readable<LineReader, Match>,Sizable,Printable, Mappable<T> {
     K getPath();
     String getName();
+
+    /**
+     * Returns the name the node is printed with, the file name of its path.
+     */
+    String getFileName();
     void display(int level);
     void sortChildrenBySize();
+
+    /**
+     * Sorts the children of this node only, see {@link TreeSorter} for sorting a whole tree.
+     */
+    void sortChildren(Comparator<? super T> order);
 }
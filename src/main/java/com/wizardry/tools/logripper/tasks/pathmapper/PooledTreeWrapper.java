@@ -1,18 +1,29 @@
 package com.wizardry.tools.logripper.tasks.pathmapper;
 
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
-import java.util.concurrent.ForkJoinPool;
 
+import java.io.IOException;
+
+/**
+ * Maps a tree into {@link WrappedTreeNode}s with a single crawl on the shared work pool, down to the max depth.
+ */
 public class PooledTreeWrapper implements FileTreeMapper<WrappedPath, WrappedTreeNode> {
 
-    private final ForkJoinPool forkJoinPool;
+    private final int maxDepth;
+
+    public PooledTreeWrapper(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
 
     public PooledTreeWrapper() {
-        this.forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this(ParallelCrawler.UNLIMITED_DEPTH); // Default to mapping the whole tree.
     }
 
     @Override
-    public WrappedTreeNode crawl(WrappedPath rootPath) {
-        return forkJoinPool.invoke(new PooledTreeWrapperTask(rootPath));
+    public WrappedTreeNode crawl(WrappedPath rootPath) throws IOException {
+        WrappedTreeNode root = new ParallelCrawler<>(new PooledTreeWrapperVisitor(), maxDepth).crawl(rootPath.unwrap());
+        // a file is a tree of its own
+        return root != null ? root : WrappedTreeNode.of(rootPath);
     }
 }
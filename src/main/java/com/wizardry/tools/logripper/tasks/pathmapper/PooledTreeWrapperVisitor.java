@@ -0,0 +1,79 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Builds the {@link WrappedTreeNode} tree of a crawl. Nodes are created from the attributes the crawler read,
+ * and a directory node is only added to its parent once its subtree is complete, so its size is final by then.
+ */
+public class PooledTreeWrapperVisitor implements CrawlVisitor<WrappedTreeNode> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    @Override
+    public WrappedTreeNode enterDirectory(WrappedTreeNode parent, Path dir, BasicFileAttributes attrs) {
+        return node(dir, attrs);
+    }
+
+    @Override
+    public void visitFile(WrappedTreeNode node, Path file, BasicFileAttributes attrs) {
+        if (node == null) {
+            return;
+        }
+        if (attrs.isRegularFile()) {
+            node.addChild(node(file, attrs));
+        } else if (attrs.isSymbolicLink()) {
+            addLink(node, file);
+        } else {
+            node.addUnreadable(WrappedPath.of(file, attrs));
+        }
+    }
+
+    /**
+     * A directory past the depth limit is mapped as a leaf, sized by its whole subtree.
+     */
+    @Override
+    public void visitPruned(WrappedTreeNode node, Path dir, BasicFileAttributes attrs) {
+        node.addChild(new WrappedTreeNode(WrappedPath.of(dir, attrs), new ConcurrentLinkedQueue<>(), SubtreeSizeVisitor.sizeOf(dir, attrs), String.valueOf(dir.getFileName())));
+    }
+
+    @Override
+    public void exitDirectory(WrappedTreeNode parent, WrappedTreeNode node) {
+        parent.addChild(node);
+    }
+
+    @Override
+    public void visitFailed(WrappedTreeNode node, Path path, IOException e) {
+        if (path.equals(node.getPath().unwrap())) {
+            LOGGER.info("Can't map node: " + path.toAbsolutePath());
+            return;
+        }
+        // it's actually faster to let the read fail that it is to check if it's readable...
+        node.addUnreadable(WrappedPath.of(path));
+    }
+
+    /**
+     * A link is mapped as a file sized by its target, as the map always did, but never followed into.
+     */
+    private static void addLink(WrappedTreeNode node, Path link) {
+        try {
+            node.addChild(new WrappedTreeNode(WrappedPath.of(link), new ConcurrentLinkedQueue<>(), Files.size(link), String.valueOf(link.getFileName())));
+        } catch (IOException e) {
+            // a dangling link
+            node.addUnreadable(WrappedPath.of(link));
+        }
+    }
+
+    private static WrappedTreeNode node(Path path, BasicFileAttributes attrs) {
+        return new WrappedTreeNode(WrappedPath.of(path, attrs), new ConcurrentLinkedQueue<>(), attrs.size(), String.valueOf(path.getFileName()));
+    }
+}
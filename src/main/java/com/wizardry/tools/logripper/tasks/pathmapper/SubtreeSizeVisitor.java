@@ -0,0 +1,49 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlTask;
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sizes a subtree the way the map sizes it: directories by their own entry plus their content, regular files
+ * by their size and links by the size of their target. A directory past the depth limit is sized with it, so
+ * the map only leaves out its nodes, not its bytes.
+ */
+public class SubtreeSizeVisitor implements CrawlVisitor<Path> {
+
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Crawls the directory on the current pool and returns the size of its subtree, including its own entry.
+     */
+    public static long sizeOf(Path dir, BasicFileAttributes attrs) {
+        SubtreeSizeVisitor visitor = new SubtreeSizeVisitor();
+        visitor.size.add(attrs.size());
+        new CrawlTask<>(dir, dir, visitor).invoke();
+        return visitor.size.sum();
+    }
+
+    @Override
+    public Path enterDirectory(Path parent, Path dir, BasicFileAttributes attrs) {
+        size.add(attrs.size());
+        return dir;
+    }
+
+    @Override
+    public void visitFile(Path dir, Path file, BasicFileAttributes attrs) {
+        if (attrs.isRegularFile()) {
+            size.add(attrs.size());
+        } else if (attrs.isSymbolicLink()) {
+            try {
+                size.add(Files.size(file));
+            } catch (IOException e) {
+                // a dangling link is mapped as unreadable
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.util.DataUtil;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
+import com.wizardry.tools.logripper.util.printing.PrintOptions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders a mapped tree, a line per node, straight into a channel. Lines are collected into a batch of chars
+ * that is encoded into one large buffer, which is only written once it's full, so printing millions of
+ * nodes costs a few hundred writes instead of a synchronized, flushing println per node. Indentation strings
+ * are computed once per level and sizes are formatted without allocating.
+ * <p>
+ * A renderer isn't thread safe, a tree is rendered by a single thread in its order.
+ */
+public final class TreeRenderer {
+
+    private static final int BUFFER_SIZE = 1 << 20; // 1 MiB
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final int SIZE_COLUMN_WIDTH = 10;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final WritableByteChannel channel;
+    private final PrintOptions options;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringBuilder batch = new StringBuilder(BATCH_SIZE + 1024);
+    private final List<String> indents = new ArrayList<>();
+
+    public TreeRenderer(WritableByteChannel channel, PrintOptions options, Charset charset) {
+        this.channel = channel;
+        this.options = options;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public TreeRenderer(WritableByteChannel channel, PrintOptions options) {
+        this(channel, options, StandardCharsets.UTF_8); // Default to UTF-8, like the logs.
+    }
+
+    /**
+     * Creates a renderer for the standard output, in the charset of the {@link ResultOutput}.
+     */
+    public static TreeRenderer toStdOut(PrintOptions options) {
+        return new TreeRenderer(ResultOutput.channel(), options, ResultOutput.out().charset());
+    }
+
+    /**
+     * Renders the node at the indentation level of the options and, if they include children, its whole
+     * subtree below it. Everything is written once this returns.
+     */
+    public <T extends FileTreeNode<?, T>> void render(T node) throws IOException {
+        render(node, options.indentationLevel());
+        flush();
+    }
+
+    private <T extends FileTreeNode<?, T>> void render(T node, int level) throws IOException {
+        appendLine(node, level);
+        if (BATCH_SIZE <= batch.length()) {
+            encode(false);
+        }
+        if (options.includeChildren()) {
+            for (T child : node.getChildren()) {
+                render(child, level + 1);
+            }
+        }
+    }
+
+    private void appendLine(FileTreeNode<?, ?> node, int level) {
+        if (options.linePrefix() != null) {
+            batch.append(options.linePrefix());
+        }
+        if (options.includeSize()) {
+            int start = batch.length();
+            DataUtil.appendHumanReadableByteCountSI(batch.append('['), node.getSize()).append(']');
+            // add additional spacing so that tree indentation accounts for short size strings.
+            while (batch.length() - start < SIZE_COLUMN_WIDTH) {
+                batch.append(' ');
+            }
+        }
+        batch.append(indent(level));
+        if (node.isDir()) {
+            batch.append('/');
+        }
+        batch.append(node.getFileName());
+        if (options.lineSuffix() != null) {
+            batch.append(options.lineSuffix());
+        }
+        batch.append(LINE_SEPARATOR);
+    }
+
+    private String indent(int level) {
+        for (int i = indents.size(); i <= level; i++) {
+            indents.add(" ".repeat(i * options.indentationSize()));
+        }
+        return indents.get(level);
+    }
+
+    /**
+     * Encodes the batch into the buffer, writing the buffer whenever it's full.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(batch);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, endOfInput);
+            if (result.isOverflow()) {
+                write();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+        // a dangling high surrogate stays in the batch for the next line to complete
+        batch.delete(0, chars.position());
+    }
+
+    private void flush() throws IOException {
+        encode(true);
+        while (encoder.flush(buffer).isOverflow()) {
+            write();
+        }
+        write();
+        encoder.reset();
+    }
+
+    private void write() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,103 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.tasks.PooledRipperTask;
+import com.wizardry.tools.logripper.util.BoundedHeap;
+import com.wizardry.tools.logripper.util.SystemUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
+
+/**
+ * Sorts mapped trees and picks their greatest nodes on the shared work pool, with a task per directory.
+ * Every task only touches the children of its own directory, so the nodes need no synchronization.
+ */
+public final class TreeSorter {
+
+    private TreeSorter() {
+        //private constructor
+    }
+
+    /**
+     * Sorts the children of every directory of the tree.
+     */
+    public static <T extends FileTreeNode<?, T>> void sort(T root, Comparator<? super T> order) {
+        invoke(new SortTask<>(root, order));
+    }
+
+    /**
+     * Returns the greatest nodes below the root, greatest first, without sorting the tree. E.g. the 50 largest
+     * directories, which only keeps 50 nodes per task instead of sorting millions of them.
+     *
+     * @param count The maximum number of nodes to return.
+     * @param filter The nodes that are candidates, e.g. only directories.
+     */
+    public static <T extends FileTreeNode<?, T>> List<T> top(T root, int count, Comparator<? super T> order, Predicate<? super T> filter) {
+        return invoke(new TopTask<>(root, count, order, filter)).asList();
+    }
+
+    private static <R> R invoke(ForkJoinTask<R> task) {
+        return ForkJoinTask.inForkJoinPool() ? task.invoke() : SystemUtil.getWorkPool().invoke(task);
+    }
+
+    private static final class SortTask<T extends FileTreeNode<?, T>> extends PooledRipperTask<T, Void> {
+
+        private final Comparator<? super T> order;
+
+        SortTask(T node, Comparator<? super T> order) {
+            super(node);
+            this.order = order;
+        }
+
+        @Override
+        protected Void compute() {
+            input.sortChildren(order);
+            List<SortTask<T>> subtasks = new ArrayList<>();
+            for (T child : input.getChildren()) {
+                if (child.isDir()) {
+                    SortTask<T> subtask = new SortTask<>(child, order);
+                    subtask.fork();
+                    subtasks.add(subtask);
+                }
+            }
+            subtasks.forEach(ForkJoinTask::join);
+            return null;
+        }
+    }
+
+    private static final class TopTask<T extends FileTreeNode<?, T>> extends PooledRipperTask<T, BoundedHeap<T>> {
+
+        private final int count;
+        private final Comparator<? super T> order;
+        private final Predicate<? super T> filter;
+
+        TopTask(T node, int count, Comparator<? super T> order, Predicate<? super T> filter) {
+            super(node);
+            this.count = count;
+            this.order = order;
+            this.filter = filter;
+        }
+
+        @Override
+        protected BoundedHeap<T> compute() {
+            BoundedHeap<T> heap = new BoundedHeap<>(count, order);
+            List<TopTask<T>> subtasks = new ArrayList<>();
+            for (T child : input.getChildren()) {
+                if (filter.test(child)) {
+                    heap.offer(child);
+                }
+                if (child.isDir()) {
+                    TopTask<T> subtask = new TopTask<>(child, count, order, filter);
+                    subtask.fork();
+                    subtasks.add(subtask);
+                }
+            }
+            for (TopTask<T> subtask : subtasks) {
+                heap.merge(subtask.join());
+            }
+            return heap;
+        }
+    }
+}
@@ -1,17 +1,19 @@
 package com.wizardry.tools.logripper.tasks.pathmapper;
 
+import com.wizardry.tools.logripper.config.SortOrder;
 import com.wizardry.tools.logripper.util.DataUtil;
 import com.wizardry.tools.logripper.util.functions.LineReader;
 import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
 import com.wizardry.tools.logripper.util.printing.PrintOptions;
 import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode> {
@@ -21,13 +23,13 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
     private final WrappedPath path;
     private final ConcurrentLinkedQueue<WrappedTreeNode> children;
     private final int level;
-    private long size;
+    private final AtomicLong size;
     private final String name;
 
     public WrappedTreeNode(WrappedPath path, ConcurrentLinkedQueue<WrappedTreeNode> children, long size, String name, int level) {
         this.path = path;
         this.children = children;
-        this.size = size;
+        this.size = new AtomicLong(size);
         this.name = name;
         this.level = level;
     }
@@ -66,7 +68,7 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
     @Override
     public void addChild(WrappedTreeNode child) {
         children.add(child);
-        this.size += child.getSize(); // add child size to the parent dir's size
+        size.addAndGet(child.getSize()); // add child size to the parent dir's size
     }
 
     public void addUnreadable(WrappedPath path) {
@@ -81,18 +83,25 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
 
     @Override
     public boolean removeChild(WrappedTreeNode child) {
-        boolean success = children.remove((WrappedTreeNode) child);
-        this.size -= child.getSize(); // remove child size from parent dir
+        boolean success = children.remove(child);
+        if (success) {
+            size.addAndGet(-child.getSize()); // remove child size from parent dir
+        }
         return success;
     }
 
     @Override
     public void display(int level) {
+        display(ResultOutput.out(), level);
+        ResultOutput.out().flush();
+    }
+
+    private void display(PrintStream out, int level) {
         StringBuilder indent = new StringBuilder();
         indent.append("  ".repeat(Math.max(0, level)));
-        System.out.println(indent.append(path));
+        out.println(indent.append(path));
         for (WrappedTreeNode child : children) {
-            child.display(level + 1);
+            child.display(out, level + 1);
         }
     }
 
@@ -118,12 +127,12 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
 
     @Override
     public long getSize() {
-        return size;
+        return size.get();
     }
 
     @Override
     public String getReadableSize() {
-        return DataUtil.humanReadableByteCountSI(size);
+        return DataUtil.humanReadableByteCountSI(getSize());
     }
 
     @Override
@@ -136,31 +145,29 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
         return name;
     }
 
+    @Override
+    public String getFileName() {
+        return String.valueOf(path.getFileName());
+    }
+
     // Method to sort children by size
+    @Override
     public void sortChildrenBySize() {
-        // copy queue
-        List<WrappedTreeNode> list = new ArrayList<>(children);
-        // sort list
-        list.sort(Comparator.comparingLong(WrappedTreeNode::getSize));
-        // clear queue
+        TreeSorter.sort(this, SortOrder.ASC.bySize());
+    }
+
+    @Override
+    public void sortChildren(Comparator<? super WrappedTreeNode> order) {
+        WrappedTreeNode[] sorted = children.toArray(new WrappedTreeNode[0]);
+        Arrays.sort(sorted, order);
         children.clear();
-        // copy back to queue
-        children.addAll(list);
-        // tell child dirs to sort.
-        for (WrappedTreeNode child : children) {
-            if (child.isDir()) {
-                child.sortChildrenBySize();
-            }
-        }
+        children.addAll(Arrays.asList(sorted));
     }
 
     @Override
     public void print() {
-        if (isDir()) {
-            System.out.println("/" + path.getFileName());
-            return;
-        }
-        System.out.println(path.getFileName());
+        ResultOutput.out().println(isDir() ? "/" + path.getFileName() : String.valueOf(path.getFileName()));
+        ResultOutput.out().flush();
     }
 
     @Override
@@ -184,7 +191,8 @@ public class WrappedTreeNode implements FileTreeNode<WrappedPath,WrappedTreeNode
         if (options.lineSuffix() != null) {
             sb.append(options.lineSuffix());
         }
-        System.out.println(sb);
+        ResultOutput.out().println(sb);
+        ResultOutput.out().flush();
     }
 
     @Override
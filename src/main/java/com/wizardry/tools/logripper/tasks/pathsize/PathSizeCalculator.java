@@ -1,29 +1,56 @@
 package com.wizardry.tools.logripper.tasks.pathsize;
 
 import com.wizardry.tools.logripper.tasks.Ripper;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
 import com.wizardry.tools.logripper.util.DataUtil;
 import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.concurrent.ForkJoinPool;
 
-// TODO: This is failing
+/**
+ * Calculates the total size of the regular files below a path, down to the max depth, with a single crawl of the tree.
+ * With a {@link SizeLedger}, a rerun only lists the directories that changed since the last calculation.
+ */
 public class PathSizeCalculator implements Ripper<Path,Long> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
+    private final int maxDepth;
+    private final boolean isLedgered;
+
+    public PathSizeCalculator(int maxDepth, boolean isLedgered) {
+        this.maxDepth = maxDepth;
+        this.isLedgered = isLedgered;
+    }
+
+    public PathSizeCalculator(int maxDepth) {
+        this(maxDepth, false); // Default to calculating everything from scratch.
+    }
+
+    public PathSizeCalculator() {
+        this(ParallelCrawler.UNLIMITED_DEPTH); // Default to the whole tree.
+    }
+
     @Override
     public Long rip(Path path) throws IOException {
         long size;
         Timestamp calculationTime = new Timestamp();
-        try (ForkJoinPool pool = new ForkJoinPool()) {
-            PathSizeTask task = new PathSizeTask(path);
-            size = pool.invoke(task);
+        try {
+            SizeLedger ledger = isLedgered ? SizeLedger.open(SizeLedger.getDefaultDirectory(), path) : null;
+            PathSizeVisitor visitor = new PathSizeVisitor(ledger);
+            new ParallelCrawler<>(visitor, maxDepth).crawl(path);
+            size = visitor.size();
+            if (ledger != null) {
+                ledger.save(maxDepth < 0);
+                LOGGER.info("Reused [" + visitor.reused() + "] unchanged directories from the size ledger");
+            }
             String humanReadableSize = DataUtil.humanReadableByteCountSI(size);
-            System.out.println("Total size: [" + humanReadableSize + "]");
+            ResultOutput.out().println("Total size: [" + humanReadableSize + "]");
+            ResultOutput.out().flush();
         } catch (Exception e) {
             throw new IOException("Error calculating file size", e);
         }
@@ -1,22 +1,147 @@
 package com.wizardry.tools.logripper.tasks.pathsize;
 
-import com.wizardry.tools.logripper.tasks.PooledRipperVisitor;
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
-import java.nio.file.FileVisitResult;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
-public class PathSizeVisitor extends PooledRipperVisitor<Path, PathSizeTask> {
+/**
+ * Sums up the sizes of the regular files of a tree, straight from the attributes the crawler read. With a
+ * {@link SizeLedger}, directories that are unchanged since the last calculation aren't listed, their entries
+ * are taken from the ledger. A directory's modification time only changes with its entries, not with the
+ * content of its files, so every file is still stat'ed.
+ */
+public class PathSizeVisitor implements CrawlVisitor<PathSizeVisitor.Dir> {
 
-    public PathSizeVisitor(List<PathSizeTask> subTasks) {
-        super(subTasks);
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final LongAdder size = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final SizeLedger ledger;
+
+    /**
+     * The state of a directory while it's crawled.
+     */
+    public static final class Dir {
+        private final Path path;
+        private final BasicFileAttributes attributes;
+        private final SizeLedger.Entry known;
+        private final List<String> entries = new ArrayList<>();
+        private boolean isFailed;
+
+        private Dir(Path path, BasicFileAttributes attributes, SizeLedger.Entry known) {
+            this.path = path;
+            this.attributes = attributes;
+            this.known = known;
+        }
+
+        private boolean isRecorded() {
+            return known == null && !isFailed;
+        }
+    }
+
+    public PathSizeVisitor(SizeLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    public PathSizeVisitor() {
+        this(null); // Default to calculating everything from scratch.
+    }
+
+    @Override
+    public Dir enterDirectory(Dir parent, Path dir, BasicFileAttributes attrs) {
+        if (parent != null && parent.isRecorded()) {
+            addEntry(parent, dir);
+        }
+        SizeLedger.Entry known = ledger == null ? null : ledger.lookup(dir, attrs);
+        if (known != null) {
+            reused.increment();
+        }
+        return new Dir(dir, attrs, known);
+    }
+
+    @Override
+    public List<String> knownEntries(Dir dir) {
+        return dir.known == null ? null : dir.known.entries();
+    }
+
+    @Override
+    public void visitFile(Dir dir, Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile()) {
+            return;
+        }
+        size.add(attrs.size());
+        if (ledger != null && dir != null && dir.isRecorded()) {
+            addEntry(dir, file);
+        }
+    }
+
+    @Override
+    public void visitPruned(Dir dir, Path subdir, BasicFileAttributes attrs) {
+        if (dir.isRecorded()) {
+            // visited again on a deeper rerun, pruned again on a shallow one
+            addEntry(dir, subdir);
+        }
     }
+
     @Override
-    public FileVisitResult visitFile(Path input, BasicFileAttributes attrs) {
-        // Create a task for each file to calculate its size
-        PathSizeTask task = new PathSizeTask(input);
-        subTasks.add(task);
-        return FileVisitResult.CONTINUE;
+    public void entriesVisited(Dir dir) {
+        if (ledger == null) {
+            return;
+        }
+        if (dir.isFailed) {
+            // listed again next time
+        } else if (dir.known != null) {
+            ledger.keep(dir.path, dir.known);
+        } else {
+            ledger.record(dir.path, dir.attributes, dir.entries);
+        }
+        dir.entries.clear();
+    }
+
+    @Override
+    public void visitFailed(Dir dir, Path path, IOException e) {
+        // do nothing, can't read, can't get size
+        LOGGER.info("Can't Read: " + path);
+        if (dir != null) {
+            // an incomplete directory is listed again next time
+            dir.isFailed = true;
+        }
+    }
+
+    /**
+     * Adds the name of an entry to the ledger entry of its directory. A name that doesn't resolve back to the
+     * same path, e.g. one whose bytes aren't valid in the file system's encoding, couldn't be stat'ed on a
+     * rerun, so its directory is listed again instead.
+     */
+    private static void addEntry(Dir dir, Path entry) {
+        String name = entry.getFileName().toString();
+        try {
+            if (entry.equals(dir.path.resolve(name))) {
+                dir.entries.add(name);
+                return;
+            }
+        } catch (InvalidPathException e) {
+            // fall through
+        }
+        dir.isFailed = true;
+    }
+
+    public long size() {
+        return size.sum();
+    }
+
+    /**
+     * Returns the number of directories whose ledger entry was reused instead of listing them.
+     */
+    public long reused() {
+        return reused.sum();
     }
 }
@@ -0,0 +1,193 @@
+package com.wizardry.tools.logripper.tasks.pathsize;
+
+import com.wizardry.tools.logripper.util.StringUtil;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the last size calculation of a tree found, per directory: the names of its entries that have to be
+ * visited again, i.e. its subdirectories and regular files. A directory whose inode and modification time are
+ * unchanged still has the same entries, so a rerun doesn't list it, and only stats those entries.
+ * <p>
+ * A ledger is read once when a calculation starts and replaced as a whole when it's done, through a
+ * temporary file that is atomically moved into place. Concurrent runs over the same tree never see a
+ * partial ledger, the one that finishes last wins. Ledgers live in {@code ~/.logripper/ledger}, which can be
+ * moved with the {@value #DIRECTORY_PROPERTY} system property, one per tree named after the hash of its path.
+ */
+public final class SizeLedger {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    public static final String DIRECTORY_PROPERTY = "logripper.ledger.dir";
+    private static final String SUFFIX = ".lsl";
+    private static final int MAGIC = 0x4c525332; // "LRS2"
+    /** A directory modified this close to its listing may change again within the same timestamp. */
+    private static final long RACY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * The state of a single directory when it was last listed.
+     *
+     * @param fileKey The file key (e.g. device and inode) of the directory, empty if the file system has none.
+     * @param modified The modification time of the directory in nanoseconds.
+     * @param entries The names of the entries to visit on a rerun.
+     */
+    public record Entry(String fileKey, long modified, List<String> entries) {
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return modified == SizeLedger.modified(attributes) && fileKey.equals(SizeLedger.fileKey(attributes));
+        }
+    }
+
+    private final Path root;
+    private final Path file;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private final long startNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+
+    private SizeLedger(Path root, Path file, Map<String, Entry> previous) {
+        this.root = root;
+        this.file = file;
+        this.previous = previous;
+    }
+
+    public static Path getDefaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory != null
+                ? Path.of(directory)
+                : Path.of(System.getProperty("user.home"), ".logripper", "ledger");
+    }
+
+    /**
+     * Opens the ledger of the tree below the root, which is empty if the tree was never calculated or its
+     * ledger can't be read.
+     */
+    public static SizeLedger open(Path directory, Path root) {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        Path file = directory.resolve(StringUtil.sha256(absoluteRoot.toString()) + SUFFIX);
+        Map<String, Entry> previous = new HashMap<>();
+        try {
+            read(file, absoluteRoot, previous);
+        } catch (NoSuchFileException e) {
+            // never calculated
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring unreadable size ledger of path " + root + ": " + e.getMessage());
+            previous.clear();
+        }
+        return new SizeLedger(absoluteRoot, file, previous);
+    }
+
+    /**
+     * Returns the entry of the directory if it's unchanged since the last calculation, null otherwise.
+     */
+    public Entry lookup(Path dir, BasicFileAttributes attributes) {
+        Entry entry = previous.get(key(dir));
+        return entry != null && entry.isCurrent(attributes) ? entry : null;
+    }
+
+    /**
+     * Records a directory that was listed. Directories modified right before they were listed are left out,
+     * an entry added within the same timestamp wouldn't be noticed.
+     */
+    public void record(Path dir, BasicFileAttributes attributes, List<String> entries) {
+        if (startNanos - RACY_NANOS <= modified(attributes)) {
+            return;
+        }
+        current.put(key(dir), new Entry(fileKey(attributes), modified(attributes), List.copyOf(entries)));
+    }
+
+    /**
+     * Carries the entry of an unchanged directory over into the next ledger.
+     */
+    public void keep(Path dir, Entry entry) {
+        current.put(key(dir), entry);
+    }
+
+    /**
+     * Replaces the ledger with the directories recorded and kept by this calculation.
+     *
+     * @param isComplete True if the whole tree was calculated, the entries of directories below a depth
+     *                   limit are carried over otherwise.
+     */
+    public void save(boolean isComplete) throws IOException {
+        Map<String, Entry> entries = current;
+        if (!isComplete) {
+            entries = new HashMap<>(previous);
+            entries.putAll(current);
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(root.toString());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    Entry value = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(value.fileKey());
+                    out.writeLong(value.modified());
+                    out.writeInt(value.entries().size());
+                    for (String name : value.entries()) {
+                        out.writeUTF(name);
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void read(Path file, Path root, Map<String, Entry> entries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a size ledger: " + file);
+            }
+            if (!root.toString().equals(in.readUTF())) {
+                throw new IOException("Size ledger of another path: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                String fileKey = in.readUTF();
+                long modified = in.readLong();
+                int size = in.readInt();
+                List<String> names = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    names.add(in.readUTF());
+                }
+                entries.put(key, new Entry(fileKey, modified, names));
+            }
+        }
+    }
+
+    private String key(Path dir) {
+        return root.relativize(dir.toAbsolutePath().normalize()).toString();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        Object key = attributes.fileKey();
+        return key == null ? "" : key.toString();
+    }
+}
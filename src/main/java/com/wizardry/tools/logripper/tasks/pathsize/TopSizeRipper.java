@@ -0,0 +1,74 @@
+package com.wizardry.tools.logripper.tasks.pathsize;
+
+import com.wizardry.tools.logripper.tasks.Ripper;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.util.DataUtil;
+import com.wizardry.tools.logripper.util.Timestamp;
+import com.wizardry.tools.logripper.util.output.ResultOutput;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reports the largest files and directories below a path, down to the max depth, with a single crawl of the
+ * tree. Unlike a sorted map, nothing but the reported entries is ever kept.
+ */
+public class TopSizeRipper implements Ripper<Path, List<TopSizeVisitor.Sized>> {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private final int count;
+    private final int maxDepth;
+
+    public TopSizeRipper(int count, int maxDepth) {
+        this.count = count;
+        this.maxDepth = maxDepth;
+    }
+
+    public TopSizeRipper(int count) {
+        this(count, ParallelCrawler.UNLIMITED_DEPTH); // Default to the whole tree.
+    }
+
+    /**
+     * @return The largest directories, largest first.
+     */
+    @Override
+    public List<TopSizeVisitor.Sized> rip(Path path) throws IOException {
+        Timestamp topTime = new Timestamp();
+        List<TopSizeVisitor.Sized> directories;
+        try {
+            TopSizeVisitor visitor = new TopSizeVisitor(count);
+            TopSizeVisitor.Dir root = new ParallelCrawler<>(visitor, maxDepth).crawl(path);
+            directories = visitor.largestDirectories();
+            print("Largest files:", visitor.largestFiles());
+            if (root != null) {
+                print("Largest directories:", directories);
+            }
+            long size = root != null ? root.size() : visitor.fileRootSize();
+            ResultOutput.out().println("Total size: [" + DataUtil.humanReadableByteCountSI(size) + "]");
+            ResultOutput.out().flush();
+        } catch (Exception e) {
+            throw new IOException("Error finding the largest entries", e);
+        }
+
+        LOGGER.info("Found the largest entries in [" + topTime.toMillis() + "] milliseconds");
+        return directories;
+    }
+
+    private static void print(String title, List<TopSizeVisitor.Sized> entries) {
+        StringBuilder sb = new StringBuilder(title).append(System.lineSeparator());
+        for (TopSizeVisitor.Sized entry : entries) {
+            int start = sb.length();
+            sb.append("[").append(DataUtil.humanReadableByteCountSI(entry.size())).append("]");
+            // add additional spacing so that the paths line up for short size strings.
+            do {
+                sb.append(" ");
+            } while (sb.length() - start < 11);
+            sb.append(entry.path()).append(System.lineSeparator());
+        }
+        ResultOutput.out().print(sb);
+    }
+}
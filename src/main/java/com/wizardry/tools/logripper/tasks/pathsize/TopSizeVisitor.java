@@ -0,0 +1,119 @@
+package com.wizardry.tools.logripper.tasks.pathsize;
+
+import com.wizardry.tools.logripper.tasks.crawl.CrawlVisitor;
+import com.wizardry.tools.logripper.util.BoundedHeap;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Finds the largest files and directories of a tree in a single crawl, without mapping it. Directories are
+ * sized by the regular files below them, like the {@link PathSizeVisitor} does, and a directory's size is
+ * final once its subtree was crawled.
+ * <p>
+ * Every worker keeps bounded heaps of its own, so a candidate is offered without any synchronization, and the
+ * heaps of all workers are merged once the crawl is done. Memory only grows with the number of entries asked
+ * for and the directories being crawled at the same time, never with the size of the tree.
+ */
+public class TopSizeVisitor implements CrawlVisitor<TopSizeVisitor.Dir> {
+
+    private static final Comparator<Sized> BY_SIZE = Comparator.comparingLong(Sized::size);
+
+    /**
+     * A file or directory and its size in bytes.
+     */
+    public record Sized(Path path, long size) {
+    }
+
+    /**
+     * The state of a directory while it's crawled.
+     */
+    public static final class Dir {
+        private final Path path;
+        private long size;
+
+        private Dir(Path path) {
+            this.path = path;
+        }
+
+        public long size() {
+            return size;
+        }
+    }
+
+    private final class Heaps {
+        private final BoundedHeap<Sized> files = new BoundedHeap<>(count, BY_SIZE);
+        private final BoundedHeap<Sized> directories = new BoundedHeap<>(count, BY_SIZE);
+    }
+
+    private final int count;
+    private final Queue<Heaps> allHeaps = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Heaps> heaps = ThreadLocal.withInitial(this::newHeaps);
+    private volatile long fileRootSize;
+
+    /**
+     * @param count The number of files and of directories to keep.
+     */
+    public TopSizeVisitor(int count) {
+        this.count = count;
+    }
+
+    @Override
+    public Dir enterDirectory(Dir parent, Path dir, BasicFileAttributes attrs) {
+        return new Dir(dir);
+    }
+
+    @Override
+    public void visitFile(Dir dir, Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile()) {
+            return;
+        }
+        if (dir == null) {
+            fileRootSize = attrs.size();
+        } else {
+            dir.size += attrs.size();
+        }
+        heaps.get().files.offer(new Sized(file, attrs.size()));
+    }
+
+    @Override
+    public void exitDirectory(Dir parent, Dir dir) {
+        parent.size += dir.size;
+        heaps.get().directories.offer(new Sized(dir.path, dir.size));
+    }
+
+    /**
+     * Returns the size of the root if it's a file rather than a directory.
+     */
+    public long fileRootSize() {
+        return fileRootSize;
+    }
+
+    /**
+     * Returns the largest files, largest first. Must only be called once the crawl is done.
+     */
+    public List<Sized> largestFiles() {
+        BoundedHeap<Sized> merged = new BoundedHeap<>(count, BY_SIZE);
+        allHeaps.forEach(heap -> merged.merge(heap.files));
+        return merged.asList();
+    }
+
+    /**
+     * Returns the largest directories below the root, largest first. Must only be called once the crawl is done.
+     */
+    public List<Sized> largestDirectories() {
+        BoundedHeap<Sized> merged = new BoundedHeap<>(count, BY_SIZE);
+        allHeaps.forEach(heap -> merged.merge(heap.directories));
+        return merged.asList();
+    }
+
+    private Heaps newHeaps() {
+        Heaps created = new Heaps();
+        allHeaps.add(created);
+        return created;
+    }
+}
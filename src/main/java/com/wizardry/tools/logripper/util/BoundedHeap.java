@@ -0,0 +1,62 @@
+package com.wizardry.tools.logripper.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the greatest elements offered to it, up to its capacity. The smallest kept element is at the head of
+ * a min-heap, so offering an element costs O(log capacity) and memory never grows past the capacity. Not
+ * thread safe: every worker fills a heap of its own, and the heaps are merged once the workers are joined.
+ *
+ * @param <T> The type of the elements.
+ */
+public class BoundedHeap<T> {
+
+    private final int capacity;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    public BoundedHeap(int capacity, Comparator<? super T> order) {
+        this.capacity = capacity;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1 << 10)), order);
+    }
+
+    public void offer(T element) {
+        if (heap.size() < capacity) {
+            heap.add(element);
+        } else if (capacity != 0 && order.compare(element, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(element);
+        }
+    }
+
+    /**
+     * Offers every element of the other heap to this one.
+     *
+     * @return This heap.
+     */
+    public BoundedHeap<T> merge(BoundedHeap<T> other) {
+        other.heap.forEach(this::offer);
+        return this;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    public boolean isEmpty() {
+        return heap.isEmpty();
+    }
+
+    /**
+     * Returns the kept elements, greatest first.
+     */
+    public List<T> asList() {
+        List<T> list = new ArrayList<>(heap);
+        list.sort(order.reversed());
+        return list;
+    }
+}
@@ -0,0 +1,114 @@
+package com.wizardry.tools.logripper.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Helpers for scanning raw (UTF-8) log bytes without decoding them into Strings.
+ * All offsets are absolute buffer indexes, the buffer's position and limit are never touched.
+ */
+public final class ByteUtil {
+
+    public static final byte LF = '\n';
+    public static final byte CR = '\r';
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long LF_WORD = ONES * LF;
+
+    private ByteUtil() {
+        //private constructor
+    }
+
+    /**
+     * Returns the index of the first occurrence of the value within [from, to), or -1 if there is none.
+     */
+    public static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the start of the line that contains the given index, never looking further back than {@code from}.
+     */
+    public static int lineStart(ByteBuffer buffer, int from, int index) {
+        for (int i = index - 1; i >= from; i--) {
+            if (buffer.get(i) == LF) {
+                return i + 1;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Returns the end of the line that contains the given index, i.e. the index of its line feed, or {@code to}
+     * if the line isn't terminated within [index, to).
+     */
+    public static int lineEnd(ByteBuffer buffer, int index, int to) {
+        int end = indexOf(buffer, LF, index, to);
+        return end < 0 ? to : end;
+    }
+
+    /**
+     * Returns the end of the line content, excluding a trailing carriage return.
+     */
+    public static int contentEnd(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return lineStart < lineEnd && buffer.get(lineEnd - 1) == CR ? lineEnd - 1 : lineEnd;
+    }
+
+    /**
+     * Counts the line feeds within [from, to), eight bytes at a time.
+     */
+    public static int countLineBreaks(ByteBuffer buffer, int from, int to) {
+        int count = 0;
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = buffer.getLong(i) ^ LF_WORD;
+            // sets the high bit of exactly those bytes that were a line feed
+            long zeros = ~(((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word | LOW_SEVEN_BITS);
+            count += Long.bitCount(zeros);
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == LF) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the line feeds of the file before the given offset, reading it in chunks of 1 MiB.
+     */
+    public static int countLineBreaks(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(end, 1 << 20));
+        int count = 0;
+        for (long position = 0; position < end; position += buffer.limit()) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            while (buffer.hasRemaining() && 0 <= channel.read(buffer, position + buffer.position())) {
+                // keep reading until the chunk is full or the file ends
+            }
+            buffer.flip();
+            if (buffer.limit() == 0) {
+                break;
+            }
+            count += countLineBreaks(buffer, 0, buffer.limit());
+        }
+        return count;
+    }
+
+    /**
+     * Counts the lines within [from, to), including a last line that isn't terminated by a line feed.
+     */
+    public static int countLines(ByteBuffer buffer, int from, int to) {
+        if (to <= from) {
+            return 0;
+        }
+        int count = countLineBreaks(buffer, from, to);
+        return buffer.get(to - 1) == LF ? count : count + 1;
+    }
+}
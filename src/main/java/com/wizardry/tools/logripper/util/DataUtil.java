@@ -1,5 +1,9 @@
 package com.wizardry.tools.logripper.util;
 
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import static com.wizardry.tools.logripper.util.StringUtil.EMPTY;
 
 public final class DataUtil {
@@ -8,9 +12,13 @@ public final class DataUtil {
 
     private static final String SIZE_FORMAT = "%s%.2f%s";
 
+    private static final String[] SI_UNITS = {"KB", "MB", "GB", "TB", "PB", "EB"};
+
+    private static final Pattern BYTE_COUNT = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([BKMGTPE]?)(I)?B?", Pattern.CASE_INSENSITIVE);
+
     /**
      * This is a helper method for converting byte length
-     * into a Human Readable Format.
+     * into a Human Readable Format, the same in every locale.
      * @param bytes long value of bytes
      * @return String
      */
@@ -28,6 +36,55 @@ public final class DataUtil {
             unitIndex++;
         }
 
-        return String.format(SIZE_FORMAT, sign, absBytes / 1e3, units[unitIndex]);
+        return String.format(Locale.ROOT, SIZE_FORMAT, sign, absBytes / 1e3, units[unitIndex]);
+    }
+
+    /**
+     * This is the allocation free variant of {@link #humanReadableByteCountSI(long)}
+     * for printing millions of sizes, with the same output.
+     * @param sb StringBuilder to append to
+     * @param bytes long value of bytes
+     * @return the StringBuilder
+     */
+    public static StringBuilder appendHumanReadableByteCountSI(StringBuilder sb, long bytes) {
+        long absBytes = bytes == Long.MIN_VALUE ? Long.MAX_VALUE : Math.abs(bytes);
+        if (absBytes < 1000L) {
+            return sb.append(bytes).append('B');
+        }
+        int unitIndex = 0;
+        while (absBytes >= 999_950L && unitIndex < SI_UNITS.length - 1) {
+            absBytes /= 1000;
+            unitIndex++;
+        }
+        // like %.2f, round half up
+        long hundredths = (absBytes + 5) / 10;
+        if (bytes < 0) {
+            sb.append(DASH);
+        }
+        sb.append(hundredths / 100).append('.');
+        if (hundredths % 100 < 10) {
+            sb.append('0');
+        }
+        return sb.append(hundredths % 100).append(SI_UNITS[unitIndex]);
+    }
+
+    /**
+     * This is the reverse of {@link #humanReadableByteCountSI(long)}, a
+     * size like 512, 20KB or 1.5G is read with SI units, a size like 4MiB
+     * with binary units.
+     * @param size String value of a size
+     * @return long
+     * @throws IllegalArgumentException if the size can't be parsed
+     */
+    public static long parseByteCount(String size) {
+        Matcher matcher = BYTE_COUNT.matcher(size.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Can't parse size [" + size + "], use a size like 512, 20KB or 4MiB.");
+        }
+        double value = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(2).toUpperCase();
+        int exponent = unit.isEmpty() ? 0 : "BKMGTPE".indexOf(unit.charAt(0));
+        double base = matcher.group(3) != null ? 1024 : 1000;
+        return (long) (value * Math.pow(base, exponent));
     }
 }
@@ -23,6 +23,10 @@ public class FifoList<T> {
         list.addLast(element);
     }
 
+    public synchronized void clear() {
+        list.clear();
+    }
+
     public synchronized int size() {
         return list.size();
     }
@@ -1,5 +1,10 @@
 package com.wizardry.tools.logripper.util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 public final class StringUtil {
 
     public static final String EMPTY = "";
@@ -10,4 +15,16 @@ public final class StringUtil {
         }
         return string.isEmpty();
     }
+
+    /**
+     * Returns the SHA-256 hash of the UTF-8 bytes of the string in hex, e.g. to name a file after a path.
+     */
+    public static String sha256(String string) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(string.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Error while hashing string: " + string, e);
+        }
+    }
 }
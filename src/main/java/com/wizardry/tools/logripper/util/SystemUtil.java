@@ -5,11 +5,19 @@ import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
 import java.io.*;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public final class SystemUtil {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
 
+    private static final long MIN_WINDOW_SIZE = 1L << 20; // 1 MiB
+    private static final long MAX_WINDOW_SIZE = 32L << 20; // 32 MiB
+
+    private static final class WorkPoolHolder {
+        private static final ForkJoinPool WORK_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
     private SystemUtil() {
         //private constructor
     }
@@ -23,6 +31,24 @@ public final class SystemUtil {
         return Integer.MAX_VALUE;
     }
 
+    /**
+     * Picks the size of the memory mapped windows a file is split into. Small files are spread over
+     * every core, while large files are capped so a single window never pins too much of the page cache.
+     * @param fileSize The size of the file in bytes.
+     * @return The nominal window size in bytes.
+     */
+    public static long calculateWindowSize(long fileSize) {
+        return Math.min(MAX_WINDOW_SIZE, Math.max(MIN_WINDOW_SIZE, calculateOptimalPartSize(fileSize)));
+    }
+
+    /**
+     * Returns the work stealing pool that is shared by every grep of this process, sized to the machine.
+     * Its workers are daemon threads, so the pool is never shut down.
+     */
+    public static ForkJoinPool getWorkPool() {
+        return WorkPoolHolder.WORK_POOL;
+    }
+
     public static List<String> readFile(File file) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
             return reader.lines().toList();
@@ -0,0 +1,116 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The compression formats rotated logs come in, detected from their magic bytes rather than their file names.
+ * Gzip is decoded by the JDK, zstd by aircompressor and bzip2 by commons-compress, all of them in pure Java.
+ */
+public enum Compression {
+
+    NONE(new byte[0]),
+    GZIP(new byte[]{0x1f, (byte) 0x8b}),
+    ZSTD(new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}),
+    BZIP2(new byte[]{'B', 'Z', 'h'});
+
+    /** The number of bytes needed to tell every format apart. */
+    public static final int MAGIC_LENGTH = 4;
+
+    private final byte[] magic;
+
+    Compression(byte[] magic) {
+        this.magic = magic;
+    }
+
+    /**
+     * Detects the format from the first bytes of the head buffer, between its position and its limit.
+     */
+    public static Compression detect(ByteBuffer head) {
+        for (Compression compression : values()) {
+            if (compression != NONE && compression.matches(head)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Detects the format from the first bytes of the file, without moving the channel's position.
+     */
+    public static Compression detect(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(MAGIC_LENGTH);
+        // the buffer's position doubles as the file position, the head is read from offset 0
+        while (head.hasRemaining() && 0 <= channel.read(head, head.position())) {
+            // keep reading until the head is full or the file ends
+        }
+        return detect(head.flip());
+    }
+
+    /**
+     * Opens the file for reading, decompressing it on the fly if its magic bytes say so.
+     *
+     * @throws IOException If the file can't be opened.
+     */
+    public static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        try {
+            in.mark(MAGIC_LENGTH);
+            byte[] head = in.readNBytes(MAGIC_LENGTH);
+            in.reset();
+            Compression compression = detect(ByteBuffer.wrap(head));
+            return switch (compression) {
+                case NONE -> in;
+                // each reads every member or frame of a concatenated archive
+                case GZIP -> new GZIPInputStream(in, 1 << 16);
+                case ZSTD -> {
+                    // decoded a frame at a time by position, see ZstdFrameInputStream
+                    in.close();
+                    yield ZstdFrameInputStream.open(path);
+                }
+                case BZIP2 -> new BZip2CompressorInputStream(in, true);
+            };
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private boolean matches(ByteBuffer head) {
+        if (head.remaining() < magic.length) {
+            return false;
+        }
+        if (this == ZSTD && isSkippableFrame(head)) {
+            // e.g. the archives of pzstd, which start with a skippable frame
+            return true;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head.get(head.position() + i) != magic[i]) {
+                return false;
+            }
+        }
+        if (this == BZIP2) {
+            // followed by the block size, which tells archives apart from text that starts with "BZh"
+            if (head.remaining() <= magic.length) {
+                return false;
+            }
+            byte blockSize = head.get(head.position() + magic.length);
+            return '1' <= blockSize && blockSize <= '9';
+        }
+        return true;
+    }
+
+    private static boolean isSkippableFrame(ByteBuffer head) {
+        int position = head.position();
+        return (head.get(position) & 0xf0) == 0x50 && head.get(position + 1) == 0x2a
+                && head.get(position + 2) == 0x4d && head.get(position + 3) == 0x18;
+    }
+}
@@ -0,0 +1,253 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes consecutive gzip members (RFC 1952) straight from a file channel, starting at any offset. The
+ * members of a multi-member archive are independent of each other, which lets several decoders work on
+ * different parts of one archive at once. Every member's CRC and size are verified against its trailer.
+ * <p>
+ * A decoder holds its state between calls, so a partial {@link #transfer(long, OutputStream, long) transfer}
+ * can be continued later on, even from another thread. It is not thread-safe otherwise.
+ */
+public final class GzipMemberDecoder {
+
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int CM_DEFLATE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int FRESERVED = 0xe0;
+    private static final int HEADER_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 8;
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] input = new byte[BLOCK_SIZE];
+    private final byte[] output = new byte[BLOCK_SIZE];
+    private long position;
+    private long dataStart;
+    private long inputPosition;
+    private long memberSize;
+    private boolean inMember;
+    private int members;
+
+    /**
+     * @param channel The channel of the archive.
+     * @param position The offset of the first member to decode.
+     */
+    public GzipMemberDecoder(FileChannel channel, long position) {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    /**
+     * Returns the offset right behind the last completely decoded member, i.e. where the next one starts.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Returns the number of members that were completely decoded.
+     */
+    public int members() {
+        return members;
+    }
+
+    /**
+     * Decodes members until the first member boundary at or beyond {@code stopAt}, or until the end of the
+     * archive, whichever comes first.
+     *
+     * @param stopAt The offset at which no further member is started.
+     * @param out The stream the decompressed bytes are written to.
+     * @param maxBytes The number of bytes after which decoding pauses, to be continued by another call.
+     * @return True if decoding stopped at a member boundary, false if it paused within a member.
+     * @throws IOException If the archive is corrupt or can't be read.
+     */
+    public boolean transfer(long stopAt, OutputStream out, long maxBytes) throws IOException {
+        long written = 0;
+        while (true) {
+            if (!inMember && (stopAt <= position || !readHeader())) {
+                return true;
+            }
+            int count = inflate();
+            if (count < 0) {
+                continue;
+            }
+            out.write(output, 0, count);
+            written += count;
+            if (maxBytes <= written) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Returns the offset of the first plausible member header within [from, to), or -1 if there is none.
+     * The header fields are checked for sane values, but a candidate only proves to be a member once it
+     * decodes.
+     */
+    public static long findHeader(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE + HEADER_LENGTH);
+        long blockStart = from;
+        while (blockStart < to) {
+            block.clear();
+            int read = channel.read(block, blockStart);
+            if (read < HEADER_LENGTH) {
+                return -1;
+            }
+            int candidates = (int) Math.min(read - HEADER_LENGTH + 1, to - blockStart);
+            for (int i = 0; i < candidates; i++) {
+                if (isHeader(block, i)) {
+                    return blockStart + i;
+                }
+            }
+            blockStart += candidates;
+        }
+        return -1;
+    }
+
+    private static boolean isHeader(ByteBuffer block, int i) {
+        if ((block.get(i) & 0xff) != ID1 || (block.get(i + 1) & 0xff) != ID2 || block.get(i + 2) != CM_DEFLATE) {
+            return false;
+        }
+        int flags = block.get(i + 3) & 0xff;
+        int extraFlags = block.get(i + 8) & 0xff;
+        int os = block.get(i + 9) & 0xff;
+        return (flags & FRESERVED) == 0
+                && (extraFlags == 0 || extraFlags == 2 || extraFlags == 4)
+                && (os <= 13 || os == 255);
+    }
+
+    /**
+     * Parses the member header at the current position.
+     *
+     * @return False if the archive ends here or what follows isn't a member header.
+     */
+    private boolean readHeader() throws IOException {
+        if (channel.size() <= position) {
+            return false;
+        }
+        ByteBuffer header = readFully(position, HEADER_LENGTH, false);
+        if (header == null
+                || (header.get(0) & 0xff) != ID1 || (header.get(1) & 0xff) != ID2
+                || header.get(2) != CM_DEFLATE || (header.get(3) & FRESERVED) != 0) {
+            return false;
+        }
+        int flags = header.get(3) & 0xff;
+        long offset = position + HEADER_LENGTH;
+        if ((flags & FEXTRA) != 0) {
+            ByteBuffer length = readFully(offset, 2, true).order(ByteOrder.LITTLE_ENDIAN);
+            offset += 2 + (length.getShort(0) & 0xffff);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(offset);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(offset);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+        dataStart = offset;
+        inputPosition = offset;
+        memberSize = 0;
+        inflater.reset();
+        crc.reset();
+        inMember = true;
+        return true;
+    }
+
+    /**
+     * Inflates the next bytes of the current member into the output block.
+     *
+     * @return The number of bytes inflated, or -1 once the member is complete and verified.
+     */
+    private int inflate() throws IOException {
+        try {
+            while (true) {
+                if (inflater.finished()) {
+                    finishMember();
+                    return -1;
+                }
+                if (inflater.needsInput()) {
+                    int read = channel.read(ByteBuffer.wrap(input), inputPosition);
+                    if (read <= 0) {
+                        throw new EOFException("Unexpected end of gzip member at offset " + inputPosition);
+                    }
+                    inputPosition += read;
+                    inflater.setInput(input, 0, read);
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Gzip member at offset " + position + " needs a preset dictionary");
+                }
+                int count = inflater.inflate(output);
+                if (0 < count) {
+                    crc.update(output, 0, count);
+                    memberSize += count;
+                    return count;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt gzip member at offset " + position + ": " + e.getMessage());
+        }
+    }
+
+    private void finishMember() throws IOException {
+        long trailerStart = dataStart + inflater.getBytesRead();
+        ByteBuffer trailer = readFully(trailerStart, TRAILER_LENGTH, true).order(ByteOrder.LITTLE_ENDIAN);
+        if ((trailer.getInt(0) & 0xffffffffL) != crc.getValue()) {
+            throw new ZipException("CRC mismatch of gzip member at offset " + position);
+        }
+        if ((trailer.getInt(4) & 0xffffffffL) != (memberSize & 0xffffffffL)) {
+            throw new ZipException("Size mismatch of gzip member at offset " + position);
+        }
+        position = trailerStart + TRAILER_LENGTH;
+        inMember = false;
+        members++;
+    }
+
+    private long skipZeroTerminated(long offset) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(256);
+        while (true) {
+            block.clear();
+            int read = channel.read(block, offset);
+            if (read <= 0) {
+                throw new EOFException("Unexpected end of gzip header at offset " + offset);
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == 0) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+    }
+
+    private ByteBuffer readFully(long offset, int length, boolean required) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                if (required) {
+                    throw new EOFException("Unexpected end of gzip member at offset " + offset);
+                }
+                return null;
+            }
+        }
+        return buffer;
+    }
+}
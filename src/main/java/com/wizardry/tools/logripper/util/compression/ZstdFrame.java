@@ -0,0 +1,122 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The extent of a zstd frame (RFC 8878) within a file, found from its header and the headers of its blocks
+ * alone, without decoding it. The frames of a file are independent of each other, e.g. the ones written by
+ * {@code zstd} with {@code --rsyncable} or by concatenating archives, so they can be decoded in parallel once
+ * their boundaries are known. Skippable frames are frames without content.
+ *
+ * @param offset The offset of the frame's magic number.
+ * @param length The number of bytes of the frame, including its header and checksum.
+ * @param maxContentSize The size of the decoded content, or an upper bound of it if the header doesn't tell.
+ */
+public record ZstdFrame(long offset, long length, long maxContentSize) {
+
+    private static final int MAGIC = 0xfd2fb528;
+    private static final int SKIPPABLE_MAGIC = 0x184d2a50;
+    private static final int SKIPPABLE_MASK = 0xfffffff0;
+    private static final int MAX_HEADER_LENGTH = 18;
+    private static final int BLOCK_HEADER_LENGTH = 3;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final int MAX_BLOCK_SIZE = 128 << 10;
+    private static final int RAW_BLOCK = 0;
+    private static final int RLE_BLOCK = 1;
+    private static final int RESERVED_BLOCK = 3;
+
+    /**
+     * Returns the offset right behind the frame, i.e. where the next one starts.
+     */
+    public long end() {
+        return offset + length;
+    }
+
+    /**
+     * Returns true if the frame decodes to nothing, e.g. a skippable frame, so it doesn't have to be decoded.
+     */
+    public boolean isEmpty() {
+        return maxContentSize == 0;
+    }
+
+    /**
+     * Reads the extent of the frame that starts at the offset.
+     *
+     * @throws IOException If there is no frame at the offset, or the file ends within it.
+     */
+    public static ZstdFrame read(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MAX_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header.limit(8), offset);
+        int magic = header.getInt(0);
+        if ((magic & SKIPPABLE_MASK) == SKIPPABLE_MAGIC) {
+            return new ZstdFrame(offset, 8 + Integer.toUnsignedLong(header.getInt(4)), 0);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("No zstd frame at offset " + offset);
+        }
+        int descriptor = header.get(4) & 0xff;
+        if ((descriptor & 0x08) != 0) {
+            throw new IOException("Reserved bit set in zstd frame at offset " + offset);
+        }
+        boolean isSingleSegment = (descriptor & 0x20) != 0;
+        int contentSizeLength = switch (descriptor >>> 6) {
+            case 0 -> isSingleSegment ? 1 : 0;
+            case 1 -> 2;
+            case 2 -> 4;
+            default -> 8;
+        };
+        int dictionaryIdLength = switch (descriptor & 0x03) {
+            case 0 -> 0;
+            case 1 -> 1;
+            case 2 -> 2;
+            default -> 4;
+        };
+        int contentSizeOffset = 5 + (isSingleSegment ? 0 : 1) + dictionaryIdLength;
+        int headerLength = contentSizeOffset + contentSizeLength;
+        readFully(channel, header.clear().limit(headerLength), offset);
+        long contentSize = switch (contentSizeLength) {
+            case 1 -> header.get(contentSizeOffset) & 0xff;
+            case 2 -> (header.getShort(contentSizeOffset) & 0xffff) + 256;
+            case 4 -> Integer.toUnsignedLong(header.getInt(contentSizeOffset));
+            case 8 -> header.getLong(contentSizeOffset);
+            default -> -1;
+        };
+
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_LENGTH);
+        long position = offset + headerLength;
+        long maxContentSize = 0;
+        boolean isLast = false;
+        while (!isLast) {
+            readFully(channel, blockHeader.clear(), position);
+            int bits = (blockHeader.get(0) & 0xff) | (blockHeader.get(1) & 0xff) << 8 | (blockHeader.get(2) & 0xff) << 16;
+            isLast = (bits & 1) != 0;
+            int type = (bits >>> 1) & 0x03;
+            int size = bits >>> 3;
+            if (type == RESERVED_BLOCK) {
+                throw new IOException("Reserved block type in zstd frame at offset " + offset);
+            }
+            position += BLOCK_HEADER_LENGTH + (type == RLE_BLOCK ? 1 : size);
+            // a compressed block never decodes to more than the maximum block size
+            maxContentSize += type == RAW_BLOCK || type == RLE_BLOCK ? size : MAX_BLOCK_SIZE;
+        }
+        if ((descriptor & 0x04) != 0) {
+            position += CHECKSUM_LENGTH;
+        }
+        if (channel.size() < position) {
+            throw new EOFException("Truncated zstd frame at offset " + offset);
+        }
+        return new ZstdFrame(offset, position - offset, 0 <= contentSize ? contentSize : maxContentSize);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated zstd frame at offset " + position);
+            }
+        }
+    }
+}
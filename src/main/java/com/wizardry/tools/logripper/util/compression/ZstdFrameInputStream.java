@@ -0,0 +1,127 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes the zstd frames within a range of a file as one stream, a frame at a time. Empty frames are passed
+ * over, which includes the skippable frames that e.g. {@code pzstd} writes and a plain zstd stream rejects.
+ * The file is read by position, so several streams can share one channel.
+ */
+public final class ZstdFrameInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long to;
+    private final boolean isOwner;
+    private long next;
+    private InputStream frame;
+
+    /**
+     * @param channel The channel of the archive, which is left open.
+     * @param from The offset of the first frame.
+     * @param to The offset right behind the last frame.
+     */
+    public ZstdFrameInputStream(FileChannel channel, long from, long to) {
+        this(channel, from, to, false);
+    }
+
+    private ZstdFrameInputStream(FileChannel channel, long from, long to, boolean isOwner) {
+        this.channel = channel;
+        this.next = from;
+        this.to = to;
+        this.isOwner = isOwner;
+    }
+
+    /**
+     * Opens every frame of the file, the file is closed along with the stream.
+     */
+    static ZstdFrameInputStream open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ZstdFrameInputStream(channel, 0, channel.size(), true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (frame != null || nextFrame()) {
+            int count = frame.read(b, off, len);
+            if (0 <= count) {
+                return count;
+            }
+            frame = null;
+        }
+        return -1;
+    }
+
+    private boolean nextFrame() throws IOException {
+        while (next < to) {
+            ZstdFrame current = ZstdFrame.read(channel, next);
+            next = current.end();
+            if (!current.isEmpty()) {
+                frame = new ZstdInputStream(new BufferedInputStream(new RangeInput(current.offset(), current.end()), 1 << 16));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        frame = null;
+        next = to;
+        if (isOwner) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the bytes of a single frame by position, leaving the channel's own position alone.
+     */
+    private final class RangeInput extends InputStream {
+        private final long end;
+        private long position;
+
+        private RangeInput(long from, long end) {
+            this.position = from;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (end <= position) {
+                return -1;
+            }
+            int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (0 < count) {
+                position += count;
+            }
+            return count;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.wizardry.tools.logripper.util.functions;
 
 import com.wizardry.tools.logripper.config.LogRipperConfig;
 import com.wizardry.tools.logripper.util.FifoList;
-import com.wizardry.tools.logripper.util.LiLoList;
 import com.wizardry.tools.logripper.util.matching.Match;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
@@ -13,6 +12,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 
+/**
+ * Matches lines one at a time, in order, collecting the context lines of each match as it goes. A LineReader
+ * keeps state between lines and must therefore be fed sequentially from a single thread.
+ */
 public final class LineReader implements TriFunction<String,Integer,ConcurrentLinkedQueue<Match>,Boolean> {
 
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
@@ -25,7 +28,6 @@ public final class LineReader implements TriFunction<String,Integer,ConcurrentLi
     private final int linesBefore;
     private final int linesAfter;
     private final FifoList<String> beforeLines;
-    private final LiLoList<String> afterLines;
     private int afterLineCount = 0;
     private Match lastMatch;
 
@@ -37,7 +39,6 @@ public final class LineReader implements TriFunction<String,Integer,ConcurrentLi
         this.linesBefore = config.linesBeforeMatch();
         this.linesAfter = config.linesAfterMatch();
         this.beforeLines = new FifoList<>(linesBefore);
-        this.afterLines = new LiLoList<>(linesAfter);
         if (config.isDebug()) LOGGER.debug("New LineReader");
         this.initialized = true;
     }
@@ -54,30 +55,26 @@ public final class LineReader implements TriFunction<String,Integer,ConcurrentLi
     }
 
     @Override
-    public synchronized Boolean apply(String line, Integer lineNumber, ConcurrentLinkedQueue<Match> matches) {
-        if (0 < afterLineCount) {
-            // if above zero, we should be capturing lines after the last match
-            afterLines.add(line);
-            afterLineCount--;
-        }
-        if (limit < 1 || totalMatches.get() < limit + 1) {
+    public Boolean apply(String line, Integer lineNumber, ConcurrentLinkedQueue<Match> matches) {
+        if (limit < 1 || totalMatches.get() < limit) {
             Matcher matcher = pattern.matcher(line);
             if (matcher.find()) {
-                // TODO: figure out how to accurately add lines after...
-                // I'm not even sure if this is safe.`
-                if (lastMatch != null && !afterLines.isEmpty()) {
-                    lastMatch.addAllAfter(afterLines.asList());
-                }
                 lastMatch = Match.of(line, lineNumber, numbered);
                 lastMatch.addAllBefore(beforeLines.asList());
+                beforeLines.clear();
                 matches.add(lastMatch);
                 totalMatches.incrementAndGet();
                 afterLineCount = linesAfter;
                 return true;
             }
-
         }
-        beforeLines.add(line);
+        if (0 < afterLineCount) {
+            // lines right after a match are its context, they never count as lines before the next one
+            lastMatch.addAfter(line);
+            afterLineCount--;
+        } else {
+            beforeLines.add(line);
+        }
         return false;
     }
 }
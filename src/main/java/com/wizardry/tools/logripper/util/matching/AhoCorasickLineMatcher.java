@@ -0,0 +1,314 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A {@link LineMatcher} for a set of literal tokens. The UTF-8 bytes of all tokens are compiled into one
+ * Aho-Corasick automaton over the byte classes that occur in the tokens, so every byte is inspected exactly once
+ * no matter how many tokens are searched for. Case-insensitive search folds ASCII letters only, the same as
+ * {@link LiteralLineMatcher}.
+ * <p>
+ * The trie is kept as sorted edge lists plus failure links. Unless it would take more than
+ * {@link #MAX_TABLE_SIZE} entries, a flat transition table is derived from it, which takes a single lookup per
+ * byte; a larger pattern set is matched by following the failure links instead, so its memory stays linear in
+ * the size of the tokens.
+ */
+public final class AhoCorasickLineMatcher implements LineMatcher {
+
+    private static final int ROOT = 0;
+    private static final int[] NO_OUTPUT = new int[0];
+    /** The most entries of a flat transition table, 16 MiB worth of states. */
+    static final int MAX_TABLE_SIZE = 1 << 22;
+
+    private final List<String> tokens;
+    private final byte[] fold;
+    /** The UTF-8 length of each token. */
+    private final int[] lengths;
+    /** Maps every (folded) byte to its class, class 0 stands for bytes that occur in no token. */
+    private final int[] byteClass = new int[256];
+    private final int classes;
+    /** The edges of state s are [edgeStart[s], edgeStart[s + 1]) of the edge arrays, sorted by class. */
+    private final int[] edgeStart;
+    private final int[] edgeClass;
+    private final int[] edgeTarget;
+    private final int[] failure;
+    /** The transition table, {@code classes} entries per state, or null if it would be too large. */
+    private final int[] next;
+    /** The tokens ending in each state, including those reached through the failure links. */
+    private final int[][] outputs;
+
+    public AhoCorasickLineMatcher(List<String> tokens, boolean isIgnoreCase) {
+        this(tokens, isIgnoreCase, MAX_TABLE_SIZE);
+    }
+
+    /**
+     * @param maxTableSize The most entries of the transition table, larger automatons go without one.
+     */
+    AhoCorasickLineMatcher(List<String> tokens, boolean isIgnoreCase, int maxTableSize) {
+        if (tokens == null || tokens.isEmpty()) {
+            throw new IllegalArgumentException("Literal tokens cannot be null or empty.");
+        }
+        this.tokens = List.copyOf(tokens);
+        this.fold = isIgnoreCase ? LiteralLineMatcher.ASCII_FOLD : LiteralLineMatcher.IDENTITY;
+
+        byte[][] needles = new byte[this.tokens.size()][];
+        this.lengths = new int[needles.length];
+        int classCount = 1;
+        int maxStates = 1;
+        int maxLength = 0;
+        for (int id = 0; id < needles.length; id++) {
+            String token = this.tokens.get(id);
+            if (token == null || token.isEmpty()) {
+                throw new IllegalArgumentException("Literal token cannot be null or empty.");
+            }
+            byte[] needle = token.getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < needle.length; i++) {
+                needle[i] = fold[needle[i] & 0xFF];
+                if (byteClass[needle[i] & 0xFF] == 0) {
+                    byteClass[needle[i] & 0xFF] = classCount++;
+                }
+            }
+            needles[id] = needle;
+            lengths[id] = needle.length;
+            maxStates = Math.addExact(maxStates, needle.length);
+            maxLength = Math.max(maxLength, needle.length);
+        }
+        this.classes = classCount;
+        for (int i = 0; i < 256; i++) {
+            byteClass[i] = byteClass[fold[i] & 0xFF];
+        }
+
+        // the trie, built from the sorted needles so that each one only adds states past the prefix it shares
+        // with the one before, every state but the root is reached by exactly one edge
+        Integer[] order = new Integer[needles.length];
+        Arrays.setAll(order, id -> id);
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(needles[a], needles[b]));
+        int[] parent = new int[maxStates];
+        int[] label = new int[maxStates];
+        int[][] ends = new int[maxStates][];
+        int[] path = new int[maxLength + 1];
+        int states = 1;
+        byte[] previous = new byte[0];
+        for (int id : order) {
+            byte[] needle = needles[id];
+            int common = Arrays.mismatch(previous, needle);
+            for (int i = common < 0 ? needle.length : common; i < needle.length; i++) {
+                parent[states] = path[i];
+                label[states] = byteClass[needle[i] & 0xFF];
+                path[i + 1] = states++;
+            }
+            int end = path[needle.length];
+            ends[end] = append(ends[end] == null ? NO_OUTPUT : ends[end], id);
+            previous = needle;
+        }
+
+        this.edgeStart = new int[states + 1];
+        this.edgeClass = new int[states - 1];
+        this.edgeTarget = new int[states - 1];
+        for (int state = 1; state < states; state++) {
+            edgeStart[parent[state] + 1]++;
+        }
+        for (int state = 0; state < states; state++) {
+            edgeStart[state + 1] += edgeStart[state];
+        }
+        int[] fill = Arrays.copyOf(edgeStart, states);
+        for (int state = 1; state < states; state++) {
+            int edge = fill[parent[state]]++;
+            edgeClass[edge] = label[state];
+            edgeTarget[edge] = state;
+        }
+        for (int state = 0; state < states; state++) {
+            sortEdges(edgeStart[state], edgeStart[state + 1]);
+        }
+
+        // breadth first, every state inherits the outputs of its failure state, which is always shallower
+        this.failure = new int[states];
+        this.outputs = new int[states][];
+        outputs[ROOT] = NO_OUTPUT;
+        int[] queue = new int[states];
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int state = queue[head];
+            for (int edge = edgeStart[state]; edge < edgeStart[state + 1]; edge++) {
+                int child = edgeTarget[edge];
+                failure[child] = state == ROOT ? ROOT : follow(failure[state], edgeClass[edge]);
+                outputs[child] = merge(ends[child] == null ? NO_OUTPUT : ends[child], outputs[failure[child]]);
+                queue[tail++] = child;
+            }
+        }
+        this.next = table(states, maxTableSize, queue);
+    }
+
+    /**
+     * Derives the flat transition table in breadth first order, a missing edge leads where it leads from the
+     * failure state. Returns null if the table would have more than the given entries.
+     */
+    private int[] table(int states, int maxTableSize, int[] order) {
+        int size;
+        try {
+            size = Math.multiplyExact(states, classes);
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        if (maxTableSize < size) {
+            return null;
+        }
+        int[] table = new int[size];
+        for (int state : order) {
+            for (int c = 0; c < classes; c++) {
+                int child = child(state, c);
+                table[state * classes + c] = 0 <= child ? child : state == ROOT ? ROOT : table[failure[state] * classes + c];
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Returns true if the automaton has a flat transition table.
+     */
+    boolean isTabled() {
+        return next != null;
+    }
+
+    /**
+     * Returns the tokens in the order their ids refer to.
+     */
+    public List<String> tokens() {
+        return tokens;
+    }
+
+    /**
+     * Returns the index of the last byte of the first token occurrence within [from, to), or -1.
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        int state = ROOT;
+        for (int i = from; i < to; i++) {
+            state = step(state, byteClass[buffer.get(i) & 0xFF]);
+            if (outputs[state].length != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextCandidate(ByteBuffer buffer, int from, int to) {
+        return indexOf(buffer, from, to);
+    }
+
+    @Override
+    public boolean matches(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return indexOf(buffer, lineStart, lineEnd) >= 0;
+    }
+
+    /**
+     * Reports the occurrence that ends first, the longest one if several tokens end at the same byte.
+     */
+    @Override
+    public long hit(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int state = ROOT;
+        for (int i = lineStart; i < lineEnd; i++) {
+            state = step(state, byteClass[buffer.get(i) & 0xFF]);
+            if (outputs[state].length != 0) {
+                int length = 0;
+                for (int id : outputs[state]) {
+                    length = Math.max(length, lengths[id]);
+                }
+                return LineMatcher.span(i + 1 - length - lineStart, i + 1 - lineStart);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public List<String> hits(ByteBuffer buffer, int lineStart, int lineEnd) {
+        BitSet hit = new BitSet(tokens.size());
+        int state = ROOT;
+        for (int i = lineStart; i < lineEnd; i++) {
+            state = step(state, byteClass[buffer.get(i) & 0xFF]);
+            for (int id : outputs[state]) {
+                hit.set(id);
+            }
+        }
+        List<String> hits = new ArrayList<>(hit.cardinality());
+        hit.stream().forEach(id -> hits.add(tokens.get(id)));
+        return hits;
+    }
+
+    private int step(int state, int c) {
+        return next != null ? next[state * classes + c] : follow(state, c);
+    }
+
+    /**
+     * Takes the edge of the class from the state, or from the closest failure state that has one.
+     */
+    private int follow(int state, int c) {
+        if (c == 0) {
+            return ROOT; // no token contains the byte
+        }
+        while (true) {
+            int child = child(state, c);
+            if (0 <= child || state == ROOT) {
+                return Math.max(child, ROOT);
+            }
+            state = failure[state];
+        }
+    }
+
+    /**
+     * Returns the state the trie edge of the class leads to, or -1 if the state has no such edge.
+     */
+    private int child(int state, int c) {
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (edgeClass[mid] < c) {
+                low = mid + 1;
+            } else if (c < edgeClass[mid]) {
+                high = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    private void sortEdges(int from, int to) {
+        // the edges of a state are few, and mostly in order already
+        for (int i = from + 1; i < to; i++) {
+            int c = edgeClass[i];
+            int target = edgeTarget[i];
+            int j = i - 1;
+            for (; from <= j && c < edgeClass[j]; j--) {
+                edgeClass[j + 1] = edgeClass[j];
+                edgeTarget[j + 1] = edgeTarget[j];
+            }
+            edgeClass[j + 1] = c;
+            edgeTarget[j + 1] = target;
+        }
+    }
+
+    private static int[] append(int[] ids, int id) {
+        int[] appended = Arrays.copyOf(ids, ids.length + 1);
+        appended[ids.length] = id;
+        return appended;
+    }
+
+    private static int[] merge(int[] own, int[] inherited) {
+        if (inherited.length == 0) {
+            return own;
+        }
+        if (own.length == 0) {
+            return inherited;
+        }
+        int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+        System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+        return merged;
+    }
+}
@@ -0,0 +1,153 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import com.wizardry.tools.logripper.util.ByteUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolves the context lines around a match lazily from the bytes of its file. Matches only remember the
+ * offset of their line, so scanning never has to keep context around, and windows of a file don't need to
+ * know about each other: lines before the first match of a window are simply read from the previous one.
+ * Not thread-safe, create one resolver per file.
+ * <p>
+ * Lines are read from a {@link Source}, which is usually the file's channel but may as well be a buffer
+ * that only holds the last part of a stream.
+ */
+public final class ContextResolver {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Where the lines are read from.
+     */
+    public interface Source {
+
+        /**
+         * Reads bytes starting at the given offset, like {@link FileChannel#read(ByteBuffer, long)}.
+         *
+         * @return The number of bytes read, or -1 if the offset is past the end.
+         */
+        int read(ByteBuffer target, long position) throws IOException;
+
+        /**
+         * Returns the offset of the first line that can still be read, 0 unless earlier lines were dropped.
+         */
+        default long floor() {
+            return 0L;
+        }
+    }
+
+    private final Source source;
+    private final LineRing ring;
+    private ByteBuffer block;
+
+    public ContextResolver(Source source, int linesBefore) {
+        this.source = source;
+        this.ring = new LineRing(linesBefore);
+        this.block = ByteBuffer.allocate(BLOCK_SIZE);
+    }
+
+    public ContextResolver(FileChannel channel, int linesBefore) {
+        this(channel::read, linesBefore); // Default to reading from the start of the file.
+    }
+
+    /**
+     * Returns up to {@code count} lines that precede the line starting at {@code lineStart}, oldest first.
+     */
+    public List<String> linesBefore(long lineStart, int count) throws IOException {
+        List<String> lines = new ArrayList<>(count);
+        long floor = source.floor();
+        if (count < 1 || lineStart <= floor) {
+            return lines;
+        }
+        long span = BLOCK_SIZE;
+        while (true) {
+            long blockStart = Math.max(floor, lineStart - span);
+            ByteBuffer bytes = read(blockStart, (int) (lineStart - blockStart));
+            ring.clear();
+            if (blockStart == floor) {
+                ring.add(floor);
+            }
+            // feed every line start of the block through the ring, leaving the last lines before the match
+            for (int i = 0; i < bytes.limit() - 1; i++) {
+                if (bytes.get(i) == ByteUtil.LF) {
+                    ring.add(blockStart + i + 1);
+                }
+            }
+            if (blockStart == floor || count <= ring.size()) {
+                int first = Math.max(0, ring.size() - count);
+                for (int i = first; i < ring.size(); i++) {
+                    int from = (int) (ring.get(i) - blockStart);
+                    int to = i + 1 < ring.size() ? (int) (ring.get(i + 1) - blockStart) - 1 : bytes.limit() - 1;
+                    lines.add(decode(bytes, from, ByteUtil.contentEnd(bytes, from, to)));
+                }
+                return lines;
+            }
+            span *= 2;
+        }
+    }
+
+    /**
+     * Returns up to {@code count} lines that follow the line starting at {@code lineStart}.
+     */
+    public List<String> linesAfter(long lineStart, int count) throws IOException {
+        List<String> lines = new ArrayList<>(count);
+        long position = lineStart;
+        boolean skipMatchLine = true;
+        while (lines.size() < count) {
+            ByteBuffer bytes = read(position, block.capacity());
+            if (bytes.limit() == 0) {
+                return lines;
+            }
+            int from = 0;
+            int lineEnd = ByteUtil.indexOf(bytes, ByteUtil.LF, from, bytes.limit());
+            while (0 <= lineEnd && lines.size() < count) {
+                if (skipMatchLine) {
+                    skipMatchLine = false;
+                } else {
+                    lines.add(decode(bytes, from, ByteUtil.contentEnd(bytes, from, lineEnd)));
+                }
+                from = lineEnd + 1;
+                lineEnd = ByteUtil.indexOf(bytes, ByteUtil.LF, from, bytes.limit());
+            }
+            if (lines.size() < count && from == 0 && bytes.limit() == block.capacity()) {
+                // a single line longer than the block, grow until it fits
+                block = ByteBuffer.allocate(block.capacity() * 2);
+                continue;
+            }
+            if (lines.size() < count && bytes.limit() < block.capacity()) {
+                // end of file, the last line might not be terminated
+                if (from < bytes.limit() && !skipMatchLine) {
+                    lines.add(decode(bytes, from, ByteUtil.contentEnd(bytes, from, bytes.limit())));
+                }
+                return lines;
+            }
+            position += from;
+        }
+        return lines;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        if (block.capacity() < length) {
+            block = ByteBuffer.allocate(Math.max(length, block.capacity() * 2));
+        }
+        block.clear().limit(Math.min(length, block.capacity()));
+        while (block.hasRemaining()) {
+            if (source.read(block, position + block.position()) < 0) {
+                break;
+            }
+        }
+        return block.flip();
+    }
+
+    private static String decode(ByteBuffer bytes, int from, int to) {
+        byte[] line = new byte[to - from];
+        bytes.get(from, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
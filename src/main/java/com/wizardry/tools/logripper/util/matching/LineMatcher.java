@@ -0,0 +1,58 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Matches lines directly against the raw (UTF-8) bytes of a buffer. Implementations must be
+ * thread-safe, the same instance is shared by every window of a file.
+ */
+public interface LineMatcher {
+
+    /**
+     * Returns the index within [from, to) from which the next line has to be inspected, or -1 if no
+     * line in that range can match. Matchers that can't skip ahead simply return {@code from}, which
+     * makes the caller test every line.
+     */
+    default int nextCandidate(ByteBuffer buffer, int from, int to) {
+        return from;
+    }
+
+    /**
+     * Tests whether the line content within [lineStart, lineEnd) matches.
+     */
+    boolean matches(ByteBuffer buffer, int lineStart, int lineEnd);
+
+    /**
+     * Finds the first hit within the line content within [lineStart, lineEnd), for the scans that report
+     * where a line matched. Matchers that can't tell where the hit is report the whole line.
+     *
+     * @return The {@link #span} of the hit in bytes relative to the line start, or -1 if the line doesn't match.
+     */
+    default long hit(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return matches(buffer, lineStart, lineEnd) ? span(0, lineEnd - lineStart) : -1;
+    }
+
+    /**
+     * Returns the patterns that hit within the matching line, in the order they were given. Matchers for a
+     * single pattern return an empty list, there is nothing to tell apart then.
+     */
+    default List<String> hits(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return List.of();
+    }
+
+    /**
+     * Packs the start of a span into the upper and its end into the lower int.
+     */
+    static long span(int start, int end) {
+        return (long) start << 32 | end;
+    }
+
+    static int spanStart(long span) {
+        return (int) (span >>> 32);
+    }
+
+    static int spanEnd(long span) {
+        return (int) span;
+    }
+}
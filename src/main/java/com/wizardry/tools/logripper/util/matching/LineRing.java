@@ -0,0 +1,55 @@
+package com.wizardry.tools.logripper.util.matching;
+
+/**
+ * A fixed capacity ring of line start offsets. Once full, adding an offset evicts the oldest one, so after
+ * a forward pass the ring holds the starts of the last {@code capacity} lines. Not thread-safe, every
+ * {@link ContextResolver} owns its own ring.
+ */
+public final class LineRing {
+
+    private final long[] offsets;
+    private int head;
+    private int size;
+
+    public LineRing(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative.");
+        }
+        this.offsets = new long[capacity];
+    }
+
+    public void add(long offset) {
+        if (offsets.length == 0) {
+            return;
+        }
+        offsets[(head + size) % offsets.length] = offset;
+        if (size < offsets.length) {
+            size++;
+        } else {
+            head = (head + 1) % offsets.length;
+        }
+    }
+
+    /**
+     * Returns the i-th offset, oldest first.
+     */
+    public long get(int i) {
+        if (i < 0 || size <= i) {
+            throw new IndexOutOfBoundsException("Index [" + i + "] is out of bounds for size [" + size + "]");
+        }
+        return offsets[(head + i) % offsets.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == offsets.length;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,103 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A {@link LineMatcher} for tokens without any regex meta characters. The UTF-8 bytes of the token are
+ * searched for with Boyer-Moore-Horspool, so non-matching lines are skipped without ever being decoded.
+ * Case-insensitive search folds ASCII letters only, the same as {@link java.util.regex.Pattern#CASE_INSENSITIVE}.
+ */
+public final class LiteralLineMatcher implements LineMatcher {
+
+    private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+    static final byte[] IDENTITY = new byte[256];
+    static final byte[] ASCII_FOLD = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            IDENTITY[i] = (byte) i;
+            ASCII_FOLD[i] = (byte) (('A' <= i && i <= 'Z') ? i + ('a' - 'A') : i);
+        }
+    }
+
+    private final byte[] needle;
+    private final byte[] fold;
+    private final int[] shift;
+
+    public LiteralLineMatcher(String token, boolean isIgnoreCase) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Literal token cannot be null or empty.");
+        }
+        this.fold = isIgnoreCase ? ASCII_FOLD : IDENTITY;
+        this.needle = token.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < needle.length; i++) {
+            needle[i] = fold[needle[i] & 0xFF];
+        }
+        this.shift = new int[256];
+        Arrays.fill(shift, needle.length);
+        for (int i = 0; i < needle.length - 1; i++) {
+            shift[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    /**
+     * Tests whether a token can be searched for as a literal, i.e. it contains no regex meta characters
+     * and no line breaks.
+     */
+    public static boolean isLiteral(String token) {
+        if (token == null || token.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (META_CHARACTERS.indexOf(c) >= 0 || c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int nextCandidate(ByteBuffer buffer, int from, int to) {
+        return indexOf(buffer, from, to);
+    }
+
+    @Override
+    public boolean matches(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return indexOf(buffer, lineStart, lineEnd) >= 0;
+    }
+
+    @Override
+    public long hit(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int index = indexOf(buffer, lineStart, lineEnd);
+        return index < 0 ? -1 : LineMatcher.span(index - lineStart, index - lineStart + needle.length);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the token within [from, to), or -1.
+     */
+    public int indexOf(ByteBuffer buffer, int from, int to) {
+        final int last = needle.length - 1;
+        final byte tail = needle[last];
+        int i = from;
+        while (i + last < to) {
+            byte b = fold[buffer.get(i + last) & 0xFF];
+            if (b == tail && regionMatches(buffer, i, last)) {
+                return i;
+            }
+            i += shift[b & 0xFF];
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(ByteBuffer buffer, int start, int length) {
+        for (int j = 0; j < length; j++) {
+            if (fold[buffer.get(start + j) & 0xFF] != needle[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
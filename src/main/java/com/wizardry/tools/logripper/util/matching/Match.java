@@ -3,12 +3,46 @@ package com.wizardry.tools.logripper.util.matching;
 import com.wizardry.tools.logripper.util.StringUtil;
 import org.refcodes.logger.RuntimeLogger;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
-public record Match(String value, int index, boolean numbered) {
-    private static final List<String> before = new ArrayList<>();
-    private static final List<String> after = new ArrayList<>();
+/**
+ * A matching line and the context lines that surround it.
+ *
+ * @param value The content of the matching line.
+ * @param index The line number of the match.
+ * @param numbered The flag that indicates if the line number should be printed.
+ * @param offset The byte offset of the start of the line within its file, or -1 if unknown.
+ * @param before The context lines before the match, owned by this match only.
+ * @param after The context lines after the match, owned by this match only.
+ * @param patterns The patterns that hit the line when several were searched for, empty otherwise.
+ * @param bytes The raw UTF-8 bytes of the line as it was scanned, or null if it wasn't scanned from bytes.
+ * @param hitStart The start of the first hit in bytes relative to the line start, or -1 if unknown.
+ * @param hitEnd The end of the first hit in bytes relative to the line start, or -1 if unknown.
+ */
+public record Match(String value, int index, boolean numbered, long offset, List<String> before, List<String> after, List<String> patterns,
+                    byte[] bytes, int hitStart, int hitEnd) {
+
+    public Match(String value, int index, boolean numbered, long offset, List<String> before, List<String> after, List<String> patterns) {
+        this(value, index, numbered, offset, before, after, patterns, null, -1, -1);
+    }
+
+    public Match(String value, int index, boolean numbered, long offset, List<String> before, List<String> after) {
+        this(value, index, numbered, offset, before, after, List.of());
+    }
+
+    public Match(String value, int index, boolean numbered, long offset, List<String> patterns) {
+        this(value, index, numbered, offset, new ArrayList<>(), new ArrayList<>(), patterns);
+    }
+
+    public Match(String value, int index, boolean numbered, long offset) {
+        this(value, index, numbered, offset, List.of());
+    }
+
+    public Match(String value, int index, boolean numbered) {
+        this(value, index, numbered, -1L);
+    }
 
     public Match(String value, int index) {
         this(value, index, false);
@@ -42,26 +76,66 @@ public record Match(String value, int index, boolean numbered) {
         return List.copyOf(after);
     }
 
+    /**
+     * Returns a copy of this match moved by the given number of lines, keeping its context.
+     */
+    public Match withIndexOffset(int lines) {
+        return new Match(value, index + lines, numbered, offset, before, after, patterns, bytes, hitStart, hitEnd);
+    }
+
+    /**
+     * Returns a copy of this match with the given context lines.
+     */
+    public Match withContext(List<String> before, List<String> after) {
+        return new Match(value, index, numbered, offset, before, after, patterns, bytes, hitStart, hitEnd);
+    }
+
+    /**
+     * Returns true if the match knows where in the line the hit is.
+     */
+    public boolean hasHit() {
+        return 0 <= hitStart;
+    }
+
     public void print(java.io.PrintStream out) {
         validate();
-        before.forEach(out::println);
+        for (int i = 0; i < before.size(); i++) {
+            out.println(contextLine(before.get(i), index - before.size() + i));
+        }
         if(numbered) {
-            out.println(index + ": " + value);
+            out.println(index + ": " + tagged());
         } else {
-            out.println(value);
+            out.println(tagged());
+        }
+        for (int i = 0; i < after.size(); i++) {
+            out.println(contextLine(after.get(i), index + 1 + i));
         }
-        after.forEach(out::println);
     }
 
     public void print(RuntimeLogger logger) {
         validate();
-        before.forEach(logger::info);
+        for (int i = 0; i < before.size(); i++) {
+            logger.info(contextLine(before.get(i), index - before.size() + i));
+        }
         if (numbered) {
-            logger.info(index + ": " + value);
+            logger.info(index + ": " + tagged());
         } else {
-            logger.info(value);
+            logger.info(tagged());
+        }
+        for (int i = 0; i < after.size(); i++) {
+            logger.info(contextLine(after.get(i), index + 1 + i));
         }
-        after.forEach(logger::info);
+    }
+
+    /**
+     * Prefixes the value with the patterns that hit, if several were searched for.
+     */
+    private String tagged() {
+        return patterns.isEmpty() ? value : patterns + " " + value;
+    }
+
+    private String contextLine(String line, int lineNumber) {
+        return numbered ? lineNumber + "- " + line : line;
     }
 
     private void validate() {
@@ -79,5 +153,23 @@ public record Match(String value, int index, boolean numbered) {
     public static Match of(String value, int index, boolean numbered) {
         return new Match(value, index, numbered);
     }
+    public static Match of(String value, int index, boolean numbered, long offset) {
+        return new Match(value, index, numbered, offset);
+    }
+    public static Match of(String value, int index, boolean numbered, long offset, List<String> patterns) {
+        return new Match(value, index, numbered, offset, patterns);
+    }
+
+    /**
+     * Creates the match of a line scanned from raw bytes, decoding its value from them.
+     *
+     * @param bytes The UTF-8 bytes of the line, owned by the match from now on.
+     * @param hitStart The start of the first hit in bytes relative to the line start.
+     * @param hitEnd The end of the first hit in bytes relative to the line start.
+     */
+    public static Match of(byte[] bytes, int hitStart, int hitEnd, int index, boolean numbered, long offset, List<String> patterns) {
+        return new Match(new String(bytes, StandardCharsets.UTF_8), index, numbered, offset, new ArrayList<>(), new ArrayList<>(), patterns,
+                bytes, hitStart, hitEnd);
+    }
 
 }
@@ -0,0 +1,68 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The global match counter of a grep run, shared by every worker. Once the limit is reached it doubles as the
+ * cancellation signal: the walk, pending tasks and in-flight scans all poll {@link #isReached()} and stop.
+ * Matches are claimed in output order, so exactly {@code limit} matches are ever written.
+ */
+public final class MatchLimit {
+
+    private final int limit;
+    private final AtomicInteger total;
+
+    /**
+     * @param limit The maximum number of matches, 0 for no limit.
+     * @param total The counter of the matches written so far.
+     */
+    public MatchLimit(int limit, AtomicInteger total) {
+        this.limit = limit;
+        this.total = total;
+    }
+
+    /**
+     * Counts a match that is about to be written.
+     *
+     * @return False if the limit was already reached and the match must be dropped.
+     */
+    public boolean tryClaim() {
+        return claim(1) == 1;
+    }
+
+    /**
+     * Counts a number of matches at once, e.g. the total of a window that was only counted.
+     *
+     * @return The number of matches that fit within the limit.
+     */
+    public int claim(int count) {
+        if (limit < 1) {
+            total.addAndGet(count);
+            return count;
+        }
+        int current;
+        int granted;
+        do {
+            current = total.get();
+            granted = Math.min(count, limit - current);
+            if (granted <= 0) {
+                return 0;
+            }
+        } while (!total.compareAndSet(current, current + granted));
+        return granted;
+    }
+
+    /**
+     * Returns true once no further match will be written and all work can stop.
+     */
+    public boolean isReached() {
+        return 0 < limit && limit <= total.get();
+    }
+
+    /**
+     * Returns the number of matches a single unit of work ever needs to buffer, at most {@code cap}.
+     */
+    public int cap(int cap) {
+        return limit < 1 ? cap : Math.min(cap, limit);
+    }
+}
@@ -0,0 +1,153 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link LineMatcher} for real regular expressions. Every inspected line has to be copied out of the
+ * buffer, so this is the slow path used only when the token can't be searched for as a literal. Pure ASCII
+ * lines, the common case for logs, are matched through a reused per thread view instead of being decoded
+ * into a String.
+ * <p>
+ * A set of patterns is matched as one alternation, so each line is still inspected once. The single patterns
+ * are only run again on matching lines, to tell which of them hit.
+ */
+public final class RegexLineMatcher implements LineMatcher {
+
+    private final Pattern pattern;
+    private final List<Pattern> alternatives;
+    private final ThreadLocal<Scratch> scratch;
+
+    public RegexLineMatcher(Pattern pattern) {
+        this(pattern, List.of());
+    }
+
+    /**
+     * @param pattern The alternation of all patterns.
+     * @param alternatives The single patterns the alternation consists of, reported by {@link #hits}.
+     */
+    public RegexLineMatcher(Pattern pattern, List<Pattern> alternatives) {
+        this.pattern = pattern;
+        this.alternatives = List.copyOf(alternatives);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(pattern));
+    }
+
+    @Override
+    public boolean matches(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return hit(buffer, lineStart, lineEnd) >= 0;
+    }
+
+    @Override
+    public long hit(ByteBuffer buffer, int lineStart, int lineEnd) {
+        Scratch it = scratch.get();
+        int length = lineEnd - lineStart;
+        if (it.bytes.length < length) {
+            it.bytes = new byte[Math.max(length, it.bytes.length * 2)];
+        }
+        buffer.get(lineStart, it.bytes, 0, length);
+        if (!isAscii(it.bytes, length)) {
+            String line = new String(it.bytes, 0, length, StandardCharsets.UTF_8);
+            Matcher matcher = pattern.matcher(line);
+            if (!matcher.find()) {
+                return -1;
+            }
+            // malformed input decodes to replacement characters, which may be longer than the bytes they replace
+            int start = Math.min(length, utf8Length(line, 0, matcher.start()));
+            int end = Math.min(length, start + utf8Length(line, matcher.start(), matcher.end()));
+            return LineMatcher.span(start, end);
+        }
+        it.line.length = length;
+        // the chars of an ASCII line are its bytes
+        return it.matcher.reset(it.line).find() ? LineMatcher.span(it.matcher.start(), it.matcher.end()) : -1;
+    }
+
+    @Override
+    public List<String> hits(ByteBuffer buffer, int lineStart, int lineEnd) {
+        if (alternatives.isEmpty()) {
+            return List.of();
+        }
+        byte[] bytes = new byte[lineEnd - lineStart];
+        buffer.get(lineStart, bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        List<String> hits = new ArrayList<>();
+        for (Pattern alternative : alternatives) {
+            if (alternative.matcher(line).find()) {
+                hits.add(alternative.pattern());
+            }
+        }
+        return hits;
+    }
+
+    private static boolean isAscii(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int utf8Length(String value, int from, int to) {
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static final class Scratch {
+        private byte[] bytes = new byte[256];
+        private final AsciiLine line = new AsciiLine(this);
+        private final Matcher matcher;
+
+        private Scratch(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+        }
+    }
+
+    /**
+     * A CharSequence over the ASCII bytes of the scratch buffer, valid until the next line is copied in.
+     */
+    private static final class AsciiLine implements CharSequence {
+        private final Scratch scratch;
+        private int length;
+
+        private AsciiLine(Scratch scratch) {
+            this.scratch = scratch;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) scratch.bytes[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(scratch.bytes, start, end - start, StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String toString() {
+            return new String(scratch.bytes, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.wizardry.tools.logripper.util.output;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A fixed set of direct buffers that are encoded into by the grep's workers and written out by a single writer.
+ * Taking a buffer blocks while every buffer is still waiting to be written, which is what bounds the memory of
+ * the output no matter how many matches are found.
+ */
+final class ByteBufferPool {
+
+    private final BlockingQueue<ByteBuffer> free;
+    private final int bufferSize;
+
+    ByteBufferPool(int buffers, int bufferSize) {
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.bufferSize = bufferSize;
+        for (int i = 0; i < buffers; i++) {
+            free.add(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a cleared buffer, waiting for one to be released if there is none.
+     */
+    ByteBuffer acquire() throws InterruptedException {
+        ByteBuffer buffer = free.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        Taker taker = new Taker();
+        ForkJoinPool.managedBlock(taker);
+        return taker.taken;
+    }
+
+    private final class Taker implements ForkJoinPool.ManagedBlocker {
+
+        private ByteBuffer taken;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (taken == null) {
+                taken = free.take();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return taken != null || (taken = free.poll()) != null;
+        }
+    }
+
+    /**
+     * Hands a buffer back once it was written. Buffers that weren't taken from the pool, e.g. ones allocated
+     * for a single oversized record, are left to the garbage collector.
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.isDirect() && buffer.capacity() == bufferSize) {
+            free.offer(buffer.clear());
+        }
+    }
+}
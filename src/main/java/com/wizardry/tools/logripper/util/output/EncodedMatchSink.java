@@ -0,0 +1,423 @@
+package com.wizardry.tools.logripper.util.output;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.config.OutputFormat;
+import com.wizardry.tools.logripper.util.matching.Match;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A {@link MatchSink} that writes matches as {@code json}, {@code ndjson} or {@code binary} records: the path,
+ * the line number, the byte offset of the line, the byte span of the first hit within the line, the line itself
+ * and its context lines.
+ * <p>
+ * Unlike the {@link StreamingMatchSink}, chunks are encoded by the workers that emit them, straight into direct
+ * buffers of a {@link ByteBufferPool}, instead of being formatted into lines and printed through a
+ * {@link java.io.PrintStream}. A single writer thread hands whatever buffers are ready to the channel in one
+ * gathering write and releases them to the pool again, so that encoding scales with the grep while output stays
+ * a plain sequence of writes. Records never span buffers, so the records of different paths may interleave but
+ * never mix.
+ * <p>
+ * A binary output starts with the magic {@code "LRM1"}. Every record is a big-endian int with the number of
+ * bytes that follow, then the path, the line number as an int, the offset as a long (-1 if unknown), the span's
+ * start and end as ints (-1 if unknown), the line, and the lines before, the lines after and the patterns that
+ * hit, each as an int count followed by that many strings. A string is an int length followed by its UTF-8
+ * bytes, the line's length is -1 with {@code --silent}.
+ * <p>
+ * The span is the one the {@link com.wizardry.tools.logripper.util.matching.LineMatcher} found while scanning,
+ * and the line is written from the raw bytes it was scanned from, so nothing is searched or encoded twice.
+ * Matches that weren't scanned from bytes are encoded from their value and have no span.
+ */
+public final class EncodedMatchSink implements MatchSink {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    private static final int BUFFER_SIZE = 64 << 10; // 64 KiB
+    private static final int BUFFER_COUNT = 32;
+    /** The most buffers written by a single gathering write. */
+    private static final int MAX_GATHER = 16;
+    private static final int MAGIC = 0x4c524d31; // "LRM1"
+    /** The bytes of a record besides its strings, generously. */
+    private static final int RECORD_OVERHEAD = 256;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final OutputFormat format;
+    private final boolean isSilent;
+    private final ByteBufferPool pool = new ByteBufferPool(BUFFER_COUNT, BUFFER_SIZE);
+    private final BlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>();
+    private final WritableByteChannel out;
+    private final Thread writer;
+    private volatile Throwable failure;
+
+    EncodedMatchSink(LogRipperConfig config, WritableByteChannel out) {
+        if (!config.outputFormat().isStructured()) {
+            throw new IllegalArgumentException("Matches are only encoded as json, ndjson or binary, not as: " + config.outputFormat());
+        }
+        this.format = config.outputFormat();
+        this.isSilent = config.isSilent();
+        this.out = out;
+        this.writer = new Thread(this::drain, "logripper-output");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates the sink that writes the matches of a grep run to standard out.
+     */
+    public static EncodedMatchSink of(LogRipperConfig config) {
+        return new EncodedMatchSink(config, ResultOutput.channel());
+    }
+
+    @Override
+    public void emit(Path path, List<Match> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        try {
+            byte[] encodedPath = encode(path.toString());
+            ByteBuffer buffer = pool.acquire();
+            for (Match match : matches) {
+                int bound = bound(encodedPath, match);
+                if (buffer.remaining() < bound) {
+                    if (buffer.position() == 0) {
+                        pool.release(buffer);
+                    } else {
+                        queue.put(buffer.flip());
+                    }
+                    buffer = bound <= pool.bufferSize() ? pool.acquire() : ByteBuffer.allocate(bound);
+                }
+                if (format == OutputFormat.BINARY) {
+                    putBinary(buffer, encodedPath, match);
+                } else {
+                    putJson(buffer, encodedPath, match);
+                }
+            }
+            queue.put(buffer.flip());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while emitting matches of: " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            LOGGER.error("Error occurred while writing matches: " + failure);
+        }
+    }
+
+    private void drain() {
+        List<ByteBuffer> batch = new ArrayList<>(MAX_GATHER);
+        boolean isFirst = true;
+        try {
+            write(header());
+            for (ByteBuffer buffer = queue.take(); buffer != END; buffer = queue.take()) {
+                batch.add(buffer);
+                while (batch.size() < MAX_GATHER && queue.peek() != null && queue.peek() != END) {
+                    batch.add(queue.poll());
+                }
+                if (isFirst && format == OutputFormat.JSON) {
+                    // every record is prefixed by the separator, but the first one
+                    buffer.position(1);
+                }
+                isFirst = false;
+                write(batch.toArray(ByteBuffer[]::new));
+                batch.forEach(pool::release);
+                batch.clear();
+            }
+            write(trailer());
+        } catch (Throwable t) {
+            failure = t;
+            batch.forEach(pool::release);
+            discardUntilEnd();
+        }
+    }
+
+    private void discardUntilEnd() {
+        // keep releasing buffers so that producers never block on a dead writer
+        try {
+            for (ByteBuffer buffer = queue.take(); buffer != END; buffer = queue.take()) {
+                pool.release(buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(ByteBuffer... buffers) throws IOException {
+        if (out instanceof GatheringByteChannel gathering) {
+            while (Arrays.stream(buffers).anyMatch(ByteBuffer::hasRemaining)) {
+                gathering.write(buffers);
+            }
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    private ByteBuffer header() {
+        return switch (format) {
+            case JSON -> ByteBuffer.wrap("[\n".getBytes(StandardCharsets.US_ASCII));
+            case BINARY -> ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip();
+            default -> ByteBuffer.allocate(0);
+        };
+    }
+
+    private ByteBuffer trailer() {
+        return format == OutputFormat.JSON
+                ? ByteBuffer.wrap("]\n".getBytes(StandardCharsets.US_ASCII))
+                : ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Encodes the path once per chunk: escaped and quoted for JSON, as length prefixed UTF-8 for binary records.
+     */
+    private byte[] encode(String path) {
+        ByteBuffer buffer = ByteBuffer.allocate(6 * path.length() + Integer.BYTES + 2);
+        if (format == OutputFormat.BINARY) {
+            putString(buffer, path);
+        } else {
+            putJsonString(buffer, path);
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Returns the most bytes the record of the match can take.
+     */
+    private static int bound(byte[] encodedPath, Match match) {
+        long chars = match.bytes() != null ? match.bytes().length : match.value().length();
+        for (String line : match.before()) {
+            chars += line.length() + 4;
+        }
+        for (String line : match.after()) {
+            chars += line.length() + 4;
+        }
+        for (String pattern : match.patterns()) {
+            chars += pattern.length() + 4;
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8, RECORD_OVERHEAD + encodedPath.length + 6 * chars);
+    }
+
+    private void putJson(ByteBuffer buffer, byte[] encodedPath, Match match) {
+        if (format == OutputFormat.JSON) {
+            buffer.put((byte) ',');
+        }
+        putAscii(buffer, "{\"path\":");
+        buffer.put(encodedPath);
+        putAscii(buffer, ",\"line\":");
+        putAscii(buffer, Integer.toString(match.index()));
+        putAscii(buffer, ",\"offset\":");
+        putAscii(buffer, match.offset() < 0 ? "null" : Long.toString(match.offset()));
+        putAscii(buffer, ",\"span\":");
+        putAscii(buffer, match.hasHit() ? "[" + match.hitStart() + "," + match.hitEnd() + "]" : "null");
+        if (!isSilent) {
+            putAscii(buffer, ",\"text\":");
+            putJsonLine(buffer, match);
+            putJsonArray(buffer, "before", match.before());
+            putJsonArray(buffer, "after", match.after());
+        }
+        putJsonArray(buffer, "patterns", match.patterns());
+        putAscii(buffer, "}\n");
+    }
+
+    private static void putJsonArray(ByteBuffer buffer, String name, List<String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        putAscii(buffer, ",\"" + name + "\":[");
+        for (int i = 0; i < values.size(); i++) {
+            if (0 < i) {
+                buffer.put((byte) ',');
+            }
+            putJsonString(buffer, values.get(i));
+        }
+        buffer.put((byte) ']');
+    }
+
+    private void putBinary(ByteBuffer buffer, byte[] encodedPath, Match match) {
+        int start = buffer.position();
+        buffer.putInt(0); // the length, once it's known
+        buffer.put(encodedPath);
+        buffer.putInt(match.index());
+        buffer.putLong(match.offset());
+        buffer.putInt(match.hasHit() ? match.hitStart() : -1);
+        buffer.putInt(match.hasHit() ? match.hitEnd() : -1);
+        if (isSilent) {
+            buffer.putInt(-1);
+            buffer.putInt(0);
+            buffer.putInt(0);
+        } else {
+            if (match.bytes() != null) {
+                buffer.putInt(match.bytes().length).put(match.bytes());
+            } else {
+                putString(buffer, match.value());
+            }
+            putStrings(buffer, match.before());
+            putStrings(buffer, match.after());
+        }
+        putStrings(buffer, match.patterns());
+        buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+    }
+
+    private static void putStrings(ByteBuffer buffer, List<String> values) {
+        buffer.putInt(values.size());
+        values.forEach(value -> putString(buffer, value));
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        int start = buffer.position();
+        buffer.putInt(0);
+        putUtf8(buffer, value, false);
+        buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+    }
+
+    private static void putJsonString(ByteBuffer buffer, String value) {
+        buffer.put((byte) '"');
+        putUtf8(buffer, value, true);
+        buffer.put((byte) '"');
+    }
+
+    /**
+     * Puts the line as a JSON string, copying its raw bytes as they are unless they aren't well-formed UTF-8,
+     * which only its decoded value can be written as then.
+     */
+    private static void putJsonLine(ByteBuffer buffer, Match match) {
+        byte[] bytes = match.bytes();
+        if (bytes == null) {
+            putJsonString(buffer, match.value());
+            return;
+        }
+        int start = buffer.position();
+        buffer.put((byte) '"');
+        for (int i = 0; i < bytes.length; ) {
+            byte b = bytes[i];
+            if (0 <= b) {
+                if (b < 0x20 || b == '"' || b == '\\') {
+                    putEscaped(buffer, (char) b);
+                } else {
+                    buffer.put(b);
+                }
+                i++;
+                continue;
+            }
+            int length = sequenceLength(bytes, i);
+            if (length < 0) {
+                putJsonString(buffer.position(start), match.value());
+                return;
+            }
+            buffer.put(bytes, i, length);
+            i += length;
+        }
+        buffer.put((byte) '"');
+    }
+
+    /**
+     * Returns the length of the well-formed UTF-8 sequence of a non-ASCII char at the index, or -1.
+     */
+    static int sequenceLength(byte[] bytes, int index) {
+        int lead = bytes[index] & 0xff;
+        int length;
+        int min = 0x80;
+        int max = 0xbf;
+        if (0xc2 <= lead && lead <= 0xdf) {
+            length = 2;
+        } else if (0xe0 <= lead && lead <= 0xef) {
+            length = 3;
+            min = lead == 0xe0 ? 0xa0 : 0x80; // no overlong forms
+            max = lead == 0xed ? 0x9f : 0xbf; // no surrogates
+        } else if (0xf0 <= lead && lead <= 0xf4) {
+            length = 4;
+            min = lead == 0xf0 ? 0x90 : 0x80;
+            max = lead == 0xf4 ? 0x8f : 0xbf;
+        } else {
+            return -1;
+        }
+        if (bytes.length < index + length) {
+            return -1;
+        }
+        for (int i = 1; i < length; i++) {
+            int b = bytes[index + i] & 0xff;
+            if (b < (i == 1 ? min : 0x80) || (i == 1 ? max : 0xbf) < b) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    private static void putAscii(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Puts the UTF-8 bytes of the value, escaped for a JSON string if requested. Takes at most 6 bytes per char.
+     */
+    static void putUtf8(ByteBuffer buffer, String value, boolean isEscaped) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (isEscaped && (c < 0x20 || c == '"' || c == '\\')) {
+                    putEscaped(buffer, c);
+                } else {
+                    buffer.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xf0 | codePoint >> 18));
+                buffer.put((byte) (0x80 | codePoint >> 12 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | codePoint & 0x3f));
+            } else {
+                if (Character.isSurrogate(c)) {
+                    c = '\uFFFD'; // unpaired, like the decoder replaces malformed input
+                }
+                buffer.put((byte) (0xe0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            }
+        }
+    }
+
+    private static void putEscaped(ByteBuffer buffer, char c) {
+        buffer.put((byte) '\\');
+        switch (c) {
+            case '"', '\\' -> buffer.put((byte) c);
+            case '\n' -> buffer.put((byte) 'n');
+            case '\r' -> buffer.put((byte) 'r');
+            case '\t' -> buffer.put((byte) 't');
+            case '\b' -> buffer.put((byte) 'b');
+            case '\f' -> buffer.put((byte) 'f');
+            default -> {
+                buffer.put((byte) 'u').put((byte) '0').put((byte) '0');
+                buffer.put((byte) Character.forDigit(c >> 4, 16));
+                buffer.put((byte) Character.forDigit(c & 0xf, 16));
+            }
+        }
+    }
+}
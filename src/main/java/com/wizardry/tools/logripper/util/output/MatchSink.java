@@ -0,0 +1,33 @@
+package com.wizardry.tools.logripper.util.output;
+
+import com.wizardry.tools.logripper.util.matching.Match;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Receives matches as soon as they are found, in chunks. The chunks of a single path are always emitted in
+ * file order by a single thread, chunks of different paths may be emitted concurrently.
+ */
+public interface MatchSink extends AutoCloseable {
+
+    /**
+     * A sink that drops every match, e.g. when only counting.
+     */
+    MatchSink NONE = (path, matches) -> {};
+
+    /**
+     * Hands a chunk of matches of the given path over to the sink. May block until the sink has room.
+     *
+     * @param path The path the matches were found in.
+     * @param matches The matches in file order. The sink takes ownership of the list.
+     */
+    void emit(Path path, List<Match> matches);
+
+    /**
+     * Waits until every emitted match has been written.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,55 @@
+package com.wizardry.tools.logripper.util.output;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The streams the matches and results of a run are written to, apart from the diagnostics of the logger. Both
+ * are buffered and only flushed once a writer is done or has to wait for more, so a run's output is written in
+ * large blocks no matter how many lines it has. Every result goes through here rather than {@link System#out},
+ * so there is exactly one buffer in front of standard out.
+ */
+public final class ResultOutput {
+
+    private static final int BUFFER_SIZE = 1 << 16; // 64 KiB
+    private static final FileOutputStream STDOUT = new FileOutputStream(FileDescriptor.out);
+    private static final PrintStream OUT = new PrintStream(new BufferedOutputStream(STDOUT, BUFFER_SIZE), false, StandardCharsets.UTF_8);
+    private static final PrintStream ERR = open(FileDescriptor.err);
+
+    private ResultOutput() {
+    }
+
+    /**
+     * Returns the buffered stream on standard out.
+     */
+    public static PrintStream out() {
+        return OUT;
+    }
+
+    /**
+     * Returns the unbuffered channel on standard out, for writers that fill buffers of their own, e.g. with
+     * encoded records. Whatever the buffered stream still holds is flushed first, so the two never reorder.
+     */
+    public static WritableByteChannel channel() {
+        OUT.flush();
+        return STDOUT.getChannel();
+    }
+
+    /**
+     * Returns the stream the results of a run, e.g. its total number of matches, are written to. That's standard
+     * out, unless standard out holds the matches as records, which have to stay parsable.
+     */
+    public static PrintStream of(LogRipperConfig config) {
+        return config.outputFormat().isStructured() ? ERR : OUT;
+    }
+
+    private static PrintStream open(FileDescriptor descriptor) {
+        return new PrintStream(new BufferedOutputStream(new FileOutputStream(descriptor), BUFFER_SIZE), false, StandardCharsets.UTF_8);
+    }
+}
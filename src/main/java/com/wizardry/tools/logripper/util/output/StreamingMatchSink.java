@@ -0,0 +1,148 @@
+package com.wizardry.tools.logripper.util.output;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.matching.Match;
+import org.refcodes.logger.RuntimeLogger;
+import org.refcodes.logger.RuntimeLoggerFactorySingleton;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MatchSink} that prints matches to the {@link ResultOutput} while the grep is still running, never
+ * through the logger, not even with {@code --debug}. Chunks are handed to a single
+ * writer thread through a bounded queue: when output can't keep up, producers block instead of piling up
+ * matches, so memory stays fixed no matter how many matches are found.
+ * <p>
+ * Chunks of different paths can interleave. Whenever the writer switches to another path it prints a header
+ * for it, so every match stays attributable while each path's matches keep their file order.
+ */
+public final class StreamingMatchSink implements MatchSink {
+
+    private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
+
+    public static final int CHUNK_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final Chunk END = new Chunk(null, List.of());
+
+    private record Chunk(Path path, List<Match> matches) {
+    }
+
+    private final BlockingQueue<Chunk> queue;
+    private final PrintStream out;
+    private final Consumer<Match> printer;
+    private final boolean printHeaders;
+    private final Thread writer;
+    private volatile Throwable failure;
+
+    private StreamingMatchSink(LogRipperConfig config, boolean printHeaders) {
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.out = ResultOutput.out();
+        this.printer = printer(config, out);
+        this.printHeaders = printHeaders;
+        this.writer = new Thread(this::drain, "logripper-output");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Creates the sink for a grep run, or {@link MatchSink#NONE} when matches aren't reported at all. Matches
+     * to be written as records go to an {@link EncodedMatchSink} instead.
+     *
+     * @param config The configuration of the grep run.
+     * @param printHeaders True to print the path before its matches, e.g. when grepping a directory.
+     */
+    public static MatchSink of(LogRipperConfig config, boolean printHeaders) {
+        if (config.isCountOnly()) {
+            return NONE;
+        }
+        if (config.outputFormat().isStructured()) {
+            return EncodedMatchSink.of(config);
+        }
+        if (config.isSilent() && !config.isNumbered()) {
+            return NONE;
+        }
+        return new StreamingMatchSink(config, printHeaders);
+    }
+
+    @Override
+    public void emit(Path path, List<Match> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        try {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                @Override
+                public boolean block() throws InterruptedException {
+                    queue.put(new Chunk(path, matches));
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    return false;
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while emitting matches of: " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            queue.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.flush();
+        if (failure != null) {
+            LOGGER.error("Error occurred while writing matches: " + failure);
+        }
+    }
+
+    private void drain() {
+        Path lastPath = null;
+        try {
+            for (Chunk chunk = queue.take(); chunk != END; chunk = queue.take()) {
+                if (printHeaders && !chunk.path().equals(lastPath)) {
+                    out.println("Matches for: " + chunk.path());
+                    lastPath = chunk.path();
+                }
+                chunk.matches().forEach(printer);
+                if (queue.isEmpty()) {
+                    // don't hold output back while the grep is still searching
+                    out.flush();
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            discardUntilEnd();
+        }
+    }
+
+    private void discardUntilEnd() {
+        // keep consuming so that producers never block on a dead writer
+        try {
+            while (queue.take() != END) {
+                // drop the chunk
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Consumer<Match> printer(LogRipperConfig config, PrintStream out) {
+        if (config.isSilent()) {
+            return match -> out.println(match.index());
+        }
+        return match -> match.print(out);
+    }
+}
@@ -1,5 +1,6 @@
 package com.wizardry.tools.logripper.util.wrapping;
 
+import com.wizardry.tools.logripper.util.compression.Compression;
 import com.wizardry.tools.logripper.util.filesystem.Readable;
 import com.wizardry.tools.logripper.util.functions.LineReader;
 import com.wizardry.tools.logripper.util.matching.Match;
@@ -7,11 +8,17 @@ import org.jetbrains.annotations.NotNull;
 import org.refcodes.logger.RuntimeLogger;
 import org.refcodes.logger.RuntimeLoggerFactorySingleton;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
@@ -19,15 +26,37 @@ import java.util.stream.Stream;
 public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineReader,Match> {
     private static final RuntimeLogger LOGGER = RuntimeLoggerFactorySingleton.createRuntimeLogger();
     private final Path wrapped;
+    private final BasicFileAttributes attributes;
 
     public WrappedPath(Path wrapped) {
+        this(wrapped, null);
+    }
+
+    /**
+     * @param wrapped The path to wrap.
+     * @param attributes The attributes of the path as read by a crawler, answering {@link #isDir()} and
+     *                   {@link #isFile()} without another stat call. Null to read them on demand.
+     */
+    public WrappedPath(Path wrapped, BasicFileAttributes attributes) {
         this.wrapped = wrapped;
+        this.attributes = attributes;
     }
 
     public static WrappedPath of(Path path) {
         return new WrappedPath(path);
     }
 
+    public static WrappedPath of(Path path, BasicFileAttributes attributes) {
+        return new WrappedPath(path, attributes);
+    }
+
+    /**
+     * Returns the attributes the path was wrapped with, or null if there are none.
+     */
+    public BasicFileAttributes attributes() {
+        return attributes;
+    }
+
     @Override
     public Path unwrap() {
         return wrapped;
@@ -509,6 +538,9 @@ public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineRead
      */
     @Override
     public boolean isDir() {
+        if (attributes != null) {
+            return attributes.isDirectory();
+        }
         return Files.isDirectory(wrapped, LinkOption.NOFOLLOW_LINKS);
     }
 
@@ -529,6 +561,9 @@ public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineRead
      */
     @Override
     public boolean isFile() {
+        if (attributes != null) {
+            return attributes.isRegularFile();
+        }
         return Files.isRegularFile(wrapped, LinkOption.NOFOLLOW_LINKS);
     }
 
@@ -555,8 +590,15 @@ public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineRead
         if (!isReadable()) {
             throw new IOException("Path is not readable.");
         }
-        // return closable stream
-        return Files.lines(wrapped);
+        // compressed files are decompressed on the fly, the stream closes the underlying file
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Compression.open(wrapped), StandardCharsets.UTF_8));
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @Override
@@ -573,10 +615,10 @@ public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineRead
         final AtomicInteger totalLines = new AtomicInteger(0);
         //read file
         try  (Stream<String> lines = readLines()) {
-            // read lines
-            lines.parallel().forEach(line -> {
+            // read lines in order, the LineReader tracks context between consecutive lines.
+            lines.forEachOrdered(line -> {
                 // LineReader will match and collate matches based on its configuration.
-                lineReader.apply(line, totalLines.getAndIncrement(), matches);
+                lineReader.apply(line, totalLines.incrementAndGet(), matches);
             });
         }
 
@@ -592,4 +634,8 @@ public final class WrappedPath implements Wrappable<Path>,Path,Readable<LineRead
     public DirectoryStream<Path> dirStream() throws IOException {
         return Files.newDirectoryStream(wrapped);
     }
+
+    public FileChannel openChannel() throws IOException {
+        return FileChannel.open(wrapped, StandardOpenOption.READ);
+    }
 }
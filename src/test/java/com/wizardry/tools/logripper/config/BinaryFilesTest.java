@@ -0,0 +1,34 @@
+package com.wizardry.tools.logripper.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the BinaryFiles modes and the NUL sniff.
+ */
+public class BinaryFilesTest {
+
+    @Test
+    public void testOf() {
+        assertEquals(BinaryFiles.MATCH_ONLY, BinaryFiles.of("match-only"));
+        assertEquals(BinaryFiles.SKIP, BinaryFiles.of(" SKIP "));
+        assertEquals("match-only", BinaryFiles.MATCH_ONLY.toString());
+        assertThrows(IllegalArgumentException.class, () -> BinaryFiles.of("binary"));
+    }
+
+    @Test
+    public void testIsBinary() {
+        assertFalse(BinaryFiles.isBinary(ByteBuffer.wrap("INFO ünïcödé\n".getBytes(StandardCharsets.UTF_8))));
+        assertTrue(BinaryFiles.isBinary(ByteBuffer.wrap(new byte[]{'P', 'K', 3, 4, 0, 0})));
+        // only the head is sniffed
+        byte[] late = new byte[BinaryFiles.SNIFF_LENGTH + 1];
+        Arrays.fill(late, (byte) 'x');
+        late[BinaryFiles.SNIFF_LENGTH] = 0;
+        assertFalse(BinaryFiles.isBinary(ByteBuffer.wrap(late)));
+    }
+}
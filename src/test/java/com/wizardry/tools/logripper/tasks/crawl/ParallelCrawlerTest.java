@@ -0,0 +1,96 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the ParallelCrawler and its depth limit.
+ */
+public class ParallelCrawlerTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Records the names of the files, entered and pruned directories.
+     */
+    private static class RecordingVisitor implements CrawlVisitor<Path> {
+        final Queue<String> files = new ConcurrentLinkedQueue<>();
+        final Queue<String> entered = new ConcurrentLinkedQueue<>();
+        final Queue<String> pruned = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public Path enterDirectory(Path parent, Path dir, BasicFileAttributes attrs) {
+            entered.add(dir.getFileName().toString());
+            return dir;
+        }
+
+        @Override
+        public void visitFile(Path dir, Path file, BasicFileAttributes attrs) {
+            files.add(file.getFileName().toString());
+        }
+
+        @Override
+        public void visitPruned(Path dir, Path subdir, BasicFileAttributes attrs) {
+            pruned.add(subdir.getFileName().toString());
+        }
+    }
+
+    private RecordingVisitor crawl(int maxDepth) throws IOException {
+        Files.createDirectories(tempDir.resolve("a/b"));
+        Files.writeString(tempDir.resolve("top.log"), "top");
+        Files.writeString(tempDir.resolve("a/mid.log"), "mid");
+        Files.writeString(tempDir.resolve("a/b/deep.log"), "deep");
+        RecordingVisitor visitor = new RecordingVisitor();
+        new ParallelCrawler<>(visitor, maxDepth).crawl(tempDir);
+        return visitor;
+    }
+
+    @Test
+    public void testUnlimitedDepth() throws IOException {
+        RecordingVisitor visitor = crawl(ParallelCrawler.UNLIMITED_DEPTH);
+        assertEquals(3, visitor.files.size());
+        assertEquals(3, visitor.entered.size());
+        assertTrue(visitor.pruned.isEmpty());
+    }
+
+    @Test
+    public void testTopLevelOnly() throws IOException {
+        RecordingVisitor visitor = crawl(1);
+        assertEquals(List.of("top.log"), List.copyOf(visitor.files));
+        assertEquals(List.of("a"), List.copyOf(visitor.pruned));
+        assertEquals(1, visitor.entered.size());
+    }
+
+    @Test
+    public void testDepthTwo() throws IOException {
+        RecordingVisitor visitor = crawl(2);
+        assertEquals(2, visitor.files.size());
+        assertFalse(visitor.files.contains("deep.log"));
+        assertEquals(List.of("b"), List.copyOf(visitor.pruned));
+    }
+
+    @Test
+    public void testLinkedRootIsFollowed() throws IOException {
+        crawl(ParallelCrawler.UNLIMITED_DEPTH);
+        Path root = Files.createSymbolicLink(tempDir.resolve("current"), tempDir.resolve("a"));
+        Files.createSymbolicLink(tempDir.resolve("a/b/loop"), tempDir.resolve("a"));
+
+        RecordingVisitor visitor = new RecordingVisitor();
+        new ParallelCrawler<>(visitor).crawl(root);
+        assertEquals(List.of("current", "b"), List.copyOf(visitor.entered));
+        // links below the root are handed over as files, never followed
+        assertTrue(visitor.files.contains("loop"));
+        assertEquals(3, visitor.files.size());
+    }
+}
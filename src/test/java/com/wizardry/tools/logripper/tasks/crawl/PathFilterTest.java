@@ -0,0 +1,75 @@
+package com.wizardry.tools.logripper.tasks.crawl;
+
+import com.wizardry.tools.logripper.util.DataUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the PathFilter globs, times and sizes.
+ */
+public class PathFilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private BasicFileAttributes attributes(Path file) throws IOException {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    @Test
+    public void testGlobs() throws IOException {
+        PathFilter filter = PathFilter.of("*.{log,out},app.txt", "*.gz,archive", "", "", "");
+        Path log = Files.writeString(tempDir.resolve("app.log"), "log");
+        Path out = Files.writeString(tempDir.resolve("app.out"), "out");
+        Path txt = Files.writeString(tempDir.resolve("app.txt"), "txt");
+        Path jar = Files.writeString(tempDir.resolve("app.jar"), "jar");
+
+        assertEquals(3, PathFilter.globs("*.{log,out},app.txt, *.gz").size());
+        assertTrue(filter.acceptsFile(log, attributes(log)));
+        assertTrue(filter.acceptsFile(out, attributes(out)));
+        assertTrue(filter.acceptsFile(txt, attributes(txt)));
+        assertFalse(filter.acceptsFile(jar, attributes(jar)));
+        assertFalse(filter.acceptsDirectory(tempDir.resolve("archive")));
+        assertTrue(filter.acceptsDirectory(tempDir.resolve("current")));
+    }
+
+    @Test
+    public void testPathGlobs() {
+        PathFilter filter = PathFilter.of("", "**/old/**", "", "", "");
+        assertFalse(filter.acceptsDirectory(tempDir.resolve("old/2023")));
+        assertTrue(filter.acceptsDirectory(tempDir.resolve("new/old")));
+    }
+
+    @Test
+    public void testTimes() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "log");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(3))));
+
+        assertFalse(PathFilter.of("", "", "2d", "", "").acceptsFile(file, attributes(file)));
+        assertTrue(PathFilter.of("", "", "1w", "2d", "").acceptsFile(file, attributes(file)));
+        assertEquals(Instant.parse("2024-05-01T00:00:00Z").minusSeconds(90), PathFilter.parseTime("90s", Instant.parse("2024-05-01T00:00:00Z")));
+        assertThrows(IllegalArgumentException.class, () -> PathFilter.parseTime("yesterday", Instant.now()));
+    }
+
+    @Test
+    public void testMaxFileSize() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "x".repeat(2000));
+
+        assertFalse(PathFilter.of("", "", "", "", "1KB").acceptsFile(file, attributes(file)));
+        assertTrue(PathFilter.of("", "", "", "", "2KiB").acceptsFile(file, attributes(file)));
+        assertEquals(1_500_000L, DataUtil.parseByteCount("1.5MB"));
+        assertEquals(512L, DataUtil.parseByteCount("512"));
+        assertEquals(4L << 20, DataUtil.parseByteCount("4MiB"));
+        assertSame(PathFilter.NONE, PathFilter.of("", " ", "", "", ""));
+    }
+}
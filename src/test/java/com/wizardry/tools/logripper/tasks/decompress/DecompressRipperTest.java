@@ -0,0 +1,101 @@
+package com.wizardry.tools.logripper.tasks.decompress;
+
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import io.airlift.compress.zstd.ZstdCompressor;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for decompressing zstd and bzip2 archives with the DecompressRipper, gzip is covered by the grep tests.
+ */
+public class DecompressRipperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] log(int size) {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < size; i++) {
+            log.append(i % 37 == 0 ? "ERROR " : "info ").append(i).append(' ').append("x".repeat(i % 200)).append('\n');
+        }
+        return log.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] zstd(byte[] bytes, int from, int to) {
+        ZstdCompressor compressor = new ZstdCompressor();
+        byte[] frame = new byte[compressor.maxCompressedLength(to - from)];
+        return Arrays.copyOf(frame, compressor.compress(bytes, from, to - from, frame, 0, frame.length));
+    }
+
+    private static byte[] skippable() {
+        return ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putInt(0x184d2a50).putInt(4).putInt(42).array();
+    }
+
+    private byte[] decompress(Path path) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = new DecompressRipper(out).rip(WrappedPath.of(path));
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testZstdFramesInOrder() throws IOException {
+        // frames that are grouped into several runs, a frame too large to be buffered and skippable frames
+        byte[] log = log(3 * ZstdDecompressTask.RANGE_SIZE);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.write(skippable());
+        int from = 0;
+        for (int frameSize = 1 << 10; from < log.length; frameSize = Math.min(frameSize * 3, ZstdDecompressTask.RANGE_SIZE + 1)) {
+            int to = Math.min(log.length, from + frameSize);
+            archive.write(zstd(log, from, to));
+            if (frameSize == ZstdDecompressTask.RANGE_SIZE + 1) {
+                archive.write(skippable());
+            }
+            from = to;
+        }
+        Path path = Files.write(tempDir.resolve("app.log.zst"), archive.toByteArray());
+
+        assertArrayEquals(log, decompress(path));
+    }
+
+    @Test
+    public void testZstdTrailingGarbage() throws IOException {
+        byte[] log = log(100_000);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        archive.write(zstd(log, 0, 50_000));
+        archive.write(zstd(log, 50_000, log.length));
+        archive.write(new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        Path path = Files.write(tempDir.resolve("app.log.zst"), archive.toByteArray());
+
+        assertArrayEquals(log, decompress(path));
+    }
+
+    @Test
+    public void testBzip2Streams() throws IOException {
+        byte[] log = log(300_000);
+        Path path = tempDir.resolve("app.log.bz2");
+        try (OutputStream out = Files.newOutputStream(path)) {
+            // two concatenated streams, like pbzip2 writes them
+            for (int from = 0; from < log.length; from += 200_000) {
+                BZip2CompressorOutputStream stream = new BZip2CompressorOutputStream(out);
+                stream.write(log, from, Math.min(200_000, log.length - from));
+                stream.finish();
+            }
+        }
+
+        assertArrayEquals(log, decompress(path));
+    }
+}
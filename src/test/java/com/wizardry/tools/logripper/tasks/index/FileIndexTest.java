@@ -0,0 +1,148 @@
+package com.wizardry.tools.logripper.tasks.index;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.pathgrep.MappedWindow;
+import com.wizardry.tools.logripper.tasks.pathgrep.PathGrepTask;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the FileIndex trigram blocks and their sidecar files.
+ */
+public class FileIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileIndex index(Path file) throws IOException {
+        IndexStore store = new IndexStore(tempDir.resolve("index"));
+        new IndexFileTask(WrappedPath.of(file), store, false).invoke();
+        return store.load(file);
+    }
+
+    @Test
+    public void testTrigrams() {
+        assertNull(TrigramFilter.trigrams("ab"));
+        assertArrayEquals(TrigramFilter.trigrams("error"), TrigramFilter.trigrams("ERROR"));
+        assertEquals(3, TrigramFilter.trigrams("ERROR").length);
+    }
+
+    @Test
+    public void testReadBack() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "INFO started\nERROR boom\nINFO done", StandardCharsets.UTF_8);
+        FileIndex index = index(file);
+
+        assertNotNull(index);
+        assertEquals(file.toAbsolutePath().toString(), index.path());
+        assertEquals(Files.size(file), index.size());
+        assertEquals(1, index.blocks().size());
+        assertEquals(3, index.blocks().getFirst().lines());
+        assertTrue(index.blocks().getFirst().mayContain(TrigramFilter.trigrams("boom")));
+        assertFalse(index.blocks().getFirst().mayContain(TrigramFilter.trigrams("timeout")));
+        // trigrams never span a line break
+        assertFalse(index.blocks().getFirst().mayContain(TrigramFilter.trigrams("boomINFO")));
+    }
+
+    @Test
+    public void testAppendedFile() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "INFO started\n", StandardCharsets.UTF_8);
+        FileIndex index = index(file);
+        Files.writeString(file, "ERROR boom\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertTrue(index.isCurrent(file, channel));
+            assertEquals(0, index.usableBlocks(channel.size()));
+            List<MappedWindow> windows = index.windows(channel, 1 << 20);
+            assertEquals(1, windows.size());
+            assertEquals(0, windows.getFirst().offset());
+            assertEquals(channel.size(), windows.getFirst().length());
+        }
+        assertEquals(Files.size(file), index(file).size());
+    }
+
+    @Test
+    public void testRewrittenFile() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "INFO started\n", StandardCharsets.UTF_8);
+        FileIndex index = index(file);
+        Files.writeString(file, "WARN rotated\nINFO started again\n", StandardCharsets.UTF_8);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertFalse(index.isCurrent(file, channel));
+        }
+    }
+
+    @Test
+    public void testRewrittenThenGrownFile() throws IOException {
+        // the same file, rewritten in place behind an unchanged head and then grown, e.g. by a truncating logger
+        String head = "INFO started\n".repeat(FileIndex.HEAD_LENGTH / 10);
+        Path file = Files.writeString(tempDir.resolve("app.log"), head + "INFO fine\n", StandardCharsets.UTF_8);
+        FileIndex index = index(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(StandardCharsets.UTF_8.encode("ERROR boom\nINFO more\n"), head.length());
+        }
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertTrue(index.size() < channel.size());
+            assertEquals(index.headCrc(), FileIndex.headCrc(channel, index.size()));
+            assertFalse(index.isCurrent(file, channel));
+        }
+        FileIndex reindexed = index(file);
+        assertEquals(Files.size(file), reindexed.size());
+        assertTrue(reindexed.blocks().getFirst().mayContain(TrigramFilter.trigrams("boom")));
+    }
+
+    private List<String> grep(Path file, boolean isIndexed, boolean isCountOnly) {
+        List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+        LogRipperConfig config = new LogRipperConfig("ERROR", file, 0, 0, false, 0, false, isCountOnly, true, false, false,
+                isIndexed, ParallelCrawler.UNLIMITED_DEPTH);
+        AtomicInteger totalMatches = new AtomicInteger();
+        SystemUtil.getWorkPool().invoke(new PathGrepTask(WrappedPath.of(tempDir.resolve("logs")), config, totalMatches,
+                (path, chunk) -> chunk.forEach(match -> emitted.add(match.index() + ":" + match.value()))));
+        List<String> result = new ArrayList<>(emitted);
+        Collections.sort(result);
+        result.add("total " + totalMatches.get());
+        return result;
+    }
+
+    @Test
+    public void testSkippedBlocksKeepLineNumbers() throws IOException {
+        Path file = Files.createDirectories(tempDir.resolve("logs")).resolve("app.log");
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < 3 * FileIndex.BLOCK_SIZE; i++) {
+            // the first block holds no match at all, the others only a few
+            boolean isError = FileIndex.BLOCK_SIZE < log.length() && i % 9973 == 0;
+            log.append(isError ? "ERROR " : "info ").append(i).append(' ').append("x".repeat(i % 50)).append('\n');
+        }
+        Files.writeString(file, log);
+        FileIndex index = index(file);
+        assertTrue(3 <= index.blocks().size());
+        assertFalse(index.blocks().getFirst().mayContain(TrigramFilter.trigrams("ERROR")));
+
+        System.setProperty(IndexStore.DIRECTORY_PROPERTY, tempDir.resolve("index").toString());
+        try {
+            for (boolean isCountOnly : new boolean[]{false, true}) {
+                List<String> unindexed = grep(file, false, isCountOnly);
+                assertNotEquals("total 0", unindexed.getLast());
+                assertEquals(unindexed, grep(file, true, isCountOnly));
+            }
+        } finally {
+            System.clearProperty(IndexStore.DIRECTORY_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.wizardry.tools.logripper.tasks.pathdiff;
+
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.pathmapper.PooledTreeWrapper;
+import com.wizardry.tools.logripper.tasks.pathmapper.WrappedTreeNode;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for saving TreeSnapshots and diffing trees against them with the SnapshotDiffVisitor.
+ */
+public class TreeSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final FileTime LAST_WEEK = FileTime.from(Instant.now().minus(Duration.ofDays(7)));
+
+    private Path tree() throws IOException {
+        Path root = tempDir.resolve("logs");
+        Files.writeString(Files.createDirectories(root.resolve("app")).resolve("app.log"), "x".repeat(100));
+        Files.writeString(Files.createDirectories(root.resolve("web")).resolve("access.log"), "x".repeat(100));
+        for (Path dir : List.of(root.resolve("app"), root.resolve("web"), root)) {
+            Files.setLastModifiedTime(dir, LAST_WEEK);
+        }
+        return root;
+    }
+
+    private TreeSnapshot snapshot(Path root) throws Exception {
+        long crawlStart = System.currentTimeMillis();
+        WrappedTreeNode node = new PooledTreeWrapper().crawl(WrappedPath.of(root));
+        Path file = tempDir.resolve("snapshots/logs.lrts");
+        TreeSnapshot.save(node, ParallelCrawler.UNLIMITED_DEPTH, crawlStart, file);
+        return TreeSnapshot.read(file);
+    }
+
+    private static SnapshotDiffVisitor diff(TreeSnapshot snapshot, Path root) throws IOException {
+        SnapshotDiffVisitor visitor = new SnapshotDiffVisitor(snapshot, 10);
+        new ParallelCrawler<>(visitor, snapshot.maxDepth()).crawl(root);
+        return visitor;
+    }
+
+    @Test
+    public void testReadBack() throws Exception {
+        Path root = tree();
+        TreeSnapshot snapshot = snapshot(root);
+
+        assertEquals(root.toAbsolutePath().normalize(), snapshot.root());
+        assertEquals(ParallelCrawler.UNLIMITED_DEPTH, snapshot.maxDepth());
+        assertEquals(List.of("app.log"), snapshot.get(root.resolve("app")).entries());
+        assertNull(snapshot.get(root.resolve("app/app.log")));
+    }
+
+    @Test
+    public void testUnchangedTreeDidNotGrow() throws Exception {
+        Path root = tree();
+        SnapshotDiffVisitor visitor = diff(snapshot(root), root);
+
+        assertTrue(visitor.largestGrowth().isEmpty());
+        assertEquals(3, visitor.unchanged());
+    }
+
+    @Test
+    public void testGrowth() throws Exception {
+        Path root = tree();
+        TreeSnapshot snapshot = snapshot(root);
+        Files.writeString(root.resolve("app/app.log"), "x".repeat(100_000), StandardOpenOption.APPEND);
+        Files.writeString(Files.createDirectories(root.resolve("db")).resolve("db.log"), "x".repeat(300));
+
+        List<SnapshotDiffVisitor.Growth> growth = diff(snapshot, root).largestGrowth();
+        assertEquals(List.of(root.resolve("app"), root.resolve("db")), growth.stream().map(SnapshotDiffVisitor.Growth::path).toList());
+        assertEquals(100_000, growth.get(0).growth());
+        assertEquals(snapshot.get(root.resolve("app")).size() + 100_000, growth.get(0).size());
+    }
+
+    @Test
+    public void testUnchangedDirectoriesAreNotListed() throws Exception {
+        Path root = tree();
+        TreeSnapshot snapshot = snapshot(root);
+        // an entry that sneaks in without changing the modification time isn't seen
+        Files.writeString(root.resolve("web/error.log"), "x".repeat(500));
+        Files.setLastModifiedTime(root.resolve("web"), LAST_WEEK);
+
+        assertTrue(diff(snapshot, root).largestGrowth().isEmpty());
+    }
+}
@@ -0,0 +1,48 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.util.matching.LineMatcher;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link LineMatcher} that counts the buffers it scans, to tell which files or windows were never scanned.
+ * Every scan of a buffer starts at its index 0, resumed scans and later slices never do.
+ */
+final class CountingLineMatcher implements LineMatcher {
+
+    private final LineMatcher matcher;
+    private final AtomicInteger scans = new AtomicInteger();
+
+    CountingLineMatcher(LineMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    int scans() {
+        return scans.get();
+    }
+
+    @Override
+    public int nextCandidate(ByteBuffer buffer, int from, int to) {
+        if (from == 0) {
+            scans.incrementAndGet();
+        }
+        return matcher.nextCandidate(buffer, from, to);
+    }
+
+    @Override
+    public boolean matches(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return matcher.matches(buffer, lineStart, lineEnd);
+    }
+
+    @Override
+    public long hit(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return matcher.hit(buffer, lineStart, lineEnd);
+    }
+
+    @Override
+    public List<String> hits(ByteBuffer buffer, int lineStart, int lineEnd) {
+        return matcher.hits(buffer, lineStart, lineEnd);
+    }
+}
@@ -0,0 +1,80 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the per run GrepSummary of a directory grep.
+ */
+public class GrepSummaryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSummaryOfDirectoryGrep() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            Files.writeString(tempDir.resolve("app" + i + ".log"), i % 5 == 0 ? "info\nERROR " + i + "\n" : "info\n");
+        }
+        Files.writeString(tempDir.resolve("notes.txt"), "ERROR in notes\n");
+        LogRipperConfig config = new LogRipperConfig("ERROR", tempDir, 0, 0, false, 0, false, false, false, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.of("*.log", "", "", "", ""));
+        AtomicInteger totalMatches = new AtomicInteger();
+        PathGrepTask task = new PathGrepTask(WrappedPath.of(tempDir), config, totalMatches, MatchSink.NONE);
+        SystemUtil.getWorkPool().invoke(task);
+
+        GrepSummary summary = task.summary();
+        assertEquals(10, totalMatches.get());
+        assertEquals(50, summary.files());
+        assertEquals(10, summary.matchingFiles());
+        assertEquals(1, summary.skippedFiles());
+        assertEquals(0, summary.failedFiles());
+    }
+
+    @Test
+    public void testSkippedBinaryFiles() throws IOException {
+        Files.writeString(tempDir.resolve("app.log"), "ERROR in text\n");
+        Files.writeString(tempDir.resolve("small.bin"), "ERROR\u0000");
+        Files.writeString(tempDir.resolve("large.bin"), "ERROR\u0000" + "x".repeat((int) FileBatchGrepTask.SMALL_FILE_SIZE));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempDir.resolve("data.gz")))) {
+            out.write("ERROR\u0000".getBytes());
+        }
+        LogRipperConfig config = new LogRipperConfig("ERROR", tempDir, 0, 0, false, 0, false, false, false, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.SKIP, false);
+        AtomicInteger totalMatches = new AtomicInteger();
+        PathGrepTask task = new PathGrepTask(WrappedPath.of(tempDir), config, totalMatches, MatchSink.NONE);
+        SystemUtil.getWorkPool().invoke(task);
+
+        GrepSummary summary = task.summary();
+        assertEquals(1, totalMatches.get());
+        assertEquals(1, summary.files());
+        assertEquals(3, summary.skippedFiles());
+    }
+
+    @Test
+    public void testListedFailures() {
+        GrepSummary summary = new GrepSummary(new LogRipperConfig("ERROR", tempDir));
+        for (int i = 0; i < GrepSummary.MAX_LISTED_FAILURES + 5; i++) {
+            summary.fileFailed(tempDir.resolve("app" + i + ".log"), new IOException("Permission denied"));
+        }
+        assertEquals(GrepSummary.MAX_LISTED_FAILURES + 5, summary.failedFiles());
+        assertEquals(GrepSummary.MAX_LISTED_FAILURES, summary.failures().size());
+        assertTrue(summary.failures().getFirst().endsWith("app0.log: java.io.IOException: Permission denied"));
+    }
+}
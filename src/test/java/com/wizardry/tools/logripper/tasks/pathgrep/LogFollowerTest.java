@@ -0,0 +1,115 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.output.MatchSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for following appended, truncated and rotated files with the LogFollower.
+ */
+public class LogFollowerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Match> matches = Collections.synchronizedList(new ArrayList<>());
+    private final MatchSink sink = (path, chunk) -> matches.addAll(chunk);
+
+    private LogFollower follower(Path path) throws IOException {
+        LogRipperConfig config = new LogRipperConfig("ERROR", path, 0, 0, false, 0, false, false, true, false, false, false, -1);
+        LogFollower follower = new LogFollower(config, new AtomicInteger());
+        follower.start(path, sink);
+        return follower;
+    }
+
+    /**
+     * Polls until the expected number of matches came in, the events of the watch service arrive asynchronously.
+     */
+    private void poll(LogFollower follower, int expected) throws IOException, InterruptedException {
+        for (int i = 0; i < 20 && values().size() < expected; i++) {
+            follower.pollOnce(LogFollower.MIN_INTERVAL_MILLIS);
+        }
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardOpenOption.APPEND);
+    }
+
+    private List<String> values() {
+        synchronized (matches) {
+            return matches.stream().map(Match::value).toList();
+        }
+    }
+
+    @Test
+    public void testAppendedLines() throws IOException, InterruptedException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "ERROR before\ninfo\n");
+        LogFollower follower = follower(file);
+
+        append(file, "info\nERROR one\nERROR partial");
+        poll(follower, 1);
+        assertEquals(List.of("ERROR one"), values());
+        assertEquals(4, matches.get(0).index());
+
+        append(file, " line\n");
+        poll(follower, 2);
+        assertEquals(List.of("ERROR one", "ERROR partial line"), values());
+        assertEquals(5, matches.get(1).index());
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException, InterruptedException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "info\n".repeat(100));
+        LogFollower follower = follower(file);
+
+        Files.writeString(file, "ERROR after truncation\n", StandardOpenOption.TRUNCATE_EXISTING);
+        poll(follower, 1);
+        assertEquals(List.of("ERROR after truncation"), values());
+        assertEquals(1, matches.get(0).index());
+    }
+
+    @Test
+    public void testRenamedFile() throws IOException, InterruptedException {
+        Path file = Files.writeString(tempDir.resolve("app.log"), "info\n");
+        LogFollower follower = follower(file);
+
+        append(file, "ERROR before rotation\n");
+        Files.move(file, tempDir.resolve("app.log.1"));
+        Files.writeString(file, "ERROR after rotation\n");
+        poll(follower, 2);
+        assertEquals(List.of("ERROR before rotation", "ERROR after rotation"), values());
+    }
+
+    @Test
+    public void testRotatedDirectory() throws IOException, InterruptedException {
+        Path logs = Files.createDirectories(tempDir.resolve("logs"));
+        Path file = Files.writeString(logs.resolve("app.log"), "ERROR old\n");
+        LogFollower follower = follower(logs);
+
+        append(file, "ERROR before rotation\n");
+        Files.move(file, logs.resolve("app.log.1"));
+        Files.writeString(file, "ERROR after rotation\n");
+        Path sub = Files.createDirectories(logs.resolve("sub"));
+        poll(follower, 2);
+        Files.writeString(sub.resolve("new.log"), "ERROR in new directory\n");
+        poll(follower, 3);
+        follower.pollOnce(LogFollower.MIN_INTERVAL_MILLIS);
+
+        List<String> values = new ArrayList<>(values());
+        Collections.sort(values);
+        assertEquals(List.of("ERROR after rotation", "ERROR before rotation", "ERROR in new directory"), values);
+    }
+}
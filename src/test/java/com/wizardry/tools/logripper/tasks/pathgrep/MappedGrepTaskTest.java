@@ -0,0 +1,327 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.LiteralLineMatcher;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for grepping a file by memory mapped windows, with windows small enough that a test file spans many.
+ */
+public class MappedGrepTaskTest {
+
+    private static final int WINDOW_SIZE = 4096;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Match> emitted = new ArrayList<>();
+
+    private static LogRipperConfig config(Path file, int context, int matchLimit) {
+        return new LogRipperConfig("ERROR", file, context, context, false, matchLimit, false, false, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, false);
+    }
+
+    private int grep(ForkJoinPool pool, Path file, LogRipperConfig config, CountingLineMatcher matcher) {
+        return grep(pool, file, config, matcher, WINDOW_SIZE);
+    }
+
+    private int grep(ForkJoinPool pool, Path file, LogRipperConfig config, CountingLineMatcher matcher, long windowSize) {
+        emitted.clear();
+        LineScanner scanner = new LineScanner(matcher, config, new MatchLimit(config.matchLimit(), new AtomicInteger()));
+        // the sink is only ever called by the task that merges the windows
+        return pool.invoke(new MappedGrepTask(WrappedPath.of(file), config, scanner, (path, chunk) -> emitted.addAll(chunk))
+                .withWindowSize(windowSize));
+    }
+
+    /**
+     * Greps the file with the whole engine, returns every match as line number, offset and value.
+     */
+    private List<String> grep(Path file, String token) {
+        LogRipperConfig config = new LogRipperConfig(token, file, 0, 0, false, 0, false, false, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, false);
+        int count = grep(SystemUtil.getWorkPool(), file, config, new CountingLineMatcher(config.getLineMatcher()));
+        assertEquals(emitted.size(), count);
+        return emitted.stream().map(match -> match.index() + ":" + match.offset() + ":" + match.value()).toList();
+    }
+
+    /**
+     * Greps the file the naive way, line by line, splitting at line feeds and dropping a carriage return
+     * before them.
+     */
+    private static List<String> reference(Path file, Pattern pattern) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        List<String> matches = new ArrayList<>();
+        int line = 0;
+        for (int start = 0; start < bytes.length; ) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int contentEnd = start < end && bytes[end - 1] == '\r' ? end - 1 : end;
+            String value = new String(bytes, start, contentEnd - start, StandardCharsets.UTF_8);
+            line++;
+            if (pattern.matcher(value).find()) {
+                matches.add(line + ":" + start + ":" + value);
+            }
+            start = end + 1;
+        }
+        return matches;
+    }
+
+    /**
+     * Greps the file the naive way with context, like grep: a line is never printed twice, so context stops
+     * at the next match and after the previous match's context.
+     */
+    private static List<String> reference(Path file, Pattern pattern, int context) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String match : reference(file, Pattern.compile(""))) {
+            lines.add(match.substring(match.indexOf(':', match.indexOf(':') + 1) + 1));
+        }
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (pattern.matcher(lines.get(i)).find()) {
+                matching.add(i + 1);
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        int printed = 0;
+        for (int m = 0; m < matching.size(); m++) {
+            int line = matching.get(m);
+            int next = m + 1 < matching.size() ? matching.get(m + 1) : lines.size() + 1;
+            int first = Math.max(printed + 1, line - context);
+            int last = Math.min(next - 1, line + context);
+            matches.add(line + ":" + lines.get(line - 1) + " " + lines.subList(first - 1, line - 1) + " " + lines.subList(line, last));
+            printed = Math.max(line, last);
+        }
+        return matches;
+    }
+
+    private List<String> grepWithContext(Path file, int context) {
+        LogRipperConfig config = config(file, context, 0);
+        int count = grep(SystemUtil.getWorkPool(), file, config, new CountingLineMatcher(config.getLineMatcher()));
+        assertEquals(emitted.size(), count);
+        return emitted.stream().map(match -> match.index() + ":" + match.value() + " " + match.before() + " " + match.after()).toList();
+    }
+
+    /**
+     * A log with lines of every length: short ones, ones longer than a window, CRLF line breaks, multi-byte
+     * characters and a last line without a line feed.
+     */
+    private Path mixedLog() throws IOException {
+        Random random = new Random(42);
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < 150 * WINDOW_SIZE; i++) {
+            String text = switch (i % 11) {
+                case 0 -> "ERROR long " + "y".repeat(2 * WINDOW_SIZE + random.nextInt(WINDOW_SIZE)) + " ERROR";
+                case 3 -> "Größe überschritten ERROR " + i;
+                case 5 -> "";
+                default -> (random.nextInt(5) == 0 ? "ERROR " : "info ") + i + " " + "x".repeat(random.nextInt(300));
+            };
+            log.append(text).append(i % 4 == 0 ? "\r\n" : "\n");
+        }
+        return Files.writeString(tempDir.resolve("mixed.log"), log.append("last ERROR without line feed"));
+    }
+
+    @Test
+    public void testWindows() throws IOException {
+        Path file = mixedLog();
+        byte[] bytes = Files.readAllBytes(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<MappedWindow> windows = MappedWindow.split(channel, WINDOW_SIZE);
+            assertTrue(50 < windows.size());
+            long next = 0;
+            for (MappedWindow window : windows) {
+                // contiguous, each starting right after a line feed
+                assertEquals(next, window.offset());
+                assertTrue(window.offset() == 0 || bytes[(int) window.offset() - 1] == '\n');
+                next = window.end();
+            }
+            assertEquals(bytes.length, next);
+            // a line longer than a window makes a longer window, not a split line
+            assertTrue(windows.stream().anyMatch(window -> 2L * WINDOW_SIZE < window.length()));
+        }
+    }
+
+    @Test
+    public void testSameAsLineByLine() throws IOException {
+        Path file = mixedLog();
+        List<String> expected = reference(file, Pattern.compile("ERROR"));
+        assertTrue(100 < expected.size());
+        assertTrue(expected.get(expected.size() - 1).endsWith(":last ERROR without line feed"));
+        assertEquals(expected, grep(file, "ERROR"));
+        // the regex matcher, which copies every line instead of skipping ahead
+        assertEquals(reference(file, Pattern.compile("ERR?OR \\d+")), grep(file, "ERR?OR \\d+"));
+        // a line that doesn't match is never emitted, even if it spans windows
+        assertEquals(reference(file, Pattern.compile("y ERROR")), grep(file, "y ERROR"));
+    }
+
+    @Test
+    public void testLineAcrossTheNominalBoundary() throws IOException {
+        // the first window ends with the line that runs over its nominal size
+        String first = "info " + "x".repeat(WINDOW_SIZE - 10) + "\n";
+        String crossing = "ERROR crossing " + "z".repeat(100) + "\r\n";
+        Path file = Files.writeString(tempDir.resolve("crossing.log"), first + crossing + "ERROR next");
+        List<String> expected = List.of(
+                "2:" + first.length() + ":" + crossing.strip(),
+                "3:" + (first.length() + crossing.length()) + ":ERROR next");
+        assertEquals(expected, reference(file, Pattern.compile("ERROR")));
+        assertEquals(expected, grep(file, "ERROR"));
+    }
+
+    @Test
+    public void testContextSameAsLineByLine() throws IOException {
+        // context of short lines reaches across window boundaries, the long lines need more than a block
+        Path file = mixedLog();
+        for (int context : new int[]{1, 3, 20}) {
+            assertEquals(reference(file, Pattern.compile("ERROR"), context), grepWithContext(file, context));
+        }
+    }
+
+    @Test
+    public void testContextAtTheEdges() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("edges.log"), "ERROR first\none\ntwo\nthree\nERROR mid\r\nfour\nERROR last");
+        assertEquals(List.of(
+                "1:ERROR first [] [one, two]",
+                // the line before is the previous match's context already
+                "5:ERROR mid [three] [four]",
+                "7:ERROR last [] []"), grepWithContext(file, 2));
+        assertEquals(List.of(
+                "1:ERROR first [] [one, two, three]",
+                "5:ERROR mid [] [four]",
+                "7:ERROR last [] []"), grepWithContext(file, 5));
+    }
+
+    @Test
+    public void testContextAcrossWindows() throws IOException {
+        // matches on the first and last line of every window, their context lies in the windows next to them
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < 20 * WINDOW_SIZE; i++) {
+            log.append(i % 50 == 0 || i % 50 == 1 ? "ERROR " : "info ").append(i).append(' ').append("x".repeat(70)).append('\n');
+        }
+        Path file = Files.writeString(tempDir.resolve("windows.log"), log);
+        List<String> expected = reference(file, Pattern.compile("ERROR"), 4);
+        assertEquals(expected, grepWithContext(file, 4));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertTrue(15 < MappedWindow.split(channel, WINDOW_SIZE).size());
+        }
+    }
+
+    @Test
+    public void testResumedWindows() throws IOException {
+        // windows of lines of some 13 bytes, two thirds of which match, that is more than a window buffers
+        StringBuilder log = new StringBuilder();
+        long windowSize = 32L * WINDOW_SIZE;
+        for (int i = 1; log.length() < 4 * windowSize; i++) {
+            log.append(i % 3 == 0 ? "info " : "ERROR ").append(i).append('\n');
+        }
+        Path file = Files.writeString(tempDir.resolve("resumed.log"), log);
+        LogRipperConfig config = config(file, 0, 0);
+        int count = grep(SystemUtil.getWorkPool(), file, config, new CountingLineMatcher(config.getLineMatcher()), windowSize);
+        assertEquals(emitted.size(), count);
+        List<String> actual = emitted.stream().map(match -> match.index() + ":" + match.offset() + ":" + match.value()).toList();
+        assertEquals(reference(file, Pattern.compile("ERROR")), actual);
+        // more than the four windows buffer, so at least one of them was resumed
+        assertTrue(4 * WindowGrepTask.MAX_BUFFERED_MATCHES < actual.size());
+    }
+
+    /**
+     * A log of some 250 windows in which every 7th line matches.
+     */
+    private Path log() throws IOException {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < 250 * WINDOW_SIZE; i++) {
+            log.append(i % 7 == 0 ? "ERROR " : "info ").append(i).append(' ').append("x".repeat(i % 60)).append('\n');
+        }
+        return Files.writeString(tempDir.resolve("app.log"), log);
+    }
+
+    /**
+     * Returns the index of the window the line starting at the offset falls into.
+     */
+    private static int window(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (MappedWindow window : MappedWindow.split(channel, WINDOW_SIZE)) {
+                if (offset < window.end()) {
+                    return window.index();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Offset past the end: " + offset);
+    }
+
+    @Test
+    public void testLimitStopsTheWindows() throws IOException {
+        Path file = log();
+        int limit = 100;
+        CountingLineMatcher matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            assertEquals(limit, grep(pool, file, config(file, 0, limit), matcher));
+        } finally {
+            pool.shutdown();
+        }
+        // the first matches of the file, in file order, no matter which window found them
+        assertEquals(limit, emitted.size());
+        for (int i = 0; i < limit; i++) {
+            assertEquals(7 * (i + 1), emitted.get(i).index());
+        }
+        // one window in flight, so none after the one that reached the limit was scanned
+        int last = window(file, emitted.get(limit - 1).offset());
+        assertTrue(0 < last);
+        assertEquals(last + 1, matcher.scans());
+    }
+
+    @Test
+    public void testLimitOfOne() throws IOException {
+        Path file = log();
+        CountingLineMatcher matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            assertEquals(1, grep(pool, file, config(file, 0, 1), matcher));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, emitted.size());
+        assertEquals(7, emitted.get(0).index());
+        assertEquals(1, matcher.scans());
+    }
+
+    @Test
+    public void testLimitInParallel() throws IOException {
+        Path file = log();
+        int limit = 100;
+        CountingLineMatcher matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        ForkJoinPool pool = SystemUtil.getWorkPool();
+        assertEquals(limit, grep(pool, file, config(file, 0, limit), matcher));
+        assertEquals(limit, emitted.size());
+        for (int i = 0; i < limit; i++) {
+            assertEquals(7 * (i + 1), emitted.get(i).index());
+        }
+        // at most one window per worker is in flight past the one that reached the limit
+        int last = window(file, emitted.get(limit - 1).offset());
+        assertTrue(matcher.scans() <= last + 1 + pool.getParallelism(), "scanned " + matcher.scans() + " windows");
+    }
+}
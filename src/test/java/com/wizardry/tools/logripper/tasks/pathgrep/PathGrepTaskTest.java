@@ -0,0 +1,97 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.LiteralLineMatcher;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.matching.MatchLimit;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the match limit of a directory grep: exactly as many matches are written as the limit allows, and
+ * the files after the one that reached it are never scanned.
+ */
+public class PathGrepTaskTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * A tree of small files that all match on every other line.
+     */
+    private Path tree() throws IOException {
+        for (int d = 0; d < 4; d++) {
+            Path dir = Files.createDirectories(tempDir.resolve("logs/app" + d + "/archive"));
+            for (int f = 0; f < 25; f++) {
+                StringBuilder log = new StringBuilder();
+                for (int i = 1; i <= 40; i++) {
+                    log.append(i % 2 == 1 ? "ERROR " : "info ").append(d).append('/').append(f).append(' ').append(i).append('\n');
+                }
+                Files.writeString((f % 2 == 0 ? dir : dir.getParent()).resolve("app-" + f + ".log"), log);
+            }
+        }
+        return tempDir.resolve("logs");
+    }
+
+    private int grep(ForkJoinPool pool, Path root, int matchLimit, CountingLineMatcher matcher) {
+        emitted.clear();
+        LogRipperConfig config = new LogRipperConfig("ERROR", root, 0, 0, false, matchLimit, false, false, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, false);
+        AtomicInteger totalMatches = new AtomicInteger();
+        LineScanner scanner = new LineScanner(matcher, config, new MatchLimit(matchLimit, totalMatches));
+        pool.invoke(new PathGrepTask(WrappedPath.of(root), config, totalMatches, scanner, (path, chunk) -> {
+            for (Match match : chunk) {
+                emitted.add(path.getFileName() + ":" + match.index() + ":" + match.value());
+            }
+        }));
+        return totalMatches.get();
+    }
+
+    @Test
+    public void testLimitOfOneStopsTheTree() throws IOException {
+        Path root = tree();
+        CountingLineMatcher matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            assertEquals(1, grep(pool, root, 1, matcher));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, emitted.size());
+        // the first line of whatever file came first, no other file was scanned after it
+        assertTrue(emitted.get(0).matches("app-\\d+\\.log:1:ERROR \\d/\\d+ 1"), emitted.get(0));
+        assertEquals(1, matcher.scans());
+    }
+
+    @Test
+    public void testLimitInParallel() throws IOException {
+        Path root = tree();
+        CountingLineMatcher matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        assertEquals(7, grep(SystemUtil.getWorkPool(), root, 7, matcher));
+        assertEquals(7, emitted.size());
+        // every file matches more often than the limit allows, so no worker gets past the file it was scanning
+        assertTrue(matcher.scans() <= SystemUtil.getWorkPool().getParallelism(), "scanned " + matcher.scans() + " files");
+
+        matcher = new CountingLineMatcher(new LiteralLineMatcher("ERROR", false));
+        assertEquals(2000, grep(SystemUtil.getWorkPool(), root, 0, matcher));
+        assertEquals(100, matcher.scans());
+    }
+}
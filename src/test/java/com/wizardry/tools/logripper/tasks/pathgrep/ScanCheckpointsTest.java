@@ -0,0 +1,140 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for resuming greps from the ScanCheckpoints of the last run.
+ */
+public class ScanCheckpointsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Match> matches = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setUp() {
+        System.setProperty(ScanCheckpoints.DIRECTORY_PROPERTY, tempDir.resolve("checkpoints").toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty(ScanCheckpoints.DIRECTORY_PROPERTY);
+    }
+
+    private Path write(String name, String text) throws IOException {
+        Path file = tempDir.resolve("logs").resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        // settled, so that a last line without a line feed is complete
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofMinutes(1))));
+        return file;
+    }
+
+    private int grep(boolean isCountOnly) {
+        matches.clear();
+        Path root = tempDir.resolve("logs");
+        LogRipperConfig config = new LogRipperConfig("ERROR", root, 0, 0, false, 0, false, isCountOnly, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, true);
+        AtomicInteger totalMatches = new AtomicInteger();
+        SystemUtil.getWorkPool().invoke(new PathGrepTask(WrappedPath.of(root), config, totalMatches, (path, chunk) -> matches.addAll(chunk)));
+        return totalMatches.get();
+    }
+
+    private List<String> emitted() {
+        synchronized (matches) {
+            return matches.stream().map(match -> match.index() + ":" + match.value()).sorted().toList();
+        }
+    }
+
+    @Test
+    public void testResumedGrep() throws IOException {
+        Path file = write("app.log", "ERROR 1\ninfo\nERROR 2\n");
+        write("old.log", "ERROR old\n");
+        assertEquals(3, grep(false));
+        assertEquals(List.of("1:ERROR 1", "1:ERROR old", "3:ERROR 2"), emitted());
+
+        write("app.log", "info\nERROR 3\n");
+        assertEquals(4, grep(false));
+        assertEquals(List.of("5:ERROR 3"), emitted());
+
+        assertEquals(4, grep(false));
+        assertTrue(emitted().isEmpty());
+    }
+
+    @Test
+    public void testNumberingAfterCount() throws IOException {
+        write("app.log", "ERROR 1\ninfo\n");
+        assertEquals(1, grep(true));
+
+        write("app.log", "ERROR 2\n");
+        assertEquals(2, grep(true));
+
+        write("app.log", "info\nERROR 3\n");
+        assertEquals(3, grep(false));
+        assertEquals(List.of("5:ERROR 3"), emitted());
+    }
+
+    @Test
+    public void testRewrittenFile() throws IOException {
+        Path file = write("app.log", "ERROR a\n");
+        assertEquals(1, grep(false));
+
+        Files.writeString(file, "--------\nERROR b\nERROR c\n", StandardOpenOption.TRUNCATE_EXISTING);
+        assertEquals(2, grep(false));
+        assertEquals(List.of("2:ERROR b", "3:ERROR c"), emitted());
+    }
+
+    @Test
+    public void testLineBeingWritten() throws IOException {
+        Path file = tempDir.resolve("logs/app.log");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "ERROR 1\nERROR part");
+        assertEquals(1, grep(false));
+        assertEquals(List.of("1:ERROR 1"), emitted());
+
+        Files.writeString(file, "ial\n", StandardOpenOption.APPEND);
+        assertEquals(2, grep(false));
+        assertEquals(List.of("2:ERROR partial"), emitted());
+    }
+
+    @Test
+    public void testLineNoLongerWritten() throws IOException {
+        Path file = tempDir.resolve("logs/app.log");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "ERROR 1\nERROR last");
+        assertEquals(1, grep(false));
+
+        // never touched again, the last line is complete once the file settled
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusSeconds(10)));
+        assertEquals(2, grep(false));
+        assertEquals(List.of("2:ERROR last"), emitted());
+
+        assertEquals(2, grep(false));
+        assertTrue(emitted().isEmpty());
+    }
+}
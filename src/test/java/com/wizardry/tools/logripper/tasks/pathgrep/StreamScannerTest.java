@@ -0,0 +1,138 @@
+package com.wizardry.tools.logripper.tasks.pathgrep;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.SystemUtil;
+import com.wizardry.tools.logripper.util.matching.Match;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import io.airlift.compress.zstd.ZstdCompressor;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for grepping compressed files as they are decompressed, across the chunks of the StreamScanner.
+ */
+public class StreamScannerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> emitted = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Lines of varying length, so that matches and their context land on every side of a chunk edge.
+     */
+    private static String log() {
+        StringBuilder log = new StringBuilder();
+        for (int i = 1; log.length() < 3 * StreamScanner.CHUNK_SIZE; i++) {
+            log.append(i % 37 == 0 || i % 41 == 0 ? "ERROR " : "info ").append(i).append(" ").append("x".repeat(i % 200)).append('\n');
+        }
+        return log.append("ERROR without line feed").toString();
+    }
+
+    private List<String> grep(Path file, int context, boolean isCountOnly) {
+        emitted.clear();
+        LogRipperConfig config = new LogRipperConfig("ERROR", file, context, context, false, 0, false, isCountOnly, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, false);
+        AtomicInteger totalMatches = new AtomicInteger();
+        SystemUtil.getWorkPool().invoke(new PathGrepTask(WrappedPath.of(file), config, totalMatches, (path, chunk) -> {
+            for (Match match : chunk) {
+                emitted.add(match.index() + ":" + match.value() + " " + match.before() + " " + match.after());
+            }
+        }));
+        List<String> result = new ArrayList<>(emitted);
+        result.add("total " + totalMatches.get());
+        return result;
+    }
+
+    private Path gzip(String name, String text, int members) throws IOException {
+        Path file = tempDir.resolve(name);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int memberSize = bytes.length / members + 1;
+            for (int from = 0; from < bytes.length; from += memberSize) {
+                GZIPOutputStream member = new GZIPOutputStream(out);
+                member.write(bytes, from, Math.min(memberSize, bytes.length - from));
+                member.finish();
+            }
+        }
+        return file;
+    }
+
+    private Path zstd(String name, String text, int frames) throws IOException {
+        Path file = tempDir.resolve(name);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ZstdCompressor compressor = new ZstdCompressor();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int frameSize = bytes.length / frames + 1;
+            for (int from = 0; from < bytes.length; from += frameSize) {
+                int length = Math.min(frameSize, bytes.length - from);
+                byte[] frame = new byte[compressor.maxCompressedLength(length)];
+                out.write(frame, 0, compressor.compress(bytes, from, length, frame, 0, frame.length));
+            }
+        }
+        return file;
+    }
+
+    private Path bzip2(String name, String text) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = new BZip2CompressorOutputStream(Files.newOutputStream(file))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return file;
+    }
+
+    @Test
+    public void testSameAsPlainFile() throws IOException {
+        String log = log();
+        Path plain = Files.writeString(tempDir.resolve("app.log"), log);
+        Path single = gzip("app.log.gz", log, 1);
+        Path multi = gzip("app.log.1.gz", log, 7);
+
+        for (int context : new int[]{0, 3}) {
+            List<String> expected = grep(plain, context, false);
+            assertTrue(expected.size() > 10);
+            assertEquals(expected, grep(single, context, false));
+            assertEquals(expected, grep(multi, context, false));
+        }
+        assertEquals(grep(plain, 0, true), grep(multi, 0, true));
+    }
+
+    @Test
+    public void testSameAsPlainZstdAndBzip2() throws IOException {
+        String log = log();
+        Path plain = Files.writeString(tempDir.resolve("app.log"), log);
+        Path frames = zstd("app.log.zst", log, 9);
+        Path bzip2 = bzip2("app.log.bz2", log);
+
+        for (int context : new int[]{0, 3}) {
+            List<String> expected = grep(plain, context, false);
+            assertEquals(expected, grep(frames, context, false));
+            assertEquals(expected, grep(bzip2, context, false));
+        }
+        assertEquals(grep(plain, 0, true), grep(frames, 0, true));
+    }
+
+    @Test
+    public void testBinaryArchive() throws IOException {
+        Path file = gzip("data.gz", "ERROR\u0000" + log(), 1);
+        List<String> result = grep(file, 0, false);
+        assertEquals(List.of("0:Binary file " + file.toAbsolutePath() + " matches [] []", "total 1"), result);
+    }
+}
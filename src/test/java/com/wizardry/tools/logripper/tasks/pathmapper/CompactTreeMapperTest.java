@@ -0,0 +1,106 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the CompactTreeMapper and the views of its CompactTree.
+ */
+public class CompactTreeMapperTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path tree() throws IOException {
+        Files.createDirectories(tempDir.resolve("logs/a"));
+        Files.createDirectories(tempDir.resolve("logs/b"));
+        Files.writeString(tempDir.resolve("logs/a/app.log"), "x".repeat(300));
+        Files.writeString(tempDir.resolve("logs/b/app.log"), "x".repeat(10));
+        Files.writeString(tempDir.resolve("logs/root.log"), "x".repeat(100));
+        return tempDir.resolve("logs");
+    }
+
+    @Test
+    public void testSameSizesAsWrappedTree() throws Exception {
+        Path root = tree();
+        WrappedTreeNode wrapped = new PooledTreeWrapper().crawl(WrappedPath.of(root));
+        CompactTreeNode compact = new CompactTreeMapper().crawl(WrappedPath.of(root));
+
+        assertEquals(wrapped.getSize(), compact.getSize());
+        assertEquals(root, compact.getPath().unwrap());
+        assertEquals(3, compact.getChildren().size());
+        for (CompactTreeNode child : compact.getChildren()) {
+            assertEquals(1, child.getLevel());
+            assertEquals(root.resolve(child.getName()), child.getPath().unwrap());
+        }
+    }
+
+    @Test
+    public void testPrunedDirectoriesKeepTheirSize() throws Exception {
+        Path root = tree();
+        long size = new CompactTreeMapper().crawl(WrappedPath.of(root)).getSize();
+        CompactTreeNode compact = new CompactTreeMapper(1).crawl(WrappedPath.of(root));
+        WrappedTreeNode wrapped = new PooledTreeWrapper(1).crawl(WrappedPath.of(root));
+
+        assertEquals(size, compact.getSize());
+        assertEquals(size, wrapped.getSize());
+        for (CompactTreeNode child : compact.getChildren()) {
+            assertTrue(child.getChildren().isEmpty());
+        }
+    }
+
+    @Test
+    public void testSortChildrenBySize() throws Exception {
+        CompactTreeNode root = new CompactTreeMapper().crawl(WrappedPath.of(tree()));
+        root.sortChildrenBySize();
+
+        List<Long> sizes = root.getChildren().stream().map(CompactTreeNode::getSize).toList();
+        assertEquals(sizes.stream().sorted().toList(), sizes);
+        assertEquals("a", root.getChildren().stream().reduce((first, second) -> second).orElseThrow().getName());
+    }
+
+    @Test
+    public void testRemoveChild() throws Exception {
+        CompactTreeNode root = new CompactTreeMapper().crawl(WrappedPath.of(tree()));
+        long size = root.getSize();
+        CompactTreeNode file = root.getChildren().stream().filter(CompactTreeNode::isFile).findFirst().orElseThrow();
+
+        assertTrue(root.removeChild(new CompactTreeNode(file.getTree(), file.getIndex())));
+        assertEquals(size - 100, root.getSize());
+        assertEquals(2, root.getChildren().size());
+        assertFalse(root.removeChild(file));
+    }
+
+    @Test
+    public void testFileRoot() throws Exception {
+        Path file = tree().resolve("root.log");
+        CompactTreeNode root = new CompactTreeMapper().crawl(WrappedPath.of(file));
+
+        assertTrue(root.isFile());
+        assertEquals(100, root.getSize());
+        assertEquals("root.log", root.getName());
+        assertTrue(root.getChildren().isEmpty());
+    }
+
+    @Test
+    public void testNamesInternedConcurrently() {
+        CompactTree tree = new CompactTree(tempDir);
+        int root = tree.add(CompactTree.NONE, "logs", 0L, CompactTree.DIR);
+        // more names than fit the initial tables of all stripes, each added by several workers
+        int[] nodes = IntStream.range(0, 40_000).parallel()
+                .map(i -> tree.add(root, "app-" + (i % 5_000) + ".log", i, CompactTree.FILE))
+                .toArray();
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals("app-" + (i % 5_000) + ".log", tree.name(nodes[i]));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.util.printing.PrintOptions;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for rendering mapped trees with the TreeRenderer.
+ */
+public class TreeRendererTest {
+
+    private static final String LF = System.lineSeparator();
+
+    @TempDir
+    Path tempDir;
+
+    private WrappedTreeNode tree() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("logs/archive"));
+        Files.writeString(dir.resolve("app.log"), "x".repeat(1500));
+        WrappedTreeNode root = new PooledTreeWrapper().crawl(WrappedPath.of(tempDir.resolve("logs")));
+        root.sortChildrenBySize();
+        return root;
+    }
+
+    private static String render(WrappedTreeNode root, PrintOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TreeRenderer(Channels.newChannel(out), options).render(root);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRenderTree() throws Exception {
+        String rendered = render(tree(), new PrintOptions(null, null, 1, 2, false, true));
+        assertEquals("  /logs" + LF + "    /archive" + LF + "      app.log" + LF, rendered);
+    }
+
+    @Test
+    public void testRenderOptions() throws Exception {
+        WrappedTreeNode archive = tree().getChildren().peek();
+        String rendered = render(archive, new PrintOptions("> ", " <", 0, 4, true, false));
+        assertEquals("> [" + archive.getReadableSize() + "]" + " ".repeat(8 - archive.getReadableSize().length()) + "/archive <" + LF, rendered);
+
+        WrappedTreeNode file = archive.getChildren().peek();
+        assertEquals("[1.50KB]  app.log" + LF, render(file, new PrintOptions(null, null, 0, 2, true, true)));
+    }
+
+    @Test
+    public void testRenderLargeTree() throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve("many"));
+        for (int i = 0; i < 5000; i++) {
+            Files.writeString(dir.resolve("rotated-" + i + ".log"), "x");
+        }
+        WrappedTreeNode root = new PooledTreeWrapper().crawl(WrappedPath.of(dir));
+        String rendered = render(root, new PrintOptions(null, null, 0, 2, true, true));
+        assertEquals(5001, rendered.lines().count());
+        assertTrue(rendered.lines().skip(1).allMatch(line -> line.startsWith("[1B]        rotated-")));
+    }
+}
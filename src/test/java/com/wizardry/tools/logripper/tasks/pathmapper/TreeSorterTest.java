@@ -0,0 +1,67 @@
+package com.wizardry.tools.logripper.tasks.pathmapper;
+
+import com.wizardry.tools.logripper.config.SortOrder;
+import com.wizardry.tools.logripper.util.wrapping.WrappedPath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for sorting mapped trees and picking their largest nodes with the TreeSorter.
+ */
+public class TreeSorterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path tree() throws IOException {
+        for (int i = 1; i <= 20; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("logs/dir" + i + "/nested"));
+            Files.writeString(dir.resolve("app.log"), "x".repeat(i * 1000));
+            Files.writeString(dir.getParent().resolve("small.log"), "x".repeat(i));
+        }
+        return tempDir.resolve("logs");
+    }
+
+    private static <T extends FileTreeNode<?, T>> void assertSorted(T node, SortOrder order) {
+        List<T> children = List.copyOf(node.getChildren());
+        assertEquals(children.stream().sorted(order.<T>bySize()).toList(), children);
+        children.forEach(child -> assertSorted(child, order));
+    }
+
+    @Test
+    public void testSortDescending() throws Exception {
+        WrappedTreeNode wrapped = new PooledTreeWrapper().crawl(WrappedPath.of(tree()));
+        TreeSorter.sort(wrapped, SortOrder.DESC.bySize());
+        assertSorted(wrapped, SortOrder.DESC);
+        assertEquals("dir20", wrapped.getChildren().peek().getName());
+
+        CompactTreeNode compact = new CompactTreeMapper().crawl(WrappedPath.of(tree()));
+        TreeSorter.sort(compact, SortOrder.DESC.bySize());
+        assertSorted(compact, SortOrder.DESC);
+        assertEquals("dir20", compact.getChildren().peek().getName());
+    }
+
+    @Test
+    public void testSortAscending() throws Exception {
+        WrappedTreeNode wrapped = new PooledTreeWrapper().crawl(WrappedPath.of(tree()));
+        wrapped.sortChildrenBySize();
+        assertSorted(wrapped, SortOrder.ASC);
+    }
+
+    @Test
+    public void testTopNodes() throws Exception {
+        WrappedTreeNode root = new PooledTreeWrapper().crawl(WrappedPath.of(tree()));
+        List<WrappedTreeNode> top = TreeSorter.top(root, 3, SortOrder.ASC.bySize(), WrappedTreeNode::isFile);
+
+        assertEquals(List.of(20000L, 19000L, 18000L), top.stream().map(WrappedTreeNode::getSize).toList());
+        assertTrue(TreeSorter.top(root, 0, SortOrder.ASC.bySize(), WrappedTreeNode::isDir).isEmpty());
+        assertEquals(40, TreeSorter.top(root, 100, SortOrder.ASC.bySize(), WrappedTreeNode::isDir).size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.wizardry.tools.logripper.tasks.pathsize;
+
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the SizeLedger reruns of the PathSizeVisitor.
+ */
+public class SizeLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static final FileTime LAST_WEEK = FileTime.from(Instant.now().minus(Duration.ofDays(7)));
+    private static final FileTime YESTERDAY = FileTime.from(Instant.now().minus(Duration.ofDays(1)));
+
+    private Path root() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("logs/archive"));
+        Files.setLastModifiedTime(Files.writeString(root.resolve("old.log"), "x".repeat(100)), LAST_WEEK);
+        Files.setLastModifiedTime(root, LAST_WEEK);
+        Files.writeString(tempDir.resolve("logs/app.log"), "y".repeat(10));
+        Files.setLastModifiedTime(tempDir.resolve("logs"), LAST_WEEK);
+        return tempDir.resolve("logs");
+    }
+
+    private PathSizeVisitor calculate(Path root) throws IOException {
+        SizeLedger ledger = SizeLedger.open(tempDir.resolve("ledger"), root);
+        PathSizeVisitor visitor = new PathSizeVisitor(ledger);
+        new ParallelCrawler<>(visitor).crawl(root);
+        ledger.save(true);
+        return visitor;
+    }
+
+    @Test
+    public void testRerun() throws IOException {
+        Path root = root();
+        assertEquals(110, calculate(root).size());
+
+        // the active log grows without touching its directory
+        Files.writeString(root.resolve("app.log"), "y".repeat(5), StandardOpenOption.APPEND);
+        PathSizeVisitor rerun = calculate(root);
+        assertEquals(115, rerun.size());
+        assertEquals(2, rerun.reused());
+    }
+
+    @Test
+    public void testOldFileChanged() throws IOException {
+        Path root = root();
+        calculate(root);
+
+        // neither appending to nor truncating a file touches its directory
+        Path old = root.resolve("archive/old.log");
+        Files.writeString(old, "x".repeat(50), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(old, LAST_WEEK);
+        PathSizeVisitor rerun = calculate(root);
+        assertEquals(160, rerun.size());
+        assertEquals(2, rerun.reused());
+
+        Files.writeString(old, "x");
+        Files.setLastModifiedTime(old, LAST_WEEK);
+        assertEquals(11, calculate(root).size());
+    }
+
+    @Test
+    public void testChangedDirectory() throws IOException {
+        Path root = root();
+        calculate(root);
+
+        Files.setLastModifiedTime(Files.writeString(root.resolve("archive/new.log"), "z".repeat(20)), LAST_WEEK);
+        Files.setLastModifiedTime(root.resolve("archive"), YESTERDAY);
+        PathSizeVisitor rerun = calculate(root);
+        assertEquals(130, rerun.size());
+        assertEquals(1, rerun.reused());
+    }
+
+    @Test
+    public void testUnreadableLedger() throws IOException {
+        Path root = root();
+        calculate(root);
+        try (Stream<Path> ledgers = Files.list(tempDir.resolve("ledger"))) {
+            Files.writeString(ledgers.findFirst().orElseThrow(), "garbage");
+        }
+        PathSizeVisitor rerun = calculate(root);
+        assertEquals(110, rerun.size());
+        assertEquals(0, rerun.reused());
+    }
+}
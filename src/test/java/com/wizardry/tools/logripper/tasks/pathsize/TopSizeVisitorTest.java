@@ -0,0 +1,58 @@
+package com.wizardry.tools.logripper.tasks.pathsize;
+
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for finding the largest files and directories with the TopSizeVisitor.
+ */
+public class TopSizeVisitorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path tree() throws IOException {
+        for (int i = 1; i <= 30; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("logs/dir" + i));
+            Files.writeString(dir.resolve("app.log"), "x".repeat(i * 100));
+            Files.writeString(dir.resolve("gc.log"), "x".repeat(i));
+        }
+        return tempDir.resolve("logs");
+    }
+
+    @Test
+    public void testLargestEntries() throws IOException {
+        Path root = tree();
+        TopSizeVisitor visitor = new TopSizeVisitor(3);
+        TopSizeVisitor.Dir dir = new ParallelCrawler<>(visitor, ParallelCrawler.UNLIMITED_DEPTH).crawl(root);
+
+        assertEquals(List.of(
+                new TopSizeVisitor.Sized(root.resolve("dir30/app.log"), 3000),
+                new TopSizeVisitor.Sized(root.resolve("dir29/app.log"), 2900),
+                new TopSizeVisitor.Sized(root.resolve("dir28/app.log"), 2800)), visitor.largestFiles());
+        assertEquals(List.of(
+                new TopSizeVisitor.Sized(root.resolve("dir30"), 3030),
+                new TopSizeVisitor.Sized(root.resolve("dir29"), 2929),
+                new TopSizeVisitor.Sized(root.resolve("dir28"), 2828)), visitor.largestDirectories());
+        assertEquals(465 * 101, dir.size());
+    }
+
+    @Test
+    public void testFileRoot() throws IOException {
+        Path file = tree().resolve("dir7/app.log");
+        TopSizeVisitor visitor = new TopSizeVisitor(3);
+
+        assertNull(new ParallelCrawler<>(visitor, ParallelCrawler.UNLIMITED_DEPTH).crawl(file));
+        assertEquals(700, visitor.fileRootSize());
+        assertEquals(List.of(new TopSizeVisitor.Sized(file, 700)), visitor.largestFiles());
+        assertTrue(visitor.largestDirectories().isEmpty());
+    }
+}
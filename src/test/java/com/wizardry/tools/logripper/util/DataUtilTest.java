@@ -0,0 +1,47 @@
+package com.wizardry.tools.logripper.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for formatting and parsing sizes with the DataUtil.
+ */
+public class DataUtilTest {
+
+    @Test
+    public void testAppendMatchesFormat() {
+        Random random = new Random(42);
+        long[] sizes = {0, 999, 1000, 1005, 1994, 1995, -1865, 999_949, 999_950, 999_999_999, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long size : sizes) {
+            assertEquals(DataUtil.humanReadableByteCountSI(size), DataUtil.appendHumanReadableByteCountSI(new StringBuilder(), size).toString());
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long size = random.nextLong() >>> random.nextInt(64);
+            assertEquals(DataUtil.humanReadableByteCountSI(size), DataUtil.appendHumanReadableByteCountSI(new StringBuilder(), size).toString());
+        }
+    }
+
+    @Test
+    public void testSameInEveryLocale() {
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.GERMANY);
+            assertEquals("1.50KB", DataUtil.humanReadableByteCountSI(1500));
+            assertEquals("-2.00MB", DataUtil.appendHumanReadableByteCountSI(new StringBuilder(), -1_999_999).toString());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    public void testParseByteCount() {
+        assertEquals(512, DataUtil.parseByteCount("512"));
+        assertEquals(20_000, DataUtil.parseByteCount("20KB"));
+        assertEquals(4L << 20, DataUtil.parseByteCount("4MiB"));
+        assertThrows(IllegalArgumentException.class, () -> DataUtil.parseByteCount("lots"));
+    }
+}
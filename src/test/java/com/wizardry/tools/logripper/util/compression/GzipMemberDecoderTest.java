@@ -0,0 +1,100 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for decoding multi-member gzip archives.
+ */
+public class GzipMemberDecoderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private Path archive(byte[]... members) throws IOException {
+        Path path = tempDir.resolve("rotated.log.gz");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] member : members) {
+            bytes.write(member);
+        }
+        Files.write(path, bytes.toByteArray());
+        return path;
+    }
+
+    @Test
+    public void testDetect() throws IOException {
+        Path path = archive(gzip("ERROR boom\n"));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            assertEquals(Compression.GZIP, Compression.detect(channel));
+        }
+        Path plain = Files.writeString(tempDir.resolve("live.log"), "ERROR boom\n");
+        try (FileChannel channel = FileChannel.open(plain, StandardOpenOption.READ)) {
+            assertEquals(Compression.NONE, Compression.detect(channel));
+        }
+    }
+
+    @Test
+    public void testDetectBzip2BlockSize() {
+        assertEquals(Compression.BZIP2, Compression.detect(ByteBuffer.wrap("BZh91AY".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(Compression.NONE, Compression.detect(ByteBuffer.wrap("BZh handler\n".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(Compression.NONE, Compression.detect(ByteBuffer.wrap("BZh".getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    @Test
+    public void testTransferAllMembers() throws IOException {
+        Path path = archive(gzip("first\n"), gzip("second\n"), gzip("third\n"));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            GzipMemberDecoder decoder = new GzipMemberDecoder(channel, 0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(decoder.transfer(Long.MAX_VALUE, out, Long.MAX_VALUE));
+            assertEquals("first\nsecond\nthird\n", out.toString(StandardCharsets.UTF_8));
+            assertEquals(3, decoder.members());
+            assertEquals(channel.size(), decoder.position());
+        }
+    }
+
+    @Test
+    public void testTransferStopsAtMemberBoundary() throws IOException {
+        byte[] first = gzip("first\n");
+        Path path = archive(first, gzip("second\n"));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            GzipMemberDecoder decoder = new GzipMemberDecoder(channel, 0);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(decoder.transfer(1, out, Long.MAX_VALUE));
+            assertEquals("first\n", out.toString(StandardCharsets.UTF_8));
+            assertEquals(first.length, decoder.position());
+            assertEquals(first.length, GzipMemberDecoder.findHeader(channel, 1, channel.size()));
+        }
+    }
+
+    @Test
+    public void testCorruptMember() throws IOException {
+        byte[] member = gzip("ERROR boom\n");
+        member[member.length - 8] ^= 0x55; // break the CRC
+        Path path = archive(member);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            GzipMemberDecoder decoder = new GzipMemberDecoder(channel, 0);
+            assertThrows(IOException.class, () -> decoder.transfer(Long.MAX_VALUE, new ByteArrayOutputStream(), Long.MAX_VALUE));
+        }
+    }
+}
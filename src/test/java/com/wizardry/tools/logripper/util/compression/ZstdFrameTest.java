@@ -0,0 +1,99 @@
+package com.wizardry.tools.logripper.util.compression;
+
+import io.airlift.compress.zstd.ZstdCompressor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for finding the frames of multi-frame zstd archives without decoding them.
+ */
+public class ZstdFrameTest {
+
+    @TempDir
+    Path tempDir;
+
+    static byte[] zstd(byte[] bytes, int from, int to) {
+        ZstdCompressor compressor = new ZstdCompressor();
+        byte[] frame = new byte[compressor.maxCompressedLength(to - from)];
+        int length = compressor.compress(bytes, from, to - from, frame, 0, frame.length);
+        return Arrays.copyOf(frame, length);
+    }
+
+    private static byte[] skippable(int length) {
+        ByteBuffer frame = ByteBuffer.allocate(8 + length).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        return frame.putInt(0x184d2a5e).putInt(length).array();
+    }
+
+    @Test
+    public void testFrameBoundaries() throws IOException {
+        byte[] text = "ERROR boom\ninfo fine\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        byte[] first = zstd(text, 0, 30_000);
+        byte[] skipped = skippable(7);
+        byte[] second = zstd(text, 30_000, text.length);
+        Path path = tempDir.resolve("rotated.log.zst");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(first);
+        bytes.write(skipped);
+        bytes.write(second);
+        Files.write(path, bytes.toByteArray());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            assertEquals(Compression.ZSTD, Compression.detect(channel));
+            ZstdFrame frame = ZstdFrame.read(channel, 0);
+            assertEquals(new ZstdFrame(0, first.length, 30_000), frame);
+            frame = ZstdFrame.read(channel, frame.end());
+            assertEquals(new ZstdFrame(first.length, skipped.length, 0), frame);
+            frame = ZstdFrame.read(channel, frame.end());
+            assertEquals(new ZstdFrame(first.length + skipped.length, second.length, text.length - 30_000), frame);
+            assertEquals(channel.size(), frame.end());
+            assertThrows(IOException.class, () -> ZstdFrame.read(channel, 1));
+        }
+        try (InputStream in = Compression.open(path)) {
+            assertArrayEquals(text, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testFrameWithoutContentSize() throws IOException {
+        byte[] first = "ERROR one\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] second = "ERROR two\n".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // magic, no content size, a window descriptor, then a raw block, an RLE block and a last raw block
+        bytes.write(new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0x00, 0x00});
+        bytes.write(new byte[]{(byte) (first.length << 3), 0, 0});
+        bytes.write(first);
+        bytes.write(new byte[]{(byte) (5 << 3 | 2), 0, 0, 'x'});
+        bytes.write(new byte[]{(byte) (second.length << 3 | 1), 0, 0});
+        bytes.write(second);
+        Path path = Files.write(tempDir.resolve("streamed.log.zst"), bytes.toByteArray());
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            assertEquals(new ZstdFrame(0, channel.size(), first.length + 5 + second.length), ZstdFrame.read(channel, 0));
+        }
+        try (InputStream in = Compression.open(path)) {
+            assertEquals("ERROR one\nxxxxxERROR two\n", new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testTruncatedFrame() throws IOException {
+        byte[] frame = zstd("ERROR boom\n".repeat(100).getBytes(StandardCharsets.UTF_8), 0, 1100);
+        Path path = Files.write(tempDir.resolve("truncated.log.zst"), Arrays.copyOf(frame, frame.length - 2));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            assertThrows(IOException.class, () -> ZstdFrame.read(channel, 0));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the AhoCorasickLineMatcher multi token search.
+ */
+public class AhoCorasickLineMatcherTest {
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIndexOf() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN almost\nERROR boom\n");
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(List.of("ERROR", "WARN"), false);
+        // the index of the last byte of the first occurrence
+        assertEquals(11, matcher.indexOf(buffer, 0, buffer.limit()));
+        assertEquals(24, matcher.indexOf(buffer, 12, buffer.limit()));
+        assertEquals(-1, matcher.indexOf(buffer, 0, 8));
+    }
+
+    @Test
+    public void testOverlappingTokens() {
+        ByteBuffer buffer = bytes("ushers");
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(List.of("he", "she", "his", "hers"), false);
+        assertEquals(3, matcher.indexOf(buffer, 0, buffer.limit()));
+        assertEquals(List.of("he", "she", "hers"), matcher.hits(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN almost\nERROR boom\n");
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(List.of("error", "boom"), true);
+        assertEquals(24, matcher.nextCandidate(buffer, 0, buffer.limit()));
+        assertTrue(matcher.matches(buffer, 20, 30));
+        assertFalse(matcher.matches(buffer, 0, 19));
+        assertEquals(List.of("error", "boom"), matcher.hits(buffer, 20, 30));
+    }
+
+    @Test
+    public void testMultiByteCharacters() {
+        ByteBuffer buffer = bytes("Größe überschritten\n");
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(List.of("über", "ße"), false);
+        assertTrue(matcher.matches(buffer, 0, buffer.limit() - 1));
+        assertEquals(List.of("über", "ße"), matcher.hits(buffer, 0, buffer.limit() - 1));
+    }
+
+    @Test
+    public void testHit() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN Größe überschritten\n");
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(List.of("über", "ße", "große"), true);
+        // relative to the line start, in bytes, of the occurrence that ends first
+        assertEquals(LineMatcher.span(9, 12), matcher.hit(buffer, 8, buffer.limit() - 1));
+        assertEquals(-1, matcher.hit(buffer, 0, 7));
+        matcher = new AhoCorasickLineMatcher(List.of("he", "she"), false);
+        assertEquals(LineMatcher.span(1, 4), matcher.hit(bytes("ushers"), 0, 6));
+    }
+
+    @Test
+    public void testWithoutTable() {
+        // the same tokens, once through the transition table and once through the failure links
+        List<String> tokens = List.of("he", "she", "his", "hers", "über", "ße", "ERROR", "rr");
+        AhoCorasickLineMatcher tabled = new AhoCorasickLineMatcher(tokens, true);
+        AhoCorasickLineMatcher linked = new AhoCorasickLineMatcher(tokens, true, 0);
+        assertTrue(tabled.isTabled());
+        assertFalse(linked.isTabled());
+        Random random = new Random(42);
+        String alphabet = "hesirERO ßüb";
+        for (int n = 0; n < 500; n++) {
+            StringBuilder line = new StringBuilder();
+            for (int i = random.nextInt(30); 0 < i; i--) {
+                line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            ByteBuffer buffer = bytes(line.toString());
+            assertEquals(tabled.indexOf(buffer, 0, buffer.limit()), linked.indexOf(buffer, 0, buffer.limit()), line.toString());
+            assertEquals(tabled.hit(buffer, 0, buffer.limit()), linked.hit(buffer, 0, buffer.limit()), line.toString());
+            assertEquals(tabled.hits(buffer, 0, buffer.limit()), linked.hits(buffer, 0, buffer.limit()), line.toString());
+        }
+    }
+
+    @Test
+    public void testLargeTokenSet() {
+        // far too many states times byte classes for a transition table
+        Random random = new Random(7);
+        List<String> tokens = new ArrayList<>();
+        for (int n = 0; n < 100_000; n++) {
+            StringBuilder token = new StringBuilder("id-");
+            for (int i = 0; i < 24; i++) {
+                token.append((char) ('!' + random.nextInt(94)));
+            }
+            tokens.add(token.toString());
+        }
+        AhoCorasickLineMatcher matcher = new AhoCorasickLineMatcher(tokens, false);
+        assertFalse(matcher.isTabled());
+
+        Pattern pattern = Pattern.compile(tokens.subList(0, 1000).stream().map(Pattern::quote).collect(Collectors.joining("|")));
+        for (int n = 0; n < 1000; n++) {
+            String line = "request " + tokens.get(n).substring(0, 10) + " for " + tokens.get(n) + " done";
+            ByteBuffer buffer = bytes(line);
+            Matcher expected = pattern.matcher(line);
+            assertTrue(expected.find());
+            assertEquals(LineMatcher.span(expected.start(), expected.end()), matcher.hit(buffer, 0, buffer.limit()));
+            assertEquals(List.of(tokens.get(n)), matcher.hits(buffer, 0, buffer.limit()));
+            assertFalse(matcher.matches(buffer, 0, buffer.limit() - 6));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for resolving the context lines of a match from the bytes of its file.
+ */
+public class ContextResolverTest {
+
+    /**
+     * A source over the bytes, of which the ones before the floor were dropped.
+     */
+    private static ContextResolver.Source source(String text, long floor) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return new ContextResolver.Source() {
+            @Override
+            public int read(ByteBuffer target, long position) {
+                assertTrue(floor <= position, "read below the floor: " + position);
+                if (bytes.length <= position) {
+                    return -1;
+                }
+                int length = (int) Math.min(target.remaining(), bytes.length - position);
+                target.put(bytes, (int) position, length);
+                return length;
+            }
+
+            @Override
+            public long floor() {
+                return floor;
+            }
+        };
+    }
+
+    private static long offsetOf(String text, String line) {
+        return text.substring(0, text.indexOf(line)).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Test
+    public void testFirstAndLastLine() throws IOException {
+        String text = "ERROR first\r\none\ntwo\n\nERROR last";
+        ContextResolver resolver = new ContextResolver(source(text, 0), 2);
+        assertEquals(List.of(), resolver.linesBefore(0, 2));
+        assertEquals(List.of("one", "two"), resolver.linesAfter(0, 2));
+        long last = offsetOf(text, "ERROR last");
+        assertEquals(List.of("two", ""), resolver.linesBefore(last, 2));
+        assertEquals(List.of(), resolver.linesAfter(last, 2));
+        // fewer lines than asked for at either end
+        resolver = new ContextResolver(source(text, 0), 10);
+        assertEquals(List.of("ERROR first", "one", "two", ""), resolver.linesBefore(last, 10));
+        assertEquals(List.of("one", "two", "", "ERROR last"), resolver.linesAfter(0, 10));
+    }
+
+    @Test
+    public void testLinesBeyondABlock() throws IOException {
+        // lines before that only fit once the block is grown, and a line after longer than a block
+        String longLine = "x".repeat(10_000);
+        String text = longLine + "\n" + longLine + "\nERROR match\n" + "y".repeat(9_000) + "\nafter\n";
+        ContextResolver resolver = new ContextResolver(source(text, 0), 3);
+        long match = offsetOf(text, "ERROR match");
+        assertEquals(List.of(longLine, longLine), resolver.linesBefore(match, 3));
+        assertEquals(List.of("y".repeat(9_000), "after"), resolver.linesAfter(match, 3));
+    }
+
+    @Test
+    public void testFloor() throws IOException {
+        String text = "dropped\nkept one\nkept two\nERROR match\n";
+        long floor = offsetOf(text, "kept one");
+        ContextResolver resolver = new ContextResolver(source(text, floor), 5);
+        assertEquals(List.of("kept one", "kept two"), resolver.linesBefore(offsetOf(text, "ERROR match"), 5));
+        assertEquals(List.of(), resolver.linesBefore(floor, 5));
+    }
+}
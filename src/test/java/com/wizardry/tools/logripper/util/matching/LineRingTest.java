@@ -0,0 +1,41 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the LineRing of line start offsets.
+ */
+public class LineRingTest {
+
+    @Test
+    public void testEvictsTheOldest() {
+        LineRing ring = new LineRing(3);
+        ring.add(0);
+        ring.add(10);
+        assertFalse(ring.isFull());
+        assertEquals(2, ring.size());
+        for (long offset = 20; offset <= 60; offset += 10) {
+            ring.add(offset);
+        }
+        assertTrue(ring.isFull());
+        assertEquals(40, ring.get(0));
+        assertEquals(50, ring.get(1));
+        assertEquals(60, ring.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(3));
+        ring.clear();
+        assertEquals(0, ring.size());
+        ring.add(70);
+        assertEquals(70, ring.get(0));
+    }
+
+    @Test
+    public void testWithoutCapacity() {
+        LineRing ring = new LineRing(0);
+        ring.add(42);
+        assertEquals(0, ring.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> ring.get(0));
+        assertThrows(IllegalArgumentException.class, () -> new LineRing(-1));
+    }
+}
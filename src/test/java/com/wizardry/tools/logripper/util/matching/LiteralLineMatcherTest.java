@@ -0,0 +1,61 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the LiteralLineMatcher byte search.
+ */
+public class LiteralLineMatcherTest {
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testIsLiteral() {
+        assertTrue(LiteralLineMatcher.isLiteral("req-1234"));
+        assertTrue(LiteralLineMatcher.isLiteral("NullPointerException"));
+        assertFalse(LiteralLineMatcher.isLiteral("ERROR.*timeout"));
+        assertFalse(LiteralLineMatcher.isLiteral("a|b"));
+        assertFalse(LiteralLineMatcher.isLiteral(""));
+    }
+
+    @Test
+    public void testIndexOf() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN almost\nERROR boom\n");
+        LiteralLineMatcher matcher = new LiteralLineMatcher("ERROR", false);
+        assertEquals(20, matcher.indexOf(buffer, 0, buffer.limit()));
+        assertEquals(-1, matcher.indexOf(buffer, 0, 20));
+        assertEquals(-1, new LiteralLineMatcher("error", false).indexOf(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN almost\nERROR boom\n");
+        LiteralLineMatcher matcher = new LiteralLineMatcher("error", true);
+        assertEquals(20, matcher.nextCandidate(buffer, 0, buffer.limit()));
+        assertTrue(matcher.matches(buffer, 20, 30));
+        assertFalse(matcher.matches(buffer, 0, 7));
+    }
+
+    @Test
+    public void testMultiByteCharacters() {
+        ByteBuffer buffer = bytes("größe=1\nmaße=2\n");
+        LiteralLineMatcher matcher = new LiteralLineMatcher("maße", true);
+        assertEquals(10, matcher.indexOf(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    public void testHit() {
+        ByteBuffer buffer = bytes("größe=1\nmaße=2 maße\n");
+        LiteralLineMatcher matcher = new LiteralLineMatcher("maße", true);
+        assertEquals(LineMatcher.span(0, 5), matcher.hit(buffer, 10, buffer.limit() - 1));
+        assertEquals(LineMatcher.span(3, 8), matcher.hit(buffer, 15, buffer.limit() - 1));
+        assertEquals(-1, matcher.hit(buffer, 0, 9));
+    }
+}
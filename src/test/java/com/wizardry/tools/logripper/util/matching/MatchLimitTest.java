@@ -0,0 +1,62 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for claiming matches from the MatchLimit of a grep run.
+ */
+public class MatchLimitTest {
+
+    @Test
+    public void testClaim() {
+        AtomicInteger total = new AtomicInteger();
+        MatchLimit limit = new MatchLimit(3, total);
+        assertTrue(limit.tryClaim());
+        assertFalse(limit.isReached());
+        assertEquals(2, limit.claim(5));
+        assertTrue(limit.isReached());
+        assertFalse(limit.tryClaim());
+        assertEquals(0, limit.claim(1));
+        assertEquals(3, total.get());
+        assertEquals(3, limit.cap(4096));
+    }
+
+    @Test
+    public void testUnlimited() {
+        AtomicInteger total = new AtomicInteger();
+        MatchLimit limit = new MatchLimit(0, total);
+        assertEquals(5, limit.claim(5));
+        assertTrue(limit.tryClaim());
+        assertFalse(limit.isReached());
+        assertEquals(6, total.get());
+        assertEquals(4096, limit.cap(4096));
+    }
+
+    @Test
+    public void testConcurrentClaims() throws InterruptedException {
+        AtomicInteger total = new AtomicInteger();
+        MatchLimit limit = new MatchLimit(1000, total);
+        AtomicInteger claimed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 500; i++) {
+                    if (limit.tryClaim()) {
+                        claimed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1000, claimed.get());
+        assertEquals(1000, total.get());
+    }
+}
@@ -0,0 +1,46 @@
+package com.wizardry.tools.logripper.util.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for the RegexLineMatcher, on ASCII lines and on lines that have to be decoded.
+ */
+public class RegexLineMatcherTest {
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHit() {
+        ByteBuffer buffer = bytes("INFO ok\nWARN time=12ms\n");
+        RegexLineMatcher matcher = new RegexLineMatcher(Pattern.compile("time=\\d+"));
+        assertEquals(LineMatcher.span(5, 12), matcher.hit(buffer, 8, buffer.limit() - 1));
+        assertTrue(matcher.matches(buffer, 8, buffer.limit() - 1));
+        assertEquals(-1, matcher.hit(buffer, 0, 7));
+    }
+
+    @Test
+    public void testHitInMultiByteLine() {
+        // the span is in bytes, not in chars
+        ByteBuffer buffer = bytes("Größe 😀 time=7ms\n");
+        RegexLineMatcher matcher = new RegexLineMatcher(Pattern.compile("time=\\d+"));
+        assertEquals(LineMatcher.span(13, 19), matcher.hit(buffer, 0, buffer.limit() - 1));
+    }
+
+    @Test
+    public void testHits() {
+        ByteBuffer buffer = bytes("WARN disk full, ERROR write failed\n");
+        RegexLineMatcher matcher = new RegexLineMatcher(Pattern.compile("ERROR|disk \\w+"),
+                List.of(Pattern.compile("ERROR"), Pattern.compile("disk \\w+")));
+        assertEquals(LineMatcher.span(5, 14), matcher.hit(buffer, 0, buffer.limit() - 1));
+        assertEquals(List.of("ERROR", "disk \\w+"), matcher.hits(buffer, 0, buffer.limit() - 1));
+    }
+}
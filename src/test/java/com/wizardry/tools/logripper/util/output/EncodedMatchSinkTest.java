@@ -0,0 +1,144 @@
+package com.wizardry.tools.logripper.util.output;
+
+import com.wizardry.tools.logripper.config.BinaryFiles;
+import com.wizardry.tools.logripper.config.LogRipperConfig;
+import com.wizardry.tools.logripper.config.OutputFormat;
+import com.wizardry.tools.logripper.tasks.crawl.ParallelCrawler;
+import com.wizardry.tools.logripper.tasks.crawl.PathFilter;
+import com.wizardry.tools.logripper.util.matching.LineMatcher;
+import com.wizardry.tools.logripper.util.matching.LiteralLineMatcher;
+import com.wizardry.tools.logripper.util.matching.Match;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test for writing matches as json, ndjson and binary records with the EncodedMatchSink.
+ */
+public class EncodedMatchSinkTest {
+
+    private static final Path PATH = Path.of("logs", "app.log");
+
+    private static byte[] write(OutputFormat format, String token, List<Match> matches) {
+        LogRipperConfig config = new LogRipperConfig(token, PATH, 0, 0, true, 0, false, false, true, false, false,
+                false, ParallelCrawler.UNLIMITED_DEPTH, PathFilter.NONE, BinaryFiles.MATCH_ONLY, false, format);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MatchSink sink = new EncodedMatchSink(config, Channels.newChannel(out))) {
+            sink.emit(PATH, matches);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the match of the line as a scan with the matcher would have found it.
+     */
+    private static Match scanned(byte[] line, LineMatcher matcher, int index, long offset) {
+        long hit = matcher.hit(ByteBuffer.wrap(line), 0, line.length);
+        assertTrue(0 <= hit);
+        return Match.of(line, LineMatcher.spanStart(hit), LineMatcher.spanEnd(hit), index, true, offset, List.of());
+    }
+
+    private static Match scanned(String line, String token, int index, long offset) {
+        return scanned(line.getBytes(StandardCharsets.UTF_8), new LiteralLineMatcher(token, true), index, offset);
+    }
+
+    @Test
+    public void testNdjson() {
+        Match match = scanned("time=\"now\" ERROR é\tfailed", "error", 7, 120).withContext(List.of("before"), List.of());
+        String json = new String(write(OutputFormat.NDJSON, "error", List.of(match, scanned("Error again", "error", 9, 200))), StandardCharsets.UTF_8);
+        assertEquals("""
+                {"path":"logs/app.log","line":7,"offset":120,"span":[11,16],"text":"time=\\"now\\" ERROR é\\tfailed","before":["before"]}
+                {"path":"logs/app.log","line":9,"offset":200,"span":[0,5],"text":"Error again"}
+                """, json);
+    }
+
+    @Test
+    public void testJsonArray() {
+        String json = new String(write(OutputFormat.JSON, "ERROR", List.of(scanned("ERROR 1", "ERROR", 1, 0), scanned("ERROR 2", "ERROR", 2, 8))), StandardCharsets.UTF_8);
+        assertEquals("""
+                [
+                {"path":"logs/app.log","line":1,"offset":0,"span":[0,5],"text":"ERROR 1"}
+                ,{"path":"logs/app.log","line":2,"offset":8,"span":[0,5],"text":"ERROR 2"}
+                ]
+                """, json);
+        assertEquals("[\n]\n", new String(write(OutputFormat.JSON, "ERROR", List.of()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testBinary() {
+        ByteBuffer buffer = ByteBuffer.wrap(write(OutputFormat.BINARY, "fail", List.of(scanned("é failed", "fail", 3, 42))));
+        assertEquals(0x4c524d31, buffer.getInt());
+        assertEquals(buffer.remaining() - Integer.BYTES, buffer.getInt());
+        assertEquals("logs/app.log", string(buffer));
+        assertEquals(3, buffer.getInt());
+        assertEquals(42, buffer.getLong());
+        assertEquals(3, buffer.getInt());
+        assertEquals(7, buffer.getInt());
+        assertEquals("é failed", string(buffer));
+        assertEquals(0, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertEquals(0, buffer.getInt());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testOversizedRecord() {
+        String line = "ERROR " + "x".repeat(100_000);
+        List<Match> matches = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            matches.add(scanned(i == 20 ? line : "ERROR " + i, "ERROR", i, i));
+        }
+        List<String> lines = new String(write(OutputFormat.NDJSON, "ERROR", matches), StandardCharsets.UTF_8).lines().toList();
+        assertEquals(40, lines.size());
+        assertTrue(lines.get(19).endsWith("x\"}"));
+        assertTrue(lines.get(39).contains("\"line\":40,"));
+    }
+
+    @Test
+    public void testSpanOfTheScan() {
+        // the span is the hit the matcher found, not the first one of the token pattern
+        byte[] line = "WARN retry, ERROR failed".getBytes(StandardCharsets.UTF_8);
+        Match match = scanned(line, new LiteralLineMatcher("ERROR", false), 1, 0);
+        String json = new String(write(OutputFormat.NDJSON, "WARN|ERROR", List.of(match)), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"span\":[12,17]"), json);
+    }
+
+    @Test
+    public void testMatchWithoutBytes() {
+        String json = new String(write(OutputFormat.NDJSON, "ERROR", List.of(Match.of("Binary file logs/app.log matches", 0))), StandardCharsets.UTF_8);
+        assertEquals("""
+                {"path":"logs/app.log","line":0,"offset":null,"span":null,"text":"Binary file logs/app.log matches"}
+                """, json);
+    }
+
+    @Test
+    public void testMalformedBytes() {
+        // copied as they are into binary records, replaced like the decoder does in JSON
+        byte[] line = {'E', 'R', 'R', 'O', 'R', ' ', (byte) 0xc3, '"', (byte) 0xe2, (byte) 0x82, (byte) 0xac};
+        Match match = scanned(line, new LiteralLineMatcher("ERROR", false), 1, 0);
+        String json = new String(write(OutputFormat.NDJSON, "ERROR", List.of(match)), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"text\":\"ERROR �\\\"€\""), json);
+
+        ByteBuffer buffer = ByteBuffer.wrap(write(OutputFormat.BINARY, "ERROR", List.of(match)));
+        buffer.position(Integer.BYTES * 2);
+        assertEquals("logs/app.log", string(buffer));
+        buffer.position(buffer.position() + Integer.BYTES + Long.BYTES + 2 * Integer.BYTES);
+        byte[] copied = new byte[buffer.getInt()];
+        buffer.get(copied);
+        assertArrayEquals(line, copied);
+    }
+
+    private static String string(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}